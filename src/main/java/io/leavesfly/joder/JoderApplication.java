@@ -4,6 +4,7 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import io.leavesfly.joder.core.config.ConfigManager;
 import io.leavesfly.joder.screens.ReplScreen;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -76,6 +77,9 @@ public class JoderApplication implements Callable<Integer> {
             // 初始化配置目录
             configManager.initializeConfigDirectories();
 
+            // 后台并行构建工作区文件目录
+            injector.getInstance(WorkspaceCatalog.class).start();
+
             // 显示基本信息
             displayInfo();
 
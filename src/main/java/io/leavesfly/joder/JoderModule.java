@@ -10,15 +10,32 @@ import io.leavesfly.joder.hooks.*;
 import io.leavesfly.joder.services.agents.AgentsManager;
 import io.leavesfly.joder.services.agents.AgentExecutor;
 import io.leavesfly.joder.services.cache.FileContentCache;
+import io.leavesfly.joder.services.cache.ToolResultCache;
+import io.leavesfly.joder.services.checkpoint.CheckpointStore;
 import io.leavesfly.joder.services.commands.CustomCommandService;
 import io.leavesfly.joder.services.completion.*;
 import io.leavesfly.joder.services.context.ContextCompressor;
+import io.leavesfly.joder.services.context.ContextPacker;
 import io.leavesfly.joder.services.context.TokenCounter;
 import io.leavesfly.joder.services.cost.CostTrackingService;
+import io.leavesfly.joder.services.cost.ToolMetricsService;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.index.FuzzyFileIndex;
+import io.leavesfly.joder.services.index.ImportGraph;
+import io.leavesfly.joder.services.index.IndexCoordinator;
+import io.leavesfly.joder.services.index.SymbolIndex;
+import io.leavesfly.joder.services.index.TokenIndex;
+import io.leavesfly.joder.services.index.TrigramIndex;
+import io.leavesfly.joder.services.workspace.DirectoryLister;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
+import io.leavesfly.joder.services.search.BinaryDetector;
+import io.leavesfly.joder.services.search.ContentScanner;
 import io.leavesfly.joder.services.freshness.FileFreshnessService;
 import io.leavesfly.joder.services.maintenance.MaintenanceScheduler;
 import io.leavesfly.joder.services.mcp.McpServerManager;
 import io.leavesfly.joder.services.mcp.McpToolRegistry;
+import io.leavesfly.joder.services.memory.ProjectAnalysisCache;
 import io.leavesfly.joder.services.memory.ProjectMemoryManager;
 import io.leavesfly.joder.services.mention.MentionProcessor;
 import io.leavesfly.joder.services.model.ModelAdapterFactory;
@@ -70,6 +87,7 @@ import io.leavesfly.joder.tools.codebase.CodebaseSummaryTool;
 import io.leavesfly.joder.tools.search.SmartSearchTool;
 import io.leavesfly.joder.tools.search.SearchStrategyAnalyzer;
 import io.leavesfly.joder.tools.search.SearchExecutor;
+import io.leavesfly.joder.tools.symbol.GoToDefinitionTool;
 
 import javax.inject.Singleton;
 
@@ -109,6 +127,7 @@ public class JoderModule extends AbstractModule {
         
         // 命令系统
         bind(CostCommand.class);
+        bind(StatsCommand.class);
         bind(DoctorCommand.class);
         bind(AgentsCommand.class);
         bind(ResumeCommand.class);
@@ -162,6 +181,7 @@ public class JoderModule extends AbstractModule {
         
         // 文件新鲜度追踪系统
         bind(FileFreshnessService.class).in(Singleton.class);
+        bind(FileChangeBus.class).in(Singleton.class);
         
         // Mention 处理系统
         bind(MentionProcessor.class).in(Singleton.class);
@@ -171,16 +191,36 @@ public class JoderModule extends AbstractModule {
         
         // 项目记忆管理
         bind(ProjectMemoryManager.class).in(Singleton.class);
+        bind(ProjectAnalysisCache.class).in(Singleton.class);
         
         // 上下文管理
         bind(TokenCounter.class).in(Singleton.class);
         bind(ContextCompressor.class).in(Singleton.class);
+        bind(ContextPacker.class).in(Singleton.class);
         
         // 缓存管理
         bind(FileContentCache.class).in(Singleton.class);
+        bind(ToolResultCache.class).in(Singleton.class);
+        
+        // 文件检查点
+        bind(CheckpointStore.class).in(Singleton.class);
+        
+        // 代码索引
+        bind(IndexCoordinator.class).in(Singleton.class);
+        bind(TrigramIndex.class).in(Singleton.class);
+        bind(FuzzyFileIndex.class).in(Singleton.class);
+        bind(TokenIndex.class).in(Singleton.class);
+        bind(SymbolIndex.class).in(Singleton.class);
+        bind(ImportGraph.class).in(Singleton.class);
+        bind(ContentScanner.class).in(Singleton.class);
+        bind(BinaryDetector.class).in(Singleton.class);
+        bind(IgnoreRules.class).in(Singleton.class);
+        bind(WorkspaceCatalog.class).in(Singleton.class);
+        bind(DirectoryLister.class).in(Singleton.class);
         
         // 成本追踪
         bind(CostTrackingService.class).in(Singleton.class);
+        bind(ToolMetricsService.class).in(Singleton.class);
         
         // UI 渲染器
         bind(SyntaxHighlighter.class).in(Singleton.class);
@@ -244,6 +284,7 @@ public class JoderModule extends AbstractModule {
         bind(SearchStrategyAnalyzer.class).in(Singleton.class);
         bind(SearchExecutor.class).in(Singleton.class);
         bind(SmartSearchTool.class);
+        bind(GoToDefinitionTool.class);
     }
     
     @Provides
@@ -271,6 +312,7 @@ public class JoderModule extends AbstractModule {
         GlobTool globTool,
         GrepTool grepTool,
         SmartSearchTool smartSearchTool,
+        GoToDefinitionTool goToDefinitionTool,
         ThinkTool thinkTool,
         TodoWriteTool todoWriteTool,
         TaskTool taskTool,
@@ -307,6 +349,7 @@ public class JoderModule extends AbstractModule {
         registry.registerTool(globTool);
         registry.registerTool(grepTool);
         registry.registerTool(smartSearchTool);
+        registry.registerTool(goToDefinitionTool);
         
         // 注册 P1 工具
         registry.registerTool(thinkTool);
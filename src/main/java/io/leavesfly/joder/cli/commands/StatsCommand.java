@@ -0,0 +1,67 @@
+package io.leavesfly.joder.cli.commands;
+
+import io.leavesfly.joder.cli.Command;
+import io.leavesfly.joder.cli.CommandResult;
+import io.leavesfly.joder.services.cost.ToolMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Stats 命令 - 显示工具调用的耗时与输出规模分布
+ */
+@Singleton
+public class StatsCommand implements Command {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatsCommand.class);
+
+    private static final String DEFAULT_DUMP_FILE = "joder-tool-stats.json";
+
+    private final ToolMetricsService metricsService;
+
+    @Inject
+    public StatsCommand(ToolMetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    @Override
+    public String getDescription() {
+        return "显示工具调用的 p50/p90/p99 耗时分布";
+    }
+
+    @Override
+    public String getUsage() {
+        return "/stats [dump [文件] | reset] - 显示、导出或重置工具调用统计";
+    }
+
+    @Override
+    public CommandResult execute(String args) {
+        String trimmed = args == null ? "" : args.trim();
+        if (trimmed.isEmpty()) {
+            return CommandResult.success(metricsService.formatSummary());
+        }
+
+        String[] parts = trimmed.split("\\s+", 2);
+        switch (parts[0]) {
+            case "dump":
+                Path file = Paths.get(parts.length > 1 ? parts[1] : DEFAULT_DUMP_FILE);
+                try {
+                    metricsService.dumpTo(file);
+                    return CommandResult.success("工具统计已导出到: " + file.toAbsolutePath());
+                } catch (IOException e) {
+                    logger.warn("导出工具统计失败", e);
+                    return CommandResult.error("导出失败: " + e.getMessage());
+                }
+            case "reset":
+                metricsService.reset();
+                return CommandResult.success("工具统计已重置");
+            default:
+                return CommandResult.error("未知参数: " + parts[0] + "\n用法: " + getUsage());
+        }
+    }
+}
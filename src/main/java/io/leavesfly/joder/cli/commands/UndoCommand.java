@@ -3,11 +3,13 @@ package io.leavesfly.joder.cli.commands;
 import io.leavesfly.joder.cli.Command;
 import io.leavesfly.joder.cli.CommandResult;
 import io.leavesfly.joder.core.MainLoop;
+import io.leavesfly.joder.services.checkpoint.CheckpointStore;
 
 import javax.inject.Inject;
 
 /**
  * /undo 命令 - 撤销最后一轮对话
+ * 同时把该轮修改过的文件回滚到本轮开始前的状态
  */
 public class UndoCommand implements Command {
     
@@ -20,7 +22,7 @@ public class UndoCommand implements Command {
     
     @Override
     public String getDescription() {
-        return "撤销最后一轮对话(移除用户消息和AI响应)";
+        return "撤销最后一轮对话(移除用户消息和AI响应,并回滚该轮修改的文件)";
     }
     
     @Override
@@ -38,11 +40,27 @@ public class UndoCommand implements Command {
         
         if (success) {
             return CommandResult.success(String.format(
-                "✓ 已撤销最后一轮对话\n当前对话历史: %d 条消息",
-                mainLoop.getHistorySize()
+                "✓ 已撤销最后一轮对话\n当前对话历史: %d 条消息%s",
+                mainLoop.getHistorySize(),
+                formatFileRestore(mainLoop.getLastUndoRestore())
             ));
         } else {
             return CommandResult.error("撤销失败: 对话历史格式不正确");
         }
     }
+    
+    private String formatFileRestore(CheckpointStore.RestoreResult restore) {
+        if (restore == null) {
+            return "";
+        }
+        if (restore.isExpired()) {
+            return "\n⚠ 该轮的文件检查点已被回收,文件未回滚";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("\n已回滚 %d 个文件", restore.getRestoredFiles().size()));
+        for (String failure : restore.getFailures()) {
+            sb.append("\n⚠ 回滚失败: ").append(failure);
+        }
+        return sb.toString();
+    }
 }
@@ -2,6 +2,8 @@ package io.leavesfly.joder.core;
 
 import io.leavesfly.joder.domain.Message;
 import io.leavesfly.joder.domain.MessageRole;
+import io.leavesfly.joder.hooks.CancelRequestHook;
+import io.leavesfly.joder.services.checkpoint.CheckpointStore;
 import io.leavesfly.joder.services.model.ModelAdapter;
 import io.leavesfly.joder.tools.ToolRegistry;
 import io.leavesfly.joder.ui.components.MessageRenderer;
@@ -13,8 +15,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 
 /**
@@ -37,6 +41,26 @@ public class MainLoop {
     private final ProjectMemoryManager projectMemoryManager;
     private final ContextCompressor contextCompressor;
 
+    /**
+     * 取消钩子，每次处理用户输入时开启新的取消作用域
+     */
+    private CancelRequestHook cancelRequestHook;
+
+    /**
+     * 文件检查点存储，每轮对话开启一个检查点，撤销时回滚该轮修改的文件
+     */
+    private CheckpointStore checkpointStore;
+
+    /**
+     * 各轮对话对应的检查点编号，栈顶为最近一轮
+     */
+    private final Deque<Long> turnCheckpoints = new ArrayDeque<>();
+
+    /**
+     * 最近一次撤销时的文件回滚结果
+     */
+    private CheckpointStore.RestoreResult lastUndoRestore;
+
     /**
      * 单一消息历史 - 核心数据结构
      * 所有对话、工具调用、子Agent结果都存储在这里
@@ -73,6 +97,22 @@ public class MainLoop {
         this.interactionMode = InteractionMode.DEFAULT; // 默认模式
     }
 
+    /**
+     * 注入取消钩子
+     */
+    @Inject
+    public void setCancelRequestHook(CancelRequestHook cancelRequestHook) {
+        this.cancelRequestHook = cancelRequestHook;
+    }
+
+    /**
+     * 注入文件检查点存储
+     */
+    @Inject
+    public void setCheckpointStore(CheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+
     /**
      * 设置当前使用的模型
      */
@@ -132,6 +172,16 @@ public class MainLoop {
 
         logger.debug("Processing user input: {}", userInput);
 
+        // 新一轮对话，上一轮的取消状态不再生效
+        if (cancelRequestHook != null) {
+            cancelRequestHook.beginTurn();
+        }
+
+        // 本轮的文件修改记入新的检查点
+        if (checkpointStore != null) {
+            turnCheckpoints.push(checkpointStore.begin("turn"));
+        }
+
         // 创建用户消息并添加到历史
         Message userMessage = new Message(MessageRole.USER, userInput);
         addMessageToHistory(userMessage);
@@ -226,6 +276,7 @@ public class MainLoop {
      */
     public void clearHistory() {
         messageHistory.clear();
+        turnCheckpoints.clear();
         logger.info("Message history cleared");
     }
 
@@ -256,8 +307,13 @@ public class MainLoop {
 
     /**
      * 撤销最后一轮对话(移除最后的用户消息和AI响应)
+     * <p>
+     * 注入了检查点存储时，同时把该轮修改过的文件回滚到本轮开始前的状态，
+     * 结果可通过 {@link #getLastUndoRestore()} 获取。
+     * </p>
      */
     public boolean undoLastInteraction() {
+        lastUndoRestore = null;
         if (messageHistory.size() < 2) {
             logger.warn("Not enough messages to undo");
             return false;
@@ -271,6 +327,9 @@ public class MainLoop {
         if (lastMessage.getRole() == MessageRole.ASSISTANT &&
                 secondLastMessage.getRole() == MessageRole.USER) {
             removeLastMessages(2);
+            if (checkpointStore != null && !turnCheckpoints.isEmpty()) {
+                lastUndoRestore = checkpointStore.restore(turnCheckpoints.pop());
+            }
             logger.info("Undone last interaction");
             return true;
         }
@@ -279,6 +338,13 @@ public class MainLoop {
         return false;
     }
 
+    /**
+     * 获取最近一次撤销时的文件回滚结果，没有回滚文件时返回 null
+     */
+    public CheckpointStore.RestoreResult getLastUndoRestore() {
+        return lastUndoRestore;
+    }
+
     /**
      * 获取当前模型
      */
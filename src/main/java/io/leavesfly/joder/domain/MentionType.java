@@ -15,6 +15,11 @@ public enum MentionType {
      */
     FILE("@file", "File reference"),
     
+    /**
+     * 文件及其相关文件引用：@context:path/to/File.java
+     */
+    CONTEXT("@context", "File reference with related files"),
+    
     /**
      * Agent 引用：@agent:agent-name
      */
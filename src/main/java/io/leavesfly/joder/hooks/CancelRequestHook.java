@@ -4,23 +4,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Singleton;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 请求取消钩子
  * 对应 Kode 的 useCancelRequest hook
  * 处理 ESC 键取消请求的逻辑
+ * 
+ * <p>每轮对话对应一个根 {@link CancellationToken}，取消请求作用于整轮，
+ * 批次与单个工具在其下派生各自的子令牌。取消状态只由当前轮次的令牌决定，
+ * 开启新轮次或重置时先取消旧令牌，仍挂在旧轮次下的批次与工具随之结束。</p>
  */
 @Singleton
 public class CancelRequestHook {
     
     private static final Logger logger = LoggerFactory.getLogger(CancelRequestHook.class);
+    private static final String REASON_CANCELLED = "执行已取消";
+    private static final String REASON_TURN_ENDED = "轮次已结束";
     
-    private final AtomicBoolean isCancelled;
+    private volatile CancellationToken turnToken;
     private Runnable onCancelCallback;
     
     public CancelRequestHook() {
-        this.isCancelled = new AtomicBoolean(false);
+        this.turnToken = CancellationToken.root("turn");
     }
     
     /**
@@ -30,42 +35,76 @@ public class CancelRequestHook {
         this.onCancelCallback = callback;
     }
     
+    /**
+     * 添加取消监听器
+     * 与 setOnCancel 不同，可同时注册多个，作用于当前轮次，
+     * 轮次被取消或被下一轮替换时执行；若当前已处于取消状态，监听器会被立即执行
+     *
+     * @param listener 取消时执行的回调
+     * @return 用于注销该监听器的句柄
+     */
+    public Runnable addListener(Runnable listener) {
+        return turnToken.onCancel(listener);
+    }
+    
     /**
      * 处理取消请求
      */
-    public void cancel() {
-        if (isCancelled.compareAndSet(false, true)) {
-            logger.info("请求已被取消");
-            
-            if (onCancelCallback != null) {
-                try {
-                    onCancelCallback.run();
-                } catch (Exception e) {
-                    logger.error("取消回调执行失败", e);
-                }
+    public synchronized void cancel() {
+        CancellationToken token = turnToken;
+        if (token.isCancelled()) {
+            return;
+        }
+        logger.info("请求已被取消");
+        
+        if (onCancelCallback != null) {
+            try {
+                onCancelCallback.run();
+            } catch (Exception e) {
+                logger.error("取消回调执行失败", e);
             }
         }
+        token.cancel(REASON_CANCELLED);
+    }
+    
+    /**
+     * 开始新一轮对话
+     * 
+     * @return 新轮次的根令牌
+     */
+    public CancellationToken beginTurn() {
+        reset();
+        return turnToken;
+    }
+    
+    /**
+     * 获取当前轮次的根令牌
+     */
+    public CancellationToken getTurnToken() {
+        return turnToken;
     }
     
     /**
      * 重置取消状态
+     * 旧轮次的令牌先被取消，仍绑定在其下的批次与工具不会成为无法取消的孤儿
      */
-    public void reset() {
-        isCancelled.set(false);
+    public synchronized void reset() {
+        turnToken.cancel(REASON_TURN_ENDED);
+        turnToken = CancellationToken.root("turn");
     }
     
     /**
-     * 检查是否已取消
+     * 检查当前轮次是否已取消
      */
     public boolean isCancelled() {
-        return isCancelled.get();
+        return turnToken.isCancelled();
     }
     
     /**
      * 抛出取消异常（如果已取消）
      */
     public void throwIfCancelled() throws CancellationException {
-        if (isCancelled.get()) {
+        if (turnToken.isCancelled()) {
             throw new CancellationException("请求已被取消");
         }
     }
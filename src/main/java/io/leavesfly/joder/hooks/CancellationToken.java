@@ -0,0 +1,191 @@
+package io.leavesfly.joder.hooks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 层级取消令牌
+ * 作用域自上而下为：轮次（turn）→ 批次（batch）→ 单个工具（tool）。
+ * 取消父令牌会级联取消所有子令牌，取消子令牌不影响父令牌与兄弟令牌，
+ * 因此 ESC 可以取消整轮对话，而单个工具超时只会取消它自己。
+ *
+ * <p>工具执行期间，当前线程绑定的令牌可通过 {@link #current()} 获取，
+ * 工具据此把子进程、HTTP 请求等资源挂到自己的作用域上。</p>
+ */
+public final class CancellationToken implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CancellationToken.class);
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 永不取消的令牌，在未绑定作用域的线程上使用
+     */
+    public static final CancellationToken NONE = new CancellationToken("none", null);
+
+    private static final String DEFAULT_REASON = "请求已被取消";
+
+    private final String name;
+    private final CancellationToken parent;
+    private final Set<CancellationToken> children;
+    private final List<Runnable> listeners;
+    // 取消原因，非 null 即已取消；原因与取消状态一次写入，读到已取消时原因必然可见
+    private final AtomicReference<String> reason;
+
+    private CancellationToken(String name, CancellationToken parent) {
+        this.name = name;
+        this.parent = parent;
+        this.children = ConcurrentHashMap.newKeySet();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.reason = new AtomicReference<>();
+    }
+
+    /**
+     * 创建根令牌
+     */
+    public static CancellationToken root(String name) {
+        return new CancellationToken(name, null);
+    }
+
+    /**
+     * 创建子令牌
+     * 若当前令牌已取消，子令牌创建后即处于取消状态
+     */
+    public CancellationToken child(String childName) {
+        if (this == NONE) {
+            return root(childName);
+        }
+        CancellationToken child = new CancellationToken(childName, this);
+        children.add(child);
+        String cancelReason = reason.get();
+        if (cancelReason != null) {
+            child.cancel(cancelReason);
+        }
+        return child;
+    }
+
+    /**
+     * 取消当前令牌及其全部子令牌
+     *
+     * @param cancelReason 取消原因，为 null 时使用默认原因
+     */
+    public void cancel(String cancelReason) {
+        if (cancelReason == null) {
+            cancelReason = DEFAULT_REASON;
+        }
+        if (this == NONE || !reason.compareAndSet(null, cancelReason)) {
+            return;
+        }
+        logger.debug("取消作用域 {}: {}", getPath(), cancelReason);
+
+        for (Runnable listener : listeners) {
+            if (listeners.remove(listener)) {
+                runSafely(listener);
+            }
+        }
+        for (CancellationToken child : children) {
+            child.cancel(cancelReason);
+        }
+    }
+
+    /**
+     * 注册取消回调
+     * 若当前已处于取消状态，回调会被立即执行
+     *
+     * @param listener 取消时执行的回调
+     * @return 用于注销该回调的句柄
+     */
+    public Runnable onCancel(Runnable listener) {
+        if (this == NONE) {
+            return () -> { };
+        }
+        listeners.add(listener);
+        if (isCancelled() && listeners.remove(listener)) {
+            runSafely(listener);
+        }
+        return () -> listeners.remove(listener);
+    }
+
+    public boolean isCancelled() {
+        return reason.get() != null;
+    }
+
+    /**
+     * 获取取消原因，未取消时返回 null
+     */
+    public String getReason() {
+        return reason.get();
+    }
+
+    /**
+     * 抛出取消异常（如果已取消）
+     */
+    public void throwIfCancelled() throws CancelRequestHook.CancellationException {
+        String cancelReason = reason.get();
+        if (cancelReason != null) {
+            throw new CancelRequestHook.CancellationException(cancelReason);
+        }
+    }
+
+    /**
+     * 获取作用域路径，如 turn/batch/GrepTool
+     */
+    public String getPath() {
+        return parent == null ? name : parent.getPath() + "/" + name;
+    }
+
+    /**
+     * 从父令牌上摘除，作用域结束后调用以免长生命周期的父令牌累积子令牌
+     */
+    @Override
+    public void close() {
+        if (parent != null) {
+            parent.children.remove(this);
+        }
+        listeners.clear();
+    }
+
+    /**
+     * 获取当前线程绑定的令牌，未绑定时返回 {@link #NONE}
+     */
+    public static CancellationToken current() {
+        CancellationToken token = CURRENT.get();
+        return token != null ? token : NONE;
+    }
+
+    /**
+     * 将令牌绑定到当前线程
+     *
+     * @param token 要绑定的令牌，null 表示解除绑定
+     * @return 之前绑定的令牌（可能为 null），用于恢复
+     */
+    public static CancellationToken bind(CancellationToken token) {
+        CancellationToken previous = CURRENT.get();
+        if (token == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(token);
+        }
+        return previous;
+    }
+
+    private void runSafely(Runnable callback) {
+        try {
+            callback.run();
+        } catch (Exception e) {
+            logger.error("取消回调执行失败", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String cancelReason = reason.get();
+        return "CancellationToken{" + getPath() + (cancelReason != null ? ", cancelled=" + cancelReason : "") + "}";
+    }
+}
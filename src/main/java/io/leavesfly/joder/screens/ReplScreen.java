@@ -62,6 +62,7 @@ public class ReplScreen {
     private final UndoCommand undoCommand;  // 新增
     private final RethinkCommand rethinkCommand;  // 新增
     private final StyleCommand styleCommand;  // 新增
+    private final StatsCommand statsCommand;
     private final BufferedReader reader;
     private final ModelCommand modelCommand;
     private final StartupTimeHook startupTimeHook;
@@ -98,6 +99,7 @@ public class ReplScreen {
             UndoCommand undoCommand,
             RethinkCommand rethinkCommand,
             StyleCommand styleCommand,
+            StatsCommand statsCommand,
             StartupTimeHook startupTimeHook,
             MessageLogHook messageLogHook,
             CommandHistoryHook commandHistoryHook,
@@ -126,6 +128,7 @@ public class ReplScreen {
         this.undoCommand = undoCommand;  // 新增
         this.rethinkCommand = rethinkCommand;  // 新增
         this.styleCommand = styleCommand;  // 新增
+        this.statsCommand = statsCommand;
         this.startupTimeHook = startupTimeHook;
         this.messageLogHook = messageLogHook;
         this.commandHistoryHook = commandHistoryHook;
@@ -187,6 +190,7 @@ public class ReplScreen {
         commandParser.registerCommand("mode", modeCommand);  // 新增
         commandParser.registerCommand("mcp", new McpCommand(mcpServerManager, mcpToolRegistry));
         commandParser.registerCommand("cost", costCommand);
+        commandParser.registerCommand("stats", statsCommand);
         commandParser.registerCommand("doctor", doctorCommand);
         commandParser.registerCommand("agents", agentsCommand);
         commandParser.registerCommand("resume", resumeCommand);
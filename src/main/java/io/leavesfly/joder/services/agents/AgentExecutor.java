@@ -3,6 +3,8 @@ package io.leavesfly.joder.services.agents;
 import io.leavesfly.joder.domain.AgentConfig;
 import io.leavesfly.joder.domain.Message;
 import io.leavesfly.joder.domain.MessageRole;
+import io.leavesfly.joder.services.context.ContextPack;
+import io.leavesfly.joder.services.context.ContextPacker;
 import io.leavesfly.joder.services.model.ModelAdapter;
 import io.leavesfly.joder.services.model.ModelAdapterFactory;
 import io.leavesfly.joder.tools.Tool;
@@ -12,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -36,15 +39,25 @@ public class AgentExecutor {
     private final AgentsManager agentsManager;
     private final ModelAdapterFactory modelAdapterFactory;
     private final ToolRegistry toolRegistry;
+    private final ContextPacker contextPacker;
     
-    @Inject
     public AgentExecutor(
             AgentsManager agentsManager,
             ModelAdapterFactory modelAdapterFactory,
             ToolRegistry toolRegistry) {
+        this(agentsManager, modelAdapterFactory, toolRegistry, null);
+    }
+    
+    @Inject
+    public AgentExecutor(
+            AgentsManager agentsManager,
+            ModelAdapterFactory modelAdapterFactory,
+            ToolRegistry toolRegistry,
+            ContextPacker contextPacker) {
         this.agentsManager = agentsManager;
         this.modelAdapterFactory = modelAdapterFactory;
         this.toolRegistry = toolRegistry;
+        this.contextPacker = contextPacker;
     }
     
     /**
@@ -76,6 +89,27 @@ public class AgentExecutor {
         return executeWithConfig(agentConfig, userInput, messageHistory);
     }
     
+    /**
+     * 执行 Agent，并在用户输入前附上与指定文件有导入关系的相关文件内容
+     * 
+     * @param agentName Agent 名称
+     * @param userInput 用户输入
+     * @param focusFile 重点文件，相对工作目录或绝对路径
+     * @param tokenBudget 相关文件内容可用的 token 数
+     * @return Agent 响应消息
+     */
+    public Message execute(String agentName, String userInput, Path focusFile, int tokenBudget) {
+        ContextPack pack = contextPacker != null && focusFile != null
+                ? contextPacker.pack(focusFile, tokenBudget)
+                : null;
+        if (pack == null || pack.isEmpty()) {
+            return execute(agentName, userInput);
+        }
+        logger.debug("Attaching {} related files of {} to agent {}", pack.getItems().size(), pack.getTarget(), agentName);
+        String input = String.format("Related files of %s:%n%n%s%n%n%s", pack.getTarget(), pack.format(), userInput);
+        return execute(agentName, input);
+    }
+    
     /**
      * 使用指定的 AgentConfig 执行
      * 
@@ -1,82 +1,141 @@
 package io.leavesfly.joder.services.cache;
 
+import io.leavesfly.joder.services.freshness.FileChangeBus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * 文件内容缓存服务
- * 基于文件修改时间戳缓存文件内容,减少重复文件读取
+ * 基于文件修改时间和大小缓存文件内容,减少重复文件读取
+ *
+ * <p>内容以 UTF-8 字节保存，按字节总量限制容量；读取时再解码为行。
+ * 淘汰采用 W-TinyLFU 策略：新条目先进入窗口区（LRU），窗口溢出时与主区的淘汰候选比较
+ * {@link FrequencySketch} 估计的访问频率，频率更高者留下；主区分为试用区和保护区（分段 LRU），
+ * 试用区中再次命中的条目晋升到保护区。进入试用区的较大条目压缩保存，晋升时解压。
+ * 所有结构由同一把锁保护，文件读取与按行解码在锁外进行。
  */
 @Singleton
 public class FileContentCache {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(FileContentCache.class);
-    private static final int MAX_CACHE_SIZE = 100; // 最大缓存文件数
+    private static final long MAX_TOTAL_BYTES = 32 * 1024 * 1024; // 缓存总字节上限
+    private static final int MAX_CACHE_SIZE = 4096; // 最大缓存文件数
     private static final long MAX_FILE_SIZE = 1024 * 1024; // 最大缓存文件大小: 1MB
-    
-    // 使用LinkedHashMap实现LRU缓存
-    private final Map<String, CachedFile> cache = new LinkedHashMap<String, CachedFile>(16, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, CachedFile> eldest) {
-            return size() > MAX_CACHE_SIZE;
-        }
-    };
-    
-    private long hits = 0;
-    private long misses = 0;
-    
+    private static final int WINDOW_PERCENT = 10; // 窗口区占总容量的比例
+    private static final int PROTECTED_PERCENT = 80; // 保护区占主区的比例
+    private static final int COMPRESS_MIN_BYTES = 8 * 1024; // 达到该大小的冷条目才压缩
+    private static final int ENTRY_OVERHEAD = 96; // 每个条目的估计固定开销
+
+    private enum Segment { WINDOW, PROBATION, PROTECTED }
+
+    private final long maxBytes;
+    private final long windowMaxBytes;
+    private final long protectedMaxBytes;
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    // 各区按插入顺序排列，访问时移到末尾，最早的条目即淘汰候选
+    private final LinkedHashMap<String, Node> window = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<>();
+    private final FrequencySketch sketch = new FrequencySketch(MAX_CACHE_SIZE);
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public FileContentCache() {
+        this(MAX_TOTAL_BYTES);
+    }
+
+    FileContentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.windowMaxBytes = Math.max(1, maxBytes * WINDOW_PERCENT / 100);
+        this.protectedMaxBytes = (maxBytes - windowMaxBytes) * PROTECTED_PERCENT / 100;
+    }
+
+    @Inject
+    public FileContentCache(FileChangeBus fileChangeBus) {
+        this();
+        fileChangeBus.subscribe(new FileChangeBus.Listener() {
+            @Override
+            public void onPathChanged(Path path) {
+                invalidateUnder(path);
+            }
+
+            @Override
+            public void onUnknownChange() {
+                // 修改时间与大小校验兜底，外部修改不必清空缓存
+            }
+        });
+    }
+
     /**
      * 读取文件内容(带缓存)
      */
     public List<String> readLines(String filePath) throws IOException {
         Path path = Paths.get(filePath);
-        
-        // 检查文件是否存在
-        if (!Files.exists(path)) {
-            throw new IOException("文件不存在: " + filePath);
-        }
-        
-        // 检查文件大小
-        long fileSize = Files.size(path);
-        if (fileSize > MAX_FILE_SIZE) {
-            logger.debug("文件过大,不使用缓存: {} ({} bytes)", filePath, fileSize);
-            misses++;
+        byte[] content = load(path, filePath);
+        if (content == null) {
             return Files.readAllLines(path);
         }
-        
-        // 获取文件修改时间
-        FileTime lastModified = Files.getLastModifiedTime(path);
-        
-        // 检查缓存
-        CachedFile cached = cache.get(filePath);
-        if (cached != null && cached.lastModified.equals(lastModified)) {
-            // 缓存命中
-            hits++;
-            logger.debug("缓存命中: {}", filePath);
-            return cached.lines;
+        return splitLines(content, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 读取 [startLine, endLine) 行(带缓存)，行号从 0 开始；文件不足 endLine 行时读到末尾，
+     * startLine 超出文件时返回空列表。超过缓存上限的文件流式读取，不整体载入
+     */
+    public List<String> readRange(String filePath, int startLine, int endLine) throws IOException {
+        Path path = Paths.get(filePath);
+        int start = Math.max(0, startLine);
+        if (endLine <= start) {
+            if (!Files.exists(path)) {
+                throw new IOException("文件不存在: " + filePath);
+            }
+            return Collections.emptyList();
+        }
+        byte[] content = load(path, filePath);
+        if (content != null) {
+            return splitLines(content, start, endLine);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path);
+             Stream<String> lines = reader.lines()) {
+            return lines.skip(start).limit((long) endLine - start).collect(Collectors.toUnmodifiableList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        
-        // 缓存未命中或已过期,读取文件
-        misses++;
-        logger.debug("缓存未命中: {}", filePath);
-        List<String> lines = Files.readAllLines(path);
-        
-        // 更新缓存
-        cache.put(filePath, new CachedFile(lines, lastModified));
-        
-        return lines;
     }
-    
+
     /**
      * 读取文件内容为字符串(带缓存)
      */
@@ -84,88 +143,405 @@ public class FileContentCache {
         List<String> lines = readLines(filePath);
         return String.join("\n", lines);
     }
-    
+
     /**
      * 使缓存失效
      */
     public void invalidate(String filePath) {
-        cache.remove(filePath);
+        String key = keyOf(Paths.get(filePath));
+        synchronized (this) {
+            Node node = nodes.get(key);
+            if (node != null) {
+                unlink(node);
+            }
+        }
         logger.debug("缓存已失效: {}", filePath);
     }
-    
+
     /**
      * 清空所有缓存
      */
     public void clear() {
-        int size = cache.size();
-        cache.clear();
-        hits = 0;
-        misses = 0;
+        int size;
+        synchronized (this) {
+            size = nodes.size();
+            nodes.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            windowBytes = 0;
+            probationBytes = 0;
+            protectedBytes = 0;
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+        rejections.reset();
         logger.info("缓存已清空: {} 个文件", size);
     }
-    
+
     /**
      * 获取缓存大小
      */
-    public int size() {
-        return cache.size();
+    public synchronized int size() {
+        return nodes.size();
     }
-    
+
     /**
      * 获取缓存命中率
      */
     public double getHitRate() {
-        long total = hits + misses;
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
         if (total == 0) {
             return 0.0;
         }
-        return (double) hits / total;
+        return (double) hitCount / total;
     }
-    
+
     /**
      * 获取缓存统计信息
      */
-    public CacheStats getStats() {
-        return new CacheStats(hits, misses, cache.size(), MAX_CACHE_SIZE);
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), nodes.size(),
+            MAX_CACHE_SIZE, windowBytes + probationBytes + protectedBytes, maxBytes);
     }
-    
+
+    /**
+     * 取得文件的 UTF-8 内容，命中缓存或读取后放入缓存；文件过大不缓存时返回 null
+     */
+    private byte[] load(Path path, String filePath) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new IOException("文件不存在: " + filePath, e);
+        }
+
+        // 检查文件大小
+        if (attributes.size() > MAX_FILE_SIZE) {
+            logger.debug("文件过大,不使用缓存: {} ({} bytes)", filePath, attributes.size());
+            misses.increment();
+            return null;
+        }
+
+        String key = keyOf(path);
+        byte[] stored;
+        boolean compressed;
+        int length;
+        synchronized (this) {
+            sketch.increment(key);
+            Node node = nodes.get(key);
+            if (node != null && !node.matches(attributes)) {
+                unlink(node);
+                node = null;
+            }
+            if (node != null) {
+                // 缓存命中
+                hits.increment();
+                onHit(node);
+                stored = node.data;
+                compressed = node.compressed;
+                length = node.length;
+            } else {
+                stored = null;
+                compressed = false;
+                length = 0;
+            }
+        }
+
+        if (stored != null) {
+            logger.debug("缓存命中: {}", filePath);
+            return compressed ? inflate(stored, length) : stored;
+        }
+
+        // 缓存未命中或已过期,读取文件
+        misses.increment();
+        logger.debug("缓存未命中: {}", filePath);
+        byte[] content = Files.readAllBytes(path);
+        synchronized (this) {
+            Node existing = nodes.get(key);
+            if (existing != null) {
+                unlink(existing);
+            }
+            Node node = new Node(key, content, attributes.lastModifiedTime(), attributes.size());
+            nodes.put(key, node);
+            link(node, Segment.WINDOW);
+            evictWindow();
+        }
+        return content;
+    }
+
+    /**
+     * 命中后调整位置：试用区的条目晋升到保护区，保护区溢出时最早的条目降回试用区
+     */
+    private void onHit(Node node) {
+        if (node.segment != Segment.PROBATION) {
+            LinkedHashMap<String, Node> queue = node.segment == Segment.WINDOW ? window : protectedSegment;
+            queue.remove(node.key);
+            queue.put(node.key, node);
+            return;
+        }
+        unlink(node);
+        if (node.compressed) {
+            node.data = inflate(node.data, node.length);
+            node.compressed = false;
+        }
+        nodes.put(node.key, node);
+        link(node, Segment.PROTECTED);
+        while (protectedBytes > protectedMaxBytes && protectedSegment.size() > 1) {
+            Node demoted = protectedSegment.values().iterator().next();
+            unlink(demoted);
+            compress(demoted);
+            nodes.put(demoted.key, demoted);
+            link(demoted, Segment.PROBATION);
+        }
+        evictMain();
+    }
+
+    /**
+     * 窗口区溢出时，按最早顺序把条目交给主区准入
+     */
+    private void evictWindow() {
+        while (windowBytes > windowMaxBytes && !window.isEmpty()) {
+            Node candidate = window.values().iterator().next();
+            unlink(candidate);
+            admit(candidate);
+        }
+    }
+
+    /**
+     * TinyLFU 准入：主区放不下时，候选者的频率必须高于主区淘汰候选才能挤出对方
+     */
+    private void admit(Node candidate) {
+        long mainMaxBytes = maxBytes - windowMaxBytes;
+        if (probationBytes + protectedBytes + candidate.weight() > mainMaxBytes) {
+            Node victim = eldest();
+            if (victim == null || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)
+                    || candidate.weight() > mainMaxBytes) {
+                rejections.increment();
+                return;
+            }
+            while (probationBytes + protectedBytes + candidate.weight() > mainMaxBytes) {
+                unlink(eldest());
+                evictions.increment();
+            }
+        }
+        compress(candidate);
+        nodes.put(candidate.key, candidate);
+        link(candidate, Segment.PROBATION);
+        evictMain();
+    }
+
+    /**
+     * 条目数超出上限时从主区淘汰
+     */
+    private void evictMain() {
+        while (nodes.size() > MAX_CACHE_SIZE) {
+            Node victim = eldest();
+            if (victim == null) {
+                return;
+            }
+            unlink(victim);
+            evictions.increment();
+        }
+    }
+
+    private Node eldest() {
+        if (!probation.isEmpty()) {
+            return probation.values().iterator().next();
+        }
+        if (!protectedSegment.isEmpty()) {
+            return protectedSegment.values().iterator().next();
+        }
+        return null;
+    }
+
+    private void link(Node node, Segment segment) {
+        node.segment = segment;
+        switch (segment) {
+            case WINDOW:
+                window.put(node.key, node);
+                windowBytes += node.weight();
+                break;
+            case PROBATION:
+                probation.put(node.key, node);
+                probationBytes += node.weight();
+                break;
+            default:
+                protectedSegment.put(node.key, node);
+                protectedBytes += node.weight();
+                break;
+        }
+    }
+
+    private void unlink(Node node) {
+        nodes.remove(node.key);
+        switch (node.segment) {
+            case WINDOW:
+                window.remove(node.key);
+                windowBytes -= node.weight();
+                break;
+            case PROBATION:
+                probation.remove(node.key);
+                probationBytes -= node.weight();
+                break;
+            default:
+                protectedSegment.remove(node.key);
+                protectedBytes -= node.weight();
+                break;
+        }
+    }
+
+    /**
+     * 失效路径本身及其下的所有条目
+     */
+    private synchronized void invalidateUnder(Path changed) {
+        String prefix = changed.toAbsolutePath().normalize().toString();
+        for (Node node : new ArrayList<>(nodes.values())) {
+            if (node.key.equals(prefix) || node.key.startsWith(prefix + File.separator)) {
+                unlink(node);
+            }
+        }
+    }
+
+    private static String keyOf(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * 较大的冷条目压缩保存，压缩收益不足 10% 时保持原样
+     */
+    private static void compress(Node node) {
+        if (node.compressed || node.data.length < COMPRESS_MIN_BYTES) {
+            return;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(node.data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(node.data.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+                if (out.size() > node.data.length * 9L / 10) {
+                    return;
+                }
+            }
+            node.data = out.toByteArray();
+            node.compressed = true;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] content = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                offset += inflater.inflate(content, offset, length - offset);
+            }
+            return content;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("缓存内容损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 按 Files.readAllLines 的规则（\n、\r\n、\r 均为行结束符）切分 UTF-8 内容，取 [start, end) 行
+     */
+    static List<String> splitLines(byte[] content, int start, int end) {
+        List<String> lines = new ArrayList<>();
+        int line = 0;
+        int lineStart = 0;
+        int position = 0;
+        while (position < content.length && line < end) {
+            byte b = content[position];
+            if (b == '\n' || b == '\r') {
+                if (line >= start) {
+                    lines.add(new String(content, lineStart, position - lineStart, StandardCharsets.UTF_8));
+                }
+                line++;
+                position += b == '\r' && position + 1 < content.length && content[position + 1] == '\n' ? 2 : 1;
+                lineStart = position;
+            } else {
+                position++;
+            }
+        }
+        if (lineStart < content.length && line >= start && line < end) {
+            lines.add(new String(content, lineStart, content.length - lineStart, StandardCharsets.UTF_8));
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
     /**
      * 缓存的文件
      */
-    private static class CachedFile {
-        final List<String> lines;
+    private static class Node {
+        final String key;
         final FileTime lastModified;
-        
-        CachedFile(List<String> lines, FileTime lastModified) {
-            this.lines = List.copyOf(lines); // 不可变副本
+        final long size;
+        /** 原始内容长度 */
+        final int length;
+        byte[] data;
+        boolean compressed;
+        Segment segment;
+
+        Node(String key, byte[] data, FileTime lastModified, long size) {
+            this.key = key;
+            this.data = data;
+            this.length = data.length;
             this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return lastModified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+
+        long weight() {
+            return data.length + 2L * key.length() + ENTRY_OVERHEAD;
         }
     }
-    
+
     /**
      * 缓存统计信息
      */
     public static class CacheStats {
         public final long hits;
         public final long misses;
+        public final long evictions;
+        public final long rejections;
         public final int currentSize;
         public final int maxSize;
+        public final long currentBytes;
+        public final long maxBytes;
         public final double hitRate;
-        
-        CacheStats(long hits, long misses, int currentSize, int maxSize) {
+
+        CacheStats(long hits, long misses, long evictions, long rejections, int currentSize, int maxSize,
+                   long currentBytes, long maxBytes) {
             this.hits = hits;
             this.misses = misses;
+            this.evictions = evictions;
+            this.rejections = rejections;
             this.currentSize = currentSize;
             this.maxSize = maxSize;
+            this.currentBytes = currentBytes;
+            this.maxBytes = maxBytes;
             long total = hits + misses;
             this.hitRate = total > 0 ? (double) hits / total : 0.0;
         }
-        
+
         @Override
         public String toString() {
             return String.format(
-                "CacheStats{hits=%d, misses=%d, hitRate=%.2f%%, size=%d/%d}",
-                hits, misses, hitRate * 100, currentSize, maxSize
+                "CacheStats{hits=%d, misses=%d, hitRate=%.2f%%, size=%d/%d, bytes=%d/%d, evictions=%d, rejections=%d}",
+                hits, misses, hitRate * 100, currentSize, maxSize, currentBytes, maxBytes, evictions, rejections
             );
         }
     }
@@ -0,0 +1,90 @@
+package io.leavesfly.joder.services.cache;
+
+/**
+ * 访问频率估计（Count-Min Sketch）
+ *
+ * <p>每个键在 4 行中各占一个 4 位计数器，估计值取其中最小者，上限为 15。
+ * 累计增加次数达到样本量（表大小的 10 倍）后所有计数器减半，使频率随时间衰减，
+ * 旧的热点不会一直压制新的条目。非线程安全，由调用方加锁。
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedEntries 预计同时跟踪的键数量
+     */
+    FrequencySketch(int expectedEntries) {
+        int size = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+        this.table = new long[size];
+        this.sampleSize = 10 * size;
+    }
+
+    /**
+     * 估计键的访问频率，范围 0~15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, counterAt(hash, row));
+        }
+        return frequency;
+    }
+
+    /**
+     * 记录一次访问
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(hash, row);
+            int shift = offsetOf(hash, row);
+            if (((table[index] >>> shift) & 0xfL) != 0xfL) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int counterAt(int hash, int row) {
+        return (int) ((table[indexOf(hash, row)] >>> offsetOf(hash, row)) & 0xfL);
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & (table.length - 1);
+    }
+
+    /**
+     * 每个 long 含 16 个计数器：每行占 4 个，由哈希的不同位段选取其一
+     */
+    private static int offsetOf(int hash, int row) {
+        return ((row << 2) + ((hash >>> (row << 3)) & 3)) << 2;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
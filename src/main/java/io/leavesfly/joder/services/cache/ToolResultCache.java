@@ -0,0 +1,303 @@
+package io.leavesfly.joder.services.cache;
+
+import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
+import io.leavesfly.joder.tools.ToolResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 只读工具结果缓存
+ *
+ * <p>以「工具名 + 规范化输入」为键缓存可缓存工具（Glob、Grep、LS 等）的成功结果。
+ * 每个条目记录其读取范围（输入中的路径参数，缺省为工作目录），
+ * 收到 {@link FileChangeBus} 的变更事件时只淘汰范围与变更路径相交的条目。
+ * 工作目录之外、排除目录下以及被忽略的范围不受文件监听，外部修改不会发布事件，这些结果不缓存。
+ * 按输出字符数做 LRU 淘汰，并提供命中率统计。
+ */
+@Singleton
+public class ToolResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolResultCache.class);
+
+    private static final long MAX_TOTAL_CHARS = 4 * 1024 * 1024;   // 总输出上限: 4M 字符
+    private static final int MAX_ENTRY_CHARS = 512 * 1024;         // 单条输出上限
+    private static final int MAX_ENTRIES = 512;
+    private static final long MAX_AGE_MS = 5 * 60 * 1000;         // 兜底过期时间
+
+    /** 输入中表示读取范围的参数名 */
+    private static final List<String> SCOPE_KEYS = List.of("path", "file_path", "notebook_path", "directory");
+
+    private final Path workingDirectory;
+    private final IgnoreRules ignoreRules;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalChars = 0;
+
+    /** 每次失效递增，用于丢弃与编辑并发计算出的过期结果 */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ToolResultCache(String workingDirectory, FileChangeBus fileChangeBus) {
+        this(workingDirectory, fileChangeBus, new IgnoreRules(workingDirectory, fileChangeBus));
+    }
+
+    @Inject
+    public ToolResultCache(@WorkingDirectory String workingDirectory, FileChangeBus fileChangeBus,
+                           IgnoreRules ignoreRules) {
+        this.workingDirectory = Paths.get(workingDirectory).toAbsolutePath().normalize();
+        this.ignoreRules = ignoreRules;
+        fileChangeBus.subscribe(new FileChangeBus.Listener() {
+            @Override
+            public void onPathChanged(Path path) {
+                invalidatePath(path);
+            }
+
+            @Override
+            public void onUnknownChange() {
+                invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * 获取当前代数，调用工具前记录，写入时用于校验
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * 查找缓存结果
+     *
+     * @return 命中时返回结果，否则返回 null
+     */
+    public synchronized ToolResult get(String toolName, Map<String, Object> input) {
+        String key = buildKey(toolName, input);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdAt > MAX_AGE_MS) {
+            remove(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        logger.debug("工具结果缓存命中: {}", toolName);
+        return entry.result;
+    }
+
+    /**
+     * 写入缓存
+     * 若计算期间发生过失效（代数变化），结果可能已过期，直接丢弃；标记为不可缓存的结果
+     * 以及读取范围不受监听的结果不写入
+     *
+     * @param startGeneration 调用工具前的代数
+     */
+    public void put(String toolName, Map<String, Object> input, ToolResult result, long startGeneration) {
+        if (!result.isSuccess() || !result.isCacheable()) {
+            return;
+        }
+        int weight = result.getOutput() != null ? result.getOutput().length() : 0;
+        if (weight > MAX_ENTRY_CHARS) {
+            return;
+        }
+        // 在锁外判断，忽略规则可能需要读取规则文件
+        Path scope = resolveScope(input);
+        if (!isWatchedScope(scope)) {
+            return;
+        }
+        synchronized (this) {
+            if (startGeneration != generation.get()) {
+                return;
+            }
+            String key = buildKey(toolName, input);
+            remove(key);
+            entries.put(key, new Entry(result, scope, weight, System.currentTimeMillis()));
+            totalChars += weight;
+
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while ((totalChars > MAX_TOTAL_CHARS || entries.size() > MAX_ENTRIES) && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                totalChars -= eldest.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 淘汰读取范围与变更路径相交的条目
+     */
+    public synchronized void invalidatePath(Path changed) {
+        generation.incrementAndGet();
+        Path normalized = changed.toAbsolutePath().normalize();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (normalized.startsWith(entry.scope) || entry.scope.startsWith(normalized)) {
+                it.remove();
+                totalChars -= entry.weight;
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * 清空全部条目
+     */
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.add(entries.size());
+        entries.clear();
+        totalChars = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(),
+            entries.size(), totalChars);
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalChars -= removed.weight;
+        }
+    }
+
+    /**
+     * 范围内的修改能否经由变更事件得知：须位于工作目录下，且不在排除目录中、未被忽略
+     */
+    private boolean isWatchedScope(Path scope) {
+        if (!scope.startsWith(workingDirectory)) {
+            return false;
+        }
+        for (Path segment : workingDirectory.relativize(scope)) {
+            if (WorkspaceCatalog.isExcludedName(segment.toString())) {
+                return false;
+            }
+        }
+        return !ignoreRules.isIgnored(scope, Files.isDirectory(scope));
+    }
+
+    private Path resolveScope(Map<String, Object> input) {
+        for (String key : SCOPE_KEYS) {
+            Object value = input.get(key);
+            if (value instanceof String && !((String) value).isBlank()) {
+                return workingDirectory.resolve((String) value).toAbsolutePath().normalize();
+            }
+        }
+        return workingDirectory;
+    }
+
+    /**
+     * 构建缓存键：工具名 + 按键排序的输入
+     */
+    static String buildKey(String toolName, Map<String, Object> input) {
+        StringBuilder key = new StringBuilder(toolName).append('\u0000');
+        appendNormalized(key, input);
+        return key.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendNormalized(StringBuilder out, Object value) {
+        if (value instanceof Map) {
+            out.append('{');
+            for (Map.Entry<String, Object> e : new TreeMap<>((Map<String, Object>) value).entrySet()) {
+                if (e.getValue() == null) {
+                    continue;
+                }
+                out.append(e.getKey()).append('=');
+                appendNormalized(out, e.getValue());
+                out.append(';');
+            }
+            out.append('}');
+        } else if (value instanceof List) {
+            out.append('[');
+            for (Object item : (List<Object>) value) {
+                appendNormalized(out, item);
+                out.append(',');
+            }
+            out.append(']');
+        } else if (value instanceof Number) {
+            // 1 与 1.0 视为同一输入
+            double d = ((Number) value).doubleValue();
+            out.append(d == Math.rint(d) ? Long.toString((long) d) : Double.toString(d));
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static class Entry {
+        final ToolResult result;
+        final Path scope;
+        final int weight;
+        final long createdAt;
+
+        Entry(ToolResult result, Path scope, int weight, long createdAt) {
+            this.result = result;
+            this.scope = scope;
+            this.weight = weight;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long invalidations;
+        public final int currentSize;
+        public final long totalChars;
+        public final double hitRate;
+
+        Stats(long hits, long misses, long evictions, long invalidations, int currentSize, long totalChars) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.currentSize = currentSize;
+            this.totalChars = totalChars;
+            long total = hits + misses;
+            this.hitRate = total > 0 ? (double) hits / total : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "ToolResultCacheStats{hits=%d, misses=%d, hitRate=%.2f%%, size=%d, chars=%d, evictions=%d, invalidations=%d}",
+                hits, misses, hitRate * 100, currentSize, totalChars, evictions, invalidations
+            );
+        }
+    }
+}
@@ -0,0 +1,677 @@
+package io.leavesfly.joder.services.checkpoint;
+
+import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 内容寻址的文件检查点存储
+ *
+ * <p>目录布局（位于工作目录的 {@code .joder/checkpoints} 下）：
+ * <ul>
+ *   <li>{@code objects/ab/cdef...} - 按 SHA-256 命名的文件内容，同一内容只存一份</li>
+ *   <li>{@code manifests/<id>.manifest} - 每个检查点一份清单，记录各文件修改前的内容哈希，
+ *       修改前不存在的文件记为缺失</li>
+ * </ul>
+ *
+ * <p>检查点按开启顺序编号，写操作前调用 {@link #capture(Path)} 把文件当前状态记入最新的检查点，
+ * 同一检查点内每个文件只记录第一次。大小和修改时间与上次记录一致的文件直接复用已知哈希，
+ * 不读内容也不写对象。
+ *
+ * <p>回滚到某个检查点时，取该检查点及其之后所有清单中每个文件最早的记录作为目标状态，
+ * 只重写当前内容与目标不同的文件，然后丢弃这些清单；回滚失败的文件保留在该检查点中，可以重试。
+ * 对象总量超过磁盘配额或清单过多时，按引用计数从最旧的检查点开始丢弃清单，直到仍被引用的对象
+ * 不超过配额，再一次性删除未被任何清单引用的对象。
+ */
+@Singleton
+public class CheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointStore.class);
+
+    static final String CHECKPOINT_DIR = ".joder/checkpoints";
+
+    private static final long DEFAULT_QUOTA_BYTES = 256L * 1024 * 1024;  // 对象总量上限: 256MB
+    private static final long MAX_BLOB_BYTES = 32L * 1024 * 1024;        // 单个文件上限
+    private static final int MAX_CHECKPOINTS = 200;
+    /** 文件系统时间戳精度的保守估计（FAT 为 2 秒） */
+    private static final long RACY_INTERVAL_MS = 2000;
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String ABSENT = "-";
+
+    private final Path workingDirectory;
+    private final Path objectsDir;
+    private final Path manifestsDir;
+    private final long quotaBytes;
+    private final FileChangeBus fileChangeBus;
+
+    private final NavigableMap<Long, Manifest> manifests = new TreeMap<>();
+    /**
+     * 文件最近一次已知的 (大小, 修改时间) → 哈希，用于跳过未变化文件的哈希计算。
+     * 修改时间距记录时刻不足一个时间戳精度时不可信：之后同一时间戳内的等长改写从 stat 上无法区分，
+     * 与 git 索引的 racy-clean 规则相同
+     */
+    private final Map<Path, FileState> knownStates = new HashMap<>();
+    /** 对象目录中各对象的大小，回收时据此估算而不必遍历目录 */
+    private final Map<String, Long> blobSizes = new HashMap<>();
+    private boolean loaded = false;
+    private long nextId = 1;
+    private long storedBytes = 0;
+
+    @Inject
+    public CheckpointStore(@WorkingDirectory String workingDirectory, FileChangeBus fileChangeBus) {
+        this(Paths.get(workingDirectory), fileChangeBus, DEFAULT_QUOTA_BYTES);
+    }
+
+    CheckpointStore(Path workingDirectory, FileChangeBus fileChangeBus, long quotaBytes) {
+        this.workingDirectory = workingDirectory.toAbsolutePath().normalize();
+        Path root = this.workingDirectory.resolve(CHECKPOINT_DIR);
+        this.objectsDir = root.resolve("objects");
+        this.manifestsDir = root.resolve("manifests");
+        this.fileChangeBus = fileChangeBus;
+        this.quotaBytes = quotaBytes;
+    }
+
+    /**
+     * 开启新的检查点，之后的 {@link #capture(Path)} 都记入该检查点
+     *
+     * @param label 检查点标签，如 turn、batch
+     * @return 检查点编号
+     */
+    public synchronized long begin(String label) {
+        ensureLoaded();
+        Manifest manifest = new Manifest(nextId++, sanitize(label), System.currentTimeMillis());
+        manifests.put(manifest.id, manifest);
+        writeManifest(manifest);
+        collectGarbage();
+        return manifest.id;
+    }
+
+    /**
+     * 在修改文件前记录其当前状态
+     * <p>
+     * 文件已在最新检查点中记录过时直接返回；没有开启过检查点时自动开启一个。
+     * 超过单文件上限的文件不记录，回滚时保持原样。
+     * </p>
+     */
+    public synchronized void capture(Path file) {
+        ensureLoaded();
+        Path path = normalize(file);
+        if (path.startsWith(objectsDir.getParent())) {
+            return;
+        }
+        if (manifests.isEmpty()) {
+            begin("auto");
+        }
+        Manifest current = manifests.lastEntry().getValue();
+        String key = keyOf(path);
+        if (current.entries.containsKey(key)) {
+            return;
+        }
+        try {
+            FileState state = snapshot(path);
+            if (state == null) {
+                return;
+            }
+            current.entries.put(key, state);
+            writeManifest(current);
+        } catch (IOException e) {
+            logger.warn("记录检查点失败: {} - {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 批量记录文件状态
+     */
+    public synchronized void captureAll(List<Path> files) {
+        for (Path file : files) {
+            capture(file);
+        }
+    }
+
+    /**
+     * 回滚到检查点开启时的状态，并丢弃该检查点及其之后的所有检查点
+     *
+     * @param checkpointId {@link #begin(String)} 返回的编号
+     * @return 回滚结果；检查点已被回收时返回失败结果，文件不做任何改动
+     */
+    public synchronized RestoreResult restore(long checkpointId) {
+        ensureLoaded();
+        if (!manifests.containsKey(checkpointId)) {
+            return RestoreResult.expired(checkpointId);
+        }
+
+        // 每个文件取最早的记录，即该检查点开启时的状态
+        Map<String, FileState> targets = new LinkedHashMap<>();
+        for (Manifest manifest : manifests.tailMap(checkpointId, true).values()) {
+            manifest.entries.forEach(targets::putIfAbsent);
+        }
+
+        List<Path> restored = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        Map<String, FileState> failed = new LinkedHashMap<>();
+        int unchanged = 0;
+        for (Map.Entry<String, FileState> target : targets.entrySet()) {
+            Path path = workingDirectory.resolve(target.getKey());
+            try {
+                if (restoreFile(path, target.getValue())) {
+                    restored.add(path);
+                    fileChangeBus.publish(path);
+                } else {
+                    unchanged++;
+                }
+            } catch (IOException e) {
+                logger.error("回滚文件失败: {}", path, e);
+                failures.add(target.getKey() + ": " + e.getMessage());
+                failed.put(target.getKey(), target.getValue());
+            }
+        }
+
+        // 清单交换：丢弃已回滚的检查点，回滚失败的文件留在该检查点中以便重试
+        List<Long> dropped = new ArrayList<>(manifests.tailMap(checkpointId, failed.isEmpty()).keySet());
+        for (Long id : dropped) {
+            dropManifest(id);
+        }
+        if (!failed.isEmpty()) {
+            Manifest retained = manifests.get(checkpointId);
+            retained.entries.clear();
+            retained.entries.putAll(failed);
+            writeManifest(retained);
+        }
+        logger.info("已回滚到检查点 {}: 恢复 {} 个文件，{} 个未变化", checkpointId, restored.size(), unchanged);
+        return new RestoreResult(checkpointId, restored, unchanged, failures);
+    }
+
+    /**
+     * 检查点是否仍然可用
+     */
+    public synchronized boolean contains(long checkpointId) {
+        ensureLoaded();
+        return manifests.containsKey(checkpointId);
+    }
+
+    /**
+     * 当前保留的检查点数量
+     */
+    public synchronized int size() {
+        ensureLoaded();
+        return manifests.size();
+    }
+
+    /**
+     * 对象目录占用的字节数
+     */
+    public synchronized long getStoredBytes() {
+        ensureLoaded();
+        return storedBytes;
+    }
+
+    /**
+     * 检查点中记录的文件（相对工作目录的路径）
+     */
+    public synchronized Set<String> getRecordedFiles(long checkpointId) {
+        ensureLoaded();
+        Manifest manifest = manifests.get(checkpointId);
+        return manifest == null ? Set.of() : Set.copyOf(manifest.entries.keySet());
+    }
+
+    // ---------------------------------------------------------------------
+    // 文件状态
+    // ---------------------------------------------------------------------
+
+    /**
+     * 读取文件当前状态，必要时把内容写入对象目录
+     *
+     * @return 文件状态；超过单文件上限时返回 null
+     */
+    private FileState snapshot(Path path) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return FileState.ABSENT_STATE;
+        }
+        if (!attrs.isRegularFile()) {
+            return null;
+        }
+        if (attrs.size() > MAX_BLOB_BYTES) {
+            logger.warn("文件过大，不记录检查点: {} ({} 字节)", path, attrs.size());
+            return null;
+        }
+
+        long modified = attrs.lastModifiedTime().toMillis();
+        FileState known = knownStates.get(path);
+        if (known != null && known.isCleanFor(attrs.size(), modified) && Files.exists(blobPath(known.hash))) {
+            return known;
+        }
+
+        long recordedAt = System.currentTimeMillis();
+        FileState state = new FileState(hashFile(path), attrs.size(), modified, recordedAt);
+        storeBlob(path, state.hash);
+        knownStates.put(path, state);
+        return state;
+    }
+
+    /**
+     * 把文件恢复为目标状态
+     *
+     * @return 是否写入或删除了文件
+     */
+    private boolean restoreFile(Path path, FileState target) throws IOException {
+        if (target.isAbsent()) {
+            knownStates.remove(path);
+            return Files.deleteIfExists(path);
+        }
+        if (Files.isRegularFile(path) && target.hash.equals(currentHash(path))) {
+            return false;
+        }
+
+        Path blob = blobPath(target.hash);
+        if (!Files.exists(blob)) {
+            throw new IOException("检查点对象缺失: " + target.hash);
+        }
+        Path parent = path.getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "." + path.getFileName(), ".restore");
+        try {
+            Files.copy(blob, temp, StandardCopyOption.REPLACE_EXISTING);
+            copyPermissions(path, temp);
+            moveAtomically(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        knownStates.put(path, new FileState(target.hash, attrs.size(), attrs.lastModifiedTime().toMillis(),
+            System.currentTimeMillis()));
+        return true;
+    }
+
+    private String currentHash(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        FileState known = knownStates.get(path);
+        if (known != null && known.isCleanFor(attrs.size(), attrs.lastModifiedTime().toMillis())) {
+            return known.hash;
+        }
+        return hashFile(path);
+    }
+
+    private void storeBlob(Path source, String hash) throws IOException {
+        Path blob = blobPath(hash);
+        if (Files.exists(blob)) {
+            return;
+        }
+        Files.createDirectories(blob.getParent());
+        Path temp = Files.createTempFile(blob.getParent(), hash, ".tmp");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            moveAtomically(temp, blob);
+            long size = Files.size(blob);
+            blobSizes.put(hash, size);
+            storedBytes += size;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path blobPath(String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+
+    static String hashFile(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void copyPermissions(Path from, Path to) {
+        try {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(from);
+            Files.setPosixFilePermissions(to, permissions);
+        } catch (IOException | UnsupportedOperationException e) {
+            // 原文件不存在或文件系统不支持 POSIX 权限时保持默认权限
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // 清单与回收
+    // ---------------------------------------------------------------------
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (Files.isDirectory(manifestsDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(manifestsDir, "*" + MANIFEST_SUFFIX)) {
+                for (Path file : stream) {
+                    Manifest manifest = readManifest(file);
+                    if (manifest != null) {
+                        manifests.put(manifest.id, manifest);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("读取检查点清单失败: {}", e.getMessage());
+            }
+        }
+        if (!manifests.isEmpty()) {
+            nextId = manifests.lastKey() + 1;
+        }
+        storedBytes = sweepObjects(null);
+    }
+
+    /**
+     * 回收超出数量或磁盘配额的旧检查点，最新的检查点始终保留
+     * <p>
+     * 先按引用计数逐个丢弃最旧的清单，直到仍被引用的对象总量不超过配额，再遍历一次对象目录删除无引用对象。
+     * </p>
+     */
+    private void collectGarbage() {
+        if (manifests.size() <= MAX_CHECKPOINTS && storedBytes <= quotaBytes) {
+            return;
+        }
+        Map<String, Integer> refCounts = new HashMap<>();
+        for (Manifest manifest : manifests.values()) {
+            for (String hash : manifest.hashes()) {
+                refCounts.merge(hash, 1, Integer::sum);
+            }
+        }
+        long liveBytes = 0;
+        for (String hash : refCounts.keySet()) {
+            liveBytes += blobSizes.getOrDefault(hash, 0L);
+        }
+
+        while (manifests.size() > 1 && (manifests.size() > MAX_CHECKPOINTS || liveBytes > quotaBytes)) {
+            Manifest oldest = manifests.firstEntry().getValue();
+            for (String hash : oldest.hashes()) {
+                if (refCounts.merge(hash, -1, Integer::sum) == 0) {
+                    refCounts.remove(hash);
+                    liveBytes -= blobSizes.getOrDefault(hash, 0L);
+                }
+            }
+            dropManifest(oldest.id);
+        }
+        if (storedBytes > liveBytes) {
+            storedBytes = sweepObjects(refCounts.keySet());
+        }
+    }
+
+    /**
+     * 删除未被引用的对象并统计剩余对象大小
+     *
+     * @param referenced 仍被引用的哈希；为 null 时只统计不删除
+     */
+    private long sweepObjects(Set<String> referenced) {
+        blobSizes.clear();
+        if (!Files.isDirectory(objectsDir)) {
+            return 0;
+        }
+        long total = 0;
+        try (Stream<Path> files = Files.walk(objectsDir, 2)) {
+            for (Path blob : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String hash = blob.getParent().getFileName().toString() + blob.getFileName();
+                if (referenced != null && !referenced.contains(hash)) {
+                    Files.deleteIfExists(blob);
+                } else {
+                    long size = Files.size(blob);
+                    blobSizes.put(hash, size);
+                    total += size;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("清理检查点对象失败: {}", e.getMessage());
+        }
+        return total;
+    }
+
+    private void dropManifest(long id) {
+        manifests.remove(id);
+        try {
+            Files.deleteIfExists(manifestsDir.resolve(id + MANIFEST_SUFFIX));
+        } catch (IOException e) {
+            logger.warn("删除检查点清单失败: {} - {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 清单格式：首行为 {@code #\tid\tlabel\tcreatedAt}，
+     * 之后每行为 {@code hash\tsize\tmtime\tpath}，修改前不存在的文件哈希记为 {@code -}
+     */
+    private void writeManifest(Manifest manifest) {
+        StringBuilder content = new StringBuilder();
+        content.append("#\t").append(manifest.id).append('\t').append(manifest.label)
+            .append('\t').append(manifest.createdAt).append('\n');
+        for (Map.Entry<String, FileState> entry : manifest.entries.entrySet()) {
+            FileState state = entry.getValue();
+            content.append(state.isAbsent() ? ABSENT : state.hash).append('\t')
+                .append(state.size).append('\t')
+                .append(state.modified).append('\t')
+                .append(entry.getKey()).append('\n');
+        }
+        try {
+            Files.createDirectories(manifestsDir);
+            Path temp = Files.createTempFile(manifestsDir, String.valueOf(manifest.id), ".tmp");
+            try {
+                Files.writeString(temp, content, StandardCharsets.UTF_8);
+                moveAtomically(temp, manifestsDir.resolve(manifest.id + MANIFEST_SUFFIX));
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warn("写入检查点清单失败: {} - {}", manifest.id, e.getMessage());
+        }
+    }
+
+    private Manifest readManifest(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty()) {
+                return null;
+            }
+            String[] header = lines.get(0).split("\t", 4);
+            if (header.length < 4 || !"#".equals(header[0])) {
+                return null;
+            }
+            Manifest manifest = new Manifest(Long.parseLong(header[1]), header[2], Long.parseLong(header[3]));
+            for (String line : lines.subList(1, lines.size())) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length < 4) {
+                    continue;
+                }
+                FileState state = ABSENT.equals(fields[0])
+                    ? FileState.ABSENT_STATE
+                    : new FileState(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                manifest.entries.put(fields[3], state);
+            }
+            return manifest;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("忽略无法解析的检查点清单: {} - {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path normalize(Path file) {
+        return workingDirectory.resolve(file).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 工作目录内的文件记相对路径，其余记绝对路径
+     */
+    private String keyOf(Path path) {
+        return path.startsWith(workingDirectory)
+            ? workingDirectory.relativize(path).toString()
+            : path.toString();
+    }
+
+    private static String sanitize(String label) {
+        return label == null ? "" : label.replaceAll("[\\t\\r\\n]", " ");
+    }
+
+    /**
+     * 检查点清单
+     */
+    private static final class Manifest {
+        final long id;
+        final String label;
+        final long createdAt;
+        final Map<String, FileState> entries = new LinkedHashMap<>();
+
+        Manifest(long id, String label, long createdAt) {
+            this.id = id;
+            this.label = label;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * 清单引用的对象哈希（同一清单内去重）
+         */
+        Set<String> hashes() {
+            Set<String> hashes = new HashSet<>();
+            for (FileState state : entries.values()) {
+                if (!state.isAbsent()) {
+                    hashes.add(state.hash);
+                }
+            }
+            return hashes;
+        }
+    }
+
+    /**
+     * 文件在某一时刻的状态
+     */
+    private static final class FileState {
+        static final FileState ABSENT_STATE = new FileState(null, -1, -1);
+
+        final String hash;
+        final long size;
+        final long modified;
+        // 计算哈希的时刻，只用于已知状态；清单中读出的状态为 0
+        final long recordedAt;
+
+        FileState(String hash, long size, long modified) {
+            this(hash, size, modified, 0);
+        }
+
+        FileState(String hash, long size, long modified, long recordedAt) {
+            this.hash = hash;
+            this.size = size;
+            this.modified = modified;
+            this.recordedAt = recordedAt;
+        }
+
+        boolean isAbsent() {
+            return hash == null;
+        }
+
+        boolean matches(long size, long modified) {
+            return !isAbsent() && this.size == size && this.modified == modified;
+        }
+
+        /**
+         * 大小与修改时间一致，且修改时间早于记录时刻一个时间戳精度以上
+         */
+        boolean isCleanFor(long size, long modified) {
+            return matches(size, modified) && recordedAt - modified > RACY_INTERVAL_MS;
+        }
+    }
+
+    /**
+     * 回滚结果
+     */
+    public static class RestoreResult {
+        private final long checkpointId;
+        private final List<Path> restoredFiles;
+        private final int unchangedFiles;
+        private final List<String> failures;
+        private final boolean expired;
+
+        RestoreResult(long checkpointId, List<Path> restoredFiles, int unchangedFiles, List<String> failures) {
+            this(checkpointId, restoredFiles, unchangedFiles, failures, false);
+        }
+
+        private RestoreResult(long checkpointId, List<Path> restoredFiles, int unchangedFiles,
+                              List<String> failures, boolean expired) {
+            this.checkpointId = checkpointId;
+            this.restoredFiles = List.copyOf(restoredFiles);
+            this.unchangedFiles = unchangedFiles;
+            this.failures = List.copyOf(failures);
+            this.expired = expired;
+        }
+
+        static RestoreResult expired(long checkpointId) {
+            return new RestoreResult(checkpointId, List.of(), 0,
+                List.of("检查点 " + checkpointId + " 已被回收"), true);
+        }
+
+        public boolean isSuccess() {
+            return failures.isEmpty();
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+
+        public long getCheckpointId() {
+            return checkpointId;
+        }
+
+        public List<Path> getRestoredFiles() {
+            return restoredFiles;
+        }
+
+        public int getUnchangedFiles() {
+            return unchangedFiles;
+        }
+
+        public List<String> getFailures() {
+            return failures;
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package io.leavesfly.joder.services.completion;
 
 import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.index.FuzzyFileIndex;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.stream.Stream;
 
 /**
  * 文件补全提供者
@@ -23,10 +27,23 @@ public class FileCompletionProvider implements CompletionProvider {
     private static final int MAX_DEPTH = 5;
     
     private final Path workingDirectory;
+    private final WorkspaceCatalog workspaceCatalog;
+    private final FuzzyFileIndex fuzzyFileIndex;
+    private final IgnoreRules ignoreRules;
+    
+    public FileCompletionProvider(String workingDir) {
+        this(workingDir, null, null);
+    }
     
     @Inject
-    public FileCompletionProvider(@WorkingDirectory String workingDir) {
+    public FileCompletionProvider(@WorkingDirectory String workingDir, WorkspaceCatalog workspaceCatalog,
+                                  FuzzyFileIndex fuzzyFileIndex) {
         this.workingDirectory = Paths.get(workingDir);
+        this.workspaceCatalog = workspaceCatalog;
+        this.fuzzyFileIndex = fuzzyFileIndex;
+        this.ignoreRules = workspaceCatalog != null
+            ? workspaceCatalog.getIgnoreRules()
+            : new IgnoreRules(workingDir);
     }
     
     @Override
@@ -86,44 +103,114 @@ public class FileCompletionProvider implements CompletionProvider {
             return;
         }
         
-        try (Stream<Path> paths = Files.walk(directory, MAX_DEPTH)) {
-            paths.filter(Files::isRegularFile)
-                 .filter(path -> !isIgnored(path))
-                 .filter(path -> matches(path, query))
-                 .limit(MAX_RESULTS)
-                 .forEach(path -> {
-                     String relativePath = workingDirectory.relativize(path).toString();
-                     int score = calculateScore(query, relativePath);
-                     
-                     String description = getFileDescription(path);
-                     
-                     suggestions.add(CompletionSuggestion.file(
-                             relativePath,
-                             description,
-                             score
-                     ));
-                 });
+        // 优先查模糊查找索引，索引构建完成前回退到遍历
+        if (fuzzyFileIndex != null && searchIndex(query, suggestions)) {
+            return;
         }
+        
+        // 忽略的目录在进入前整体跳过
+        IgnoreRules.Filter filter = ignoreRules.filterFor(directory);
+        
+        // 优先遍历内存中的工作区目录，不可用时回退到文件系统
+        if (workspaceCatalog != null && searchCatalog(directory, query, filter, suggestions)) {
+            return;
+        }
+        
+        Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), MAX_DEPTH, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(directory) && filter.skip(dir, true)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !filter.skip(path, false) && matches(path, query)) {
+                    String description = String.format("%s (%s)", getFileExtension(path), formatFileSize(attrs.size()));
+                    addSuggestion(query, path, description, suggestions);
+                }
+                return suggestions.size() >= MAX_RESULTS ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
     }
     
     /**
-     * 检查文件是否应该忽略
+     * 在模糊查找索引中搜索文件，分数按索引排名给出
+     * 
+     * @return 索引不可用时返回 false
      */
-    private boolean isIgnored(Path path) {
-        String pathStr = path.toString();
-        
-        // 忽略隐藏文件和目录
-        if (pathStr.contains("/.")) {
-            return true;
+    private boolean searchIndex(String query, List<CompletionSuggestion> suggestions) {
+        List<FuzzyFileIndex.Match> matches = fuzzyFileIndex.search(query, MAX_RESULTS);
+        if (matches == null) {
+            return false;
+        }
+        for (int rank = 0; rank < matches.size(); rank++) {
+            String relativePath = matches.get(rank).getPath();
+            Path path = workingDirectory.resolve(relativePath);
+            String description;
+            try {
+                description = String.format("%s (%s)", getFileExtension(path), formatFileSize(Files.size(path)));
+            } catch (IOException e) {
+                description = getFileExtension(path);
+            }
+            suggestions.add(CompletionSuggestion.file(relativePath, description, 100 - rank));
         }
+        return true;
+    }
+    
+    /**
+     * 在工作区目录中搜索文件
+     * 
+     * @return 目录不可用时返回 false
+     */
+    private boolean searchCatalog(Path directory, String query, IgnoreRules.Filter filter,
+                                  List<CompletionSuggestion> suggestions) {
+        List<CompletionSuggestion> found = new ArrayList<>();
+        boolean available = workspaceCatalog.walk(directory, new WorkspaceCatalog.Visitor() {
+            @Override
+            public FileVisitResult preVisitDirectory(WorkspaceCatalog.Entry dir) {
+                if (dir.getPath().equals(directory)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (filter.skip(dir.getPath(), true)
+                        || directory.relativize(dir.getPath()).getNameCount() >= MAX_DEPTH) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFile(WorkspaceCatalog.Entry file) {
+                Path path = file.getPath();
+                if (!filter.skip(path, false) && matches(path, query)) {
+                    String description = String.format("%s (%s)", getFileExtension(path), formatFileSize(file.getSize()));
+                    addSuggestion(query, path, description, found);
+                }
+                return found.size() >= MAX_RESULTS ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            }
+        });
+        if (available) {
+            suggestions.addAll(found);
+        }
+        return available;
+    }
+    
+    private void addSuggestion(String query, Path path, String description, List<CompletionSuggestion> suggestions) {
+        String relativePath = workingDirectory.relativize(path).toString();
+        int score = calculateScore(query, relativePath);
         
-        // 忽略常见的构建和依赖目录
-        return pathStr.contains("/target/") ||
-               pathStr.contains("/build/") ||
-               pathStr.contains("/node_modules/") ||
-               pathStr.contains("/.git/") ||
-               pathStr.contains("/.idea/") ||
-               pathStr.contains("/.vscode/");
+        suggestions.add(CompletionSuggestion.file(
+                relativePath,
+                description,
+                score
+        ));
     }
     
     /**
@@ -199,21 +286,6 @@ public class FileCompletionProvider implements CompletionProvider {
         return 30;
     }
     
-    /**
-     * 获取文件描述
-     */
-    private String getFileDescription(Path path) {
-        try {
-            long size = Files.size(path);
-            String sizeStr = formatFileSize(size);
-            String extension = getFileExtension(path);
-            
-            return String.format("%s (%s)", extension, sizeStr);
-        } catch (IOException e) {
-            return getFileExtension(path);
-        }
-    }
-    
     /**
      * 获取文件扩展名
      */
@@ -0,0 +1,136 @@
+package io.leavesfly.joder.services.context;
+
+import io.leavesfly.joder.services.index.ImportGraph;
+
+import java.util.List;
+
+/**
+ * 相关文件上下文打包结果
+ */
+public class ContextPack {
+
+    private final String target;
+    private final List<Item> items;
+    private final int tokenBudget;
+    private final int usedTokens;
+    private final int skippedFiles;
+
+    ContextPack(String target, List<Item> items, int tokenBudget, int usedTokens, int skippedFiles) {
+        this.target = target;
+        this.items = items;
+        this.tokenBudget = tokenBudget;
+        this.usedTokens = usedTokens;
+        this.skippedFiles = skippedFiles;
+    }
+
+    /**
+     * 目标文件（相对工作目录）
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * 入选的相关文件，按相关性降序
+     */
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    public int getUsedTokens() {
+        return usedTokens;
+    }
+
+    /**
+     * 因超出预算或无法读取而未入选的相关文件数
+     */
+    public int getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * 按 @file 展开的格式输出全部入选文件的内容
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Item item : items) {
+            if (sb.length() > 0) {
+                sb.append("\n\n");
+            }
+            sb.append("```\nFile: ").append(item.getPath()).append(" (").append(item.describe()).append(")\n\n")
+                .append(item.getContent()).append("\n```");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一个入选的相关文件
+     */
+    public static class Item {
+
+        private final String path;
+        private final ImportGraph.Relation relation;
+        private final int distance;
+        private final double score;
+        private final int tokens;
+        private final String content;
+
+        Item(String path, ImportGraph.Relation relation, int distance, double score, int tokens, String content) {
+            this.path = path;
+            this.relation = relation;
+            this.distance = distance;
+            this.score = score;
+            this.tokens = tokens;
+            this.content = content;
+        }
+
+        /**
+         * 相对工作目录的路径
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public ImportGraph.Relation getRelation() {
+            return relation;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * 与目标文件关系的简短说明
+         */
+        public String describe() {
+            switch (relation) {
+                case DEPENDENCY:
+                    return "被目标文件导入";
+                case DEPENDENT:
+                    return "导入了目标文件";
+                default:
+                    return "间接相关，距离 " + distance;
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.leavesfly.joder.services.context;
+
+import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.index.ImportGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 相关文件上下文打包器
+ * <p>
+ * 在 {@link ImportGraph} 上从目标文件出发，沿导入与被导入两个方向取 {@value #MAX_DISTANCE} 步以内的文件，
+ * 按图距离与最近修改时间打分，在 token 预算内按得分从高到低装入文件内容。
+ * 放不下的文件跳过，继续尝试得分更低但更小的文件。
+ * </p>
+ */
+@Singleton
+public class ContextPacker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextPacker.class);
+
+    static final int MAX_DISTANCE = 3;
+
+    /**
+     * 直接被目标导入的文件额外加分：理解目标文件通常先要看它用到的代码
+     */
+    private static final double DEPENDENCY_BONUS = 0.2;
+
+    /**
+     * 最近修改的加分上限与半衰期
+     */
+    private static final double RECENCY_WEIGHT = 0.5;
+    private static final long RECENCY_HALF_LIFE_MS = 60 * 60 * 1000;
+
+    /**
+     * 每个文件的标题与代码块标记约占的 token 数
+     */
+    private static final int ITEM_OVERHEAD_TOKENS = 20;
+
+    private static final long MAX_FILE_BYTES = 256 * 1024;
+
+    /**
+     * 每个 token 至多对应的字节数，用于读取前的粗筛：按 {@link TokenCounter} 每字符 0.35 token 估算，
+     * UTF-8 三字节字符约 8.6 字节一个 token
+     */
+    private static final int MAX_BYTES_PER_TOKEN = 9;
+
+    private final Path root;
+    private final ImportGraph importGraph;
+    private final TokenCounter tokenCounter;
+
+    @Inject
+    public ContextPacker(@WorkingDirectory String workingDirectory, ImportGraph importGraph,
+                         TokenCounter tokenCounter) {
+        this.root = Paths.get(workingDirectory).toAbsolutePath().normalize();
+        this.importGraph = importGraph;
+        this.tokenCounter = tokenCounter;
+    }
+
+    /**
+     * 为目标文件打包相关文件
+     *
+     * @param target      目标文件，相对工作目录或绝对路径
+     * @param tokenBudget 相关文件内容可用的 token 数（不含目标文件本身）
+     * @return 打包结果；导入图未就绪或已过期时返回 null
+     */
+    public ContextPack pack(Path target, int tokenBudget) {
+        Path absolute = root.resolve(target).normalize();
+        String relativeTarget = relativize(absolute);
+        List<ImportGraph.Neighbour> neighbours = importGraph.neighbourhood(absolute, MAX_DISTANCE);
+        if (neighbours == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Candidate> candidates = new ArrayList<>(neighbours.size());
+        for (ImportGraph.Neighbour neighbour : neighbours) {
+            candidates.add(new Candidate(neighbour, score(neighbour, now)));
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed()
+            .thenComparingLong(c -> c.neighbour.getSize())
+            .thenComparing(c -> c.neighbour.getPath()));
+
+        List<ContextPack.Item> items = new ArrayList<>();
+        int used = 0;
+        int skipped = 0;
+        for (Candidate candidate : candidates) {
+            int remaining = tokenBudget - used;
+            // 按字节数估计 token 数的下限，明显放不下的文件不读取
+            if (remaining <= ITEM_OVERHEAD_TOKENS || candidate.neighbour.getSize() > MAX_FILE_BYTES
+                    || candidate.neighbour.getSize() / MAX_BYTES_PER_TOKEN > remaining) {
+                skipped++;
+                continue;
+            }
+            String content = read(candidate.neighbour.getPath());
+            int tokens = content != null ? tokenCounter.countTokens(content) + ITEM_OVERHEAD_TOKENS : 0;
+            if (content == null || tokens > remaining) {
+                skipped++;
+                continue;
+            }
+            items.add(new ContextPack.Item(relativize(candidate.neighbour.getPath()),
+                candidate.neighbour.getRelation(), candidate.neighbour.getDistance(), candidate.score, tokens, content));
+            used += tokens;
+        }
+        logger.debug("相关文件打包 {}: {} 个候选，入选 {} 个，{}/{} tokens",
+            relativeTarget, candidates.size(), items.size(), used, tokenBudget);
+        return new ContextPack(relativeTarget, items, tokenBudget, used, skipped);
+    }
+
+    /**
+     * 图距离越近得分越高，最近修改过的文件按半衰期额外加分
+     */
+    private static double score(ImportGraph.Neighbour neighbour, long now) {
+        double score = 1.0 / neighbour.getDistance();
+        if (neighbour.getRelation() == ImportGraph.Relation.DEPENDENCY) {
+            score += DEPENDENCY_BONUS;
+        }
+        long age = Math.max(0, now - neighbour.getLastModified());
+        return score + RECENCY_WEIGHT * Math.pow(0.5, (double) age / RECENCY_HALF_LIFE_MS);
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("读取相关文件失败: {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private String relativize(Path file) {
+        return file.startsWith(root) ? root.relativize(file).toString() : file.toString();
+    }
+
+    private static final class Candidate {
+        final ImportGraph.Neighbour neighbour;
+        final double score;
+
+        Candidate(ImportGraph.Neighbour neighbour, double score) {
+            this.neighbour = neighbour;
+            this.score = score;
+        }
+    }
+}
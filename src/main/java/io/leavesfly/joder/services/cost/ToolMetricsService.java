@@ -0,0 +1,298 @@
+package io.leavesfly.joder.services.cost;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.leavesfly.joder.core.config.ConfigManager;
+import io.leavesfly.joder.services.context.TokenCounter;
+import io.leavesfly.joder.tools.ToolResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 工具调用指标服务
+ *
+ * <p>按工具和 MCP 服务器两个维度，把每次工具调用记录到 {@link LogHistogram}：
+ * 耗时、输出字节数、输出 Token 数，以及成功/失败/取消/超时次数。
+ * 同时把调用转发给 {@link CostTrackingService#recordToolUsage}，保持成本统计完整。</p>
+ *
+ * <p>配置 {@code joder.stats.dumpOnExit} 为文件路径时，进程退出前会把直方图导出为 JSON。</p>
+ */
+@Singleton
+public class ToolMetricsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolMetricsService.class);
+
+    public static final String DUMP_ON_EXIT_KEY = "joder.stats.dumpOnExit";
+
+    /**
+     * 调用结果分类
+     */
+    public enum Outcome {
+        SUCCESS, FAILURE, CANCELLED, TIMEOUT
+    }
+
+    private final CostTrackingService costTrackingService;
+    private final TokenCounter tokenCounter;
+    private final Map<String, ToolStats> toolStats = new ConcurrentHashMap<>();
+    private final Map<String, ToolStats> serverStats = new ConcurrentHashMap<>();
+
+    public ToolMetricsService(CostTrackingService costTrackingService, TokenCounter tokenCounter) {
+        this.costTrackingService = costTrackingService;
+        this.tokenCounter = tokenCounter;
+    }
+
+    @Inject
+    public ToolMetricsService(
+            CostTrackingService costTrackingService,
+            TokenCounter tokenCounter,
+            ConfigManager configManager) {
+        this(costTrackingService, tokenCounter);
+        String dumpPath = configManager.getString(DUMP_ON_EXIT_KEY, "");
+        if (dumpPath != null && !dumpPath.isBlank()) {
+            registerDumpOnExit(Paths.get(dumpPath));
+        }
+    }
+
+    /**
+     * 记录一次工具调用
+     *
+     * @param toolName 工具名
+     * @param serverName MCP 服务器名，内置工具为 null
+     * @param durationMs 耗时（毫秒）
+     * @param result 调用结果，可为 null
+     * @param outcome 结果分类
+     */
+    public void record(String toolName, String serverName, long durationMs, ToolResult result, Outcome outcome) {
+        String output = null;
+        if (result != null) {
+            output = result.isSuccess() ? result.getOutput() : result.getError();
+        }
+        long bytes = utf8Length(output);
+        long tokens = output != null ? tokenCounter.countTokens(output) : 0;
+
+        toolStats.computeIfAbsent(toolName, k -> new ToolStats())
+            .record(durationMs, bytes, tokens, outcome);
+        if (serverName != null) {
+            serverStats.computeIfAbsent(serverName, k -> new ToolStats())
+                .record(durationMs, bytes, tokens, outcome);
+        }
+        costTrackingService.recordToolUsage(toolName, durationMs, outcome == Outcome.SUCCESS);
+    }
+
+    /**
+     * 记录一次缓存命中（不计入耗时分布）
+     */
+    public void recordCacheHit(String toolName) {
+        toolStats.computeIfAbsent(toolName, k -> new ToolStats()).cacheHits.increment();
+    }
+
+    /**
+     * 按工具名排序的统计
+     */
+    public Map<String, ToolStats> getToolStats() {
+        return new TreeMap<>(toolStats);
+    }
+
+    /**
+     * 按 MCP 服务器名排序的统计
+     */
+    public Map<String, ToolStats> getServerStats() {
+        return new TreeMap<>(serverStats);
+    }
+
+    /**
+     * 清空全部统计
+     */
+    public void reset() {
+        toolStats.clear();
+        serverStats.clear();
+    }
+
+    /**
+     * 生成分位数报表
+     */
+    public String formatSummary() {
+        if (toolStats.isEmpty()) {
+            return "暂无工具调用记录";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("\n工具耗时分布 (ms):\n");
+        appendTable(sb, getToolStats());
+        if (!serverStats.isEmpty()) {
+            sb.append("\n按 MCP 服务器:\n");
+            appendTable(sb, getServerStats());
+        }
+        return sb.toString();
+    }
+
+    private void appendTable(StringBuilder sb, Map<String, ToolStats> stats) {
+        sb.append(String.format("  %-24s %7s %5s %5s %5s %5s %8s %8s %8s %10s %8s\n",
+            "名称", "调用", "失败", "取消", "超时", "缓存", "p50", "p90", "p99", "输出p90(B)", "Token p90"));
+        stats.forEach((name, s) -> sb.append(String.format(
+            "  %-24s %,7d %5d %5d %5d %5d %,8d %,8d %,8d %,10d %,8d\n",
+            truncate(name, 24), s.getCalls(),
+            s.getCount(Outcome.FAILURE), s.getCount(Outcome.CANCELLED), s.getCount(Outcome.TIMEOUT),
+            s.getCacheHits(),
+            s.latency.getValueAtPercentile(50), s.latency.getValueAtPercentile(90),
+            s.latency.getValueAtPercentile(99),
+            s.outputBytes.getValueAtPercentile(90), s.outputTokens.getValueAtPercentile(90))));
+    }
+
+    /**
+     * 将直方图导出为 JSON 文件
+     *
+     * @param file 目标文件
+     */
+    public void dumpTo(Path file) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("generatedAt", LocalDateTime.now().toString());
+        root.put("tools", toJson(getToolStats()));
+        root.put("servers", toJson(getServerStats()));
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), root);
+    }
+
+    private void registerDumpOnExit(Path file) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (toolStats.isEmpty()) {
+                return;
+            }
+            try {
+                dumpTo(file);
+            } catch (IOException e) {
+                logger.warn("导出工具指标失败: {}", e.getMessage());
+            }
+        }, "ToolMetrics-dump"));
+    }
+
+    private static Map<String, Object> toJson(Map<String, ToolStats> stats) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        stats.forEach((name, s) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            Map<String, Long> outcomes = new LinkedHashMap<>();
+            for (Outcome outcome : Outcome.values()) {
+                outcomes.put(outcome.name().toLowerCase(), s.getCount(outcome));
+            }
+            entry.put("outcomes", outcomes);
+            entry.put("cacheHits", s.getCacheHits());
+            entry.put("latencyMs", toJson(s.latency));
+            entry.put("outputBytes", toJson(s.outputBytes));
+            entry.put("outputTokens", toJson(s.outputTokens));
+            result.put(name, entry);
+        });
+        return result;
+    }
+
+    private static Map<String, Object> toJson(LogHistogram histogram) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", histogram.getCount());
+        result.put("mean", histogram.getMean());
+        result.put("p50", histogram.getValueAtPercentile(50));
+        result.put("p90", histogram.getValueAtPercentile(90));
+        result.put("p99", histogram.getValueAtPercentile(99));
+        result.put("max", histogram.getMax());
+        List<long[]> buckets = new ArrayList<>();
+        for (LogHistogram.Bucket bucket : histogram.getBuckets()) {
+            buckets.add(new long[]{bucket.lowerBound, bucket.upperBound, bucket.count});
+        }
+        result.put("buckets", buckets);
+        return result;
+    }
+
+    /**
+     * 计算 UTF-8 编码长度，避免为统计而复制整段输出
+     */
+    static long utf8Length(String text) {
+        if (text == null) {
+            return 0;
+        }
+        long bytes = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static String truncate(String name, int max) {
+        return name.length() <= max ? name : name.substring(0, max - 1) + "…";
+    }
+
+    /**
+     * 单个工具（或服务器）的统计
+     */
+    public static class ToolStats {
+        private final LogHistogram latency = new LogHistogram();
+        private final LogHistogram outputBytes = new LogHistogram();
+        private final LogHistogram outputTokens = new LogHistogram();
+        private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+        private final LongAdder cacheHits = new LongAdder();
+
+        ToolStats() {
+            for (Outcome outcome : Outcome.values()) {
+                outcomes.put(outcome, new LongAdder());
+            }
+        }
+
+        void record(long durationMs, long bytes, long tokens, Outcome outcome) {
+            latency.record(durationMs);
+            outputBytes.record(bytes);
+            outputTokens.record(tokens);
+            outcomes.get(outcome).increment();
+        }
+
+        public LogHistogram getLatency() {
+            return latency;
+        }
+
+        public LogHistogram getOutputBytes() {
+            return outputBytes;
+        }
+
+        public LogHistogram getOutputTokens() {
+            return outputTokens;
+        }
+
+        public long getCount(Outcome outcome) {
+            return outcomes.get(outcome).sum();
+        }
+
+        public long getCalls() {
+            return latency.getCount();
+        }
+
+        public long getCacheHits() {
+            return cacheHits.sum();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.leavesfly.joder.services.freshness;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 文件变更事件总线
+ *
+ * <p>汇聚两类变更来源：通过工具执行的编辑（FileEdit/FileWrite/BatchEdit 等），
+ * 以及文件系统监听到的外部修改。各类缓存和索引订阅该总线做精确失效。
+ *
+ * <p>监听器登记其覆盖的目录后，该目录下范围未知的变更（如 shell 命令）会由监听逐一发布，
+ * 订阅方可据 {@link #isWatched} 跳过全量校验；监听丢失事件时改为发布 {@link #publishOverflow()}。</p>
+ */
+@Singleton
+public class FileChangeBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileChangeBus.class);
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Path> watchedRoots = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 订阅文件变更
+     *
+     * @param listener 监听器
+     * @return 用于取消订阅的句柄
+     */
+    public Runnable subscribe(Listener listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * 发布单个路径的变更（创建、修改或删除）
+     *
+     * @param path 变更的绝对路径
+     */
+    public void publish(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        for (Listener listener : listeners) {
+            try {
+                listener.onPathChanged(normalized);
+            } catch (Exception e) {
+                logger.warn("文件变更监听器处理失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 发布范围未知的变更（如执行了任意 shell 命令）
+     */
+    public void publishUnknown() {
+        for (Listener listener : listeners) {
+            try {
+                listener.onUnknownChange();
+            } catch (Exception e) {
+                logger.warn("文件变更监听器处理失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 发布文件监听丢失事件（如 WatchService 溢出）：监听范围内的变更可能未逐一发布
+     */
+    public void publishOverflow() {
+        for (Listener listener : listeners) {
+            try {
+                listener.onWatchOverflow();
+            } catch (Exception e) {
+                logger.warn("文件变更监听器处理失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 登记或撤销文件监听覆盖的目录
+     *
+     * @param root    监听的根目录
+     * @param watched 监听是否在运行
+     */
+    public void setWatched(Path root, boolean watched) {
+        Path normalized = root.toAbsolutePath().normalize();
+        if (watched) {
+            watchedRoots.add(normalized);
+        } else {
+            watchedRoots.remove(normalized);
+        }
+    }
+
+    /**
+     * 路径下的外部修改是否由运行中的文件监听逐一发布
+     */
+    public boolean isWatched(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        for (Path root : watchedRoots) {
+            if (normalized.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 文件变更监听器
+     */
+    public interface Listener {
+
+        /**
+         * 指定路径发生变更
+         */
+        void onPathChanged(Path path);
+
+        /**
+         * 发生了范围未知的变更
+         */
+        void onUnknownChange();
+
+        /**
+         * 文件监听丢失了事件；默认按范围未知的变更处理
+         */
+        default void onWatchOverflow() {
+            onUnknownChange();
+        }
+    }
+}
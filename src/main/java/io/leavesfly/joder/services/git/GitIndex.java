@@ -0,0 +1,380 @@
+package io.leavesfly.joder.services.git;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Git 索引文件（.git/index）的只读解析结果
+ * <p>
+ * 支持 v2–v4 格式：v3 的扩展标志位、v4 的路径前缀压缩，以及用于判断暂存区与 HEAD 是否一致的
+ * TREE（cache-tree）扩展。拆分索引（link）与稀疏索引（sdir）中的条目不完整，遇到时抛出 {@link IOException}，
+ * 由调用方改用 git 命令。
+ * </p>
+ */
+public class GitIndex {
+
+    static final int HASH_LENGTH = 20;
+
+    static final int TYPE_MASK = 0170000;
+    static final int TYPE_REGULAR = 0100000;
+    static final int TYPE_SYMLINK = 0120000;
+    static final int TYPE_GITLINK = 0160000;
+    static final int TYPE_DIRECTORY = 0040000;
+
+    private static final int SIGNATURE = 0x44495243; // "DIRC"
+    private static final int EXT_TREE = 0x54524545; // "TREE"
+
+    private static final int FLAG_EXTENDED = 0x4000;
+    private static final int FLAG_STAGE_MASK = 0x3000;
+    private static final int EXT_FLAG_SKIP_WORKTREE = 0x4000;
+    private static final int EXT_FLAG_INTENT_TO_ADD = 0x2000;
+
+    /** 固定长度字段：ctime、mtime、dev、ino、mode、uid、gid、size、对象哈希与标志位 */
+    private static final int ENTRY_HEADER_LENGTH = 40 + HASH_LENGTH + 2;
+
+    static final GitIndex EMPTY = new GitIndex(2, Collections.emptyList(), Collections.emptyMap());
+
+    private final int version;
+    private final List<Entry> entries;
+    private final Map<String, Entry> tracked;
+    /** cache-tree 中仍然有效的目录（相对工作区，根目录为空串）到树对象哈希的映射 */
+    private final Map<String, String> cacheTrees;
+    private volatile Set<String> directories;
+
+    private GitIndex(int version, List<Entry> entries, Map<String, String> cacheTrees) {
+        this.version = version;
+        this.entries = entries;
+        this.cacheTrees = cacheTrees;
+        this.tracked = new HashMap<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            // 冲突时同一路径有多个阶段，保留阶段号最小的条目
+            tracked.putIfAbsent(entry.path, entry);
+        }
+    }
+
+    /**
+     * 解析索引文件内容
+     *
+     * @throws IOException 文件损坏或使用了不支持的格式
+     */
+    public static GitIndex parse(byte[] data) throws IOException {
+        try {
+            return doParse(data);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IOException("Git 索引文件已损坏", e);
+        }
+    }
+
+    private static GitIndex doParse(byte[] data) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (data.length < 12 + HASH_LENGTH || buf.getInt() != SIGNATURE) {
+            throw new IOException("不是有效的 Git 索引文件");
+        }
+        int version = buf.getInt();
+        if (version < 2 || version > 4) {
+            throw new IOException("不支持的 Git 索引版本: " + version);
+        }
+        int count = buf.getInt();
+        if (count < 0) {
+            throw new IOException("Git 索引条目数无效: " + count);
+        }
+        int end = data.length - HASH_LENGTH;
+
+        List<Entry> entries = new ArrayList<>(Math.min(count, end / ENTRY_HEADER_LENGTH));
+        byte[] previous = new byte[0];
+        for (int i = 0; i < count; i++) {
+            int start = buf.position();
+            buf.position(start + 8); // ctime 不参与比较
+            int mtimeSeconds = buf.getInt();
+            int mtimeNanos = buf.getInt();
+            buf.position(buf.position() + 8); // dev、ino
+            int mode = buf.getInt();
+            buf.position(buf.position() + 8); // uid、gid
+            int size = buf.getInt();
+            byte[] hash = new byte[HASH_LENGTH];
+            buf.get(hash);
+            int flags = buf.getShort() & 0xffff;
+            int extendedFlags = 0;
+            if ((flags & FLAG_EXTENDED) != 0) {
+                if (version < 3) {
+                    throw new IOException("v2 索引中出现扩展标志位");
+                }
+                extendedFlags = buf.getShort() & 0xffff;
+            }
+
+            byte[] name;
+            if (version == 4) {
+                // v4：先记录要从上一个路径末尾去掉的字节数，再跟上以 NUL 结尾的后缀
+                int strip = readOffsetVarint(buf);
+                int keep = previous.length - strip;
+                if (keep < 0) {
+                    throw new IOException("Git 索引路径压缩数据无效");
+                }
+                int nul = indexOf(data, (byte) 0, buf.position(), end);
+                name = new byte[keep + nul - buf.position()];
+                System.arraycopy(previous, 0, name, 0, keep);
+                System.arraycopy(data, buf.position(), name, keep, nul - buf.position());
+                buf.position(nul + 1);
+            } else {
+                // v2/v3：以 NUL 结尾，整个条目用 NUL 补齐到 8 字节的倍数
+                int nul = indexOf(data, (byte) 0, buf.position(), end);
+                name = new byte[nul - buf.position()];
+                System.arraycopy(data, buf.position(), name, 0, name.length);
+                buf.position(start + ((nul - start + 8) & ~7));
+            }
+            previous = name;
+
+            if ((mode & TYPE_MASK) == TYPE_DIRECTORY) {
+                throw new IOException("不支持稀疏索引");
+            }
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), mode, size,
+                mtimeSeconds, mtimeNanos, hash, (flags & FLAG_STAGE_MASK) >> 12,
+                (extendedFlags & EXT_FLAG_SKIP_WORKTREE) != 0,
+                (extendedFlags & EXT_FLAG_INTENT_TO_ADD) != 0));
+        }
+
+        Map<String, String> cacheTrees = new HashMap<>();
+        while (buf.position() + 8 <= end) {
+            int signature = buf.getInt();
+            int size = buf.getInt();
+            int dataStart = buf.position();
+            if (size < 0 || dataStart + size > end) {
+                throw new IOException("Git 索引扩展长度无效");
+            }
+            if (signature == EXT_TREE) {
+                parseCacheTree(data, dataStart, dataStart + size, null, cacheTrees);
+            } else if (signature >>> 24 < 'A' || signature >>> 24 > 'Z') {
+                // 首字母为小写的扩展（link、sdir 等）会改变条目的含义，不能忽略
+                throw new IOException("不支持的 Git 索引扩展: "
+                    + new String(ByteBuffer.allocate(4).putInt(signature).array(), StandardCharsets.US_ASCII));
+            }
+            buf.position(dataStart + size);
+        }
+        return new GitIndex(version, Collections.unmodifiableList(entries), cacheTrees);
+    }
+
+    /**
+     * 解析一个 cache-tree 节点及其子树：路径名、NUL、ASCII 条目数（-1 表示失效）、空格、ASCII 子树数、换行，
+     * 有效时随后是树对象哈希
+     */
+    private static int parseCacheTree(byte[] data, int pos, int end, String parent,
+                                      Map<String, String> trees) throws IOException {
+        int nul = indexOf(data, (byte) 0, pos, end);
+        String name = new String(data, pos, nul - pos, StandardCharsets.UTF_8);
+        String path = parent == null ? "" : parent.isEmpty() ? name : parent + "/" + name;
+        int space = indexOf(data, (byte) ' ', nul + 1, end);
+        int entryCount = Integer.parseInt(new String(data, nul + 1, space - nul - 1, StandardCharsets.US_ASCII));
+        int newline = indexOf(data, (byte) '\n', space + 1, end);
+        int subtrees = Integer.parseInt(new String(data, space + 1, newline - space - 1, StandardCharsets.US_ASCII));
+        pos = newline + 1;
+        if (entryCount >= 0) {
+            if (pos + HASH_LENGTH > end) {
+                throw new IOException("Git 索引 TREE 扩展已损坏");
+            }
+            trees.put(path, hex(data, pos, HASH_LENGTH));
+            pos += HASH_LENGTH;
+        }
+        for (int i = 0; i < subtrees; i++) {
+            pos = parseCacheTree(data, pos, end, path, trees);
+        }
+        return pos;
+    }
+
+    /**
+     * v4 使用的变长整数：每个后续字节前先加一，使同一个数只有一种编码
+     */
+    private static int readOffsetVarint(ByteBuffer buf) throws IOException {
+        int b = buf.get() & 0xff;
+        long value = b & 0x7f;
+        while ((b & 0x80) != 0) {
+            b = buf.get() & 0xff;
+            value = ((value + 1) << 7) | (b & 0x7f);
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Git 索引变长整数溢出");
+            }
+        }
+        return (int) value;
+    }
+
+    private static int indexOf(byte[] data, byte value, int from, int end) throws IOException {
+        for (int i = from; i < end; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        throw new IOException("Git 索引文件意外结束");
+    }
+
+    static String hex(byte[] data, int offset, int length) {
+        char[] chars = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = data[offset + i] & 0xff;
+            chars[2 * i] = Character.forDigit(b >>> 4, 16);
+            chars[2 * i + 1] = Character.forDigit(b & 0xf, 16);
+        }
+        return new String(chars);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 全部条目，按路径与阶段号排序；冲突中的路径有多个条目
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 已跟踪的文件（相对工作区，以 / 分隔），按路径排序
+     */
+    public List<String> getTrackedFiles() {
+        List<String> files = new ArrayList<>(tracked.size());
+        for (Entry entry : entries) {
+            if (files.isEmpty() || !files.get(files.size() - 1).equals(entry.path)) {
+                files.add(entry.path);
+            }
+        }
+        return files;
+    }
+
+    public int size() {
+        return tracked.size();
+    }
+
+    public boolean isTracked(String path) {
+        return tracked.containsKey(path);
+    }
+
+    /**
+     * @return 路径对应的条目（冲突时为阶段号最小的条目），未跟踪时返回 null
+     */
+    public Entry getEntry(String path) {
+        return tracked.get(path);
+    }
+
+    /**
+     * 目录下（任意深度）是否有已跟踪的文件；空串表示工作区根目录
+     */
+    public boolean containsDirectory(String directory) {
+        if (directory.isEmpty()) {
+            return !entries.isEmpty();
+        }
+        Set<String> dirs = directories;
+        if (dirs == null) {
+            dirs = new HashSet<>();
+            for (String path : tracked.keySet()) {
+                for (int slash = path.lastIndexOf('/'); slash > 0; slash = path.lastIndexOf('/', slash - 1)) {
+                    if (!dirs.add(path.substring(0, slash))) {
+                        break;
+                    }
+                }
+            }
+            directories = dirs;
+        }
+        return dirs.contains(directory);
+    }
+
+    /**
+     * @return 目录在 cache-tree 中记录的树对象哈希，目录不存在或记录已失效时返回 null
+     */
+    String getCacheTree(String directory) {
+        return cacheTrees.get(directory);
+    }
+
+    /**
+     * 索引条目
+     */
+    public static class Entry {
+
+        private final String path;
+        private final int mode;
+        private final int size;
+        private final int mtimeSeconds;
+        private final int mtimeNanos;
+        private final byte[] hash;
+        private final int stage;
+        private final boolean skipWorktree;
+        private final boolean intentToAdd;
+
+        Entry(String path, int mode, int size, int mtimeSeconds, int mtimeNanos, byte[] hash,
+              int stage, boolean skipWorktree, boolean intentToAdd) {
+            this.path = path;
+            this.mode = mode;
+            this.size = size;
+            this.mtimeSeconds = mtimeSeconds;
+            this.mtimeNanos = mtimeNanos;
+            this.hash = hash;
+            this.stage = stage;
+            this.skipWorktree = skipWorktree;
+            this.intentToAdd = intentToAdd;
+        }
+
+        /**
+         * 相对工作区的路径，以 / 分隔
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        /**
+         * 文件大小的低 32 位
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public int getMtimeSeconds() {
+            return mtimeSeconds;
+        }
+
+        public int getMtimeNanos() {
+            return mtimeNanos;
+        }
+
+        public String getObjectId() {
+            return hex(hash, 0, hash.length);
+        }
+
+        /**
+         * 合并阶段：0 为正常条目，1–3 为冲突中的各方版本
+         */
+        public int getStage() {
+            return stage;
+        }
+
+        public boolean isSkipWorktree() {
+            return skipWorktree;
+        }
+
+        public boolean isIntentToAdd() {
+            return intentToAdd;
+        }
+
+        public boolean isSymlink() {
+            return (mode & TYPE_MASK) == TYPE_SYMLINK;
+        }
+
+        public boolean isGitlink() {
+            return (mode & TYPE_MASK) == TYPE_GITLINK;
+        }
+
+        public boolean isExecutable() {
+            return (mode & TYPE_MASK) == TYPE_REGULAR && (mode & 0111) != 0;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package io.leavesfly.joder.services.git;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Git 对象库的只读访问：松散对象与 pack 文件（idx v2，含 OFS/REF 增量）
+ * <p>
+ * 只用于读取少量提交与树对象，不做对象缓存。pack 索引按对象库路径缓存，pack 目录修改时间变化后重新加载。
+ * </p>
+ */
+final class GitObjects {
+
+    static final int TYPE_COMMIT = 1;
+    static final int TYPE_TREE = 2;
+    static final int TYPE_BLOB = 3;
+    static final int TYPE_TAG = 4;
+    private static final int TYPE_OFS_DELTA = 6;
+    private static final int TYPE_REF_DELTA = 7;
+
+    private static final int MAX_DELTA_DEPTH = 64;
+    private static final int PACK_IDX_MAGIC = 0xff744f63; // "\377tOc"
+
+    private static final ConcurrentMap<Path, GitObjects> CACHE = new ConcurrentHashMap<>();
+
+    private final Path objectsDirectory;
+    private final long packsModified;
+    private final List<Pack> packs;
+
+    private GitObjects(Path objectsDirectory, long packsModified, List<Pack> packs) {
+        this.objectsDirectory = objectsDirectory;
+        this.packsModified = packsModified;
+        this.packs = packs;
+    }
+
+    static GitObjects open(Path objectsDirectory) throws IOException {
+        Path packDirectory = objectsDirectory.resolve("pack");
+        long modified = Files.isDirectory(packDirectory) ? Files.getLastModifiedTime(packDirectory).toMillis() : -1;
+        GitObjects cached = CACHE.get(objectsDirectory);
+        if (cached != null && cached.packsModified == modified) {
+            return cached;
+        }
+        List<Pack> packs = new ArrayList<>();
+        if (modified >= 0) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(packDirectory, "pack-*.idx")) {
+                for (Path idx : stream) {
+                    String name = idx.getFileName().toString();
+                    Path pack = packDirectory.resolve(name.substring(0, name.length() - 4) + ".pack");
+                    if (Files.isRegularFile(pack)) {
+                        packs.add(new Pack(idx, pack));
+                    }
+                }
+            }
+        }
+        GitObjects objects = new GitObjects(objectsDirectory, modified, packs);
+        CACHE.put(objectsDirectory, objects);
+        return objects;
+    }
+
+    /**
+     * 读取对象
+     *
+     * @param id 40 位十六进制对象哈希
+     * @return 对象；对象库中不存在时返回 null
+     */
+    GitObject read(String id) throws IOException {
+        return read(id, 0);
+    }
+
+    private GitObject read(String id, int depth) throws IOException {
+        GitObject loose = readLoose(id);
+        if (loose != null) {
+            return loose;
+        }
+        byte[] raw = parseHex(id);
+        for (Pack pack : packs) {
+            long offset = pack.find(raw);
+            if (offset >= 0) {
+                return readPacked(pack, offset, depth);
+            }
+        }
+        return null;
+    }
+
+    private GitObject readLoose(String id) throws IOException {
+        Path file = objectsDirectory.resolve(id.substring(0, 2)).resolve(id.substring(2));
+        byte[] data;
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(file))) {
+            data = in.readAllBytes();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        int space = indexOf(data, (byte) ' ', 0);
+        int nul = indexOf(data, (byte) 0, space + 1);
+        if (space < 0 || nul < 0) {
+            throw new IOException("松散对象头无效: " + id);
+        }
+        int type = typeOf(new String(data, 0, space, StandardCharsets.US_ASCII));
+        return new GitObject(type, Arrays.copyOfRange(data, nul + 1, data.length));
+    }
+
+    private GitObject readPacked(Pack pack, long offset, int depth) throws IOException {
+        if (depth > MAX_DELTA_DEPTH) {
+            throw new IOException("增量链过长: " + pack.packFile);
+        }
+        byte[] header = pack.readAt(offset, 32);
+        int i = 0;
+        int c = header[i++] & 0xff;
+        int type = (c >> 4) & 7;
+        long size = c & 0x0f;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            c = header[i++] & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("对象过大: " + size);
+        }
+        switch (type) {
+            case TYPE_COMMIT:
+            case TYPE_TREE:
+            case TYPE_BLOB:
+            case TYPE_TAG:
+                return new GitObject(type, pack.inflate(offset + i, (int) size));
+            case TYPE_OFS_DELTA: {
+                c = header[i++] & 0xff;
+                long distance = c & 0x7f;
+                while ((c & 0x80) != 0) {
+                    c = header[i++] & 0xff;
+                    distance = ((distance + 1) << 7) | (c & 0x7f);
+                }
+                GitObject base = readPacked(pack, offset - distance, depth + 1);
+                return new GitObject(base.type, applyDelta(base.data, pack.inflate(offset + i, (int) size)));
+            }
+            case TYPE_REF_DELTA: {
+                String baseId = GitIndex.hex(header, i, GitIndex.HASH_LENGTH);
+                GitObject base = read(baseId, depth + 1);
+                if (base == null) {
+                    throw new IOException("缺少增量基对象: " + baseId);
+                }
+                return new GitObject(base.type,
+                    applyDelta(base.data, pack.inflate(offset + i + GitIndex.HASH_LENGTH, (int) size)));
+            }
+            default:
+                throw new IOException("未知的 pack 对象类型: " + type);
+        }
+    }
+
+    /**
+     * 应用增量：源长度、目标长度，随后是复制（最高位为 1）与插入指令
+     */
+    static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        int[] pos = {0};
+        long sourceSize = readSize(delta, pos);
+        long targetSize = readSize(delta, pos);
+        if (sourceSize != base.length || targetSize > Integer.MAX_VALUE) {
+            throw new IOException("增量与基对象不匹配");
+        }
+        byte[] out = new byte[(int) targetSize];
+        int o = 0;
+        int p = pos[0];
+        try {
+            while (p < delta.length) {
+                int op = delta[p++] & 0xff;
+                if ((op & 0x80) != 0) {
+                    long copyOffset = 0;
+                    int copySize = 0;
+                    for (int bit = 0; bit < 4; bit++) {
+                        if ((op & (1 << bit)) != 0) {
+                            copyOffset |= (long) (delta[p++] & 0xff) << (8 * bit);
+                        }
+                    }
+                    for (int bit = 0; bit < 3; bit++) {
+                        if ((op & (0x10 << bit)) != 0) {
+                            copySize |= (delta[p++] & 0xff) << (8 * bit);
+                        }
+                    }
+                    if (copySize == 0) {
+                        copySize = 0x10000;
+                    }
+                    System.arraycopy(base, (int) copyOffset, out, o, copySize);
+                    o += copySize;
+                } else if (op != 0) {
+                    System.arraycopy(delta, p, out, o, op);
+                    p += op;
+                    o += op;
+                } else {
+                    throw new IOException("增量指令无效");
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("增量数据已损坏", e);
+        }
+        if (o != out.length) {
+            throw new IOException("增量结果长度不符");
+        }
+        return out;
+    }
+
+    private static long readSize(byte[] data, int[] pos) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (pos[0] >= data.length) {
+                throw new IOException("增量数据已损坏");
+            }
+            b = data[pos[0]++] & 0xff;
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 64);
+        return value;
+    }
+
+    private static int typeOf(String name) throws IOException {
+        switch (name) {
+            case "commit":
+                return TYPE_COMMIT;
+            case "tree":
+                return TYPE_TREE;
+            case "blob":
+                return TYPE_BLOB;
+            case "tag":
+                return TYPE_TAG;
+            default:
+                throw new IOException("未知的对象类型: " + name);
+        }
+    }
+
+    static byte[] parseHex(String id) {
+        byte[] raw = new byte[id.length() / 2];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) Integer.parseInt(id.substring(2 * i, 2 * i + 2), 16);
+        }
+        return raw;
+    }
+
+    static int indexOf(byte[] data, byte value, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解压后的对象
+     */
+    static final class GitObject {
+        final int type;
+        final byte[] data;
+
+        GitObject(int type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 一个 pack 文件及其内存映射的 idx v2 索引
+     */
+    private static final class Pack {
+        final Path packFile;
+        final MappedByteBuffer idx;
+        final int[] fanout = new int[256];
+        final int count;
+        final int hashesOffset;
+        final int offsetsOffset;
+        final int largeOffsetsOffset;
+
+        Pack(Path idxFile, Path packFile) throws IOException {
+            this.packFile = packFile;
+            try (FileChannel channel = FileChannel.open(idxFile, StandardOpenOption.READ)) {
+                this.idx = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (idx.capacity() < 8 + 1024 || idx.getInt(0) != PACK_IDX_MAGIC || idx.getInt(4) != 2) {
+                throw new IOException("不支持的 pack 索引格式: " + idxFile);
+            }
+            for (int i = 0; i < 256; i++) {
+                fanout[i] = idx.getInt(8 + 4 * i);
+            }
+            this.count = fanout[255];
+            this.hashesOffset = 8 + 1024;
+            this.offsetsOffset = hashesOffset + count * (GitIndex.HASH_LENGTH + 4);
+            this.largeOffsetsOffset = offsetsOffset + count * 4;
+            if (largeOffsetsOffset > idx.capacity()) {
+                throw new IOException("pack 索引已损坏: " + idxFile);
+            }
+        }
+
+        /**
+         * 在按哈希排序的表中二分查找
+         *
+         * @return 对象在 pack 文件中的偏移，不存在时返回 -1
+         */
+        long find(byte[] id) {
+            int first = id[0] & 0xff;
+            int low = first == 0 ? 0 : fanout[first - 1];
+            int high = fanout[first] - 1;
+            byte[] candidate = new byte[GitIndex.HASH_LENGTH];
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                idx.get(hashesOffset + mid * GitIndex.HASH_LENGTH, candidate);
+                int cmp = Arrays.compareUnsigned(candidate, id);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    int offset = idx.getInt(offsetsOffset + 4 * mid);
+                    if (offset >= 0) {
+                        return offset;
+                    }
+                    return idx.getLong(largeOffsetsOffset + 8 * (offset & 0x7fffffff));
+                }
+            }
+            return -1;
+        }
+
+        byte[] readAt(long position, int length) throws IOException {
+            try (FileChannel channel = FileChannel.open(packFile, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                    // 读到文件末尾为止
+                }
+                return buffer.array();
+            }
+        }
+
+        /**
+         * 从 position 开始解压出 size 字节；pack 中不记录压缩后长度，按块读取直到输出足够
+         */
+        byte[] inflate(long position, int size) throws IOException {
+            byte[] out = new byte[size];
+            Inflater inflater = new Inflater();
+            try (FileChannel channel = FileChannel.open(packFile, StandardOpenOption.READ)) {
+                ByteBuffer in = ByteBuffer.allocate(8192);
+                long next = position;
+                int produced = 0;
+                while (produced < size) {
+                    if (inflater.needsInput()) {
+                        in.clear();
+                        int n = channel.read(in, next);
+                        if (n <= 0) {
+                            throw new IOException("pack 文件意外结束: " + packFile);
+                        }
+                        next += n;
+                        inflater.setInput(in.array(), 0, n);
+                    }
+                    int n = inflater.inflate(out, produced, size - produced);
+                    if (n == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                        throw new IOException("pack 对象数据已损坏: " + packFile);
+                    }
+                    produced += n;
+                }
+                return out;
+            } catch (DataFormatException e) {
+                throw new IOException("pack 对象数据已损坏: " + packFile, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,712 @@
+package io.leavesfly.joder.services.git;
+
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不启动 git 进程、直接读取 .git 目录的只读仓库视图
+ * <p>
+ * 读取 HEAD、松散引用、packed-refs、config 与索引文件。解析后的索引按索引文件路径缓存，
+ * 修改时间、大小或 inode 变化后重新解析。工作区状态先比较索引中记录的 stat 信息，
+ * 不一致或无法排除“同一时间戳内被修改”时才计算文件内容的对象哈希；暂存区与 HEAD 的比较借助索引中的
+ * cache-tree，只展开已失效的目录。
+ * </p>
+ * <p>
+ * SHA-256 对象格式、reftable 引用存储、拆分或稀疏索引等不支持的情况抛出 {@link IOException}，
+ * 调用方应改用 git 命令。未跟踪文件按 {@link IgnoreRules} 判断是否被忽略，不读取全局排除文件；
+ * 计算内容哈希时不执行 clean 过滤器（autocrlf、LFS 等）。
+ * </p>
+ */
+public class GitRepository {
+
+    private static final String HEADS = "refs/heads/";
+    private static final int MAX_SYMREF_DEPTH = 5;
+
+    private static final ConcurrentMap<Path, CachedIndex> INDEX_CACHE = new ConcurrentHashMap<>();
+
+    private final Path workTree;
+    private final Path gitDirectory;
+    private final Path commonDirectory;
+    private final Map<String, List<String>> config;
+    private Map<String, String> packedRefs;
+
+    private GitRepository(Path workTree, Path gitDirectory) throws IOException {
+        this.workTree = workTree;
+        this.gitDirectory = gitDirectory;
+        Path commonDir = gitDirectory.resolve("commondir");
+        this.commonDirectory = Files.isRegularFile(commonDir)
+            ? gitDirectory.resolve(Files.readString(commonDir, StandardCharsets.UTF_8).trim()).normalize()
+            : gitDirectory;
+        Path configFile = commonDirectory.resolve("config");
+        this.config = Files.isRegularFile(configFile)
+            ? parseConfig(Files.readAllLines(configFile, StandardCharsets.UTF_8))
+            : Collections.emptyMap();
+        if ("sha256".equalsIgnoreCase(getConfig("extensions.objectformat"))) {
+            throw new IOException("不支持 SHA-256 对象格式的仓库");
+        }
+        if (getConfig("extensions.refstorage") != null
+                && !"files".equalsIgnoreCase(getConfig("extensions.refstorage"))) {
+            throw new IOException("不支持的引用存储格式: " + getConfig("extensions.refstorage"));
+        }
+    }
+
+    /**
+     * 从 start 向上查找包含 .git 的目录
+     *
+     * @return 仓库；start 不在 Git 工作区内时返回 null
+     * @throws IOException .git 无法读取或仓库使用了不支持的格式
+     */
+    public static GitRepository open(Path start) throws IOException {
+        for (Path dir = start.toAbsolutePath().normalize(); dir != null; dir = dir.getParent()) {
+            Path dotGit = dir.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                if (Files.isRegularFile(dotGit.resolve("HEAD"))) {
+                    return new GitRepository(dir, dotGit);
+                }
+            } else if (Files.isRegularFile(dotGit)) {
+                // 工作树与子模块中 .git 是指向真正仓库目录的文件
+                String content = Files.readString(dotGit, StandardCharsets.UTF_8).trim();
+                if (!content.startsWith("gitdir:")) {
+                    throw new IOException(".git 文件格式无效: " + dotGit);
+                }
+                return new GitRepository(dir, dir.resolve(content.substring(7).trim()).normalize());
+            }
+        }
+        return null;
+    }
+
+    public Path getWorkTree() {
+        return workTree;
+    }
+
+    public Path getGitDirectory() {
+        return gitDirectory;
+    }
+
+    /**
+     * 当前分支名；HEAD 游离时返回 "HEAD"
+     */
+    public String getBranch() throws IOException {
+        String head = readHead();
+        if (!head.startsWith("ref:")) {
+            return "HEAD";
+        }
+        String ref = head.substring(4).trim();
+        return ref.startsWith(HEADS) ? ref.substring(HEADS.length()) : ref;
+    }
+
+    /**
+     * HEAD 指向的提交；分支还没有任何提交时返回 null
+     */
+    public String getHead() throws IOException {
+        return resolveRef("HEAD");
+    }
+
+    /**
+     * 解析引用（如 HEAD、refs/heads/main），依次查找松散引用与 packed-refs，并跟随符号引用
+     *
+     * @return 对象哈希，引用不存在时返回 null
+     */
+    public String resolveRef(String name) throws IOException {
+        String ref = name;
+        for (int depth = 0; depth <= MAX_SYMREF_DEPTH; depth++) {
+            String value = readLooseRef(ref);
+            if (value == null) {
+                value = packedRefs().get(ref);
+            }
+            if (value == null) {
+                return null;
+            }
+            if (value.startsWith("ref:")) {
+                ref = value.substring(4).trim();
+                continue;
+            }
+            if (isObjectId(value)) {
+                return value;
+            }
+            throw new IOException("无法解析引用 " + ref + ": " + value);
+        }
+        throw new IOException("符号引用层级过深: " + name);
+    }
+
+    /**
+     * 远程仓库 URL
+     *
+     * @return URL，远程仓库未配置时返回 null
+     */
+    public String getRemoteUrl(String remote) {
+        return getConfig("remote." + remote + ".url");
+    }
+
+    /**
+     * 当前分支的上游引用（如 refs/remotes/origin/main），按 branch.*.remote/merge 与远程仓库的 fetch 规则映射
+     *
+     * @return 上游引用名，HEAD 游离或未配置上游时返回 null
+     */
+    public String getUpstream() throws IOException {
+        if (!readHead().startsWith("ref:")) {
+            return null;
+        }
+        String branch = getBranch();
+        String remote = getConfig("branch." + branch + ".remote");
+        String merge = getConfig("branch." + branch + ".merge");
+        if (remote == null || merge == null) {
+            return null;
+        }
+        if (".".equals(remote)) {
+            return merge;
+        }
+        for (String spec : config.getOrDefault("remote." + remote + ".fetch", Collections.emptyList())) {
+            String refspec = spec.startsWith("+") ? spec.substring(1) : spec;
+            int colon = refspec.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String source = refspec.substring(0, colon);
+            String destination = refspec.substring(colon + 1);
+            if (source.endsWith("*") && destination.endsWith("*")
+                    && merge.startsWith(source.substring(0, source.length() - 1))) {
+                return destination.substring(0, destination.length() - 1)
+                    + merge.substring(source.length() - 1);
+            }
+            if (source.equals(merge)) {
+                return destination;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 当前分支是否配置了上游且上游引用存在
+     */
+    public boolean isHeadOnRemote() throws IOException {
+        String upstream = getUpstream();
+        return upstream != null && resolveRef(upstream) != null;
+    }
+
+    /**
+     * 读取索引；索引文件未变化时直接返回上次的解析结果，仓库还没有索引时返回空索引
+     */
+    public GitIndex readIndex() throws IOException {
+        return loadIndex().index;
+    }
+
+    /**
+     * 已跟踪的文件（相对工作区，以 / 分隔），按路径排序
+     */
+    public List<String> getTrackedFiles() throws IOException {
+        return readIndex().getTrackedFiles();
+    }
+
+    /**
+     * 只保留已跟踪文件的遍历过滤器：跳过未跟踪的文件、不含已跟踪文件的目录以及工作区之外的路径
+     */
+    public IgnoreRules.Filter trackedFilter() throws IOException {
+        GitIndex index = readIndex();
+        return (path, directory) -> {
+            Path absolute = path.toAbsolutePath().normalize();
+            if (!absolute.startsWith(workTree)) {
+                return true;
+            }
+            String relative = relativize(absolute);
+            return directory ? !index.containsDirectory(relative) : !index.isTracked(relative);
+        };
+    }
+
+    /**
+     * 计算完整的工作区状态
+     */
+    public GitStatus status() throws IOException {
+        return status(Integer.MAX_VALUE);
+    }
+
+    /**
+     * 工作区是否干净：没有暂存或未暂存的修改、冲突以及未被忽略的未跟踪文件。发现第一处变化即返回
+     */
+    public boolean isClean() throws IOException {
+        return status(1).isClean();
+    }
+
+    private GitStatus status(int limit) throws IOException {
+        CachedIndex cached = loadIndex();
+        Changes changes = new Changes(limit);
+        collectWorktreeChanges(cached, changes);
+        if (!changes.full()) {
+            collectStagedChanges(cached.index, changes);
+        }
+        if (!changes.full()) {
+            collectUntracked(cached.index, changes);
+        }
+        return changes.toStatus();
+    }
+
+    /**
+     * 比较已跟踪文件与索引：stat 信息一致且文件修改时间早于索引写入时间时视为未修改，否则比较内容哈希
+     */
+    private void collectWorktreeChanges(CachedIndex cached, Changes changes) throws IOException {
+        boolean fileMode = !"false".equalsIgnoreCase(getConfig("core.filemode"));
+        String lastUnmerged = null;
+        for (GitIndex.Entry entry : cached.index.getEntries()) {
+            if (changes.full()) {
+                return;
+            }
+            String path = entry.getPath();
+            if (entry.getStage() != 0) {
+                if (!path.equals(lastUnmerged)) {
+                    changes.unmerged.add(path);
+                    lastUnmerged = path;
+                }
+                continue;
+            }
+            if (entry.isGitlink() || entry.isSkipWorktree()) {
+                continue;
+            }
+            if (entry.isIntentToAdd()) {
+                changes.staged.add(path);
+                continue;
+            }
+            Path file = workTree.resolve(path);
+            BasicFileAttributes attrs = stat(file);
+            if (attrs == null || attrs.isDirectory()) {
+                changes.deleted.add(path);
+            } else if (isModified(entry, file, attrs, cached.modified, fileMode)) {
+                changes.modified.add(path);
+            }
+        }
+    }
+
+    private static boolean isModified(GitIndex.Entry entry, Path file, BasicFileAttributes attrs,
+                                      long indexModified, boolean fileMode) throws IOException {
+        if (entry.isSymlink() != attrs.isSymbolicLink() || (!entry.isSymlink() && !attrs.isRegularFile())) {
+            return true;
+        }
+        if (fileMode && !entry.isSymlink() && attrs instanceof PosixFileAttributes
+                && entry.isExecutable() != ((PosixFileAttributes) attrs).permissions()
+                    .contains(PosixFilePermission.OWNER_EXECUTE)) {
+            return true;
+        }
+        // 索引中大小为 0 可能是 git 为避免时间戳歧义而故意清零，只能比较内容
+        if ((int) attrs.size() != entry.getSize() && entry.getSize() != 0) {
+            return true;
+        }
+        FileTime mtime = attrs.lastModifiedTime();
+        long seconds = mtime.to(TimeUnit.SECONDS);
+        int nanos = (int) (mtime.to(TimeUnit.NANOSECONDS) - TimeUnit.SECONDS.toNanos(seconds));
+        boolean statMatches = (int) attrs.size() == entry.getSize()
+            && (int) seconds == entry.getMtimeSeconds()
+            && (entry.getMtimeNanos() == 0 || entry.getMtimeNanos() == nanos);
+        long entryModified = TimeUnit.SECONDS.toNanos(Integer.toUnsignedLong(entry.getMtimeSeconds()))
+            + entry.getMtimeNanos();
+        // 文件修改时间不早于索引写入时间时，索引写入后同一时间戳内的修改无法从 stat 上区分
+        if (statMatches && entryModified < indexModified) {
+            return false;
+        }
+        return !entry.getObjectId().equals(hashBlob(file, attrs));
+    }
+
+    /**
+     * 比较暂存区与 HEAD：cache-tree 中有效且与 HEAD 对应子树相同的目录整体跳过
+     */
+    private void collectStagedChanges(GitIndex index, Changes changes) throws IOException {
+        String head = getHead();
+        Set<String> seen = new HashSet<>();
+        Set<String> covered = new HashSet<>();
+        if (head != null) {
+            GitObjects objects = GitObjects.open(commonDirectory.resolve("objects"));
+            byte[] commit = readObject(objects, head, GitObjects.TYPE_COMMIT);
+            if (commit.length < 45 || !new String(commit, 0, 5, StandardCharsets.US_ASCII).equals("tree ")) {
+                throw new IOException("提交对象格式无效: " + head);
+            }
+            String tree = new String(commit, 5, 40, StandardCharsets.US_ASCII);
+            diffTree(objects, tree, "", index, changes, seen, covered);
+        }
+        for (GitIndex.Entry entry : index.getEntries()) {
+            if (changes.full()) {
+                return;
+            }
+            if (entry.getStage() == 0 && !entry.isIntentToAdd()
+                    && !seen.contains(entry.getPath()) && !isCovered(entry.getPath(), covered)) {
+                changes.staged.add(entry.getPath());
+            }
+        }
+    }
+
+    private void diffTree(GitObjects objects, String treeId, String directory, GitIndex index,
+                          Changes changes, Set<String> seen, Set<String> covered) throws IOException {
+        if (treeId.equals(index.getCacheTree(directory))) {
+            covered.add(directory);
+            return;
+        }
+        byte[] tree = readObject(objects, treeId, GitObjects.TYPE_TREE);
+        int pos = 0;
+        while (pos < tree.length && !changes.full()) {
+            int space = GitObjects.indexOf(tree, (byte) ' ', pos);
+            int nul = space < 0 ? -1 : GitObjects.indexOf(tree, (byte) 0, space + 1);
+            if (nul < 0 || nul + 1 + GitIndex.HASH_LENGTH > tree.length) {
+                throw new IOException("树对象已损坏: " + treeId);
+            }
+            int mode = Integer.parseInt(new String(tree, pos, space - pos, StandardCharsets.US_ASCII), 8);
+            String name = new String(tree, space + 1, nul - space - 1, StandardCharsets.UTF_8);
+            String id = GitIndex.hex(tree, nul + 1, GitIndex.HASH_LENGTH);
+            pos = nul + 1 + GitIndex.HASH_LENGTH;
+
+            String path = directory.isEmpty() ? name : directory + "/" + name;
+            if ((mode & GitIndex.TYPE_MASK) == GitIndex.TYPE_DIRECTORY) {
+                diffTree(objects, id, path, index, changes, seen, covered);
+                continue;
+            }
+            seen.add(path);
+            GitIndex.Entry entry = index.getEntry(path);
+            if (entry == null || (entry.getStage() == 0 && (!entry.getObjectId().equals(id)
+                    || normalizeMode(entry.getMode()) != normalizeMode(mode)))) {
+                changes.staged.add(path);
+            }
+        }
+    }
+
+    private static boolean isCovered(String path, Set<String> covered) {
+        if (covered.isEmpty()) {
+            return false;
+        }
+        if (covered.contains("")) {
+            return true;
+        }
+        for (int slash = path.lastIndexOf('/'); slash > 0; slash = path.lastIndexOf('/', slash - 1)) {
+            if (covered.contains(path.substring(0, slash))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 普通文件只区分是否可执行
+     */
+    private static int normalizeMode(int mode) {
+        if ((mode & GitIndex.TYPE_MASK) == GitIndex.TYPE_REGULAR) {
+            return (mode & 0111) != 0 ? 0100755 : 0100644;
+        }
+        return mode;
+    }
+
+    /**
+     * 遍历工作区查找未跟踪且未被忽略的文件；被忽略的目录与已跟踪的子模块整体跳过，
+     * 未跟踪的嵌套仓库作为一个条目
+     */
+    private void collectUntracked(GitIndex index, Changes changes) throws IOException {
+        IgnoreRules ignoreRules = new IgnoreRules(workTree.toString());
+        Files.walkFileTree(workTree, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(workTree)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (dir.getFileName().toString().equals(".git") || ignoreRules.isIgnored(dir, true)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                String path = relativize(dir);
+                GitIndex.Entry entry = index.getEntry(path);
+                if (entry != null && entry.isGitlink()) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (Files.exists(dir.resolve(".git"), LinkOption.NOFOLLOW_LINKS) && !index.containsDirectory(path)) {
+                    changes.untracked.add(path + "/");
+                    return changes.full() ? FileVisitResult.TERMINATE : FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().equals(".git")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String path = relativize(file);
+                if (!index.isTracked(path) && !ignoreRules.isIgnored(file, false)) {
+                    changes.untracked.add(path);
+                    if (changes.full()) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private CachedIndex loadIndex() throws IOException {
+        Path file = gitDirectory.resolve("index");
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return CachedIndex.EMPTY;
+        }
+        long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        CachedIndex cached = INDEX_CACHE.get(file);
+        if (cached != null && cached.matches(modified, attrs.size(), attrs.fileKey())) {
+            return cached;
+        }
+        CachedIndex loaded = new CachedIndex(GitIndex.parse(Files.readAllBytes(file)),
+            modified, attrs.size(), attrs.fileKey());
+        INDEX_CACHE.put(file, loaded);
+        return loaded;
+    }
+
+    private String readHead() throws IOException {
+        return Files.readString(gitDirectory.resolve("HEAD"), StandardCharsets.UTF_8).trim();
+    }
+
+    private String readLooseRef(String ref) throws IOException {
+        if (ref.contains("..")) {
+            return null;
+        }
+        Path file = (isPerWorktree(ref) ? gitDirectory : commonDirectory).resolve(ref);
+        return Files.isRegularFile(file) ? Files.readString(file, StandardCharsets.UTF_8).trim() : null;
+    }
+
+    private static boolean isPerWorktree(String ref) {
+        return !ref.startsWith("refs/") || ref.startsWith("refs/worktree/")
+            || ref.startsWith("refs/bisect/") || ref.startsWith("refs/rewritten/");
+    }
+
+    private Map<String, String> packedRefs() throws IOException {
+        if (packedRefs == null) {
+            Map<String, String> refs = new HashMap<>();
+            Path file = commonDirectory.resolve("packed-refs");
+            if (Files.isRegularFile(file)) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    // # 开头为文件头，^ 开头为上一行附注标签指向的对象
+                    if (line.isEmpty() || line.startsWith("#") || line.startsWith("^")) {
+                        continue;
+                    }
+                    int space = line.indexOf(' ');
+                    if (space > 0) {
+                        refs.put(line.substring(space + 1).trim(), line.substring(0, space));
+                    }
+                }
+            }
+            packedRefs = refs;
+        }
+        return packedRefs;
+    }
+
+    private String getConfig(String key) {
+        List<String> values = config.get(key);
+        return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    /**
+     * 解析 git config 文件，键为小写的 section[.subsection].name，子节名保留大小写
+     */
+    static Map<String, List<String>> parseConfig(List<String> lines) {
+        Map<String, List<String>> values = new HashMap<>();
+        String section = null;
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (line.startsWith("[")) {
+                int close = line.indexOf(']');
+                if (close < 0) {
+                    section = null;
+                    continue;
+                }
+                String header = line.substring(1, close).trim();
+                int quote = header.indexOf('"');
+                if (quote >= 0) {
+                    int end = header.lastIndexOf('"');
+                    String subsection = header.substring(quote + 1, end > quote ? end : header.length())
+                        .replace("\\\"", "\"").replace("\\\\", "\\");
+                    section = header.substring(0, quote).trim().toLowerCase(Locale.ROOT) + "." + subsection;
+                } else {
+                    // 旧式 [section.subsection] 写法的子节名不区分大小写
+                    section = header.toLowerCase(Locale.ROOT);
+                }
+                line = line.substring(close + 1).trim();
+            }
+            if (section == null || line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
+                continue;
+            }
+            int eq = line.indexOf('=');
+            String key = (eq < 0 ? line : line.substring(0, eq)).trim().toLowerCase(Locale.ROOT);
+            String value = eq < 0 ? "true" : parseConfigValue(line.substring(eq + 1));
+            values.computeIfAbsent(section + "." + key, k -> new ArrayList<>()).add(value);
+        }
+        return values;
+    }
+
+    private static String parseConfigValue(String raw) {
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\\' && i + 1 < raw.length()) {
+                char next = raw.charAt(++i);
+                value.append(next == 'n' ? '\n' : next == 't' ? '\t' : next == 'b' ? '\b' : next);
+            } else if ((c == '#' || c == ';') && !quoted) {
+                break;
+            } else {
+                value.append(c);
+            }
+        }
+        return value.toString().trim();
+    }
+
+    private String relativize(Path path) {
+        return workTree.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private static boolean isObjectId(String value) {
+        if (value.length() != 2 * GitIndex.HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] readObject(GitObjects objects, String id, int type) throws IOException {
+        GitObjects.GitObject object = objects.read(id);
+        if (object == null) {
+            throw new IOException("对象库中缺少对象: " + id);
+        }
+        if (object.type != type) {
+            throw new IOException("对象类型不符: " + id);
+        }
+        return object.data;
+    }
+
+    private static BasicFileAttributes stat(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            try {
+                return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException missing) {
+                return null;
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按 blob 对象格式（"blob &lt;大小&gt;\0" + 内容）计算哈希；符号链接取链接目标
+     */
+    static String hashBlob(Path file, BasicFileAttributes attrs) throws IOException {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (attrs.isSymbolicLink()) {
+            byte[] target = Files.readSymbolicLink(file).toString().getBytes(StandardCharsets.UTF_8);
+            sha1.update(("blob " + target.length + "\0").getBytes(StandardCharsets.US_ASCII));
+            sha1.update(target);
+        } else {
+            sha1.update(("blob " + attrs.size() + "\0").getBytes(StandardCharsets.US_ASCII));
+            long total = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(file)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    sha1.update(buffer, 0, n);
+                    total += n;
+                }
+            }
+            if (total != attrs.size()) {
+                // 读取期间文件被改写，按已修改处理
+                return "";
+            }
+        }
+        byte[] digest = sha1.digest();
+        return GitIndex.hex(digest, 0, digest.length);
+    }
+
+    /**
+     * 收集中的状态，条目总数达到上限后停止
+     */
+    private static final class Changes {
+        final int limit;
+        final List<String> staged = new ArrayList<>();
+        final List<String> modified = new ArrayList<>();
+        final List<String> deleted = new ArrayList<>();
+        final List<String> untracked = new ArrayList<>();
+        final List<String> unmerged = new ArrayList<>();
+
+        Changes(int limit) {
+            this.limit = limit;
+        }
+
+        boolean full() {
+            return staged.size() + modified.size() + deleted.size() + untracked.size() + unmerged.size() >= limit;
+        }
+
+        GitStatus toStatus() {
+            Collections.sort(staged);
+            Collections.sort(untracked);
+            return new GitStatus(staged, modified, deleted, untracked, unmerged);
+        }
+    }
+
+    /**
+     * 解析后的索引及解析时索引文件的状态
+     */
+    private static final class CachedIndex {
+        static final CachedIndex EMPTY = new CachedIndex(GitIndex.EMPTY, Long.MAX_VALUE, 0, null);
+
+        final GitIndex index;
+        /** 索引文件修改时间（纳秒） */
+        final long modified;
+        final long size;
+        final Object fileKey;
+
+        CachedIndex(GitIndex index, long modified, long size, Object fileKey) {
+            this.index = index;
+            this.modified = modified;
+            this.size = size;
+            this.fileKey = fileKey;
+        }
+
+        boolean matches(long modified, long size, Object fileKey) {
+            return this.modified == modified && this.size == size && Objects.equals(this.fileKey, fileKey);
+        }
+    }
+}
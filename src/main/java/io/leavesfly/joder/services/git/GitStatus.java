@@ -0,0 +1,71 @@
+package io.leavesfly.joder.services.git;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 工作区状态，各列表中的路径相对工作区、以 / 分隔
+ */
+public class GitStatus {
+
+    private final List<String> staged;
+    private final List<String> modified;
+    private final List<String> deleted;
+    private final List<String> untracked;
+    private final List<String> unmerged;
+
+    GitStatus(List<String> staged, List<String> modified, List<String> deleted,
+              List<String> untracked, List<String> unmerged) {
+        this.staged = Collections.unmodifiableList(staged);
+        this.modified = Collections.unmodifiableList(modified);
+        this.deleted = Collections.unmodifiableList(deleted);
+        this.untracked = Collections.unmodifiableList(untracked);
+        this.unmerged = Collections.unmodifiableList(unmerged);
+    }
+
+    /**
+     * 暂存区与 HEAD 不同的路径（新增、修改或删除）
+     */
+    public List<String> getStaged() {
+        return staged;
+    }
+
+    /**
+     * 工作区内容与暂存区不同的已跟踪文件
+     */
+    public List<String> getModified() {
+        return modified;
+    }
+
+    /**
+     * 已跟踪但工作区中已不存在的文件
+     */
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * 未跟踪且未被忽略的文件；嵌套仓库以 / 结尾的目录表示
+     */
+    public List<String> getUntracked() {
+        return untracked;
+    }
+
+    /**
+     * 处于合并冲突中的路径
+     */
+    public List<String> getUnmerged() {
+        return unmerged;
+    }
+
+    public boolean isClean() {
+        return staged.isEmpty() && modified.isEmpty() && deleted.isEmpty()
+            && untracked.isEmpty() && unmerged.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GitStatus{staged=%d, modified=%d, deleted=%d, untracked=%d, unmerged=%d}",
+            staged.size(), modified.size(), deleted.size(), untracked.size(), unmerged.size());
+    }
+}
@@ -0,0 +1,209 @@
+package io.leavesfly.joder.services.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 代码词法切分
+ *
+ * <p>把标识符切成可检索的词：整个标识符小写后作为一个词，驼峰与下划线拆出的各部分再各作为一个词，
+ * 例如 {@code parseHttpRequest} 产生 parsehttprequest、parse、http、request，
+ * {@code MAX_RETRY_COUNT} 产生 max_retry_count、max、retry、count。
+ * 连续大写按缩写处理（{@code HTTPServer} 拆为 http、server），数字不拆开。
+ * 以数字开头的串和短于两个字符的词不收录；{@code __init__} 这类带前后缀的名字同时收录去掉下划线的部分。</p>
+ *
+ * <p>词按字段区分：文件名、目录、声明行与其余内容。首个词是声明关键字或修饰符的行
+ * （class、def、fn、public 等）视为声明行。</p>
+ */
+final class CodeTokenizer {
+
+    static final int NAME = 0;
+    static final int PATH = 1;
+    static final int DECLARATION = 2;
+    static final int BODY = 3;
+    static final int FIELD_COUNT = 4;
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_IDENTIFIER_LENGTH = 64;
+
+    /** 行首出现时表示该行是声明的关键字与修饰符 */
+    private static final Set<String> DECLARATION_KEYWORDS = Set.of(
+        "class", "interface", "enum", "record", "struct", "trait", "impl", "object", "module", "namespace",
+        "def", "fn", "func", "fun", "function", "macro", "type", "typedef", "const", "let", "var", "val",
+        "public", "private", "protected", "internal", "static", "abstract", "final", "sealed", "override",
+        "export", "async", "pub", "data", "case"
+    );
+
+    private CodeTokenizer() {
+    }
+
+    /**
+     * 接收切分出的词
+     */
+    interface Sink {
+        void accept(String term, int field);
+    }
+
+    /**
+     * 切分相对路径：最后一段计入文件名字段，其余各段计入目录字段
+     */
+    static void tokenizePath(String relativePath, Sink sink) {
+        int start = 0;
+        int lastSeparator = Math.max(relativePath.lastIndexOf('/'), relativePath.lastIndexOf('\\'));
+        for (int i = 0; i <= relativePath.length(); i++) {
+            if (i == relativePath.length() || relativePath.charAt(i) == '/' || relativePath.charAt(i) == '\\') {
+                tokenizeText(relativePath.substring(start, i), i > lastSeparator ? NAME : PATH, sink);
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * 按行切分文件内容，只识别 ASCII 标识符，其余字节视为分隔符
+     */
+    static void tokenizeContent(byte[] bytes, Sink sink) {
+        int field = -1; // 当前行的字段，遇到行内首个标识符时确定
+        int i = 0;
+        while (i < bytes.length) {
+            byte b = bytes[i];
+            if (b == '\n') {
+                field = -1;
+                i++;
+                continue;
+            }
+            if (!isIdentifierPart(b)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < bytes.length && isIdentifierPart(bytes[i])) {
+                i++;
+            }
+            if (isDigit(bytes[start]) || i - start > MAX_IDENTIFIER_LENGTH) {
+                if (field < 0) {
+                    field = BODY;
+                }
+                continue;
+            }
+            String identifier = new String(bytes, start, i - start, StandardCharsets.ISO_8859_1);
+            if (field < 0) {
+                field = DECLARATION_KEYWORDS.contains(identifier) ? DECLARATION : BODY;
+            }
+            emitIdentifier(identifier, field, sink);
+        }
+    }
+
+    /**
+     * 切分查询文本：跳过正则转义（\b、\s 等）与字符类，剩余部分按标识符切分，去重后保持出现顺序
+     */
+    static Set<String> queryTerms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder plain = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+                plain.append(' ');
+            } else if (c == '[') {
+                int end = text.indexOf(']', i + 1);
+                i = end < 0 ? i : end;
+                plain.append(' ');
+            } else {
+                plain.append(c);
+            }
+        }
+        tokenizeText(plain.toString(), BODY, (term, field) -> terms.add(term));
+        return terms;
+    }
+
+    private static void tokenizeText(String text, int field, Sink sink) {
+        int i = 0;
+        while (i < text.length()) {
+            if (!isIdentifierPart(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && isIdentifierPart(text.charAt(i))) {
+                i++;
+            }
+            if (!isDigit(text.charAt(start)) && i - start <= MAX_IDENTIFIER_LENGTH) {
+                emitIdentifier(text.substring(start, i), field, sink);
+            }
+        }
+    }
+
+    /**
+     * 输出整个标识符及其拆分出的各部分
+     */
+    private static void emitIdentifier(String identifier, int field, Sink sink) {
+        if (identifier.length() < MIN_TOKEN_LENGTH) {
+            return;
+        }
+        sink.accept(identifier.toLowerCase(Locale.ROOT), field);
+
+        int partStart = -1;
+        int parts = 0;
+        int length = identifier.length();
+        String[] buffer = null;
+        for (int i = 0; i <= length; i++) {
+            boolean boundary;
+            if (i == length) {
+                boundary = true;
+            } else {
+                char c = identifier.charAt(i);
+                if (c == '_' || c == '$') {
+                    boundary = true;
+                } else if (partStart < 0) {
+                    partStart = i;
+                    continue;
+                } else {
+                    char previous = identifier.charAt(i - 1);
+                    // fooBar 在 B 处断开；HTTPServer 在 S 处断开（其后是小写）
+                    boundary = Character.isUpperCase(c) && (Character.isLowerCase(previous)
+                        || Character.isDigit(previous)
+                        || (Character.isUpperCase(previous) && i + 1 < length
+                            && Character.isLowerCase(identifier.charAt(i + 1))));
+                }
+            }
+            if (boundary) {
+                if (partStart >= 0) {
+                    if (buffer == null) {
+                        buffer = new String[length];
+                    }
+                    buffer[parts++] = identifier.substring(partStart, i);
+                }
+                partStart = i < length && identifier.charAt(i) != '_' && identifier.charAt(i) != '$' ? i : -1;
+            }
+        }
+        if (parts == 0 || (parts == 1 && buffer[0].length() == length)) {
+            return;
+        }
+        for (int p = 0; p < parts; p++) {
+            if (buffer[p].length() >= MIN_TOKEN_LENGTH) {
+                sink.accept(buffer[p].toLowerCase(Locale.ROOT), field);
+            }
+        }
+    }
+
+    private static boolean isIdentifierPart(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b == '$';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
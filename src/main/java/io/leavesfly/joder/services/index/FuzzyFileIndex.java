@@ -0,0 +1,155 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 工作区文件模糊查找索引
+ *
+ * <p>为 @file 补全和文件 mention 提供 fzf 风格的模糊查找：工作目录下全部文件的相对路径
+ * 紧凑存放在 {@link FuzzyPathTable} 中，查询时先按字符袋掩码预筛，再子序列匹配、打分，
+ * 用 Top-K 堆取前若干条；逐字符输入时复用上一次查询的命中集合。</p>
+ *
+ * <p>索引在首次查询时由 {@link IndexCoordinator} 于后台线程构建，与其他索引共用一次遍历
+ * （优先取 {@link WorkspaceCatalog} 的内存目录，不可用时遍历文件系统），之后随 {@link FileChangeBus} 事件增量增删路径。
+ * 构建完成前 {@link #search} 返回 null，调用方应回退到自行遍历；
+ * 构建完成后排队中的少量变更不阻断查询，补全结果允许短暂滞后。</p>
+ *
+ * <p>隐藏文件、排除目录以及被 {@link IgnoreRules} 忽略的路径不进入索引。</p>
+ */
+@Singleton
+public class FuzzyFileIndex extends IncrementalIndex {
+
+    /** 收录的路径数上限，超出部分不再加入 */
+    private static final int MAX_PATHS = 1_000_000;
+
+    // 由索引线程修改，查询与修改都在 table 上同步
+    private final FuzzyPathTable table = new FuzzyPathTable();
+
+    public FuzzyFileIndex(String workingDirectory, FileChangeBus fileChangeBus) {
+        this(new IndexCoordinator(workingDirectory, fileChangeBus));
+    }
+
+    @Inject
+    public FuzzyFileIndex(IndexCoordinator coordinator) {
+        super(coordinator, "模糊查找索引");
+    }
+
+    /**
+     * 模糊查找文件
+     *
+     * @param query 查询串，忽略空白，不区分大小写；为空时返回路径最短的文件
+     * @param limit 返回的最大条数
+     * @return 按分数降序排列的匹配；索引尚未构建完成时返回 null
+     */
+    public List<Match> search(String query, int limit) {
+        start();
+        if (!isReady()) {
+            return null;
+        }
+        synchronized (table) {
+            return table.search(query, limit);
+        }
+    }
+
+    /**
+     * 对给定的候选路径做一次性的模糊排序，评分规则与索引查询一致
+     *
+     * @param query      查询串
+     * @param candidates 候选路径
+     * @param limit      返回的最大条数
+     * @return 按分数降序排列的匹配
+     */
+    public static List<Match> rank(String query, Collection<String> candidates, int limit) {
+        FuzzyPathTable candidatesTable = new FuzzyPathTable();
+        for (String candidate : candidates) {
+            candidatesTable.add(candidate);
+        }
+        return candidatesTable.search(query, limit);
+    }
+
+    /**
+     * 已收录的文件数
+     */
+    public int size() {
+        synchronized (table) {
+            return table.size();
+        }
+    }
+
+    @Override
+    protected boolean isCurrent(String path, long size, long lastModified) {
+        synchronized (table) {
+            return table.find(path) >= 0;
+        }
+    }
+
+    @Override
+    protected void update(String path, Path file, long size, long lastModified) {
+        synchronized (table) {
+            if (table.find(path) < 0 && table.size() < MAX_PATHS) {
+                table.add(path);
+            }
+        }
+    }
+
+    @Override
+    protected Collection<String> paths() {
+        synchronized (table) {
+            return table.paths();
+        }
+    }
+
+    @Override
+    protected void remove(String path) {
+        synchronized (table) {
+            table.remove(path);
+        }
+    }
+
+    @Override
+    protected void compactIfNeeded() {
+        synchronized (table) {
+            table.compactIfNeeded();
+        }
+    }
+
+    /**
+     * 一条模糊匹配结果
+     */
+    public static final class Match {
+        private final String path;
+        private final int score;
+
+        Match(String path, int score) {
+            this.path = path;
+            this.score = score;
+        }
+
+        /**
+         * 相对工作目录的路径
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * 匹配分数，越高越好，只在同一次查询内可比
+         */
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return path + " (" + score + ")";
+        }
+    }
+}
@@ -0,0 +1,617 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.search.TopKCollector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的模糊路径表
+ *
+ * <p>路径连续存放在一个 char 数组中，按 id 以偏移量定位，另为每条路径记录文件名起点
+ * 和字符袋位掩码（路径中出现过哪些字符）。查询先用掩码排除缺少查询字符的路径，
+ * 再做子序列匹配与打分，用 Top-K 堆选出最好的结果。</p>
+ *
+ * <p>最近几次查询的命中集合（及每条路径上贪心匹配结束的位置）会被缓存：
+ * 新查询以缓存中的某个查询为前缀时，只需在其命中集合上从上次结束的位置继续匹配，
+ * 逐字符输入时候选集合单调缩小。表内容变化时缓存失效。</p>
+ *
+ * <p>评分参考 fzf：每个命中字符得分，落在路径段开头、单词边界或驼峰位置时加分，
+ * 连续命中延续段首加分，跳过的字符扣分；完整落在文件名内的匹配额外加分。
+ * 同分时路径短的在前。</p>
+ *
+ * <p>非线程安全，由调用方加锁。</p>
+ */
+final class FuzzyPathTable {
+
+    private static final int SCORE_MATCH = 16;
+    private static final int SCORE_GAP_START = -3;
+    private static final int SCORE_GAP_EXTENSION = -1;
+    private static final int BONUS_SEGMENT_START = 10;
+    private static final int BONUS_BOUNDARY = 8;
+    private static final int BONUS_CAMEL = 7;
+    private static final int BONUS_CONSECUTIVE = 4;
+    private static final int BONUS_FIRST_CHAR_MULTIPLIER = 2;
+    private static final int BONUS_FILE_NAME = 24;
+
+    private static final int CLASS_SEPARATOR = 0;
+    private static final int CLASS_DELIMITER = 1;
+    private static final int CLASS_LOWER = 2;
+    private static final int CLASS_UPPER = 3;
+    private static final int CLASS_DIGIT = 4;
+    private static final int CLASS_OTHER = 5;
+
+    /** ASCII 字符的类别与小写形式查表，非 ASCII 字符走 Character */
+    private static final byte[] ASCII_CLASSES = new byte[128];
+    private static final char[] ASCII_LOWER = new char[128];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            ASCII_CLASSES[c] = (byte) classOf(c);
+            ASCII_LOWER[c] = c >= 'A' && c <= 'Z' ? (char) (c | 0x20) : c;
+        }
+    }
+
+    /** 缓存的查询数；首字符的命中集合可能覆盖整张表，不宜过多 */
+    private static final int MAX_CACHED_QUERIES = 8;
+
+    private char[] chars = new char[4096];
+    private int charCount;
+    private int[] offsets = new int[257];
+    private int[] nameStarts = new int[256];
+    private long[] masks = new long[256];
+    private long[] nameMasks = new long[256];
+    private int count;
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+
+    /** 路径 → id 的开放寻址哈希表，槽位存 id + 1，0 为空 */
+    private int[] slots = new int[512];
+
+    private final Map<String, Survivors> queryCache = new LinkedHashMap<String, Survivors>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Survivors> eldest) {
+            return size() > MAX_CACHED_QUERIES;
+        }
+    };
+
+    /**
+     * 追加路径，已存在时返回原 id
+     */
+    int add(String path) {
+        int existing = find(path);
+        if (existing >= 0) {
+            return existing;
+        }
+        int id = count;
+        ensureCapacity(id + 1, path.length());
+        path.getChars(0, path.length(), chars, charCount);
+        int nameStart = charCount;
+        for (int i = path.length() - 1; i >= 0; i--) {
+            if (isSeparator(path.charAt(i))) {
+                nameStart = charCount + i + 1;
+                break;
+            }
+        }
+        offsets[id] = charCount;
+        charCount += path.length();
+        offsets[id + 1] = charCount;
+        nameStarts[id] = nameStart;
+        masks[id] = maskOf(path);
+        nameMasks[id] = maskOf(path.substring(nameStart - charCount + path.length()));
+        count++;
+
+        if (count * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insertSlot(id);
+        }
+        queryCache.clear();
+        return id;
+    }
+
+    /**
+     * 查找路径的 id，不存在时返回 -1
+     */
+    int find(String path) {
+        int mask = slots.length - 1;
+        for (int i = hash(path) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (!removed.get(id) && equalsPath(id, path)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 移除单条路径
+     *
+     * @return 路径存在时返回 true
+     */
+    boolean remove(String path) {
+        int id = find(path);
+        if (id < 0) {
+            return false;
+        }
+        markRemoved(id);
+        return true;
+    }
+
+    /**
+     * 移除路径本身及其下的全部路径
+     *
+     * @return 移除的条数
+     */
+    int removeUnder(String path) {
+        int total = 0;
+        int exact = find(path);
+        if (exact >= 0) {
+            markRemoved(exact);
+            total++;
+        }
+        int length = path.length();
+        for (int id = removed.nextClearBit(0); id < count; id = removed.nextClearBit(id + 1)) {
+            int start = offsets[id];
+            if (offsets[id + 1] - start > length && isSeparator(chars[start + length])
+                    && regionMatches(start, path)) {
+                markRemoved(id);
+                total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 有效路径数
+     */
+    int size() {
+        return count - removedCount;
+    }
+
+    String path(int id) {
+        return new String(chars, offsets[id], offsets[id + 1] - offsets[id]);
+    }
+
+    /**
+     * 全部有效路径
+     */
+    List<String> paths() {
+        List<String> result = new ArrayList<>(size());
+        for (int id = removed.nextClearBit(0); id < count; id = removed.nextClearBit(id + 1)) {
+            result.add(path(id));
+        }
+        return result;
+    }
+
+    /**
+     * 删除的条目过多时重排 id，回收字符空间
+     */
+    void compactIfNeeded() {
+        if (removedCount < 1024 || removedCount < size()) {
+            return;
+        }
+        List<String> live = paths();
+        chars = new char[Math.max(4096, charCount - removedChars())];
+        charCount = 0;
+        offsets = new int[live.size() + 257];
+        nameStarts = new int[live.size() + 256];
+        masks = new long[live.size() + 256];
+        nameMasks = new long[live.size() + 256];
+        count = 0;
+        removed.clear();
+        removedCount = 0;
+        slots = new int[Math.max(512, Integer.highestOneBit(Math.max(1, live.size())) * 4)];
+        for (String path : live) {
+            add(path);
+        }
+        queryCache.clear();
+    }
+
+    /**
+     * 模糊查询
+     *
+     * @param query 查询串，忽略空白，不区分大小写
+     * @param limit 返回的最大条数
+     * @return 按分数降序排列的匹配
+     */
+    List<FuzzyFileIndex.Match> search(String query, int limit) {
+        char[] q = normalizeQuery(query);
+        TopKCollector<Candidate> top = new TopKCollector<>(limit, Candidate.ORDER);
+
+        if (q.length == 0) {
+            // 空查询按路径长度取最浅的文件
+            for (int id = removed.nextClearBit(0); id < count; id = removed.nextClearBit(id + 1)) {
+                offerIfBetter(top, id, 0);
+            }
+            return toMatches(top);
+        }
+
+        String key = new String(q);
+        long queryMask = maskOf(key);
+        int bound = maxScore(q.length);
+        Survivors base = longestCachedPrefix(key);
+        Survivors next = new Survivors(base != null ? base.size : size());
+        if (base != null) {
+            int matched = base.query.length();
+            for (int i = 0; i < base.size; i++) {
+                int id = base.ids[i];
+                if ((masks[id] & queryMask) == queryMask) {
+                    collect(id, forward(base.ends[i], offsets[id + 1], q, matched), q, queryMask, bound, next, top);
+                }
+            }
+        } else {
+            for (int id = removed.nextClearBit(0); id < count; id = removed.nextClearBit(id + 1)) {
+                if ((masks[id] & queryMask) == queryMask) {
+                    collect(id, forward(offsets[id], offsets[id + 1], q, 0), q, queryMask, bound, next, top);
+                }
+            }
+        }
+        queryCache.put(key, next.trim(key));
+        return toMatches(top);
+    }
+
+    private void collect(int id, int end, char[] q, long queryMask, int bound,
+                         Survivors survivors, TopKCollector<Candidate> top) {
+        if (end < 0) {
+            return;
+        }
+        survivors.add(id, end);
+        // 分数上界都进不了堆时不必计算分数；短查询时满分的路径很多，大部分候选在这里跳过
+        if (canEnter(top, id, bound)) {
+            offerIfBetter(top, id, score(id, end, q, queryMask));
+        }
+    }
+
+    private boolean canEnter(TopKCollector<Candidate> top, int id, int score) {
+        Candidate worst = top.threshold();
+        return worst == null || score > worst.score
+            || (score == worst.score && offsets[id + 1] - offsets[id] < worst.length);
+    }
+
+    /**
+     * 先与堆顶比较，只为能入选的路径分配对象
+     */
+    private void offerIfBetter(TopKCollector<Candidate> top, int id, int score) {
+        if (canEnter(top, id, score)) {
+            top.offer(new Candidate(id, score, offsets[id + 1] - offsets[id]));
+        }
+    }
+
+    private List<FuzzyFileIndex.Match> toMatches(TopKCollector<Candidate> top) {
+        List<FuzzyFileIndex.Match> result = new ArrayList<>(top.size());
+        for (Candidate candidate : top.toSortedList()) {
+            result.add(new FuzzyFileIndex.Match(path(candidate.id), candidate.score));
+        }
+        return result;
+    }
+
+    private Survivors longestCachedPrefix(String key) {
+        Survivors best = null;
+        for (Iterator<Survivors> it = queryCache.values().iterator(); it.hasNext(); ) {
+            Survivors cached = it.next();
+            if (key.startsWith(cached.query) && (best == null || cached.query.length() > best.query.length())) {
+                best = cached;
+            }
+        }
+        if (best != null) {
+            // 刷新访问顺序
+            queryCache.get(best.query);
+        }
+        return best;
+    }
+
+    // ---------------------------------------------------------------- 匹配与评分
+
+    /**
+     * 从 from 开始贪心匹配 q[matched..]，返回最后一个命中字符之后的位置，不匹配时返回 -1
+     */
+    private int forward(int from, int end, char[] q, int matched) {
+        int qi = matched;
+        for (int i = from; i < end && qi < q.length; i++) {
+            if (lower(chars[i]) == q[qi]) {
+                qi++;
+                if (qi == q.length) {
+                    return i + 1;
+                }
+            }
+        }
+        return qi == q.length ? from : -1;
+    }
+
+    /**
+     * 从 end 向前反向匹配，得到以 end 结尾的最短匹配区间的起点
+     */
+    private int backward(int start, int end, char[] q) {
+        int qi = q.length - 1;
+        for (int i = end - 1; i >= start; i--) {
+            if (lower(chars[i]) == q[qi]) {
+                if (--qi < 0) {
+                    return i;
+                }
+            }
+        }
+        return start;
+    }
+
+    /**
+     * 路径的得分：整条路径上的最短匹配区间，以及（匹配起于目录部分时）文件名内的匹配取较高者
+     */
+    private int score(int id, int end, char[] q, long queryMask) {
+        int start = offsets[id];
+        int nameStart = nameStarts[id];
+        int from = backward(start, end, q);
+        if (from >= nameStart) {
+            return scoreRange(start, from, end, q) + BONUS_FILE_NAME;
+        }
+        int best = scoreRange(start, from, end, q);
+        if ((nameMasks[id] & queryMask) != queryMask) {
+            return best;
+        }
+        int nameEnd = forward(nameStart, offsets[id + 1], q, 0);
+        if (nameEnd >= 0) {
+            int nameFrom = backward(nameStart, nameEnd, q);
+            best = Math.max(best, scoreRange(start, nameFrom, nameEnd, q) + BONUS_FILE_NAME);
+        }
+        return best;
+    }
+
+    /**
+     * 长度为 length 的查询可能得到的最高分：每个字符都命中路径段开头，且落在文件名内
+     */
+    private static int maxScore(int length) {
+        return length * (SCORE_MATCH + BONUS_SEGMENT_START)
+            + BONUS_SEGMENT_START * (BONUS_FIRST_CHAR_MULTIPLIER - 1) + BONUS_FILE_NAME;
+    }
+
+    private int scoreRange(int start, int from, int end, char[] q) {
+        int score = 0;
+        int qi = 0;
+        int consecutive = 0;
+        int firstBonus = 0;
+        boolean inGap = false;
+        int previous = from > start ? charClass(chars[from - 1]) : CLASS_SEPARATOR;
+        for (int i = from; i < end; i++) {
+            char c = chars[i];
+            int current = charClass(c);
+            if (qi < q.length && lower(c) == q[qi]) {
+                int bonus = bonus(previous, current);
+                if (consecutive == 0) {
+                    firstBonus = bonus;
+                } else {
+                    // 连续命中沿用段首的加分，遇到更强的边界时改用新的边界
+                    if (bonus >= BONUS_BOUNDARY && bonus > firstBonus) {
+                        firstBonus = bonus;
+                    }
+                    bonus = Math.max(Math.max(bonus, firstBonus), BONUS_CONSECUTIVE);
+                }
+                score += SCORE_MATCH + (qi == 0 ? bonus * BONUS_FIRST_CHAR_MULTIPLIER : bonus);
+                consecutive++;
+                inGap = false;
+                qi++;
+            } else {
+                score += inGap ? SCORE_GAP_EXTENSION : SCORE_GAP_START;
+                inGap = true;
+                consecutive = 0;
+            }
+            previous = current;
+        }
+        return score;
+    }
+
+    private static int bonus(int previous, int current) {
+        if (current == CLASS_SEPARATOR || current == CLASS_DELIMITER) {
+            return BONUS_BOUNDARY;
+        }
+        if (previous == CLASS_SEPARATOR) {
+            return BONUS_SEGMENT_START;
+        }
+        if (previous == CLASS_DELIMITER) {
+            return BONUS_BOUNDARY;
+        }
+        if ((previous == CLASS_LOWER && current == CLASS_UPPER)
+                || (previous != CLASS_DIGIT && current == CLASS_DIGIT)) {
+            return BONUS_CAMEL;
+        }
+        return 0;
+    }
+
+    private static int charClass(char c) {
+        return c < 128 ? ASCII_CLASSES[c] : classOf(c);
+    }
+
+    private static int classOf(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return CLASS_LOWER;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return CLASS_UPPER;
+        }
+        if (c >= '0' && c <= '9') {
+            return CLASS_DIGIT;
+        }
+        if (isSeparator(c)) {
+            return CLASS_SEPARATOR;
+        }
+        if (c == '_' || c == '-' || c == '.' || c == ' ') {
+            return CLASS_DELIMITER;
+        }
+        return Character.isUpperCase(c) ? CLASS_UPPER : Character.isLowerCase(c) ? CLASS_LOWER : CLASS_OTHER;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '\\';
+    }
+
+    private static char lower(char c) {
+        return c < 128 ? ASCII_LOWER[c] : Character.toLowerCase(c);
+    }
+
+    private static char[] normalizeQuery(String query) {
+        StringBuilder sb = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(lower(c));
+            }
+        }
+        return sb.toString().toCharArray();
+    }
+
+    /**
+     * 字符袋位掩码：a-z、0-9 与常见分隔符各占一位，其余字符按码点散列到剩余位
+     */
+    static long maskOf(CharSequence text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = lower(text.charAt(i));
+            int bit;
+            if (c >= 'a' && c <= 'z') {
+                bit = c - 'a';
+            } else if (c >= '0' && c <= '9') {
+                bit = 26 + (c - '0');
+            } else if (c == '.') {
+                bit = 36;
+            } else if (c == '-') {
+                bit = 37;
+            } else if (c == '_') {
+                bit = 38;
+            } else if (isSeparator(c)) {
+                bit = 39;
+            } else {
+                bit = 40 + c % 24;
+            }
+            mask |= 1L << bit;
+        }
+        return mask;
+    }
+
+    // ---------------------------------------------------------------- 存储
+
+    private void markRemoved(int id) {
+        removed.set(id);
+        removedCount++;
+        queryCache.clear();
+    }
+
+    private int removedChars() {
+        int total = 0;
+        for (int id = removed.nextSetBit(0); id >= 0 && id < count; id = removed.nextSetBit(id + 1)) {
+            total += offsets[id + 1] - offsets[id];
+        }
+        return total;
+    }
+
+    private void ensureCapacity(int ids, int extraChars) {
+        if (ids >= nameStarts.length) {
+            int capacity = Math.max(ids, nameStarts.length * 2);
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+            nameStarts = Arrays.copyOf(nameStarts, capacity);
+            masks = Arrays.copyOf(masks, capacity);
+            nameMasks = Arrays.copyOf(nameMasks, capacity);
+        }
+        if (charCount + extraChars > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(charCount + extraChars, chars.length * 2));
+        }
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = 0; id < count; id++) {
+            if (!removed.get(id)) {
+                insertSlot(id);
+            }
+        }
+    }
+
+    private void insertSlot(int id) {
+        int mask = slots.length - 1;
+        int i = hash(id) & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = id + 1;
+    }
+
+    private int hash(int id) {
+        int h = 0;
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+            h = 31 * h + chars[i];
+        }
+        return spread(h);
+    }
+
+    private static int hash(String path) {
+        return spread(path.hashCode());
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private boolean equalsPath(int id, String path) {
+        return offsets[id + 1] - offsets[id] == path.length() && regionMatches(offsets[id], path);
+    }
+
+    private boolean regionMatches(int start, String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if (chars[start + i] != path.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 某个查询的命中集合
+     */
+    private static final class Survivors {
+        String query;
+        int[] ids;
+        int[] ends;
+        int size;
+
+        Survivors(int capacity) {
+            this.ids = new int[Math.max(16, capacity)];
+            this.ends = new int[ids.length];
+        }
+
+        void add(int id, int end) {
+            ids[size] = id;
+            ends[size] = end;
+            size++;
+        }
+
+        Survivors trim(String query) {
+            this.query = query;
+            if (ids.length > size * 2 && ids.length > 16) {
+                ids = Arrays.copyOf(ids, size);
+                ends = Arrays.copyOf(ends, size);
+            }
+            return this;
+        }
+    }
+
+    private static final class Candidate {
+        static final Comparator<Candidate> ORDER = Comparator
+            .comparingInt((Candidate c) -> -c.score)
+            .thenComparingInt(c -> c.length)
+            .thenComparingInt(c -> c.id);
+
+        final int id;
+        final int score;
+        final int length;
+
+        Candidate(int id, int score, int length) {
+            this.id = id;
+            this.score = score;
+            this.length = length;
+        }
+    }
+}
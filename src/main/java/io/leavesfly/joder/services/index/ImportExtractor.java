@@ -0,0 +1,230 @@
+package io.leavesfly.joder.services.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 导入语句提取
+ *
+ * <p>把文件之间的依赖表示为「键」：每个文件声明自己可被导入的键（provides），
+ * 并把自己的导入语句换算为需要的键（requires）。两个文件之间有依赖，当且仅当
+ * 前者需要的某个键由后者提供。键带语言前缀，互不混淆：</p>
+ * <ul>
+ *   <li>Java/Kotlin：{@code j:包名.类名} 与 {@code j:包名.*}，类名取自文件名</li>
+ *   <li>TypeScript/JavaScript：{@code js:} 加去掉扩展名的相对路径，{@code index} 文件同时代表所在目录；
+ *       只解析以 {@code .} 开头的相对导入，包名导入忽略</li>
+ *   <li>Python：{@code py:} 加点分模块名，文件提供自身路径的每个后缀（源码根目录未知）；
+ *       相对导入按所在包换算为完整模块名</li>
+ * </ul>
+ *
+ * <p>与 {@link SymbolExtractor} 一样逐行匹配，不做语法分析。</p>
+ */
+final class ImportExtractor {
+
+    private static final Pattern JVM_PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)", Pattern.MULTILINE);
+    private static final Pattern JVM_IMPORT = Pattern.compile(
+        "^\\s*import\\s+(?:static\\s+)?(\\w+(?:\\.\\w+)*(?:\\.\\*)?)", Pattern.MULTILINE);
+
+    private static final Pattern JS_IMPORT = Pattern.compile(
+        "(?:\\bfrom|^\\s*import|\\bimport\\s*\\(|\\brequire\\s*\\()\\s*['\"]([^'\"\\n]+)['\"]", Pattern.MULTILINE);
+    private static final String[] JS_EXTENSIONS = {".ts", ".tsx", ".mts", ".cts", ".js", ".jsx", ".mjs", ".cjs"};
+
+    private static final Pattern PY_IMPORT = Pattern.compile(
+        "^\\s*import\\s+([\\w.]+(?:\\s+as\\s+\\w+)?(?:\\s*,\\s*[\\w.]+(?:\\s+as\\s+\\w+)?)*)", Pattern.MULTILINE);
+    private static final Pattern PY_FROM_IMPORT = Pattern.compile(
+        "^\\s*from\\s+(\\.*[\\w.]*)\\s+import\\s+(?:\\(([^)]*)\\)|([\\w \\t,*]+))", Pattern.MULTILINE);
+
+    private ImportExtractor() {
+    }
+
+    /**
+     * 是否为参与导入图的语言
+     */
+    static boolean isSupported(String fileName) {
+        SymbolExtractor.Language language = SymbolExtractor.languageOf(fileName);
+        return language != null && language != SymbolExtractor.Language.GO;
+    }
+
+    /**
+     * 文件提供的键
+     *
+     * @param path    相对路径，以 / 分隔
+     * @param content 文件内容（Java/Kotlin 需要读取包名）
+     */
+    static List<String> provides(String path, CharSequence content) {
+        List<String> keys = new ArrayList<>();
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        SymbolExtractor.Language language = SymbolExtractor.languageOf(fileName);
+        if (language == null) {
+            return keys;
+        }
+        String base = stripExtension(path);
+        switch (language) {
+            case JAVA:
+            case KOTLIN:
+                Matcher m = JVM_PACKAGE.matcher(content);
+                String pkg = m.find() ? m.group(1) : "";
+                String className = stripExtension(fileName);
+                keys.add("j:" + (pkg.isEmpty() ? className : pkg + "." + className));
+                keys.add("j:" + (pkg.isEmpty() ? "*" : pkg + ".*"));
+                break;
+            case TYPESCRIPT:
+                keys.add("js:" + base);
+                if (base.endsWith("/index") || base.equals("index")) {
+                    keys.add("js:" + parentOf(base));
+                }
+                break;
+            case PYTHON:
+                String module = base.endsWith("/__init__") || base.equals("__init__") ? parentOf(base) : base;
+                String[] parts = module.isEmpty() ? new String[0] : module.split("/");
+                for (int i = 0; i < parts.length; i++) {
+                    keys.add("py:" + String.join(".", Arrays.copyOfRange(parts, i, parts.length)));
+                }
+                break;
+            default:
+                break;
+        }
+        return keys;
+    }
+
+    /**
+     * 文件的导入语句换算出的键，去重后按出现顺序排列
+     */
+    static List<String> requires(String path, CharSequence content) {
+        Set<String> keys = new LinkedHashSet<>();
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        SymbolExtractor.Language language = SymbolExtractor.languageOf(fileName);
+        if (language == null) {
+            return new ArrayList<>();
+        }
+        Matcher m;
+        switch (language) {
+            case JAVA:
+            case KOTLIN:
+                m = JVM_IMPORT.matcher(content);
+                while (m.find()) {
+                    String name = m.group(1);
+                    keys.add("j:" + name);
+                    // 静态导入与内部类：外层类同样是依赖
+                    if (name.endsWith(".*")) {
+                        keys.add("j:" + name.substring(0, name.length() - 2));
+                    } else if (name.lastIndexOf('.') > 0) {
+                        keys.add("j:" + name.substring(0, name.lastIndexOf('.')));
+                    }
+                }
+                break;
+            case TYPESCRIPT:
+                m = JS_IMPORT.matcher(content);
+                String dir = parentOf(path);
+                while (m.find()) {
+                    String specifier = m.group(1);
+                    if (specifier.startsWith("./") || specifier.startsWith("../") || specifier.equals(".")
+                            || specifier.equals("..")) {
+                        String resolved = normalize(dir.isEmpty() ? specifier : dir + "/" + specifier);
+                        if (resolved != null) {
+                            keys.add("js:" + stripJsExtension(resolved));
+                        }
+                    }
+                }
+                break;
+            case PYTHON:
+                m = PY_IMPORT.matcher(content);
+                while (m.find()) {
+                    for (String item : m.group(1).split(",")) {
+                        keys.add("py:" + item.trim().split("\\s+")[0]);
+                    }
+                }
+                m = PY_FROM_IMPORT.matcher(content);
+                String pkg = parentOf(stripExtension(path)).replace('/', '.');
+                while (m.find()) {
+                    String module = resolvePythonModule(m.group(1), pkg);
+                    if (module == null) {
+                        continue;
+                    }
+                    if (!module.isEmpty()) {
+                        keys.add("py:" + module);
+                    }
+                    // from pkg import name：name 可能是子模块
+                    String names = m.group(2) != null ? m.group(2) : m.group(3);
+                    for (String item : names.split(",")) {
+                        String name = item.trim().split("\\s+")[0];
+                        if (!name.isEmpty() && !name.equals("*")) {
+                            keys.add("py:" + (module.isEmpty() ? name : module + "." + name));
+                        }
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * 把相对导入的点号换算为完整模块名；超出根目录时返回 null
+     */
+    private static String resolvePythonModule(String spec, String pkg) {
+        int dots = 0;
+        while (dots < spec.length() && spec.charAt(dots) == '.') {
+            dots++;
+        }
+        if (dots == 0) {
+            return spec;
+        }
+        String base = pkg;
+        for (int i = 1; i < dots; i++) {
+            if (base.isEmpty()) {
+                return null;
+            }
+            int dot = base.lastIndexOf('.');
+            base = dot < 0 ? "" : base.substring(0, dot);
+        }
+        String rest = spec.substring(dots);
+        return base.isEmpty() ? rest : rest.isEmpty() ? base : base + "." + rest;
+    }
+
+    /**
+     * 规范化以 / 分隔的相对路径，超出根目录时返回 null
+     */
+    private static String normalize(String path) {
+        List<String> parts = new ArrayList<>();
+        for (String part : path.split("/")) {
+            if (part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if (part.equals("..")) {
+                if (parts.isEmpty()) {
+                    return null;
+                }
+                parts.remove(parts.size() - 1);
+            } else {
+                parts.add(part);
+            }
+        }
+        return String.join("/", parts);
+    }
+
+    private static String stripJsExtension(String path) {
+        for (String extension : JS_EXTENSIONS) {
+            if (path.endsWith(extension)) {
+                return path.substring(0, path.length() - extension.length());
+            }
+        }
+        return path;
+    }
+
+    private static String stripExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(0, dot) : path;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+}
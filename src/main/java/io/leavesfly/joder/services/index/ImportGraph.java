@@ -0,0 +1,408 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.search.BinaryDetector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 工作区导入依赖图
+ *
+ * <p>由 {@link ImportExtractor} 从 Java/Kotlin 的 import、TypeScript/JavaScript 的 import/require
+ * 与 Python 的 import 语句中提取依赖，持久化在 {@code .joder/index} 下。
+ * 图不保存解析后的边，而是保存「键 → 提供者」与「键 → 需要者」两张表：
+ * 一个文件变化只需替换它自己的键，新增文件后原本解析不到的导入自动连上。</p>
+ *
+ * <p>生命周期由 {@link IndexCoordinator} 统一调度，与其他索引共用一次遍历：首次查询时于后台线程加载
+ * 并按修改时间增量校验，之后随 {@link FileChangeBus} 事件只重新提取变化的文件，周期性后台校验发现外部修改。
+ * 存在未处理的变更时查询返回 null。</p>
+ */
+@Singleton
+public class ImportGraph extends IncrementalIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportGraph.class);
+
+    private static final int MAGIC = 0x4A494D50; // "JIMP"
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "imports.idx";
+
+    private static final long MAX_FILE_BYTES = 1024 * 1024; // 超过该大小的源文件不提取导入
+    private static final int MAX_VISITED = 2000;            // 单次遍历访问的文件上限，避免枢纽文件展开整张图
+
+    /**
+     * 邻居与目标文件的关系
+     */
+    public enum Relation {
+        /** 目标文件直接导入 */
+        DEPENDENCY,
+        /** 直接导入目标文件 */
+        DEPENDENT,
+        /** 经两步及以上到达 */
+        INDIRECT
+    }
+
+    // 以下结构只由索引线程修改，修改时持写锁
+    private final Map<String, FileEntry> files = new HashMap<>();
+    private final Map<String, Set<String>> providers = new HashMap<>();
+    private final Map<String, Set<String>> requirers = new HashMap<>();
+
+    public ImportGraph(String workingDirectory, FileChangeBus fileChangeBus) {
+        this(new IndexCoordinator(workingDirectory, fileChangeBus));
+    }
+
+    @Inject
+    public ImportGraph(IndexCoordinator coordinator) {
+        super(coordinator, "导入图", INDEX_FILE, MAGIC, VERSION);
+    }
+
+    /**
+     * 文件是否属于参与导入图的语言
+     */
+    public static boolean isSupported(Path file) {
+        Path name = file.getFileName();
+        return name != null && ImportExtractor.isSupported(name.toString());
+    }
+
+    /**
+     * 目标文件直接导入的文件
+     *
+     * @param file 文件的绝对路径
+     * @return 按路径排序的绝对路径；索引未就绪或已过期时返回 null，文件未收录时返回空列表
+     */
+    public List<Path> dependencies(Path file) {
+        return direct(file, true);
+    }
+
+    /**
+     * 直接导入目标文件的文件
+     *
+     * @param file 文件的绝对路径
+     * @return 按路径排序的绝对路径；索引未就绪或已过期时返回 null，文件未收录时返回空列表
+     */
+    public List<Path> dependents(Path file) {
+        return direct(file, false);
+    }
+
+    /**
+     * 沿导入与被导入两个方向做广度优先遍历
+     *
+     * @param file        文件的绝对路径
+     * @param maxDistance 最大步数
+     * @return 按距离、路径排序的邻居（不含目标文件）；索引未就绪或已过期时返回 null，文件未收录时返回空列表
+     */
+    public List<Neighbour> neighbourhood(Path file, int maxDistance) {
+        String start = relativePath(file);
+        if (!checkFresh()) {
+            return null;
+        }
+        List<Neighbour> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (start == null || !files.containsKey(start)) {
+                return result;
+            }
+            Map<String, Relation> reached = new LinkedHashMap<>();
+            reached.put(start, null);
+            Deque<String> frontier = new ArrayDeque<>();
+            frontier.add(start);
+            for (int distance = 1; distance <= maxDistance && !frontier.isEmpty(); distance++) {
+                Deque<String> next = new ArrayDeque<>();
+                for (String path : frontier) {
+                    for (int direction = 0; direction < 2; direction++) {
+                        boolean outgoing = direction == 0;
+                        for (String neighbour : neighbours(path, outgoing)) {
+                            if (reached.size() >= MAX_VISITED || reached.containsKey(neighbour)) {
+                                continue;
+                            }
+                            Relation relation = distance > 1 ? Relation.INDIRECT
+                                : outgoing ? Relation.DEPENDENCY : Relation.DEPENDENT;
+                            reached.put(neighbour, relation);
+                            next.add(neighbour);
+                            FileEntry entry = files.get(neighbour);
+                            result.add(new Neighbour(root.resolve(neighbour), distance, relation,
+                                entry.lastModified, entry.size));
+                        }
+                    }
+                }
+                frontier = next;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance)
+            : a.path.compareTo(b.path));
+        return result;
+    }
+
+    /**
+     * 已收录的文件数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return files.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Path> direct(Path file, boolean outgoing) {
+        String path = relativePath(file);
+        if (!checkFresh()) {
+            return null;
+        }
+        List<Path> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (path != null && files.containsKey(path)) {
+                for (String neighbour : neighbours(path, outgoing)) {
+                    result.add(root.resolve(neighbour));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 一个文件的直接邻居，按路径排序；调用方持读锁
+     */
+    private Set<String> neighbours(String path, boolean outgoing) {
+        FileEntry entry = files.get(path);
+        Set<String> result = new TreeSet<>();
+        for (String key : outgoing ? entry.requires : entry.provides) {
+            result.addAll((outgoing ? providers : requirers).getOrDefault(key, Collections.emptySet()));
+        }
+        result.remove(path);
+        return result;
+    }
+
+    private String relativePath(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        return normalized.startsWith(root) ? root.relativize(normalized).toString() : null;
+    }
+
+    @Override
+    protected boolean accepts(Path file) {
+        return isSupported(file);
+    }
+
+    @Override
+    protected boolean isCurrent(String path, long size, long lastModified) {
+        FileEntry existing = files.get(path);
+        return existing != null && existing.lastModified == lastModified && existing.size == size;
+    }
+
+    /**
+     * 重新提取单个文件的导入并替换旧条目；过大、二进制或无法读取的文件只作为节点保留
+     */
+    @Override
+    protected void update(String path, Path file, long size, long lastModified) {
+        String content = null;
+        if (size <= MAX_FILE_BYTES) {
+            try {
+                byte[] bytes = Files.readAllBytes(file);
+                if (!BinaryDetector.isBinary(bytes)) {
+                    content = new String(bytes, StandardCharsets.UTF_8);
+                }
+            } catch (IOException e) {
+                logger.debug("读取文件失败: {}: {}", file, e.getMessage());
+            }
+        }
+        // 提取器按 / 分隔的路径推导模块名
+        String modulePath = path.replace(File.separatorChar, '/');
+        List<String> provides = ImportExtractor.provides(modulePath, content != null ? content : "");
+        List<String> requires = content != null ? ImportExtractor.requires(modulePath, content) : List.of();
+        FileEntry entry = new FileEntry(lastModified, size,
+            provides.toArray(new String[0]), requires.toArray(new String[0]));
+        lock.writeLock().lock();
+        try {
+            unlink(path, files.put(path, entry));
+            link(path, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected Collection<String> paths() {
+        return files.keySet();
+    }
+
+    @Override
+    protected void remove(String path) {
+        unlink(path, files.remove(path));
+    }
+
+    /**
+     * 把条目的键加入两张表；调用方持写锁
+     */
+    private void link(String path, FileEntry entry) {
+        for (String key : entry.provides) {
+            providers.computeIfAbsent(key, k -> new HashSet<>(2)).add(path);
+        }
+        for (String key : entry.requires) {
+            requirers.computeIfAbsent(key, k -> new HashSet<>(2)).add(path);
+        }
+    }
+
+    /**
+     * 从两张表中移除条目的键；调用方持写锁
+     */
+    private void unlink(String path, FileEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (String key : entry.provides) {
+            removeFrom(providers, key, path);
+        }
+        for (String key : entry.requires) {
+            removeFrom(requirers, key, path);
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<String>> table, String key, String path) {
+        Set<String> paths = table.get(key);
+        if (paths != null && paths.remove(path) && paths.isEmpty()) {
+            table.remove(key);
+        }
+    }
+
+    /**
+     * 逐文件写出路径、修改时间与两组键
+     */
+    @Override
+    protected void write(DataOutputStream out) throws IOException {
+        out.writeInt(files.size());
+        for (Map.Entry<String, FileEntry> e : files.entrySet()) {
+            FileEntry entry = e.getValue();
+            out.writeUTF(e.getKey());
+            out.writeLong(entry.lastModified);
+            out.writeLong(entry.size);
+            writeKeys(out, entry.provides);
+            writeKeys(out, entry.requires);
+        }
+    }
+
+    @Override
+    protected void read(DataInputStream in) throws IOException {
+        int fileCount = in.readInt();
+        for (int i = 0; i < fileCount; i++) {
+            String path = in.readUTF();
+            long lastModified = in.readLong();
+            long size = in.readLong();
+            FileEntry entry = new FileEntry(lastModified, size, readKeys(in), readKeys(in));
+            files.put(path, entry);
+            link(path, entry);
+        }
+    }
+
+    @Override
+    protected void clear() {
+        files.clear();
+        providers.clear();
+        requirers.clear();
+    }
+
+    private static void writeKeys(DataOutputStream out, String[] keys) throws IOException {
+        out.writeInt(keys.length);
+        for (String key : keys) {
+            out.writeUTF(key);
+        }
+    }
+
+    private static String[] readKeys(DataInputStream in) throws IOException {
+        String[] keys = new String[in.readInt()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = in.readUTF();
+        }
+        return keys;
+    }
+
+    /**
+     * 遍历到的邻居文件
+     */
+    public static final class Neighbour {
+        private final Path path;
+        private final int distance;
+        private final Relation relation;
+        private final long lastModified;
+        private final long size;
+
+        Neighbour(Path path, int distance, Relation relation, long lastModified, long size) {
+            this.path = path;
+            this.distance = distance;
+            this.relation = relation;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /**
+         * 绝对路径
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * 与目标文件之间的最少步数
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        public Relation getRelation() {
+            return relation;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return path + " (" + relation + ", " + distance + ")";
+        }
+    }
+
+    private static class FileEntry {
+        final long lastModified;
+        final long size;
+        final String[] provides;
+        final String[] requires;
+
+        FileEntry(long lastModified, long size, String[] provides, String[] requires) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.provides = provides;
+            this.requires = requires;
+        }
+    }
+}
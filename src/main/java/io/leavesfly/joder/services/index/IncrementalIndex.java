@@ -0,0 +1,304 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 增量索引基类
+ *
+ * <p>加载、按修改时间校验、响应 {@link FileChangeBus} 事件、定期后台校验与延迟保存
+ * 都由 {@link IndexCoordinator} 在它的线程上统一调度，一次遍历同时更新所有已启动的索引。
+ * 子类只实现单个文件的收录与移除，以及索引内容的序列化。</p>
+ *
+ * <p>索引结构只由协调器线程修改，修改时持 {@link #lock} 的写锁，查询持读锁。
+ * 路径以相对工作目录的字符串表示。</p>
+ */
+public abstract class IncrementalIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalIndex.class);
+
+    protected final Path root;
+    protected final IgnoreRules ignoreRules;
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final IndexCoordinator coordinator;
+    private final String description;
+    private final Path indexFile;
+    private final int magic;
+    private final int version;
+
+    final AtomicBoolean started = new AtomicBoolean(false);
+    volatile boolean ready;
+    private volatile boolean dirty;
+
+    /**
+     * 不持久化的索引
+     *
+     * @param description 日志中使用的索引名称
+     */
+    protected IncrementalIndex(IndexCoordinator coordinator, String description) {
+        this(coordinator, description, null, 0, 0);
+    }
+
+    /**
+     * 持久化在 {@code .joder/index} 下的索引，文件头记录格式标识、版本与工作目录
+     *
+     * @param description   日志中使用的索引名称
+     * @param indexFileName 索引文件名
+     */
+    protected IncrementalIndex(IndexCoordinator coordinator, String description, String indexFileName,
+                               int magic, int version) {
+        this.coordinator = coordinator;
+        this.root = coordinator.getRoot();
+        this.ignoreRules = coordinator.getIgnoreRules();
+        this.description = description;
+        this.indexFile = indexFileName != null
+            ? root.resolve(".joder").resolve("index").resolve(indexFileName)
+            : null;
+        this.magic = magic;
+        this.version = version;
+    }
+
+    /**
+     * 启动后台加载/构建，可重复调用
+     */
+    public void start() {
+        coordinator.start(this);
+    }
+
+    /**
+     * 索引已构建且没有待处理的变更
+     */
+    public boolean isFresh() {
+        return ready && coordinator.isIdle();
+    }
+
+    /**
+     * 同步刷新索引（阻塞直到与磁盘一致）
+     */
+    public void refresh() {
+        coordinator.refresh(this);
+    }
+
+    /**
+     * 停止调度本索引并保存
+     */
+    public void shutdown() {
+        coordinator.shutdown(this);
+    }
+
+    /**
+     * 等待已提交的索引任务全部完成
+     */
+    void awaitIdle() {
+        coordinator.awaitIdle();
+    }
+
+    /**
+     * 首次构建已完成（可能仍有待处理的变更）
+     */
+    protected boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 查询前确认索引可用，距上次校验过久时排队一次后台校验
+     */
+    protected boolean checkFresh() {
+        start();
+        if (!isFresh()) {
+            logger.debug("{}未就绪或已过期", description);
+            return false;
+        }
+        coordinator.verifyIfStale();
+        return true;
+    }
+
+    // ---------------------------------------------------------------- 子类实现
+
+    /**
+     * 文件是否应进入本索引；隐藏、排除与被忽略的路径已由协调器过滤
+     */
+    protected boolean accepts(Path file) {
+        return true;
+    }
+
+    /**
+     * 已收录的条目与给定的大小、修改时间一致
+     */
+    protected abstract boolean isCurrent(String path, long size, long lastModified);
+
+    /**
+     * 收录或重新收录单个文件。在锁外读取文件，修改结构时自行持写锁
+     */
+    protected abstract void update(String path, Path file, long size, long lastModified);
+
+    /**
+     * 已收录的全部路径；只在协调器线程上调用
+     */
+    protected abstract Collection<String> paths();
+
+    /**
+     * 移除单个路径的条目；调用方持写锁
+     */
+    protected abstract void remove(String path);
+
+    /**
+     * 一轮校验结束后回收已删除条目占用的空间
+     */
+    protected void compactIfNeeded() {
+    }
+
+    /**
+     * 写出索引内容（文件头之后的部分）；调用方持读锁
+     */
+    protected void write(DataOutputStream out) throws IOException {
+    }
+
+    /**
+     * 读入索引内容（文件头之后的部分）；调用方持写锁
+     */
+    protected void read(DataInputStream in) throws IOException {
+    }
+
+    /**
+     * 读入失败时清空已读入的部分；调用方持写锁
+     */
+    protected void clear() {
+    }
+
+    // ---------------------------------------------------------------- 协调器调用
+
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * 遍历到文件时调用：大小或修改时间变化时重新收录
+     */
+    void sync(String path, Path file, long size, long lastModified) {
+        if (accepts(file) && !isCurrent(path, size, lastModified)) {
+            update(path, file, size, lastModified);
+            dirty = true;
+        }
+    }
+
+    /**
+     * 收到单个文件的变更事件时调用：无条件重新收录或移除
+     */
+    void replace(String path, Path file, long size, long lastModified) {
+        if (accepts(file)) {
+            update(path, file, size, lastModified);
+            dirty = true;
+        } else {
+            removeUnder(path, null);
+        }
+    }
+
+    /**
+     * 移除前缀下未出现在 seen 中的条目（seen 为 null 时全部移除）
+     */
+    void removeUnder(String prefix, Set<String> seen) {
+        List<String> removed = new ArrayList<>();
+        for (String path : paths()) {
+            if (isUnder(path, prefix) && (seen == null || !seen.contains(path))) {
+                removed.add(path);
+            }
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (String path : removed) {
+                remove(path);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 加载持久化的索引；格式或根目录不匹配时忽略，由后续校验全量重建
+     */
+    void load() {
+        if (indexFile == null || !Files.isRegularFile(indexFile)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != magic || in.readInt() != version || !root.toString().equals(in.readUTF())) {
+                logger.info("{}格式或根目录不匹配，将重建", description);
+                return;
+            }
+            read(in);
+            logger.debug("已加载{}: {} 个文件", description, paths().size());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("加载{}失败，将重建: {}", description, e.getMessage());
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 有未保存的修改时写入临时文件再原子替换
+     */
+    void saveIfDirty() {
+        if (indexFile == null || !dirty || !ready) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(magic);
+                out.writeInt(version);
+                out.writeUTF(root.toString());
+                write(out);
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            logger.debug("{}已保存: {} 个文件", description, paths().size());
+        } catch (IOException e) {
+            logger.warn("保存{}失败: {}", description, e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 路径等于前缀或位于前缀目录之下；空前缀表示整个工作目录
+     */
+    static boolean isUnder(String path, String prefix) {
+        if (prefix.isEmpty() || path.equals(prefix)) {
+            return true;
+        }
+        if (!path.startsWith(prefix) || path.length() <= prefix.length()) {
+            return false;
+        }
+        char next = path.charAt(prefix.length());
+        return next == File.separatorChar || next == '/';
+    }
+}
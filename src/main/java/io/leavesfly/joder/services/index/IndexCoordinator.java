@@ -0,0 +1,425 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作区索引协调器
+ *
+ * <p>三元组、代码词、符号、导入图与模糊查找索引共用一个协调器：一个后台线程、
+ * 一个 {@link FileChangeBus} 订阅和一个保存索引的关闭钩子。完整校验只遍历一次
+ * {@link WorkspaceCatalog} 的内存目录（不可用时遍历文件系统），按修改时间与大小
+ * 把新增或变化的文件分发给各个已启动的索引，消失的文件从各索引中移除。</p>
+ *
+ * <p>索引在首次查询时启动：同一时间启动的索引共用一次加载后的校验遍历。
+ * 存在未处理的变更时各索引视为过期；未经事件总线的外部修改由周期性的后台校验发现。</p>
+ */
+@Singleton
+public class IndexCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexCoordinator.class);
+
+    private static final long REVERIFY_INTERVAL_MS = 60_000;
+    private static final long SAVE_DELAY_MS = 30_000;
+
+    private final Path root;
+    private final WorkspaceCatalog workspaceCatalog;
+    private final IgnoreRules ignoreRules;
+    private final ScheduledExecutorService worker;
+
+    // 已完成首次加载的索引，事件与校验只分发给它们
+    private final List<IncrementalIndex> indexes = new CopyOnWriteArrayList<>();
+    private final Queue<IncrementalIndex> activating = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean activationQueued = new AtomicBoolean(false);
+    private final AtomicBoolean fullSyncQueued = new AtomicBoolean(false);
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private volatile long lastSyncAt;
+    private ScheduledFuture<?> pendingSave;
+
+    /**
+     * 不使用工作区目录，校验时直接遍历文件系统
+     */
+    public IndexCoordinator(String workingDirectory, FileChangeBus fileChangeBus) {
+        this(workingDirectory, fileChangeBus, null, new IgnoreRules(workingDirectory, fileChangeBus));
+    }
+
+    @Inject
+    public IndexCoordinator(@WorkingDirectory String workingDirectory, FileChangeBus fileChangeBus,
+                            WorkspaceCatalog workspaceCatalog) {
+        this(workingDirectory, fileChangeBus, workspaceCatalog, workspaceCatalog.getIgnoreRules());
+    }
+
+    private IndexCoordinator(String workingDirectory, FileChangeBus fileChangeBus,
+                             WorkspaceCatalog workspaceCatalog, IgnoreRules ignoreRules) {
+        this.root = Paths.get(workingDirectory).toAbsolutePath().normalize();
+        this.workspaceCatalog = workspaceCatalog;
+        this.ignoreRules = ignoreRules;
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "IndexCoordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fileChangeBus.subscribe(new FileChangeBus.Listener() {
+            @Override
+            public void onPathChanged(Path path) {
+                if (started.get() && ignoreRules.isRulesFile(path)) {
+                    // 规则缓存已由 IgnoreRules 自行失效，这里重新校验哪些文件应进入索引
+                    queueFullSync();
+                } else if (started.get() && path.startsWith(root)) {
+                    pendingUpdates.incrementAndGet();
+                    submit(() -> {
+                        try {
+                            syncPath(path);
+                        } finally {
+                            pendingUpdates.decrementAndGet();
+                        }
+                        scheduleSave();
+                    });
+                }
+            }
+
+            @Override
+            public void onUnknownChange() {
+                // 有监听时这些修改随后以单个路径的事件到达，无需完整校验
+                if (started.get() && !fileChangeBus.isWatched(root)) {
+                    queueFullSync();
+                }
+            }
+
+            @Override
+            public void onWatchOverflow() {
+                if (started.get()) {
+                    queueFullSync();
+                }
+            }
+        });
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    IgnoreRules getIgnoreRules() {
+        return ignoreRules;
+    }
+
+    /**
+     * 没有排队中或正在执行的更新
+     */
+    boolean isIdle() {
+        return pendingUpdates.get() == 0;
+    }
+
+    /**
+     * 启动索引：加载持久化内容后随下一次校验遍历构建，可重复调用
+     */
+    void start(IncrementalIndex index) {
+        if (!index.started.compareAndSet(false, true)) {
+            return;
+        }
+        if (started.compareAndSet(false, true)) {
+            if (workspaceCatalog != null) {
+                workspaceCatalog.start();
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(this::saveAll, "IndexCoordinator-save"));
+        }
+        activating.add(index);
+        if (activationQueued.compareAndSet(false, true)) {
+            pendingUpdates.incrementAndGet();
+            submit(() -> {
+                activationQueued.set(false);
+                List<IncrementalIndex> activated;
+                try {
+                    activated = activatePending();
+                } finally {
+                    pendingUpdates.decrementAndGet();
+                }
+                for (IncrementalIndex each : activated) {
+                    each.saveIfDirty();
+                }
+            });
+        }
+    }
+
+    /**
+     * 同步刷新（阻塞直到与磁盘一致）；有工作区目录时先刷新目录，忽略规则随之重新读取
+     */
+    void refresh(IncrementalIndex index) {
+        start(index);
+        if (workspaceCatalog != null) {
+            workspaceCatalog.refresh();
+        } else {
+            ignoreRules.invalidateAll();
+        }
+        queueFullSync();
+        awaitIdle();
+    }
+
+    /**
+     * 距上次完整校验过久时排队一次后台校验，不阻断查询
+     */
+    void verifyIfStale() {
+        if (System.currentTimeMillis() - lastSyncAt > REVERIFY_INTERVAL_MS) {
+            lastSyncAt = System.currentTimeMillis();
+            submit(() -> {
+                syncSubtree(root, indexes);
+                scheduleSave();
+            });
+        }
+    }
+
+    /**
+     * 等待已提交的索引任务全部完成
+     */
+    void awaitIdle() {
+        try {
+            worker.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.debug("等待索引任务失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 停止调度索引并保存；最后一个索引停止后关闭索引线程
+     */
+    void shutdown(IncrementalIndex index) {
+        indexes.remove(index);
+        activating.remove(index);
+        if (indexes.isEmpty() && activating.isEmpty()) {
+            worker.shutdownNow();
+        }
+        index.saveIfDirty();
+    }
+
+    private void submit(Runnable task) {
+        try {
+            worker.execute(task);
+        } catch (Exception e) {
+            logger.debug("索引任务提交失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 加载等待启动的索引，用一次遍历完成它们的校验
+     */
+    private List<IncrementalIndex> activatePending() {
+        List<IncrementalIndex> batch = new ArrayList<>();
+        for (IncrementalIndex index = activating.poll(); index != null; index = activating.poll()) {
+            index.load();
+            batch.add(index);
+        }
+        if (!batch.isEmpty()) {
+            syncSubtree(root, batch);
+            for (IncrementalIndex index : batch) {
+                index.ready = true;
+                indexes.add(index);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 排队一次完整校验，期间索引视为过期；已有排队中的校验时合并
+     */
+    private void queueFullSync() {
+        if (fullSyncQueued.compareAndSet(false, true)) {
+            pendingUpdates.incrementAndGet();
+            submit(() -> {
+                fullSyncQueued.set(false);
+                try {
+                    syncSubtree(root, indexes);
+                } finally {
+                    pendingUpdates.decrementAndGet();
+                }
+                scheduleSave();
+            });
+        }
+    }
+
+    private void syncPath(Path path) {
+        if (Files.isDirectory(path)) {
+            syncSubtree(path, indexes);
+            return;
+        }
+        Path relative = root.relativize(path);
+        BasicFileAttributes attrs = null;
+        try {
+            if (Files.isRegularFile(path) && !hasSkippedSegment(relative) && !ignoreRules.isIgnored(path, false)) {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            }
+        } catch (IOException e) {
+            logger.debug("读取文件属性失败: {}: {}", path, e.getMessage());
+        }
+        String relativePath = relative.toString();
+        for (IncrementalIndex index : indexes) {
+            if (attrs != null) {
+                index.replace(relativePath, path, attrs.size(), attrs.lastModifiedTime().toMillis());
+            } else {
+                index.removeUnder(relativePath, null);
+            }
+        }
+    }
+
+    /**
+     * 按修改时间与大小校验子树：新增或变化的文件分发给各索引重新收录，消失的文件移除
+     */
+    private void syncSubtree(Path subtree, List<IncrementalIndex> targets) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        IgnoreRules.Filter filter = ignoreRules.filterFor(root);
+        Set<String> seen = new HashSet<>();
+        FileSink sink = (file, size, lastModified) -> {
+            if (filter.skip(file, false)) {
+                return;
+            }
+            String path = root.relativize(file).toString();
+            seen.add(path);
+            for (IncrementalIndex index : targets) {
+                index.sync(path, file, size, lastModified);
+            }
+        };
+
+        List<WorkspaceCatalog.Entry> cataloged = listCatalogFiles(subtree, filter);
+        if (cataloged != null) {
+            for (WorkspaceCatalog.Entry entry : cataloged) {
+                sink.accept(entry.getPath(), entry.getSize(), entry.getLastModified());
+            }
+        } else {
+            walkFileSystem(subtree, filter, sink);
+        }
+
+        String prefix = subtree.equals(root) ? "" : root.relativize(subtree).toString();
+        for (IncrementalIndex index : targets) {
+            index.removeUnder(prefix, seen);
+            index.compactIfNeeded();
+        }
+        if (subtree.equals(root)) {
+            lastSyncAt = System.currentTimeMillis();
+            logger.debug("索引校验完成: {} 个文件, {} 个索引, 耗时 {}ms",
+                seen.size(), targets.size(), lastSyncAt - begin);
+        }
+    }
+
+    /**
+     * 从工作区目录取子树下的文件；先收集再处理，不在持有目录读锁时读取文件内容
+     *
+     * @return 目录不可用时返回 null
+     */
+    private List<WorkspaceCatalog.Entry> listCatalogFiles(Path subtree, IgnoreRules.Filter filter) {
+        if (workspaceCatalog == null) {
+            return null;
+        }
+        List<WorkspaceCatalog.Entry> files = new ArrayList<>();
+        boolean available = workspaceCatalog.walk(subtree, new WorkspaceCatalog.Visitor() {
+            @Override
+            public FileVisitResult preVisitDirectory(WorkspaceCatalog.Entry directory) {
+                return directory.getPath().equals(root) || !filter.skip(directory.getPath(), true)
+                    ? FileVisitResult.CONTINUE
+                    : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(WorkspaceCatalog.Entry file) {
+                files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return available ? files : null;
+    }
+
+    private void walkFileSystem(Path subtree, IgnoreRules.Filter filter, FileSink sink) {
+        try {
+            Files.walkFileTree(subtree, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return dir.equals(root) || !filter.skip(dir, true)
+                        ? FileVisitResult.CONTINUE
+                        : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    sink.accept(file, attrs.size(), attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // 子树已被删除，由调用方统一移除
+        } catch (IOException e) {
+            logger.warn("索引校验失败: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void scheduleSave() {
+        if (pendingSave == null || pendingSave.isDone()) {
+            try {
+                pendingSave = worker.schedule(this::saveAll, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                logger.debug("索引保存调度失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void saveAll() {
+        for (IncrementalIndex index : indexes) {
+            index.saveIfDirty();
+        }
+    }
+
+    /**
+     * 相对路径中是否含有隐藏或排除的段
+     */
+    static boolean hasSkippedSegment(Path relative) {
+        for (Path segment : relative) {
+            String name = segment.toString();
+            if (!name.isEmpty() && WorkspaceCatalog.isSkippedName(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface FileSink {
+        void accept(Path file, long size, long lastModified);
+    }
+}
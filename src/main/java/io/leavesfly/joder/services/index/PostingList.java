@@ -0,0 +1,103 @@
+package io.leavesfly.joder.services.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 压缩倒排列表
+ *
+ * <p>文件 ID 按递增顺序追加，以变长整数编码相邻差值存储，
+ * 稠密列表每个 ID 约占 1 字节。</p>
+ */
+class PostingList {
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int count;
+    private int lastId = -1;
+
+    /**
+     * 追加文件 ID，必须大于已追加的所有 ID
+     */
+    void add(int id) {
+        if (id <= lastId) {
+            throw new IllegalArgumentException("文件 ID 必须递增: " + id + " <= " + lastId);
+        }
+        int delta = id - lastId;
+        ensureCapacity(length + 5);
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        lastId = id;
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * 占用的字节数
+     */
+    int byteSize() {
+        return data.length;
+    }
+
+    /**
+     * 解码为递增的 ID 数组
+     */
+    int[] toArray() {
+        int[] ids = new int[count];
+        int pos = 0;
+        int id = -1;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            id += delta;
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * 释放多余容量
+     */
+    void trim() {
+        if (data.length > length) {
+            data = Arrays.copyOf(data, length);
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(lastId);
+        out.writeInt(length);
+        out.write(data, 0, length);
+    }
+
+    static PostingList readFrom(DataInputStream in) throws IOException {
+        PostingList list = new PostingList();
+        list.count = in.readInt();
+        list.lastId = in.readInt();
+        list.length = in.readInt();
+        list.data = new byte[list.length];
+        in.readFully(list.data);
+        return list;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+        }
+    }
+}
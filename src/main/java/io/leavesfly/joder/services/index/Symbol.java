@@ -0,0 +1,65 @@
+package io.leavesfly.joder.services.index;
+
+/**
+ * 源码中的一个符号声明
+ */
+public final class Symbol {
+
+    private final String name;
+    private final SymbolKind kind;
+    private final String path;
+    private final int startLine;
+    private final int endLine;
+    private final String container;
+
+    Symbol(String name, SymbolKind kind, String path, int startLine, int endLine, String container) {
+        this.name = name;
+        this.kind = kind;
+        this.path = path;
+        this.startLine = startLine;
+        this.endLine = endLine;
+        this.container = container;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SymbolKind getKind() {
+        return kind;
+    }
+
+    /**
+     * 相对工作目录的文件路径
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 声明所在行（从 1 开始）
+     */
+    public int getStartLine() {
+        return startLine;
+    }
+
+    /**
+     * 声明体结束的行；没有声明体时与起始行相同
+     */
+    public int getEndLine() {
+        return endLine;
+    }
+
+    /**
+     * 直接外层的类、接口或枚举名，顶层符号为 null
+     */
+    public String getContainer() {
+        return container;
+    }
+
+    @Override
+    public String toString() {
+        return kind.getDisplayName() + " " + (container != null ? container + "." : "") + name
+            + " " + path + ":" + startLine + "-" + endLine;
+    }
+}
@@ -0,0 +1,650 @@
+package io.leavesfly.joder.services.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 轻量级符号提取
+ *
+ * <p>不做完整语法分析：先用一个小型词法状态机把注释去掉、把字符串内容替换为空白（保留行结构），
+ * 再逐行用正则识别声明。Java、Kotlin、TypeScript/JavaScript 与 Go 按花括号深度确定声明体的范围，
+ * 只在类体的直接成员层识别方法与字段，函数体内的语句不会被误认为声明；
+ * Python 按缩进确定范围。括号未闭合的续行不参与识别。</p>
+ *
+ * <p>没有声明体的声明（接口方法、字段、Kotlin 表达式体函数）在分号处或下一个同层声明之前结束。</p>
+ */
+final class SymbolExtractor {
+
+    enum Language { JAVA, KOTLIN, TYPESCRIPT, PYTHON, GO }
+
+    private static final String IDENTIFIER = "[A-Za-z_$][\\w$]*";
+
+    private static final Pattern ANNOTATIONS = Pattern.compile("^(?:@(?!interface\\b)[\\w.:]+(?:\\([^)]*\\))?\\s*)+");
+
+    // Java
+    private static final String JAVA_MODIFIERS = "(?:(?:public|protected|private|static|abstract|final|sealed|non-sealed"
+        + "|strictfp|synchronized|native|default|transient|volatile)\\s+)*";
+    private static final Pattern JAVA_TYPE = Pattern.compile(
+        JAVA_MODIFIERS + "(class|interface|enum|record|@interface)\\s+(" + IDENTIFIER + ")");
+    private static final Pattern JAVA_METHOD = Pattern.compile(
+        JAVA_MODIFIERS + "(?:<[^>]*>\\s*)?([\\w$.<>\\[\\]?,\\s]+?)\\s+(" + IDENTIFIER + ")\\s*\\(");
+    private static final Pattern JAVA_CONSTRUCTOR = Pattern.compile(
+        JAVA_MODIFIERS + "(?:<[^>]*>\\s*)?(" + IDENTIFIER + ")\\s*\\(");
+    private static final Pattern JAVA_FIELD = Pattern.compile(
+        JAVA_MODIFIERS + "([\\w$.<>\\[\\]?,\\s]+?)\\s+(" + IDENTIFIER + ")\\s*(?:=|;|,|$)");
+    private static final Pattern ENUM_CONSTANT = Pattern.compile("(" + IDENTIFIER + ")\\s*(?:\\(.*|\\{.*|=.*)?");
+
+    // Kotlin
+    private static final String KOTLIN_MODIFIERS = "(?:(?:public|private|protected|internal|open|abstract|sealed|data"
+        + "|enum|annotation|inner|value|inline|companion|expect|actual|final|override|suspend|operator|infix"
+        + "|tailrec|external|const|lateinit)\\s+)*";
+    private static final Pattern KOTLIN_TYPE = Pattern.compile(
+        "(" + KOTLIN_MODIFIERS + ")(fun\\s+interface|class|interface|object)\\b(?:\\s+(" + IDENTIFIER + "))?");
+    private static final Pattern KOTLIN_FUNCTION = Pattern.compile(
+        KOTLIN_MODIFIERS + "fun\\s+(?:<[^>]*>\\s*)?(?:[\\w<>?,\\s]+\\.)?(" + IDENTIFIER + ")\\s*\\(");
+    private static final Pattern KOTLIN_PROPERTY = Pattern.compile(
+        KOTLIN_MODIFIERS + "(?:val|var)\\s+(?:<[^>]*>\\s*)?(?:[\\w<>?,\\s]+\\.)?(" + IDENTIFIER + ")");
+
+    // TypeScript / JavaScript
+    private static final Pattern TS_TYPE = Pattern.compile(
+        "(?:export\\s+)?(?:default\\s+)?(?:declare\\s+)?(?:abstract\\s+)?(?:const\\s+)?(class|interface|enum|type)\\s+("
+            + IDENTIFIER + ")");
+    private static final Pattern TS_FUNCTION = Pattern.compile(
+        "(?:export\\s+)?(?:default\\s+)?(?:declare\\s+)?(?:async\\s+)?function\\s*\\*?\\s*(" + IDENTIFIER + ")");
+    private static final Pattern TS_VARIABLE = Pattern.compile(
+        "(?:export\\s+)?(?:declare\\s+)?(?:const|let|var)\\s+(" + IDENTIFIER + ")\\s*(?::[^=]+)?=\\s*(.*)");
+    private static final Pattern TS_FUNCTION_VALUE = Pattern.compile(
+        "(?:async\\s+)?(?:function\\b|\\([^)]*\\)\\s*(?::[^=]+)?=>|" + IDENTIFIER + "\\s*=>)");
+    private static final String TS_MEMBER_MODIFIERS = "(?:(?:public|private|protected|static|readonly|declare|abstract"
+        + "|override|accessor|async|get|set)\\s+)*";
+    private static final Pattern TS_METHOD = Pattern.compile(
+        TS_MEMBER_MODIFIERS + "\\*?\\s*(#?" + IDENTIFIER + ")\\s*[?!]?\\s*(?:<[^>]*>)?\\s*\\(");
+    private static final Pattern TS_FIELD = Pattern.compile(
+        TS_MEMBER_MODIFIERS + "(#?" + IDENTIFIER + ")\\s*[?!]?\\s*(?::|=|;|,|$)");
+
+    // Go
+    private static final Pattern GO_METHOD = Pattern.compile(
+        "func\\s+\\(\\s*(?:[A-Za-z_]\\w*\\s+)?\\*?\\s*([A-Za-z_]\\w*)(?:\\[[^\\]]*\\])?\\s*\\)\\s*([A-Za-z_]\\w*)");
+    private static final Pattern GO_FUNCTION = Pattern.compile("func\\s+([A-Za-z_]\\w*)");
+    private static final Pattern GO_TYPE = Pattern.compile(
+        "type\\s+([A-Za-z_]\\w*)(?:\\[[^\\]]*\\])?\\s*=?\\s*(struct|interface)?\\b");
+    private static final Pattern GO_VARIABLE = Pattern.compile("(?:var|const)\\s+([A-Za-z_]\\w*)");
+    private static final Pattern GO_FIELD = Pattern.compile("([A-Za-z_]\\w*)(?:\\s*,\\s*[A-Za-z_]\\w*)*\\s+\\S");
+    private static final Pattern GO_INTERFACE_METHOD = Pattern.compile("([A-Za-z_]\\w*)\\s*\\(");
+
+    // Python
+    private static final Pattern PY_DEF = Pattern.compile("(?:async\\s+)?def\\s+([A-Za-z_]\\w*)");
+    private static final Pattern PY_CLASS = Pattern.compile("class\\s+([A-Za-z_]\\w*)");
+    private static final Pattern PY_ASSIGNMENT = Pattern.compile(
+        "([A-Za-z_]\\w*)\\s*(?::\\s*[^=]+?)?\\s*=(?!=)|([A-Za-z_]\\w*)\\s*:\\s*[^=]+$");
+
+    /** 不可能是声明名或类型名的关键字 */
+    private static final Set<String> KEYWORDS = Set.of(
+        "if", "else", "for", "while", "do", "switch", "case", "catch", "try", "finally", "return", "new", "throw",
+        "throws", "break", "continue", "yield", "await", "import", "package", "export", "from", "assert", "super",
+        "this", "goto", "default", "with", "pass", "raise", "del", "global", "nonlocal", "lambda", "not", "and",
+        "or", "in", "is", "elif", "except", "function", "typeof", "instanceof", "delete", "go", "defer",
+        "select", "range", "when", "synchronized", "extends", "implements"
+    );
+
+    private SymbolExtractor() {
+    }
+
+    /**
+     * 按扩展名识别语言，不支持时返回 null
+     */
+    static Language languageOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        switch (fileName.substring(dot + 1).toLowerCase(Locale.ROOT)) {
+            case "java":
+                return Language.JAVA;
+            case "kt":
+            case "kts":
+                return Language.KOTLIN;
+            case "ts":
+            case "tsx":
+            case "mts":
+            case "cts":
+            case "js":
+            case "jsx":
+            case "mjs":
+            case "cjs":
+                return Language.TYPESCRIPT;
+            case "py":
+            case "pyi":
+                return Language.PYTHON;
+            case "go":
+                return Language.GO;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 提取文件中的符号，按起始行排序
+     *
+     * @param path    相对路径，用于识别语言并记入符号
+     * @param content 文件内容
+     * @return 符号列表；不支持的语言返回空列表
+     */
+    static List<Symbol> extract(String path, CharSequence content) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        Language language = languageOf(path.substring(slash + 1));
+        if (language == null) {
+            return List.of();
+        }
+        String[] lines = codeLines(content, language);
+        List<Symbol> symbols = language == Language.PYTHON
+            ? extractIndented(path, lines)
+            : extractBraced(path, lines, language);
+        // 同一行上外层声明（范围更大）在前
+        symbols.sort(Comparator.comparingInt(Symbol::getStartLine)
+            .thenComparing(Comparator.comparingInt(Symbol::getEndLine).reversed())
+            .thenComparing(symbol -> !symbol.getKind().isContainer()));
+        return symbols;
+    }
+
+    /**
+     * 去掉注释、把字符串内容替换为空白，按行返回
+     */
+    static String[] codeLines(CharSequence text, Language language) {
+        boolean python = language == Language.PYTHON;
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        final int code = 0;
+        final int lineComment = 1;
+        final int blockComment = 2;
+        final int string = 3;
+        int state = code;
+        char quote = 0;
+        boolean triple = false;
+        boolean multiline = false;
+        boolean escapes = true;
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            char next = i + 1 < n ? text.charAt(i + 1) : 0;
+            if (c == '\n') {
+                lines.add(line.toString());
+                line.setLength(0);
+                if (state == lineComment || (state == string && !multiline)) {
+                    state = code;
+                }
+                continue;
+            }
+            if (c == '\r') {
+                continue;
+            }
+            if (state == code) {
+                if (python ? c == '#' : c == '/' && next == '/') {
+                    state = lineComment;
+                } else if (!python && c == '/' && next == '*') {
+                    state = blockComment;
+                    line.append("  ");
+                    i++;
+                } else if (c == '"' || c == '\'' || (c == '`' && !python)) {
+                    quote = c;
+                    triple = c != '`' && (python || (c == '"' && language != Language.GO && language != Language.TYPESCRIPT))
+                        && i + 2 < n && next == c && text.charAt(i + 2) == c;
+                    multiline = triple || c == '`';
+                    escapes = !(c == '`' && language == Language.GO) && !(triple && language == Language.KOTLIN);
+                    state = string;
+                    line.append(c);
+                    if (triple) {
+                        line.append(c).append(c);
+                        i += 2;
+                    }
+                } else {
+                    line.append(c);
+                }
+            } else if (state == blockComment) {
+                if (c == '*' && next == '/') {
+                    state = code;
+                    line.append("  ");
+                    i++;
+                } else {
+                    line.append(' ');
+                }
+            } else if (state == string) {
+                if (escapes && c == '\\' && next != '\n') {
+                    line.append("  ");
+                    i++;
+                } else if (c == quote && (!triple || (i + 2 < n && next == quote && text.charAt(i + 2) == quote))) {
+                    state = code;
+                    line.append(c);
+                    if (triple) {
+                        line.append(c).append(c);
+                        i += 2;
+                    }
+                } else {
+                    line.append(' ');
+                }
+            }
+        }
+        lines.add(line.toString());
+        return lines.toArray(new String[0]);
+    }
+
+    /**
+     * 花括号语言：按深度确定声明体范围
+     */
+    private static List<Symbol> extractBraced(String path, String[] lines, Language language) {
+        List<Symbol> symbols = new ArrayList<>();
+        Deque<Open> stack = new ArrayDeque<>();
+        int depth = 0;
+        int parens = 0;
+        // 进入花括号时保存外层的括号计数（如 lambda 体），闭合时恢复
+        Deque<Integer> outerParens = new ArrayDeque<>();
+        int lastCodeLine = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String code = lines[i];
+            int lineNumber = i + 1;
+            String statement = code.trim();
+            if (language != Language.GO) {
+                statement = ANNOTATIONS.matcher(statement).replaceFirst("");
+            }
+            if (!statement.isEmpty() && parens == 0) {
+                Open owner = memberOwner(stack, depth);
+                List<String> constants = owner != null && owner.kind == SymbolKind.ENUM
+                    ? enumConstants(statement, owner.name) : List.of();
+                for (String constant : constants) {
+                    symbols.add(new Symbol(constant, SymbolKind.FIELD, path, lineNumber, lineNumber, owner.name));
+                }
+                Declaration declaration = constants.isEmpty() ? match(language, statement, owner, depth) : null;
+                if (declaration != null) {
+                    // 没有声明体的待定声明到此结束
+                    while (!stack.isEmpty() && !stack.peek().opened && stack.peek().depth >= depth) {
+                        Open pending = stack.pop();
+                        symbols.add(pending.toSymbol(path, Math.max(pending.startLine, lastCodeLine)));
+                    }
+                    String container = declaration.container != null ? declaration.container : enclosingContainer(stack);
+                    if (declaration.hasBody) {
+                        stack.push(new Open(declaration.name, declaration.kind, lineNumber, depth, container));
+                    } else {
+                        symbols.add(new Symbol(declaration.name, declaration.kind, path, lineNumber, lineNumber, container));
+                    }
+                }
+            }
+
+            for (int k = 0; k < code.length(); k++) {
+                char c = code.charAt(k);
+                if (c == '(' || c == '[') {
+                    parens++;
+                } else if (c == ')' || c == ']') {
+                    parens = Math.max(0, parens - 1);
+                } else if (c == '{') {
+                    Open top = stack.peek();
+                    if (top != null && !top.opened && top.depth == depth) {
+                        top.opened = true;
+                        if (top.kind == SymbolKind.ENUM) {
+                            // 与花括号同行的枚举常量，如 enum Mode { FAST, SLOW }
+                            for (String constant : enumConstants(code.substring(k + 1), top.name)) {
+                                symbols.add(new Symbol(constant, SymbolKind.FIELD, path, lineNumber, lineNumber, top.name));
+                            }
+                        }
+                    }
+                    depth++;
+                    outerParens.push(parens);
+                    parens = 0;
+                } else if (c == '}') {
+                    depth = Math.max(0, depth - 1);
+                    parens = outerParens.isEmpty() ? 0 : outerParens.pop();
+                    while (!stack.isEmpty() && stack.peek().depth >= depth
+                            && (stack.peek().opened || stack.peek().depth > depth)) {
+                        Open closed = stack.pop();
+                        symbols.add(closed.toSymbol(path, lineNumber));
+                    }
+                } else if (c == ';' && parens == 0) {
+                    Open top = stack.peek();
+                    if (top != null && !top.opened && top.depth == depth) {
+                        stack.pop();
+                        symbols.add(top.toSymbol(path, lineNumber));
+                    }
+                }
+            }
+            if (!code.isBlank()) {
+                lastCodeLine = lineNumber;
+            }
+        }
+        while (!stack.isEmpty()) {
+            Open open = stack.pop();
+            symbols.add(open.toSymbol(path, open.opened ? lastCodeLine : Math.max(open.startLine, lastCodeLine)));
+        }
+        return symbols;
+    }
+
+    /**
+     * 识别一行是否为声明
+     *
+     * @param owner 该行处于某个类体的直接成员层时为该类，否则为 null
+     * @param depth 行首的花括号深度
+     */
+    private static Declaration match(Language language, String statement, Open owner, int depth) {
+        switch (language) {
+            case JAVA:
+                return matchJava(statement, owner);
+            case KOTLIN:
+                return matchKotlin(statement, owner, depth);
+            case TYPESCRIPT:
+                return matchTypeScript(statement, owner, depth);
+            case GO:
+                return matchGo(statement, owner, depth);
+            default:
+                return null;
+        }
+    }
+
+    private static Declaration matchJava(String statement, Open owner) {
+        Matcher m = JAVA_TYPE.matcher(statement);
+        if (m.lookingAt()) {
+            String keyword = m.group(1);
+            SymbolKind kind = keyword.equals("interface") || keyword.equals("@interface") ? SymbolKind.INTERFACE
+                : keyword.equals("enum") ? SymbolKind.ENUM : SymbolKind.CLASS;
+            return new Declaration(m.group(2), kind, true);
+        }
+        if (owner == null) {
+            return null;
+        }
+        m = JAVA_CONSTRUCTOR.matcher(statement);
+        if (m.lookingAt() && m.group(1).equals(owner.name)) {
+            return new Declaration(m.group(1), SymbolKind.METHOD, true);
+        }
+        m = JAVA_METHOD.matcher(statement);
+        if (m.lookingAt() && isTypeName(m.group(1)) && !KEYWORDS.contains(m.group(2))) {
+            return new Declaration(m.group(2), SymbolKind.METHOD, true);
+        }
+        m = JAVA_FIELD.matcher(statement);
+        if (m.lookingAt() && isTypeName(m.group(1)) && !KEYWORDS.contains(m.group(2))) {
+            return new Declaration(m.group(2), SymbolKind.FIELD, false);
+        }
+        return null;
+    }
+
+    private static Declaration matchKotlin(String statement, Open owner, int depth) {
+        Matcher m = KOTLIN_TYPE.matcher(statement);
+        if (m.lookingAt() && (m.group(3) != null || m.group(1).contains("companion"))) {
+            String modifiers = m.group(1);
+            String keyword = m.group(2);
+            String name = m.group(3) != null ? m.group(3) : "Companion";
+            SymbolKind kind = keyword.endsWith("interface") ? SymbolKind.INTERFACE
+                : modifiers.contains("enum") ? SymbolKind.ENUM : SymbolKind.CLASS;
+            return new Declaration(name, kind, true);
+        }
+        m = KOTLIN_FUNCTION.matcher(statement);
+        if (m.lookingAt()) {
+            return new Declaration(m.group(1), owner != null ? SymbolKind.METHOD : SymbolKind.FUNCTION, true);
+        }
+        if (owner != null || depth == 0) {
+            m = KOTLIN_PROPERTY.matcher(statement);
+            if (m.lookingAt()) {
+                return new Declaration(m.group(1), owner != null ? SymbolKind.FIELD : SymbolKind.VARIABLE, false);
+            }
+        }
+        return null;
+    }
+
+    private static Declaration matchTypeScript(String statement, Open owner, int depth) {
+        Matcher m = TS_TYPE.matcher(statement);
+        if (m.lookingAt()) {
+            String keyword = m.group(1);
+            SymbolKind kind = keyword.equals("class") ? SymbolKind.CLASS
+                : keyword.equals("interface") ? SymbolKind.INTERFACE
+                : keyword.equals("enum") ? SymbolKind.ENUM : SymbolKind.TYPE;
+            return new Declaration(m.group(2), kind, true);
+        }
+        m = TS_FUNCTION.matcher(statement);
+        if (m.lookingAt()) {
+            return new Declaration(m.group(1), SymbolKind.FUNCTION, true);
+        }
+        if (depth == 0) {
+            m = TS_VARIABLE.matcher(statement);
+            if (m.lookingAt()) {
+                boolean function = TS_FUNCTION_VALUE.matcher(m.group(2)).lookingAt();
+                return new Declaration(m.group(1), function ? SymbolKind.FUNCTION : SymbolKind.VARIABLE, function);
+            }
+            return null;
+        }
+        if (owner == null) {
+            return null;
+        }
+        if (owner.kind == SymbolKind.ENUM) {
+            return null;
+        }
+        m = TS_METHOD.matcher(statement);
+        if (m.lookingAt() && !KEYWORDS.contains(m.group(1))) {
+            return new Declaration(m.group(1), SymbolKind.METHOD, true);
+        }
+        m = TS_FIELD.matcher(statement);
+        if (m.lookingAt() && !KEYWORDS.contains(m.group(1))) {
+            return new Declaration(m.group(1), SymbolKind.FIELD, false);
+        }
+        return null;
+    }
+
+    private static Declaration matchGo(String statement, Open owner, int depth) {
+        Matcher m;
+        if (depth == 0) {
+            if ((m = GO_METHOD.matcher(statement)).lookingAt()) {
+                return new Declaration(m.group(2), SymbolKind.METHOD, true, m.group(1));
+            }
+            if ((m = GO_FUNCTION.matcher(statement)).lookingAt()) {
+                return new Declaration(m.group(1), SymbolKind.FUNCTION, true);
+            }
+            if ((m = GO_TYPE.matcher(statement)).lookingAt()) {
+                String keyword = m.group(2);
+                if (keyword == null) {
+                    return new Declaration(m.group(1), SymbolKind.TYPE, false);
+                }
+                return new Declaration(m.group(1),
+                    keyword.equals("struct") ? SymbolKind.CLASS : SymbolKind.INTERFACE, true);
+            }
+            if ((m = GO_VARIABLE.matcher(statement)).lookingAt()) {
+                return new Declaration(m.group(1), SymbolKind.VARIABLE, false);
+            }
+            return null;
+        }
+        if (owner == null) {
+            return null;
+        }
+        if (owner.kind == SymbolKind.INTERFACE) {
+            m = GO_INTERFACE_METHOD.matcher(statement);
+            return m.lookingAt() ? new Declaration(m.group(1), SymbolKind.METHOD, false) : null;
+        }
+        m = GO_FIELD.matcher(statement);
+        return m.lookingAt() && !KEYWORDS.contains(m.group(1))
+            ? new Declaration(m.group(1), SymbolKind.FIELD, false) : null;
+    }
+
+    /**
+     * Python：按缩进确定声明体范围
+     */
+    private static List<Symbol> extractIndented(String path, String[] lines) {
+        List<Symbol> symbols = new ArrayList<>();
+        Deque<Open> stack = new ArrayDeque<>();
+        int brackets = 0;
+        int lastCodeLine = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String code = lines[i];
+            int lineNumber = i + 1;
+            if (code.isBlank()) {
+                continue;
+            }
+            if (brackets == 0) {
+                int indent = indentOf(code);
+                while (!stack.isEmpty() && stack.peek().depth >= indent) {
+                    symbols.add(stack.pop().toSymbol(path, lastCodeLine));
+                }
+                String statement = code.trim();
+                Open top = stack.peek();
+                String container = top != null && top.kind == SymbolKind.CLASS ? top.name : null;
+                Matcher m;
+                if ((m = PY_DEF.matcher(statement)).lookingAt()) {
+                    SymbolKind kind = container != null ? SymbolKind.METHOD : SymbolKind.FUNCTION;
+                    stack.push(new Open(m.group(1), kind, lineNumber, indent, container));
+                } else if ((m = PY_CLASS.matcher(statement)).lookingAt()) {
+                    stack.push(new Open(m.group(1), SymbolKind.CLASS, lineNumber, indent, enclosingContainer(stack)));
+                } else if ((top == null || container != null) && (m = PY_ASSIGNMENT.matcher(statement)).lookingAt()) {
+                    String name = m.group(1) != null ? m.group(1) : m.group(2);
+                    if (!KEYWORDS.contains(name)) {
+                        symbols.add(new Symbol(name, container != null ? SymbolKind.FIELD : SymbolKind.VARIABLE,
+                            path, lineNumber, lineNumber, container));
+                    }
+                }
+            }
+            for (int k = 0; k < code.length(); k++) {
+                char c = code.charAt(k);
+                if (c == '(' || c == '[' || c == '{') {
+                    brackets++;
+                } else if (c == ')' || c == ']' || c == '}') {
+                    brackets = Math.max(0, brackets - 1);
+                }
+            }
+            lastCodeLine = lineNumber;
+        }
+        while (!stack.isEmpty()) {
+            symbols.add(stack.pop().toSymbol(path, lastCodeLine));
+        }
+        return symbols;
+    }
+
+    private static int indentOf(String line) {
+        int indent = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                indent++;
+            } else if (c == '\t') {
+                indent = (indent / 8 + 1) * 8;
+            } else {
+                break;
+            }
+        }
+        return indent;
+    }
+
+    /**
+     * 解析逗号分隔的枚举常量列表，遇到同层的分号或右花括号结束；常量的参数与类体跳过。
+     * 第一项不像常量（如字段、方法或构造方法声明）时返回空列表
+     */
+    private static List<String> enumConstants(String text, String enumName) {
+        List<String> constants = new ArrayList<>();
+        int nesting = 0;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(' || c == '[' || c == '{') {
+                nesting++;
+            } else if ((c == ')' || c == ']') && nesting > 0) {
+                nesting--;
+            } else if (c == '}' && nesting > 0) {
+                nesting--;
+            } else if (c == ',' || ((c == ';' || c == '}') && nesting == 0)) {
+                if (nesting == 0) {
+                    if (!addEnumConstant(constants, text.substring(start, i), enumName) && constants.isEmpty()) {
+                        return constants;
+                    }
+                    start = i + 1;
+                }
+                if (c != ',') {
+                    return constants;
+                }
+            }
+        }
+        addEnumConstant(constants, text.substring(start), enumName);
+        return constants;
+    }
+
+    private static boolean addEnumConstant(List<String> constants, String segment, String enumName) {
+        Matcher m = ENUM_CONSTANT.matcher(ANNOTATIONS.matcher(segment.trim()).replaceFirst(""));
+        if (m.matches() && !KEYWORDS.contains(m.group(1)) && !m.group(1).equals(enumName)) {
+            constants.add(m.group(1));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 类型部分不能以关键字开头（排除 return x;、new Foo() 之类的语句）
+     */
+    private static boolean isTypeName(String type) {
+        int end = 0;
+        while (end < type.length() && (Character.isLetterOrDigit(type.charAt(end)) || type.charAt(end) == '_')) {
+            end++;
+        }
+        return end > 0 && !KEYWORDS.contains(type.substring(0, end));
+    }
+
+    /**
+     * 行首深度恰为某个类体的直接成员层时返回该类；跳过尚未遇到声明体的待定声明
+     */
+    private static Open memberOwner(Deque<Open> stack, int depth) {
+        for (Open open : stack) {
+            if (!open.opened && open.depth >= depth) {
+                continue;
+            }
+            return open.opened && open.kind.isContainer() && depth == open.depth + 1 ? open : null;
+        }
+        return null;
+    }
+
+    private static String enclosingContainer(Deque<Open> stack) {
+        for (Open open : stack) {
+            if (open.kind.isContainer()) {
+                return open.name;
+            }
+        }
+        return null;
+    }
+
+    private static final class Declaration {
+        final String name;
+        final SymbolKind kind;
+        final boolean hasBody;
+        final String container;
+
+        Declaration(String name, SymbolKind kind, boolean hasBody) {
+            this(name, kind, hasBody, null);
+        }
+
+        Declaration(String name, SymbolKind kind, boolean hasBody, String container) {
+            this.name = name;
+            this.kind = kind;
+            this.hasBody = hasBody;
+            this.container = container;
+        }
+    }
+
+    /**
+     * 尚未结束的声明；depth 为花括号深度或缩进
+     */
+    private static final class Open {
+        final String name;
+        final SymbolKind kind;
+        final int startLine;
+        final int depth;
+        final String container;
+        boolean opened;
+
+        Open(String name, SymbolKind kind, int startLine, int depth, String container) {
+            this.name = name;
+            this.kind = kind;
+            this.startLine = startLine;
+            this.depth = depth;
+            this.container = container;
+        }
+
+        Symbol toSymbol(String path, int endLine) {
+            return new Symbol(name, kind, path, startLine, Math.max(startLine, endLine), container);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.search.BinaryDetector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 工作区符号索引
+ *
+ * <p>用 {@link SymbolExtractor} 从 Java、Kotlin、TypeScript/JavaScript、Python 与 Go 源文件中提取类、方法、
+ * 函数和字段及其行范围，按名称（不区分大小写）建立查找表，持久化在 {@code .joder/index} 下。
+ * 查定义是一次哈希查找，不读取文件。</p>
+ *
+ * <p>生命周期由 {@link IndexCoordinator} 统一调度，与其他索引共用一次遍历：首次查询时于后台线程加载
+ * 并按修改时间增量校验，之后随 {@link FileChangeBus} 事件只重新提取变化的文件，周期性后台校验发现外部修改。
+ * 索引未就绪或存在未处理的变更时 {@link #findDefinitions} 返回 null。</p>
+ */
+@Singleton
+public class SymbolIndex extends IncrementalIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SymbolIndex.class);
+
+    private static final int MAGIC = 0x4A53594D; // "JSYM"
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "symbols.idx";
+
+    private static final long MAX_FILE_BYTES = 1024 * 1024; // 超过该大小的源文件不提取符号
+
+    /** 同名定义的排列顺序：类型在前，其次函数与方法，最后字段与变量 */
+    private static final Comparator<Symbol> DEFINITION_ORDER = Comparator
+        .comparingInt((Symbol symbol) -> symbol.getKind().isContainer() || symbol.getKind() == SymbolKind.TYPE ? 0
+            : symbol.getKind() == SymbolKind.FIELD || symbol.getKind() == SymbolKind.VARIABLE ? 2 : 1)
+        .thenComparing(Symbol::getPath)
+        .thenComparingInt(Symbol::getStartLine);
+
+    // 以下结构只由索引线程修改，修改时持写锁
+    private final Map<String, FileEntry> files = new HashMap<>();
+    private final Map<String, List<Symbol>> symbolsByName = new HashMap<>();
+    private int symbolCount;
+
+    public SymbolIndex(String workingDirectory, FileChangeBus fileChangeBus) {
+        this(new IndexCoordinator(workingDirectory, fileChangeBus));
+    }
+
+    @Inject
+    public SymbolIndex(IndexCoordinator coordinator) {
+        super(coordinator, "符号索引", INDEX_FILE, MAGIC, VERSION);
+    }
+
+    /**
+     * 文件是否属于支持提取符号的语言
+     */
+    public static boolean isSupported(Path file) {
+        Path name = file.getFileName();
+        return name != null && SymbolExtractor.languageOf(name.toString()) != null;
+    }
+
+    /**
+     * 按名称查找定义
+     *
+     * @param name  符号名，不区分大小写；可用 {@code Container.name}、{@code Container::name}
+     *              或 {@code Container#name} 限定外层类型
+     * @param limit 返回的最大条数
+     * @return 大小写完全一致的定义在前，其余按种类、路径与行号排列；索引未就绪或已过期时返回 null
+     */
+    public List<Symbol> findDefinitions(String name, int limit) {
+        if (!checkFresh()) {
+            return null;
+        }
+        String simpleName = name.trim();
+        String container = null;
+        int separator = Math.max(simpleName.lastIndexOf('.'), Math.max(simpleName.lastIndexOf('#'),
+            simpleName.lastIndexOf("::") >= 0 ? simpleName.lastIndexOf("::") + 1 : -1));
+        if (separator > 0 && separator < simpleName.length() - 1) {
+            container = simpleName.substring(0, separator).replaceAll("[:.#]+$", "");
+            container = container.substring(Math.max(container.lastIndexOf('.'), container.lastIndexOf(':')) + 1);
+            simpleName = simpleName.substring(separator + 1);
+        }
+
+        List<Symbol> exact = new ArrayList<>();
+        List<Symbol> others = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Symbol symbol : symbolsByName.getOrDefault(simpleName.toLowerCase(Locale.ROOT), List.of())) {
+                if (container != null && !container.equalsIgnoreCase(String.valueOf(symbol.getContainer()))) {
+                    continue;
+                }
+                (symbol.getName().equals(simpleName) ? exact : others).add(symbol);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        exact.sort(DEFINITION_ORDER);
+        others.sort(DEFINITION_ORDER);
+        exact.addAll(others);
+        return exact.size() > limit ? new ArrayList<>(exact.subList(0, limit)) : exact;
+    }
+
+    /**
+     * 文件的符号大纲，按起始行排序
+     *
+     * <p>索引中的条目与文件的修改时间一致时直接返回，否则现场提取（单个文件，开销很小）。</p>
+     *
+     * @param file 文件的绝对路径
+     * @return 符号列表；不支持的语言、文件过大或无法读取时返回 null
+     */
+    public List<Symbol> outline(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        if (!isSupported(normalized)) {
+            return null;
+        }
+        String path = normalized.startsWith(root) ? root.relativize(normalized).toString() : normalized.toString();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(normalized, BasicFileAttributes.class);
+            lock.readLock().lock();
+            try {
+                FileEntry entry = files.get(path);
+                if (isReady() && entry != null && entry.lastModified == attrs.lastModifiedTime().toMillis()
+                        && entry.size == attrs.size()) {
+                    return List.of(entry.symbols);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return extractSymbols(path, normalized, attrs.size());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 已收录的源文件的绝对路径
+     *
+     * @return 索引未就绪或已过期时返回 null
+     */
+    public List<Path> sourceFiles() {
+        if (!checkFresh()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            List<Path> result = new ArrayList<>(files.size());
+            for (String path : files.keySet()) {
+                result.add(root.resolve(path));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已收录的符号数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return symbolCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected boolean accepts(Path file) {
+        return isSupported(file);
+    }
+
+    @Override
+    protected boolean isCurrent(String path, long size, long lastModified) {
+        FileEntry existing = files.get(path);
+        return existing != null && existing.lastModified == lastModified && existing.size == size;
+    }
+
+    /**
+     * 重新提取单个文件的符号并替换旧条目
+     */
+    @Override
+    protected void update(String path, Path file, long size, long lastModified) {
+        List<Symbol> symbols = extractSymbols(path, file, size);
+        FileEntry entry = new FileEntry(path, lastModified, size,
+            symbols != null ? symbols.toArray(new Symbol[0]) : new Symbol[0]);
+        lock.writeLock().lock();
+        try {
+            unlink(files.put(path, entry));
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected Collection<String> paths() {
+        return files.keySet();
+    }
+
+    @Override
+    protected void remove(String path) {
+        unlink(files.remove(path));
+    }
+
+    /**
+     * 读取并提取符号；过大、二进制或无法读取时返回 null
+     */
+    private static List<Symbol> extractSymbols(String path, Path file, long size) {
+        if (size > MAX_FILE_BYTES) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+        if (BinaryDetector.isBinary(bytes)) {
+            return null;
+        }
+        return SymbolExtractor.extract(path, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 把条目的符号加入名称表；调用方持写锁
+     */
+    private void link(FileEntry entry) {
+        for (Symbol symbol : entry.symbols) {
+            symbolsByName.computeIfAbsent(symbol.getName().toLowerCase(Locale.ROOT), k -> new ArrayList<>(1))
+                .add(symbol);
+        }
+        symbolCount += entry.symbols.length;
+    }
+
+    /**
+     * 从名称表中移除条目的符号；调用方持写锁
+     */
+    private void unlink(FileEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (Symbol symbol : entry.symbols) {
+            String key = symbol.getName().toLowerCase(Locale.ROOT);
+            List<Symbol> list = symbolsByName.get(key);
+            if (list != null) {
+                list.remove(symbol);
+                if (list.isEmpty()) {
+                    symbolsByName.remove(key);
+                }
+            }
+        }
+        symbolCount -= entry.symbols.length;
+    }
+
+    /**
+     * 逐文件写出路径、修改时间与符号
+     */
+    @Override
+    protected void write(DataOutputStream out) throws IOException {
+        out.writeInt(files.size());
+        for (FileEntry entry : files.values()) {
+            out.writeUTF(entry.path);
+            out.writeLong(entry.lastModified);
+            out.writeLong(entry.size);
+            out.writeInt(entry.symbols.length);
+            for (Symbol symbol : entry.symbols) {
+                out.writeUTF(symbol.getName());
+                out.writeByte(symbol.getKind().ordinal());
+                out.writeUTF(symbol.getContainer() != null ? symbol.getContainer() : "");
+                out.writeInt(symbol.getStartLine());
+                out.writeInt(symbol.getEndLine());
+            }
+        }
+    }
+
+    @Override
+    protected void read(DataInputStream in) throws IOException {
+        SymbolKind[] kinds = SymbolKind.values();
+        int fileCount = in.readInt();
+        for (int i = 0; i < fileCount; i++) {
+            String path = in.readUTF();
+            long lastModified = in.readLong();
+            long size = in.readLong();
+            Symbol[] symbols = new Symbol[in.readInt()];
+            for (int k = 0; k < symbols.length; k++) {
+                String name = in.readUTF();
+                SymbolKind kind = kinds[in.readByte()];
+                String container = in.readUTF();
+                symbols[k] = new Symbol(name, kind, path, in.readInt(), in.readInt(),
+                    container.isEmpty() ? null : container);
+            }
+            FileEntry entry = new FileEntry(path, lastModified, size, symbols);
+            files.put(path, entry);
+            link(entry);
+        }
+    }
+
+    @Override
+    protected void clear() {
+        files.clear();
+        symbolsByName.clear();
+        symbolCount = 0;
+    }
+
+    private static class FileEntry {
+        final String path;
+        final long lastModified;
+        final long size;
+        final Symbol[] symbols;
+
+        FileEntry(String path, long lastModified, long size, Symbol[] symbols) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.symbols = symbols;
+        }
+    }
+}
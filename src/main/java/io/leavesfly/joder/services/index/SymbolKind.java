@@ -0,0 +1,35 @@
+package io.leavesfly.joder.services.index;
+
+/**
+ * 符号种类
+ *
+ * <p>各语言的声明归并到同一组种类：Java record、Kotlin object、Go struct 记为类，
+ * Java 注解类型记为接口，构造器记为方法，TypeScript type 与 Go 的其他类型声明记为类型。</p>
+ */
+public enum SymbolKind {
+    CLASS("类"),
+    INTERFACE("接口"),
+    ENUM("枚举"),
+    TYPE("类型"),
+    METHOD("方法"),
+    FUNCTION("函数"),
+    FIELD("字段"),
+    VARIABLE("变量");
+
+    private final String displayName;
+
+    SymbolKind(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * 可以包含成员的种类
+     */
+    public boolean isContainer() {
+        return this == CLASS || this == INTERFACE || this == ENUM;
+    }
+}
@@ -0,0 +1,153 @@
+package io.leavesfly.joder.services.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 带词频的压缩倒排列表
+ *
+ * <p>与 {@link PostingList} 相同，文件 ID 递增追加并以变长整数编码差值；每个 ID 之后紧跟
+ * 该词在各字段的出现次数，打包为一个变长整数（内容字段在低位，只出现在内容中的词约占 1 字节）。
+ * 单字段次数截断到 255，BM25 的词频饱和使更大的次数几乎不影响得分。</p>
+ */
+class TermPostings {
+
+    private static final int MAX_FREQUENCY = 0xFF;
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int count;
+    private int lastId = -1;
+
+    /**
+     * 接收解码出的条目
+     */
+    interface Visitor {
+        void visit(int id, int packedFrequencies);
+    }
+
+    /**
+     * 把各字段的出现次数打包为一个整数，按字段编号从低到高：内容、声明、目录、文件名
+     */
+    static int pack(int[] frequencies) {
+        int packed = 0;
+        for (int field = 0; field < CodeTokenizer.FIELD_COUNT; field++) {
+            packed |= Math.min(frequencies[field], MAX_FREQUENCY) << shiftOf(field);
+        }
+        return packed;
+    }
+
+    /**
+     * 从打包的整数中取出某个字段的出现次数
+     */
+    static int frequency(int packed, int field) {
+        return (packed >>> shiftOf(field)) & MAX_FREQUENCY;
+    }
+
+    private static int shiftOf(int field) {
+        return (CodeTokenizer.FIELD_COUNT - 1 - field) * 8;
+    }
+
+    /**
+     * 追加条目，ID 必须大于已追加的所有 ID
+     */
+    void add(int id, int packedFrequencies) {
+        if (id <= lastId) {
+            throw new IllegalArgumentException("文件 ID 必须递增: " + id + " <= " + lastId);
+        }
+        ensureCapacity(length + 10);
+        writeVarInt(id - lastId);
+        writeVarInt(packedFrequencies);
+        lastId = id;
+        count++;
+    }
+
+    /**
+     * 条目数（含已删除文件的条目，压缩时回收）
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * 按 ID 递增顺序遍历条目
+     */
+    void forEach(Visitor visitor) {
+        int pos = 0;
+        int id = -1;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            int packed = 0;
+            shift = 0;
+            do {
+                b = data[pos++];
+                packed |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            id += delta;
+            visitor.visit(id, packed);
+        }
+    }
+
+    /**
+     * 按重排表复制，映射为负数的条目丢弃
+     */
+    TermPostings remapped(int[] remap) {
+        TermPostings list = new TermPostings();
+        forEach((id, packed) -> {
+            if (remap[id] >= 0) {
+                list.add(remap[id], packed);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * 释放多余容量
+     */
+    void trim() {
+        if (data.length > length) {
+            data = Arrays.copyOf(data, length);
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(lastId);
+        out.writeInt(length);
+        out.write(data, 0, length);
+    }
+
+    static TermPostings readFrom(DataInputStream in) throws IOException {
+        TermPostings list = new TermPostings();
+        list.count = in.readInt();
+        list.lastId = in.readInt();
+        list.length = in.readInt();
+        list.data = new byte[list.length];
+        in.readFully(list.data);
+        return list;
+    }
+
+    private void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+        }
+    }
+}
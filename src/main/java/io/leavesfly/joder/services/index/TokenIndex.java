@@ -0,0 +1,482 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.search.BinaryDetector;
+import io.leavesfly.joder.services.search.TopKCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 工作区代码词倒排索引
+ *
+ * <p>由 {@link CodeTokenizer} 把文件路径与内容切分为标识符词（驼峰、下划线拆分），
+ * 建立「词 → 文件及各字段词频」倒排索引，持久化在 {@code .joder/index} 下。
+ * 查询按 BM25F 打分：文件名、目录、声明行、其余内容四个字段分别做长度归一化并按权重合并词频，
+ * 文件名与声明中的命中比散落在内容中的命中更重要。查询只读索引，不读取文件内容。</p>
+ *
+ * <p>生命周期由 {@link IndexCoordinator} 统一调度，与其他索引共用一次遍历：首次查询时于后台线程加载
+ * 并按修改时间增量校验，之后随 {@link FileChangeBus} 事件增量更新，周期性后台校验发现外部修改。
+ * 存在未处理的变更时 {@link #search} 与 {@link #score} 返回 null，调用方按原有方式排序。
+ * 过大或二进制文件只收录路径中的词。</p>
+ */
+@Singleton
+public class TokenIndex extends IncrementalIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenIndex.class);
+
+    private static final int MAGIC = 0x4A544F4B; // "JTOK"
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "tokens.idx";
+
+    private static final long MAX_FILE_BYTES = 1024 * 1024;      // 超过该大小的文件只收录路径
+    private static final long MAX_POSTINGS = 64L * 1024 * 1024;  // 倒排总条目上限
+
+    // BM25F 参数：字段权重与长度归一化强度，按 CodeTokenizer 的字段编号排列
+    private static final double K1 = 1.2;
+    private static final double[] FIELD_WEIGHTS = {3.0, 1.5, 2.0, 1.0};
+    private static final double[] FIELD_LENGTH_NORMS = {0.5, 0.5, 0.75, 0.75};
+
+    // 以下结构只由索引线程修改，修改时持写锁
+    private final List<FileEntry> files = new ArrayList<>();
+    private final Map<String, Integer> idsByPath = new HashMap<>();
+    private final Map<String, TermPostings> postings = new HashMap<>();
+    private final long[] fieldLengthTotals = new long[CodeTokenizer.FIELD_COUNT];
+    private int deadCount;
+    private long postingCount;
+
+    public TokenIndex(String workingDirectory, FileChangeBus fileChangeBus) {
+        this(new IndexCoordinator(workingDirectory, fileChangeBus));
+    }
+
+    @Inject
+    public TokenIndex(IndexCoordinator coordinator) {
+        super(coordinator, "代码词索引", INDEX_FILE, MAGIC, VERSION);
+    }
+
+    /**
+     * 按 BM25 相关性查找文件
+     *
+     * @param query 查询文本，自然语言、标识符或正则均可，按 {@link CodeTokenizer#queryTerms} 切分
+     * @param scope 查询范围（目录）
+     * @param limit 返回的最大条数
+     * @return 按得分降序排列的命中；索引不可用、已过期或查询中没有可用的词时返回 null
+     */
+    public List<Hit> search(String query, Path scope, int limit) {
+        String scopePrefix = scopePrefix(scope);
+        Set<String> terms = CodeTokenizer.queryTerms(query);
+        if (scopePrefix == null || terms.isEmpty() || limit <= 0) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            float[] scores = computeScores(terms);
+            TopKCollector<Hit> top = new TopKCollector<>(limit,
+                Comparator.comparingDouble(Hit::getScore).reversed().thenComparing(Hit::getPath));
+            for (int id = 0; id < scores.length; id++) {
+                FileEntry entry;
+                if (scores[id] > 0 && (entry = files.get(id)) != null && isUnder(entry.path, scopePrefix)) {
+                    top.offer(new Hit(root.resolve(entry.path), scores[id], entry.lastModified));
+                }
+            }
+            List<Hit> result = top.toSortedList();
+            logger.debug("BM25 查询 {} 命中 {} 个文件（共 {} 个）", terms, top.getOffered(), liveCount());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 计算给定文件对查询的 BM25 得分
+     *
+     * @param query 查询文本
+     * @param paths 文件的绝对路径
+     * @return 文件到得分的映射，未收录或不含查询词的文件得分为 0；
+     *         索引不可用、已过期或查询中没有可用的词时返回 null
+     */
+    public Map<Path, Double> score(String query, Collection<Path> paths) {
+        Set<String> terms = CodeTokenizer.queryTerms(query);
+        if (scopePrefix(root) == null || terms.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            float[] scores = computeScores(terms);
+            Map<Path, Double> result = new HashMap<>();
+            for (Path path : paths) {
+                Path normalized = path.toAbsolutePath().normalize();
+                Integer id = normalized.startsWith(root) ? idsByPath.get(root.relativize(normalized).toString()) : null;
+                result.put(path, id != null ? (double) scores[id] : 0.0);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查找包含某个标识符的文件，用于按名称查引用时缩小需要扫描的文件集合
+     *
+     * @param identifier 标识符，按小写整词匹配（不拆分驼峰）
+     * @param scope      查询范围（目录）
+     * @return 文件的绝对路径；索引不可用、已过期或范围不在索引内时返回 null
+     */
+    public List<Path> filesContaining(String identifier, Path scope) {
+        String scopePrefix = scopePrefix(scope);
+        if (scopePrefix == null) {
+            return null;
+        }
+        List<Path> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            TermPostings list = postings.get(identifier.toLowerCase(Locale.ROOT));
+            if (list != null) {
+                list.forEach((id, packed) -> {
+                    FileEntry entry = files.get(id);
+                    if (entry != null && isUnder(entry.path, scopePrefix)) {
+                        result.add(root.resolve(entry.path));
+                    }
+                });
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已索引的文件数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 检查索引可用并把查询范围换算为相对路径前缀，不可用或范围不在索引内时返回 null
+     */
+    private String scopePrefix(Path scope) {
+        if (!checkFresh()) {
+            return null;
+        }
+        Path normalizedScope = scope.toAbsolutePath().normalize();
+        if (!normalizedScope.startsWith(root) || IndexCoordinator.hasSkippedSegment(root.relativize(normalizedScope))
+                || ignoreRules.isIgnored(normalizedScope, true)) {
+            return null;
+        }
+        return root.relativize(normalizedScope).toString();
+    }
+
+    /**
+     * BM25F：各字段词频按字段长度归一化后加权求和，再做词频饱和并乘以逆文档频率。
+     * 文档频率包含尚未压缩回收的已删除条目，与删除前的统计一致，影响可以忽略
+     */
+    private float[] computeScores(Set<String> terms) {
+        int documentCount = Math.max(liveCount(), 1);
+        double[] averageLengths = new double[CodeTokenizer.FIELD_COUNT];
+        for (int field = 0; field < averageLengths.length; field++) {
+            averageLengths[field] = Math.max(1.0, (double) fieldLengthTotals[field] / documentCount);
+        }
+        float[] scores = new float[files.size()];
+        for (String term : terms) {
+            TermPostings list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            int documentFrequency = Math.min(list.size(), documentCount);
+            double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+            list.forEach((id, packed) -> {
+                FileEntry entry = files.get(id);
+                if (entry == null) {
+                    return;
+                }
+                double weighted = 0;
+                for (int field = 0; field < CodeTokenizer.FIELD_COUNT; field++) {
+                    int frequency = TermPostings.frequency(packed, field);
+                    if (frequency > 0) {
+                        double norm = 1 - FIELD_LENGTH_NORMS[field]
+                            + FIELD_LENGTH_NORMS[field] * entry.lengths[field] / averageLengths[field];
+                        weighted += FIELD_WEIGHTS[field] * frequency / norm;
+                    }
+                }
+                scores[id] += (float) (idf * weighted * (K1 + 1) / (K1 + weighted));
+            });
+        }
+        return scores;
+    }
+
+    @Override
+    protected boolean isCurrent(String path, long size, long lastModified) {
+        Integer id = idsByPath.get(path);
+        FileEntry existing = id != null ? files.get(id) : null;
+        return existing != null && existing.lastModified == lastModified && existing.size == size;
+    }
+
+    /**
+     * 重新索引单个文件：旧条目标记删除，新条目追加到末尾以保持倒排列表递增
+     */
+    @Override
+    protected void update(String path, Path file, long size, long lastModified) {
+        Map<String, int[]> frequencies = new HashMap<>();
+        int[] lengths = new int[CodeTokenizer.FIELD_COUNT];
+        CodeTokenizer.Sink sink = (term, field) -> {
+            frequencies.computeIfAbsent(term, t -> new int[CodeTokenizer.FIELD_COUNT])[field]++;
+            lengths[field]++;
+        };
+        CodeTokenizer.tokenizePath(path, sink);
+        byte[] content = readText(file, size);
+        if (content != null) {
+            CodeTokenizer.tokenizeContent(content, sink);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer oldId = idsByPath.get(path);
+            if (oldId != null) {
+                retire(oldId);
+            }
+            int id = files.size();
+            files.add(new FileEntry(path, lastModified, size, lengths));
+            idsByPath.put(path, id);
+            for (Map.Entry<String, int[]> e : frequencies.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new TermPostings()).add(id, TermPostings.pack(e.getValue()));
+            }
+            for (int field = 0; field < lengths.length; field++) {
+                fieldLengthTotals[field] += lengths[field];
+            }
+            postingCount += frequencies.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 标记条目删除并扣除其字段长度，倒排中的条目在压缩时回收；调用方持写锁
+     */
+    private void retire(int id) {
+        FileEntry entry = files.set(id, null);
+        for (int field = 0; field < fieldLengthTotals.length; field++) {
+            fieldLengthTotals[field] -= entry.lengths[field];
+        }
+        deadCount++;
+    }
+
+    @Override
+    protected Collection<String> paths() {
+        return idsByPath.keySet();
+    }
+
+    @Override
+    protected void remove(String path) {
+        retire(idsByPath.remove(path));
+    }
+
+    /**
+     * 读取文本文件内容；过大、二进制或超出内存预算时返回 null，此时只收录路径
+     */
+    private byte[] readText(Path file, long size) {
+        if (size > MAX_FILE_BYTES || postingCount + size / 4 > MAX_POSTINGS) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+        return BinaryDetector.isBinary(bytes) ? null : bytes;
+    }
+
+    /**
+     * 删除条目过多时重排 ID，回收倒排列表中的失效条目
+     */
+    @Override
+    protected void compactIfNeeded() {
+        if (deadCount < 1024 || deadCount < liveCount()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compact() {
+        int[] remap = new int[files.size()];
+        List<FileEntry> live = new ArrayList<>();
+        for (int id = 0; id < files.size(); id++) {
+            FileEntry entry = files.get(id);
+            remap[id] = entry != null ? live.size() : -1;
+            if (entry != null) {
+                live.add(entry);
+            }
+        }
+
+        postingCount = 0;
+        Map<String, TermPostings> rebuilt = new HashMap<>();
+        for (Map.Entry<String, TermPostings> e : postings.entrySet()) {
+            TermPostings list = e.getValue().remapped(remap);
+            if (list.size() > 0) {
+                list.trim();
+                rebuilt.put(e.getKey(), list);
+                postingCount += list.size();
+            }
+        }
+
+        files.clear();
+        files.addAll(live);
+        idsByPath.clear();
+        for (int id = 0; id < live.size(); id++) {
+            idsByPath.put(live.get(id).path, id);
+        }
+        postings.clear();
+        postings.putAll(rebuilt);
+        deadCount = 0;
+    }
+
+    private int liveCount() {
+        return files.size() - deadCount;
+    }
+
+    /**
+     * 写出时跳过已删除条目并重排 ID，不修改内存中的结构
+     */
+    @Override
+    protected void write(DataOutputStream out) throws IOException {
+        int[] remap = new int[files.size()];
+        int live = 0;
+        for (int id = 0; id < files.size(); id++) {
+            remap[id] = files.get(id) != null ? live++ : -1;
+        }
+        out.writeInt(live);
+        for (FileEntry entry : files) {
+            if (entry == null) {
+                continue;
+            }
+            out.writeUTF(entry.path);
+            out.writeLong(entry.lastModified);
+            out.writeLong(entry.size);
+            for (int length : entry.lengths) {
+                out.writeInt(length);
+            }
+        }
+        out.writeInt(postings.size());
+        for (Map.Entry<String, TermPostings> e : postings.entrySet()) {
+            out.writeUTF(e.getKey());
+            e.getValue().remapped(remap).writeTo(out);
+        }
+    }
+
+    @Override
+    protected void read(DataInputStream in) throws IOException {
+        int fileCount = in.readInt();
+        for (int id = 0; id < fileCount; id++) {
+            String path = in.readUTF();
+            long lastModified = in.readLong();
+            long size = in.readLong();
+            int[] lengths = new int[CodeTokenizer.FIELD_COUNT];
+            for (int field = 0; field < lengths.length; field++) {
+                lengths[field] = in.readInt();
+                fieldLengthTotals[field] += lengths[field];
+            }
+            files.add(new FileEntry(path, lastModified, size, lengths));
+            idsByPath.put(path, id);
+        }
+        int termCount = in.readInt();
+        for (int i = 0; i < termCount; i++) {
+            String term = in.readUTF();
+            TermPostings list = TermPostings.readFrom(in);
+            postings.put(term, list);
+            postingCount += list.size();
+        }
+    }
+
+    @Override
+    protected void clear() {
+        files.clear();
+        idsByPath.clear();
+        postings.clear();
+        Arrays.fill(fieldLengthTotals, 0);
+        deadCount = 0;
+        postingCount = 0;
+    }
+
+    /**
+     * 一条 BM25 查询结果
+     */
+    public static final class Hit {
+        private final Path path;
+        private final double score;
+        private final long lastModified;
+
+        Hit(Path path, double score, long lastModified) {
+            this.path = path;
+            this.score = score;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * 文件的绝对路径
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * BM25 得分，越高越相关，只在同一次查询内可比
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * 建立索引时文件的修改时间
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public String toString() {
+            return path + " (" + String.format("%.2f", score) + ")";
+        }
+    }
+
+    private static class FileEntry {
+        final String path;
+        final long lastModified;
+        final long size;
+        final int[] lengths;
+
+        FileEntry(String path, long lastModified, long size, int[] lengths) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.lengths = lengths;
+        }
+    }
+}
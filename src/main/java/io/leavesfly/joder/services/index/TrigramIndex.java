@@ -0,0 +1,366 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.search.BinaryDetector;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作区三元组索引
+ *
+ * <p>为工作目录下的文本文件建立「三元组 → 文件」倒排索引，持久化在 {@code .joder/index} 下。
+ * 正则搜索先经 {@link TrigramQuery} 分解为三元组查询，用索引筛出候选文件，
+ * 再由调用方对候选文件运行真正的正则。</p>
+ *
+ * <p>索引在首次查询时由 {@link IndexCoordinator} 于后台线程构建（已有索引文件时只按修改时间增量校验），
+ * 之后随 {@link FileChangeBus} 事件增量更新。存在未处理的变更事件时索引视为过期，
+ * {@link #findCandidates} 返回 null，调用方应回退到全量扫描。
+ * 未经事件总线的外部修改由周期性的后台校验发现。</p>
+ *
+ * <p>隐藏文件、排除目录以及被 {@link IgnoreRules} 忽略的路径不进入索引，
+ * 查询范围落在其中时同样回退到全量扫描。</p>
+ */
+@Singleton
+public class TrigramIndex extends IncrementalIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrigramIndex.class);
+
+    private static final int MAGIC = 0x4A545249; // "JTRI"
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "trigram.idx";
+
+    private static final long MAX_FILE_BYTES = 1024 * 1024;       // 超过该大小的文件不建索引，始终作为候选
+    private static final long MAX_POSTINGS = 128L * 1024 * 1024;  // 倒排总条目上限，约占数百 MB 内存
+
+    // 以下结构只由索引线程修改，修改时持写锁
+    private final List<FileEntry> files = new ArrayList<>();
+    private final Map<String, Integer> idsByPath = new HashMap<>();
+    private final Map<Integer, PostingList> postings = new HashMap<>();
+    private final BitSet unindexed = new BitSet();
+    private int deadCount;
+    private long postingCount;
+
+    public TrigramIndex(String workingDirectory, FileChangeBus fileChangeBus) {
+        this(new IndexCoordinator(workingDirectory, fileChangeBus));
+    }
+
+    @Inject
+    public TrigramIndex(IndexCoordinator coordinator) {
+        super(coordinator, "三元组索引", INDEX_FILE, MAGIC, VERSION);
+    }
+
+    /**
+     * 查找可能匹配正则的文件
+     *
+     * @param regex 正则表达式
+     * @param scope 搜索范围（目录）
+     * @return 候选文件的绝对路径；索引不可用、已过期或正则无法缩小范围时返回 null
+     */
+    public List<Path> findCandidates(String regex, Path scope) {
+        if (!checkFresh()) {
+            return null;
+        }
+
+        Path normalizedScope = scope.toAbsolutePath().normalize();
+        if (!normalizedScope.startsWith(root) || IndexCoordinator.hasSkippedSegment(root.relativize(normalizedScope))
+                || ignoreRules.isIgnored(normalizedScope, true)) {
+            return null;
+        }
+        TrigramQuery query = TrigramQuery.fromRegex(regex);
+        if (query.matchesAll()) {
+            return null;
+        }
+        String scopePrefix = root.relativize(normalizedScope).toString();
+
+        lock.readLock().lock();
+        try {
+            int[] ids = query.evaluate(this::lookup);
+            if (ids == null) {
+                return null;
+            }
+            BitSet candidates = new BitSet();
+            for (int id : ids) {
+                candidates.set(id);
+            }
+            candidates.or(unindexed);
+
+            List<Path> result = new ArrayList<>();
+            for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+                FileEntry entry = files.get(id);
+                if (entry != null && isUnder(entry.path, scopePrefix)) {
+                    result.add(root.resolve(entry.path));
+                }
+            }
+            logger.debug("三元组查询 {} 命中 {} 个候选文件（共 {} 个）", query, result.size(), liveCount());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已索引的文件数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected boolean isCurrent(String path, long size, long lastModified) {
+        Integer id = idsByPath.get(path);
+        FileEntry existing = id != null ? files.get(id) : null;
+        return existing != null && existing.lastModified == lastModified && existing.size == size;
+    }
+
+    /**
+     * 重新索引单个文件：旧条目标记删除，新条目追加到末尾以保持倒排列表递增
+     */
+    @Override
+    protected void update(String path, Path file, long size, long lastModified) {
+        int[] trigrams = extractTrigrams(file, size);
+
+        lock.writeLock().lock();
+        try {
+            Integer oldId = idsByPath.get(path);
+            if (oldId != null) {
+                retire(oldId);
+            }
+            int id = files.size();
+            files.add(new FileEntry(path, lastModified, size));
+            idsByPath.put(path, id);
+            if (trigrams == null) {
+                unindexed.set(id);
+            } else {
+                for (int key : trigrams) {
+                    postings.computeIfAbsent(key, k -> new PostingList()).add(id);
+                }
+                postingCount += trigrams.length;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected Collection<String> paths() {
+        return idsByPath.keySet();
+    }
+
+    @Override
+    protected void remove(String path) {
+        retire(idsByPath.remove(path));
+    }
+
+    /**
+     * 标记条目删除，倒排中的条目在压缩时回收；调用方持写锁
+     */
+    private void retire(int id) {
+        files.set(id, null);
+        unindexed.clear(id);
+        deadCount++;
+    }
+
+    /**
+     * 读取文件并提取去重排序后的三元组；过大、二进制或超出内存预算时返回 null
+     */
+    private int[] extractTrigrams(Path file, long size) {
+        if (size > MAX_FILE_BYTES || postingCount + size > MAX_POSTINGS) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+        if (BinaryDetector.isBinary(bytes)) {
+            return null;
+        }
+        if (bytes.length < 3) {
+            return new int[0];
+        }
+        int[] keys = new int[bytes.length - 2];
+        int n = 0;
+        for (int i = 0; i + 2 < bytes.length; i++) {
+            int key = TrigramQuery.trigramAt(bytes, i);
+            if (key >= 0) {
+                keys[n++] = key;
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || keys[i] != keys[unique - 1]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, unique);
+    }
+
+    private int[] lookup(int trigram) {
+        PostingList list = postings.get(trigram);
+        return list != null ? list.toArray() : new int[0];
+    }
+
+    /**
+     * 删除条目过多时重排 ID，回收倒排列表中的失效条目
+     */
+    @Override
+    protected void compactIfNeeded() {
+        if (deadCount < 1024 || deadCount < liveCount()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compact() {
+        int[] remap = new int[files.size()];
+        List<FileEntry> live = new ArrayList<>();
+        BitSet newUnindexed = new BitSet();
+        for (int id = 0; id < files.size(); id++) {
+            FileEntry entry = files.get(id);
+            if (entry == null) {
+                remap[id] = -1;
+                continue;
+            }
+            remap[id] = live.size();
+            if (unindexed.get(id)) {
+                newUnindexed.set(live.size());
+            }
+            live.add(entry);
+        }
+
+        postingCount = 0;
+        Map<Integer, PostingList> rebuilt = new HashMap<>();
+        for (Map.Entry<Integer, PostingList> e : postings.entrySet()) {
+            PostingList list = remapped(e.getValue(), remap);
+            if (list.size() > 0) {
+                list.trim();
+                rebuilt.put(e.getKey(), list);
+                postingCount += list.size();
+            }
+        }
+
+        files.clear();
+        files.addAll(live);
+        idsByPath.clear();
+        for (int id = 0; id < live.size(); id++) {
+            idsByPath.put(live.get(id).path, id);
+        }
+        postings.clear();
+        postings.putAll(rebuilt);
+        unindexed.clear();
+        unindexed.or(newUnindexed);
+        deadCount = 0;
+    }
+
+    private int liveCount() {
+        return files.size() - deadCount;
+    }
+
+    /**
+     * 写出时跳过已删除条目并重排 ID，不修改内存中的结构
+     */
+    @Override
+    protected void write(DataOutputStream out) throws IOException {
+        int[] remap = new int[files.size()];
+        int live = 0;
+        for (int id = 0; id < files.size(); id++) {
+            remap[id] = files.get(id) != null ? live++ : -1;
+        }
+        out.writeInt(live);
+        for (int id = 0; id < files.size(); id++) {
+            FileEntry entry = files.get(id);
+            if (entry == null) {
+                continue;
+            }
+            out.writeUTF(entry.path);
+            out.writeLong(entry.lastModified);
+            out.writeLong(entry.size);
+            out.writeBoolean(unindexed.get(id));
+        }
+        out.writeInt(postings.size());
+        for (Map.Entry<Integer, PostingList> e : postings.entrySet()) {
+            out.writeInt(e.getKey());
+            remapped(e.getValue(), remap).writeTo(out);
+        }
+    }
+
+    private static PostingList remapped(PostingList source, int[] remap) {
+        PostingList list = new PostingList();
+        for (int id : source.toArray()) {
+            if (remap[id] >= 0) {
+                list.add(remap[id]);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    protected void read(DataInputStream in) throws IOException {
+        int fileCount = in.readInt();
+        for (int id = 0; id < fileCount; id++) {
+            FileEntry entry = new FileEntry(in.readUTF(), in.readLong(), in.readLong());
+            files.add(entry);
+            idsByPath.put(entry.path, id);
+            if (in.readBoolean()) {
+                unindexed.set(id);
+            }
+        }
+        int trigramCount = in.readInt();
+        for (int i = 0; i < trigramCount; i++) {
+            int key = in.readInt();
+            PostingList list = PostingList.readFrom(in);
+            postings.put(key, list);
+            postingCount += list.size();
+        }
+    }
+
+    @Override
+    protected void clear() {
+        files.clear();
+        idsByPath.clear();
+        postings.clear();
+        unindexed.clear();
+        deadCount = 0;
+        postingCount = 0;
+    }
+
+    private static class FileEntry {
+        final String path;
+        final long lastModified;
+        final long size;
+
+        FileEntry(String path, long lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,676 @@
+package io.leavesfly.joder.services.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * 三元组查询
+ *
+ * <p>把正则表达式分解为由三元组构成的 AND/OR 查询（参考 Google Code Search 的做法）：
+ * 任何能被正则匹配的文件必然满足该查询，反之不成立。查询只用于缩小候选文件范围，
+ * 候选文件仍需用真正的正则逐行验证。</p>
+ *
+ * <p>三元组按字节计算并折叠 ASCII 大小写，因此区分与不区分大小写的正则共用同一份索引。
+ * 无法分析的语法（反向引用、注释模式等）一律视为「匹配任意文件」，保证结果不漏。</p>
+ *
+ * <p>同一分析还可得出「必需字面量」（任何匹配都必然包含的最长字符串），
+ * 供内容扫描在解码前对原始字节做预筛选，见 {@link #requiredLiteral(String)}。</p>
+ */
+public final class TrigramQuery {
+
+    enum Op {
+        ALL, NONE, AND, OR, TRIGRAM
+    }
+
+    static final TrigramQuery ALL = new TrigramQuery(Op.ALL, 0, Collections.emptyList());
+    static final TrigramQuery NONE = new TrigramQuery(Op.NONE, 0, Collections.emptyList());
+
+    private final Op op;
+    private final int trigram;
+    private final List<TrigramQuery> subs;
+
+    private TrigramQuery(Op op, int trigram, List<TrigramQuery> subs) {
+        this.op = op;
+        this.trigram = trigram;
+        this.subs = subs;
+    }
+
+    Op getOp() {
+        return op;
+    }
+
+    boolean matchesAll() {
+        return op == Op.ALL;
+    }
+
+    /**
+     * 由正则表达式构建查询
+     */
+    static TrigramQuery fromRegex(String regex) {
+        try {
+            RegexAnalyzer analyzer = new RegexAnalyzer(regex);
+            return analyzer.analyze();
+        } catch (UnsupportedOperationException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return ALL;
+        }
+    }
+
+    /**
+     * 提取正则的必需字面量
+     * 返回值已折叠 ASCII 大小写；含换行符、无法分析或不存在时返回 null
+     *
+     * @param regex 正则表达式
+     * @return 任何匹配都必然包含的最长字面量
+     */
+    public static String requiredLiteral(String regex) {
+        try {
+            String literal = new RegexAnalyzer(regex).analyzeInfo().required;
+            if (literal == null || literal.isEmpty() || literal.indexOf('\n') >= 0 || literal.indexOf('\r') >= 0) {
+                return null;
+            }
+            return literal;
+        } catch (UnsupportedOperationException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 由字面量构建查询：字面量的全部三元组都必须出现
+     */
+    static TrigramQuery fromLiteral(String literal) {
+        byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 3) {
+            return ALL;
+        }
+        Set<Integer> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 2 < bytes.length; i++) {
+            int key = trigramAt(bytes, i);
+            if (key >= 0) {
+                trigrams.add(key);
+            }
+        }
+        TrigramQuery result = ALL;
+        for (int key : trigrams) {
+            result = and(result, new TrigramQuery(Op.TRIGRAM, key, Collections.emptyList()));
+        }
+        return result;
+    }
+
+    static TrigramQuery and(TrigramQuery a, TrigramQuery b) {
+        if (a.op == Op.NONE || b.op == Op.NONE) {
+            return NONE;
+        }
+        if (a.op == Op.ALL) {
+            return b;
+        }
+        if (b.op == Op.ALL) {
+            return a;
+        }
+        List<TrigramQuery> subs = new ArrayList<>();
+        addFlattened(subs, a, Op.AND);
+        addFlattened(subs, b, Op.AND);
+        return new TrigramQuery(Op.AND, 0, subs);
+    }
+
+    static TrigramQuery or(TrigramQuery a, TrigramQuery b) {
+        if (a.op == Op.ALL || b.op == Op.ALL) {
+            return ALL;
+        }
+        if (a.op == Op.NONE) {
+            return b;
+        }
+        if (b.op == Op.NONE) {
+            return a;
+        }
+        List<TrigramQuery> subs = new ArrayList<>();
+        addFlattened(subs, a, Op.OR);
+        addFlattened(subs, b, Op.OR);
+        return new TrigramQuery(Op.OR, 0, subs);
+    }
+
+    private static void addFlattened(List<TrigramQuery> target, TrigramQuery query, Op op) {
+        if (query.op == op) {
+            target.addAll(query.subs);
+        } else {
+            target.add(query);
+        }
+    }
+
+    /**
+     * 在倒排表上求值
+     *
+     * @param postings 三元组到递增文件 ID 数组的查找函数，不存在时返回空数组
+     * @return 候选文件 ID（递增），null 表示无法缩小范围
+     */
+    int[] evaluate(IntFunction<int[]> postings) {
+        switch (op) {
+            case ALL:
+                return null;
+            case NONE:
+                return new int[0];
+            case TRIGRAM:
+                return postings.apply(trigram);
+            case AND: {
+                int[] result = null;
+                for (TrigramQuery sub : subs) {
+                    int[] ids = sub.evaluate(postings);
+                    if (ids == null) {
+                        continue;
+                    }
+                    result = result == null ? ids : intersect(result, ids);
+                    if (result.length == 0) {
+                        break;
+                    }
+                }
+                return result;
+            }
+            case OR: {
+                int[] result = new int[0];
+                for (TrigramQuery sub : subs) {
+                    int[] ids = sub.evaluate(postings);
+                    if (ids == null) {
+                        return null;
+                    }
+                    result = union(result, ids);
+                }
+                return result;
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 取字节序列在 offset 处的三元组键（ASCII 大小写折叠），含换行时返回 -1
+     */
+    static int trigramAt(byte[] bytes, int offset) {
+        int b0 = fold(bytes[offset]);
+        int b1 = fold(bytes[offset + 1]);
+        int b2 = fold(bytes[offset + 2]);
+        if (b0 == '\n' || b1 == '\n' || b2 == '\n') {
+            return -1;
+        }
+        return (b0 << 16) | (b1 << 8) | b2;
+    }
+
+    private static int fold(byte b) {
+        int c = b & 0xFF;
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    @Override
+    public String toString() {
+        switch (op) {
+            case ALL:
+                return "ALL";
+            case NONE:
+                return "NONE";
+            case TRIGRAM:
+                return "\"" + (char) ((trigram >> 16) & 0xFF) + (char) ((trigram >> 8) & 0xFF)
+                    + (char) (trigram & 0xFF) + "\"";
+            default:
+                List<String> parts = new ArrayList<>();
+                subs.forEach(sub -> parts.add(sub.toString()));
+                return "(" + String.join(op == Op.AND ? " AND " : " OR ", parts) + ")";
+        }
+    }
+
+    /**
+     * 正则分析器
+     *
+     * <p>递归下降解析 java.util.regex 语法，为每个子表达式计算：
+     * 精确字符串集合（能匹配的全部字符串，集合过大时放弃），或必须满足的三元组查询。</p>
+     */
+    private static final class RegexAnalyzer {
+
+        private static final int MAX_EXACT = 32;
+        private static final int MAX_CLASS_CHARS = 8;
+
+        private final String regex;
+        private int pos;
+        private boolean unicodeCase;
+
+        RegexAnalyzer(String regex) {
+            this.regex = regex;
+        }
+
+        TrigramQuery analyze() {
+            return analyzeInfo().toQuery();
+        }
+
+        Info analyzeInfo() {
+            Info info = parseAlternation();
+            if (pos < regex.length()) {
+                throw new UnsupportedOperationException("未匹配的右括号");
+            }
+            return info;
+        }
+
+        private Info parseAlternation() {
+            Info result = parseConcat();
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                result = Info.alternate(result, parseConcat());
+            }
+            return result;
+        }
+
+        /**
+         * 连接：相邻的精确片段先拼成字符串再取三元组，非精确片段之间以 AND 连接
+         */
+        private Info parseConcat() {
+            TrigramQuery acc = TrigramQuery.ALL;
+            boolean flushed = false;
+            String required = null;
+            Info run = Info.exact("");
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+                Info atom = parseRepeat();
+                if (atom.exact != null && run.exact.size() * atom.exact.size() <= MAX_EXACT) {
+                    run = Info.concat(run, atom);
+                    continue;
+                }
+                acc = TrigramQuery.and(acc, run.toQuery());
+                required = longer(required, run.required);
+                flushed = true;
+                if (atom.exact != null) {
+                    run = atom;
+                } else {
+                    acc = TrigramQuery.and(acc, atom.match);
+                    required = longer(required, atom.required);
+                    run = Info.exact("");
+                }
+            }
+            if (!flushed) {
+                return run;
+            }
+            return new Info(null, TrigramQuery.and(acc, run.toQuery()), longer(required, run.required));
+        }
+
+        private Info parseRepeat() {
+            Info atom = parseAtom();
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                int min;
+                if (c == '*') {
+                    pos++;
+                    min = 0;
+                } else if (c == '+') {
+                    pos++;
+                    min = 1;
+                } else if (c == '?') {
+                    pos++;
+                    atom = atom.exact != null ? Info.alternate(atom, Info.exact("")) : Info.any();
+                    skipQuantifierModifier();
+                    continue;
+                } else if (c == '{' && isCountedRepeat()) {
+                    int close = regex.indexOf('}', pos);
+                    String body = regex.substring(pos + 1, close);
+                    pos = close + 1;
+                    min = Integer.parseInt(body.split(",", -1)[0].trim());
+                } else {
+                    break;
+                }
+                skipQuantifierModifier();
+                atom = min == 0 ? Info.any() : new Info(null, atom.toQuery(), atom.required);
+            }
+            return atom;
+        }
+
+        private boolean isCountedRepeat() {
+            int close = regex.indexOf('}', pos);
+            return close > pos + 1 && regex.substring(pos + 1, close).matches("\\d+(,\\d*)?");
+        }
+
+        private void skipQuantifierModifier() {
+            if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                pos++;
+            }
+        }
+
+        private Info parseAtom() {
+            char c = regex.charAt(pos);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return parseClass();
+                case '.':
+                    pos++;
+                    return Info.any();
+                case '^':
+                case '$':
+                    pos++;
+                    return Info.exact("");
+                case '\\':
+                    return parseEscape();
+                default:
+                    pos++;
+                    return literal(c);
+            }
+        }
+
+        private Info parseGroup() {
+            pos++; // '('
+            boolean zeroWidth = false;
+            if (regex.startsWith("?", pos)) {
+                pos++;
+                if (regex.startsWith(":", pos) || regex.startsWith(">", pos)) {
+                    pos++;
+                } else if (regex.startsWith("=", pos) || regex.startsWith("!", pos)) {
+                    pos++;
+                    zeroWidth = true;
+                } else if (regex.startsWith("<=", pos) || regex.startsWith("<!", pos)) {
+                    pos += 2;
+                    zeroWidth = true;
+                } else if (regex.startsWith("<", pos)) {
+                    int close = regex.indexOf('>', pos);
+                    if (close < 0) {
+                        throw new UnsupportedOperationException("命名分组");
+                    }
+                    pos = close + 1;
+                } else {
+                    // 内联标志：(?i) 或 (?i:...)
+                    int start = pos;
+                    while (pos < regex.length() && regex.charAt(pos) != ')' && regex.charAt(pos) != ':') {
+                        pos++;
+                    }
+                    String flags = regex.substring(start, pos);
+                    int minus = flags.indexOf('-');
+                    String enabled = minus >= 0 ? flags.substring(0, minus) : flags;
+                    if (enabled.contains("x")) {
+                        throw new UnsupportedOperationException("注释模式");
+                    }
+                    if (enabled.contains("u") || enabled.contains("U")) {
+                        unicodeCase = true;
+                    }
+                    if (regex.charAt(pos) == ')') {
+                        pos++;
+                        return Info.exact("");
+                    }
+                    pos++; // ':'
+                }
+            }
+            Info inner = parseAlternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw new UnsupportedOperationException("未闭合的分组");
+            }
+            pos++;
+            return zeroWidth ? Info.exact("") : inner;
+        }
+
+        /**
+         * 字符类：不取反、无范围且字符很少时展开为精确集合，否则视为任意字符
+         */
+        private Info parseClass() {
+            int start = pos;
+            pos++; // '['
+            boolean simple = true;
+            if (pos < regex.length() && regex.charAt(pos) == '^') {
+                simple = false;
+                pos++;
+            }
+            if (pos < regex.length() && regex.charAt(pos) == ']') {
+                throw new UnsupportedOperationException("以 ] 开头的字符类");
+            }
+            Set<String> chars = new LinkedHashSet<>();
+            int depth = 1;
+            while (depth > 0) {
+                char c = regex.charAt(pos);
+                if (c == '\\') {
+                    char next = regex.charAt(pos + 1);
+                    if (next == 'Q') {
+                        int end = regex.indexOf("\\E", pos + 2);
+                        pos = end < 0 ? regex.length() : end + 2;
+                        simple = false;
+                        continue;
+                    }
+                    if (Character.isLetterOrDigit(next)) {
+                        simple = false;
+                    } else {
+                        chars.add(foldLiteral(next));
+                    }
+                    pos += 2;
+                    continue;
+                }
+                if (c == '[') {
+                    depth++;
+                    simple = false;
+                } else if (c == ']') {
+                    depth--;
+                } else if (c == '-' || c == '&') {
+                    simple = false;
+                } else {
+                    chars.add(foldLiteral(c));
+                }
+                pos++;
+            }
+            if (!simple || chars.isEmpty() || chars.size() > MAX_CLASS_CHARS || chars.contains(null)) {
+                return Info.any();
+            }
+            return Info.exactSet(chars);
+        }
+
+        private Info parseEscape() {
+            pos++; // '\\'
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case 't': return literal('\t');
+                case 'n': return literal('\n');
+                case 'r': return literal('\r');
+                case 'f': return literal('\f');
+                case 'a': return literal('\u0007');
+                case 'e': return literal('\u001B');
+                case '0': {
+                    int start = pos;
+                    while (pos < regex.length() && pos - start < 3 && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7') {
+                        pos++;
+                    }
+                    return literalCodePoint(Integer.parseInt(regex.substring(start, pos), 8));
+                }
+                case 'x': {
+                    if (regex.charAt(pos) == '{') {
+                        int close = regex.indexOf('}', pos);
+                        int cp = Integer.parseInt(regex.substring(pos + 1, close), 16);
+                        pos = close + 1;
+                        return literalCodePoint(cp);
+                    }
+                    int cp = Integer.parseInt(regex.substring(pos, pos + 2), 16);
+                    pos += 2;
+                    return literalCodePoint(cp);
+                }
+                case 'u': {
+                    int cp = Integer.parseInt(regex.substring(pos, pos + 4), 16);
+                    pos += 4;
+                    return literalCodePoint(cp);
+                }
+                case 'c':
+                    return literal((char) (regex.charAt(pos++) ^ 64));
+                case 'Q': {
+                    int end = regex.indexOf("\\E", pos);
+                    String quoted = end < 0 ? regex.substring(pos) : regex.substring(pos, end);
+                    pos = end < 0 ? regex.length() : end + 2;
+                    Info result = Info.exact("");
+                    for (int i = 0; i < quoted.length(); i++) {
+                        result = Info.concat(result, literal(quoted.charAt(i)));
+                    }
+                    return result;
+                }
+                case 'b':
+                case 'B':
+                    skipBraces();
+                    return Info.exact("");
+                case 'A':
+                case 'z':
+                case 'Z':
+                case 'G':
+                    return Info.exact("");
+                case 'p':
+                case 'P':
+                case 'N':
+                    if (!skipBraces()) {
+                        pos++;
+                    }
+                    return Info.any();
+                case 'k':
+                    pos = regex.indexOf('>', pos) + 1;
+                    return Info.any();
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        // \d \w \s 等字符类、反向引用及其他未知转义
+                        return Info.any();
+                    }
+                    return literal(c);
+            }
+        }
+
+        private static String longer(String a, String b) {
+            if (a == null) {
+                return b;
+            }
+            return b != null && b.length() > a.length() ? b : a;
+        }
+
+        private boolean skipBraces() {
+            if (pos < regex.length() && regex.charAt(pos) == '{') {
+                pos = regex.indexOf('}', pos) + 1;
+                return true;
+            }
+            return false;
+        }
+
+        private Info literalCodePoint(int codePoint) {
+            String s = new String(Character.toChars(codePoint));
+            return s.length() == 1 ? literal(s.charAt(0)) : (unicodeCase ? Info.any() : Info.exact(s));
+        }
+
+        private Info literal(char c) {
+            String folded = foldLiteral(c);
+            return folded == null ? Info.any() : Info.exact(folded);
+        }
+
+        /**
+         * 折叠 ASCII 大小写；开启 Unicode 大小写时非 ASCII 字符无法精确表示，返回 null
+         */
+        private String foldLiteral(char c) {
+            if (c >= 0x80 && unicodeCase) {
+                return null;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                return String.valueOf((char) (c + ('a' - 'A')));
+            }
+            return String.valueOf(c);
+        }
+    }
+
+    /**
+     * 子表达式分析结果
+     * 不变式：exact 非空时 match 恒为 ALL
+     */
+    private static final class Info {
+        final Set<String> exact;
+        final TrigramQuery match;
+        /** 任何匹配都必然包含的字面量，未知时为 null */
+        final String required;
+
+        Info(Set<String> exact, TrigramQuery match, String required) {
+            this.exact = exact;
+            this.match = match;
+            this.required = required;
+        }
+
+        static Info exact(String s) {
+            Set<String> set = new LinkedHashSet<>();
+            set.add(s);
+            return exactSet(set);
+        }
+
+        static Info exactSet(Set<String> set) {
+            return new Info(set, TrigramQuery.ALL, set.size() == 1 ? set.iterator().next() : null);
+        }
+
+        static Info any() {
+            return new Info(null, TrigramQuery.ALL, null);
+        }
+
+        static Info match(TrigramQuery query) {
+            return new Info(null, query, null);
+        }
+
+        TrigramQuery toQuery() {
+            if (exact == null) {
+                return match;
+            }
+            TrigramQuery result = TrigramQuery.NONE;
+            for (String s : exact) {
+                result = TrigramQuery.or(result, TrigramQuery.fromLiteral(s));
+            }
+            return result;
+        }
+
+        static Info concat(Info a, Info b) {
+            if (a.exact != null && b.exact != null && a.exact.size() * b.exact.size() <= RegexAnalyzer.MAX_EXACT) {
+                Set<String> product = new LinkedHashSet<>();
+                for (String x : a.exact) {
+                    for (String y : b.exact) {
+                        product.add(x + y);
+                    }
+                }
+                return exactSet(product);
+            }
+            return match(TrigramQuery.and(a.toQuery(), b.toQuery()));
+        }
+
+        static Info alternate(Info a, Info b) {
+            if (a.exact != null && b.exact != null && a.exact.size() + b.exact.size() <= RegexAnalyzer.MAX_EXACT) {
+                Set<String> union = new LinkedHashSet<>(a.exact);
+                union.addAll(b.exact);
+                return exactSet(union);
+            }
+            return match(TrigramQuery.or(a.toQuery(), b.toQuery()));
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package io.leavesfly.joder.services.memory;
+
+import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 项目分析结果缓存
+ *
+ * <p>为目录生成带 Merkle 哈希的结构快照：目录的哈希由子项的名称、类型、排除与忽略状态
+ * 以及已展开子目录的哈希组合而成。分析以 {@link Fold} 自底向上计算，结果记在快照节点上；
+ * 重新生成快照时哈希未变的子树沿用旧节点及其结果，只有变化的目录和它的祖先重新计算。</p>
+ *
+ * <ul>
+ *   <li>目录内容优先从 {@link WorkspaceCatalog} 读取，目录结构计数与忽略规则都未变化时直接返回上次的快照；</li>
+ *   <li>目录不可用时读取文件系统，目录修改时间未变则沿用上次列出的子项，只重新检查子目录；</li>
+ *   <li>子目录较多时在 ForkJoin 池上并行生成。</li>
+ * </ul>
+ *
+ * <p>哈希只覆盖目录结构，不含文件内容；依赖文件内容的分析使用 {@link #memoize}，
+ * 按输入文件的大小与修改时间缓存。</p>
+ */
+@Singleton
+public class ProjectAnalysisCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectAnalysisCache.class);
+
+    /** 子目录数达到该值时并行生成 */
+    private static final int PARALLEL_THRESHOLD = 4;
+
+    /**
+     * 修改时间距列出时刻不足该值的目录下次重新列出：时间戳精度有限，
+     * 同一时间单位内的后续修改不会改变修改时间
+     */
+    private static final long RACY_INTERVAL_MS = 2000;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path root;
+    private final WorkspaceCatalog workspaceCatalog;
+    private final IgnoreRules ignoreRules;
+    private final Map<String, Snapshot> snapshots = new HashMap<>();
+    private final Map<String, Memo> memos = new ConcurrentHashMap<>();
+    // 仅在没有工作区目录时使用：自行检测规则文件变化
+    private final Map<Path, Long> rulesStamps = new ConcurrentHashMap<>();
+
+    public ProjectAnalysisCache(String workingDirectory) {
+        this(workingDirectory, null);
+    }
+
+    /**
+     * @param workspaceCatalog 工作区文件目录，可为 null；为 null 时直接读取文件系统
+     */
+    @Inject
+    public ProjectAnalysisCache(@WorkingDirectory String workingDirectory, WorkspaceCatalog workspaceCatalog) {
+        this.root = Paths.get(workingDirectory).toAbsolutePath().normalize();
+        this.workspaceCatalog = workspaceCatalog;
+        this.ignoreRules = workspaceCatalog != null
+            ? workspaceCatalog.getIgnoreRules()
+            : new IgnoreRules(workingDirectory);
+    }
+
+    /**
+     * 快照中子项的忽略状态所依据的规则
+     */
+    public IgnoreRules getIgnoreRules() {
+        return ignoreRules;
+    }
+
+    /**
+     * 获取目录的结构快照
+     *
+     * @param dir    目录
+     * @param levels 展开的层数：1 只列出目录自身的子项，2 再列出子目录的子项，依此类推
+     * @return 快照根节点；目录无法读取时子项为空
+     */
+    public synchronized Node snapshot(Path dir, int levels) {
+        Path normalized = dir.toAbsolutePath().normalize();
+        String key = levels + ":" + normalized;
+        Snapshot previous = snapshots.get(key);
+        long generation = ignoreRules.getGeneration();
+        long version = workspaceCatalog != null && workspaceCatalog.isFresh()
+            ? workspaceCatalog.getStructureVersion()
+            : -1;
+        if (previous != null && version >= 0 && previous.catalogVersion == version
+                && previous.ignoreGeneration == generation) {
+            return previous.root;
+        }
+
+        long start = System.currentTimeMillis();
+        SnapshotTask task = new SnapshotTask(normalized, Math.max(1, levels), previous != null ? previous.root : null);
+        Node node = ForkJoinPool.commonPool().invoke(task);
+        // 有目录回退到文件系统读取时，结构计数不能代表整个快照
+        long recordedVersion = task.usedFileSystem() ? -1 : version;
+        snapshots.put(key, new Snapshot(node, recordedVersion, generation));
+        logger.debug("项目结构快照 {}（{} 层）: {}, {} ms", normalized, levels,
+            previous != null && previous.root == node ? "未变化" : "已更新", System.currentTimeMillis() - start);
+        return node;
+    }
+
+    /**
+     * 按输入文件的大小与修改时间缓存计算结果，任一输入变化（含新建与删除）时重新计算
+     *
+     * @param key     缓存键
+     * @param inputs  结果所依赖的文件
+     * @param compute 计算函数；结果会被共享，调用方不应修改
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T memoize(String key, List<Path> inputs, Supplier<T> compute) {
+        long stamp = FNV_OFFSET;
+        for (Path input : inputs) {
+            stamp = mix(stamp, fileStamp(input));
+        }
+        Memo memo = memos.get(key);
+        if (memo != null && memo.stamp == stamp) {
+            return (T) memo.value;
+        }
+        T value = compute.get();
+        memos.put(key, new Memo(stamp, value));
+        return value;
+    }
+
+    /**
+     * 列出目录的子项：优先查询工作区目录，不可用时读取文件系统
+     */
+    private Listing list(Path dir, Node previous) {
+        List<WorkspaceCatalog.Entry> entries = workspaceCatalog != null ? workspaceCatalog.listChildren(dir) : null;
+        if (entries != null) {
+            List<Child> children = new ArrayList<>(entries.size());
+            for (WorkspaceCatalog.Entry entry : entries) {
+                children.add(new Child(entry.getName(), entry.isDirectory(), entry.isExcluded(),
+                    ignoreRules.isIgnored(entry.getPath(), entry.isDirectory())));
+            }
+            return new Listing(children, -1, false);
+        }
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return new Listing(Collections.emptyList(), -1, true);
+        }
+        if (workspaceCatalog == null) {
+            checkRulesFiles(dir);
+        }
+        long modified = attrs.lastModifiedTime().toMillis();
+        if (previous != null && previous.modified >= 0 && previous.modified == modified) {
+            // 目录修改时间未变：子项名称与类型不变，只需按当前规则重新判断排除与忽略
+            List<Child> children = new ArrayList<>(previous.children.size());
+            for (Child child : previous.children) {
+                children.add(describe(dir.resolve(child.name), child.name, child.directory));
+            }
+            return new Listing(children, modified, true);
+        }
+
+        List<Child> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                boolean directory;
+                try {
+                    directory = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                        .isDirectory();
+                } catch (IOException e) {
+                    continue;
+                }
+                children.add(describe(entry, entry.getFileName().toString(), directory));
+            }
+        } catch (IOException e) {
+            logger.debug("读取目录失败: {}: {}", dir, e.getMessage());
+            return new Listing(Collections.emptyList(), -1, true);
+        }
+        boolean settled = System.currentTimeMillis() - modified > RACY_INTERVAL_MS;
+        return new Listing(children, settled ? modified : -1, true);
+    }
+
+    private Child describe(Path path, String name, boolean directory) {
+        boolean ignored = ignoreRules.isIgnored(path, directory);
+        return new Child(name, directory, directory && (WorkspaceCatalog.isExcludedName(name) || ignored), ignored);
+    }
+
+    /**
+     * 目录中的规则文件变化后失效对应的忽略规则缓存（由工作区目录维护规则时不需要）
+     */
+    private void checkRulesFiles(Path dir) {
+        for (String name : IgnoreRules.IGNORE_FILES) {
+            Path rulesFile = dir.resolve(name);
+            long stamp = fileStamp(rulesFile);
+            Long old = rulesStamps.put(rulesFile, stamp);
+            if (old != null && old != stamp) {
+                ignoreRules.invalidate(rulesFile);
+            }
+        }
+        if (dir.equals(root)) {
+            Path exclude = root.resolve(".git").resolve("info").resolve("exclude");
+            long stamp = fileStamp(exclude);
+            Long old = rulesStamps.put(exclude, stamp);
+            if (old != null && old != stamp) {
+                ignoreRules.invalidateAll();
+            }
+        }
+    }
+
+    private static long fileStamp(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return mix(mix(FNV_OFFSET, attrs.size()), attrs.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long hash(int levels, List<Child> children, Map<String, Node> subdirectories) {
+        long h = mix(FNV_OFFSET, levels);
+        for (Child child : children) {
+            for (int i = 0; i < child.name.length(); i++) {
+                h = (h ^ child.name.charAt(i)) * FNV_PRIME;
+            }
+            h = mix(h, (child.directory ? 1 : 0) | (child.excluded ? 2 : 0) | (child.ignored ? 4 : 0));
+            Node sub = subdirectories.get(child.name);
+            if (sub != null) {
+                h = mix(h, sub.hash);
+            }
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            h = (h ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * 自底向上的目录分析
+     *
+     * @param <T> 结果类型；结果缓存在快照节点上并被共享，不应修改
+     */
+    @FunctionalInterface
+    public interface Fold<T> {
+
+        /**
+         * @param directory 目录节点
+         * @param subResult 按子目录名取得子目录的结果；子目录未展开时返回 null
+         */
+        T apply(Node directory, Function<String, T> subResult);
+    }
+
+    /**
+     * 快照中的目录节点，创建后不再修改
+     */
+    public static final class Node {
+        private final Path path;
+        private final int levels;
+        private final long hash;
+        private final long modified;
+        private final List<Child> children;
+        private final Map<String, Node> subdirectories;
+        private final Map<Fold<?>, Object> results = new ConcurrentHashMap<>();
+
+        Node(Path path, int levels, long hash, long modified, List<Child> children,
+             Map<String, Node> subdirectories) {
+            this.path = path;
+            this.levels = levels;
+            this.hash = hash;
+            this.modified = modified;
+            this.children = children;
+            this.subdirectories = subdirectories;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * 本节点之下展开的层数
+         */
+        public int getLevels() {
+            return levels;
+        }
+
+        /**
+         * 子树结构的 Merkle 哈希
+         */
+        public long getHash() {
+            return hash;
+        }
+
+        /**
+         * 直接子项，按名称排序
+         */
+        public List<Child> getChildren() {
+            return children;
+        }
+
+        /**
+         * 已展开的子目录；未展开（已到层数上限或为排除目录）时返回 null
+         */
+        public Node getSubdirectory(String name) {
+            return subdirectories.get(name);
+        }
+
+        /**
+         * 计算本节点的分析结果，子树未变化时直接返回上次的结果
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T fold(Fold<T> fold) {
+            Object cached = results.get(fold);
+            if (cached != null) {
+                return (T) cached;
+            }
+            T result = fold.apply(this, name -> {
+                Node sub = subdirectories.get(name);
+                return sub != null ? sub.fold(fold) : null;
+            });
+            if (result != null) {
+                results.put(fold, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 目录的直接子项
+     */
+    public static final class Child {
+        private final String name;
+        private final boolean directory;
+        private final boolean excluded;
+        private final boolean ignored;
+
+        Child(String name, boolean directory, boolean excluded, boolean ignored) {
+            this.name = name;
+            this.directory = directory;
+            this.excluded = excluded;
+            this.ignored = ignored;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * 是否为只记录自身、不展开的目录（排除目录名或被忽略）
+         */
+        public boolean isExcluded() {
+            return excluded;
+        }
+
+        /**
+         * 是否被 .gitignore 等忽略规则命中
+         */
+        public boolean isIgnored() {
+            return ignored;
+        }
+    }
+
+    private final class SnapshotTask extends RecursiveTask<Node> {
+        private final Path dir;
+        private final int levels;
+        private final Node previous;
+        private boolean usedFileSystem;
+
+        SnapshotTask(Path dir, int levels, Node previous) {
+            this.dir = dir;
+            this.levels = levels;
+            this.previous = previous;
+        }
+
+        @Override
+        protected Node compute() {
+            Listing listing = list(dir, previous);
+            usedFileSystem = listing.fromFileSystem;
+            List<Child> children = new ArrayList<>(listing.children);
+            children.sort(Comparator.comparing(Child::getName));
+
+            Map<String, Node> subdirectories = new HashMap<>();
+            if (levels > 1) {
+                List<SnapshotTask> subtasks = new ArrayList<>();
+                for (Child child : children) {
+                    if (child.directory && !child.excluded) {
+                        subtasks.add(new SnapshotTask(dir.resolve(child.name), levels - 1,
+                            previous != null ? previous.subdirectories.get(child.name) : null));
+                    }
+                }
+                if (subtasks.size() >= PARALLEL_THRESHOLD) {
+                    invokeAll(subtasks);
+                    for (SnapshotTask subtask : subtasks) {
+                        collect(subtask, subtask.join(), subdirectories);
+                    }
+                } else {
+                    for (SnapshotTask subtask : subtasks) {
+                        collect(subtask, subtask.compute(), subdirectories);
+                    }
+                }
+            }
+
+            long hash = hash(levels, children, subdirectories);
+            if (previous != null && previous.hash == hash && previous.modified == listing.modified) {
+                return previous;
+            }
+            Node node = new Node(dir, levels, hash, listing.modified, children, subdirectories);
+            if (previous != null && previous.hash == hash) {
+                // 结构相同，仅目录修改时间变化：结果仍然有效
+                node.results.putAll(previous.results);
+            }
+            return node;
+        }
+
+        private void collect(SnapshotTask subtask, Node node, Map<String, Node> subdirectories) {
+            subdirectories.put(node.path.getFileName().toString(), node);
+            usedFileSystem |= subtask.usedFileSystem;
+        }
+
+        boolean usedFileSystem() {
+            return usedFileSystem;
+        }
+    }
+
+    private static final class Listing {
+        final List<Child> children;
+        final long modified;
+        final boolean fromFileSystem;
+
+        Listing(List<Child> children, long modified, boolean fromFileSystem) {
+            this.children = children;
+            this.modified = modified;
+            this.fromFileSystem = fromFileSystem;
+        }
+    }
+
+    private static final class Snapshot {
+        final Node root;
+        final long catalogVersion;
+        final long ignoreGeneration;
+
+        Snapshot(Node root, long catalogVersion, long ignoreGeneration) {
+            this.root = root;
+            this.catalogVersion = catalogVersion;
+            this.ignoreGeneration = ignoreGeneration;
+        }
+    }
+
+    private static final class Memo {
+        final long stamp;
+        final Object value;
+
+        Memo(long stamp, Object value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+    }
+}
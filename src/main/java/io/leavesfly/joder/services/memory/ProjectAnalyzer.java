@@ -9,22 +9,63 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * 项目分析器
  * <p>
- * 用于分析项目结构、技术栈和配置
+ * 用于分析项目结构、技术栈和配置；目录树与技术栈结果由 {@link ProjectAnalysisCache} 缓存，
+ * 项目未变化时直接复用
  * </p>
  */
 public class ProjectAnalyzer {
     
     private static final Logger logger = LoggerFactory.getLogger(ProjectAnalyzer.class);
     
+    /** 目录树中不显示的名称 */
+    private static final Set<String> TREE_EXCLUDES = Set.of(
+        ".git", ".idea", ".vscode", "target", "build",
+        "node_modules", ".DS_Store", "*.class");
+    
+    /**
+     * 目录树：每个目录的结果是其子树的各行（不含自身和外层缩进），父目录加上连接符与缩进后拼接
+     */
+    private static final ProjectAnalysisCache.Fold<List<String>> TREE_FOLD = (directory, subResult) -> {
+        List<ProjectAnalysisCache.Child> entries = directory.getChildren().stream()
+            .filter(child -> !shouldExclude(child))
+            .sorted(Comparator.comparing((ProjectAnalysisCache.Child child) -> !child.isDirectory())
+                .thenComparing(ProjectAnalysisCache.Child::getName))
+            .collect(Collectors.toList());
+        
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            ProjectAnalysisCache.Child entry = entries.get(i);
+            boolean isLast = i == entries.size() - 1;
+            String connector = isLast ? "└── " : "├── ";
+            String childPrefix = isLast ? "    " : "│   ";
+            lines.add(connector + entry.getName() + (entry.isDirectory() ? "/" : ""));
+            List<String> subtree = entry.isDirectory() ? subResult.apply(entry.getName()) : null;
+            if (subtree != null) {
+                for (String line : subtree) {
+                    lines.add(childPrefix + line);
+                }
+            }
+        }
+        return Collections.unmodifiableList(lines);
+    };
+    
     private final Path rootPath;
+    private final ProjectAnalysisCache analysisCache;
     
     public ProjectAnalyzer(String workingDirectory) {
+        this(workingDirectory, new ProjectAnalysisCache(workingDirectory));
+    }
+    
+    /**
+     * @param analysisCache 项目分析缓存，通常为全局单例，以便跨次调用复用结果
+     */
+    public ProjectAnalyzer(String workingDirectory, ProjectAnalysisCache analysisCache) {
         this.rootPath = Paths.get(workingDirectory);
+        this.analysisCache = analysisCache;
     }
     
     /**
@@ -91,9 +132,16 @@ public class ProjectAnalyzer {
     }
     
     /**
-     * 检测技术栈
+     * 检测技术栈，构建配置文件未变化时直接返回上次的结果
      */
     public Map<String, String> detectTechStack() {
+        Map<String, String> stack = analysisCache.memoize("techStack:" + rootPath.toAbsolutePath().normalize(),
+            List.of(rootPath.resolve("pom.xml"), rootPath.resolve("package.json"), rootPath.resolve("requirements.txt")),
+            this::scanTechStack);
+        return new LinkedHashMap<>(stack);
+    }
+    
+    private Map<String, String> scanTechStack() {
         Map<String, String> stack = new LinkedHashMap<>();
         
         // Java 项目检测
@@ -165,7 +213,7 @@ public class ProjectAnalyzer {
     }
     
     /**
-     * 生成目录树结构
+     * 生成目录树结构，只重新计算自上次生成以来结构发生变化的子树
      * 
      * @param maxDepth 最大深度
      * @return 目录树的文本表示
@@ -173,68 +221,21 @@ public class ProjectAnalyzer {
     public String generateDirectoryTree(int maxDepth) {
         StringBuilder tree = new StringBuilder();
         tree.append(rootPath.getFileName()).append("/\n");
-        
-        try {
-            buildTree(rootPath, "", tree, 0, maxDepth, new HashSet<>(Arrays.asList(
-                ".git", ".idea", ".vscode", "target", "build", 
-                "node_modules", ".DS_Store", "*.class"
-            )));
-        } catch (IOException e) {
-            logger.error("Failed to generate directory tree", e);
-            tree.append("  [Error reading directory structure]\n");
-        }
-        
-        return tree.toString();
-    }
-    
-    /**
-     * 递归构建目录树
-     */
-    private void buildTree(
-            Path dir, 
-            String prefix, 
-            StringBuilder tree, 
-            int currentDepth, 
-            int maxDepth,
-            Set<String> excludes) throws IOException {
-        
-        if (currentDepth >= maxDepth) {
-            return;
+        if (maxDepth <= 0) {
+            return tree.toString();
         }
         
-        try (Stream<Path> paths = Files.list(dir)) {
-            List<Path> entries = paths
-                .filter(p -> !shouldExclude(p, excludes))
-                .sorted(Comparator.comparing(p -> !Files.isDirectory(p)))
-                .collect(Collectors.toList());
-            
-            for (int i = 0; i < entries.size(); i++) {
-                Path entry = entries.get(i);
-                boolean isLast = (i == entries.size() - 1);
-                
-                String connector = isLast ? "└── " : "├── ";
-                String childPrefix = isLast ? "    " : "│   ";
-                
-                tree.append(prefix).append(connector);
-                tree.append(entry.getFileName());
-                
-                if (Files.isDirectory(entry)) {
-                    tree.append("/");
-                }
-                tree.append("\n");
-                
-                if (Files.isDirectory(entry)) {
-                    buildTree(entry, prefix + childPrefix, tree, currentDepth + 1, maxDepth, excludes);
-                }
-            }
+        for (String line : analysisCache.snapshot(rootPath, maxDepth).fold(TREE_FOLD)) {
+            tree.append(line).append("\n");
         }
+        return tree.toString();
     }
     
     /**
-     * 判断路径是否应该被排除
+     * 判断子项是否应该被排除：内置排除名、隐藏文件以及 .gitignore 等忽略规则命中的路径
      */
-    private boolean shouldExclude(Path path, Set<String> excludes) {
-        String fileName = path.getFileName().toString();
-        return excludes.contains(fileName) || fileName.startsWith(".");
+    private static boolean shouldExclude(ProjectAnalysisCache.Child child) {
+        String fileName = child.getName();
+        return TREE_EXCLUDES.contains(fileName) || fileName.startsWith(".") || child.isIgnored();
     }
 }
@@ -31,16 +31,23 @@ public class ProjectMemoryManager {
     
     private final String workingDirectory;
     private final ConfigManager configManager;
+    private final ProjectAnalysisCache analysisCache;
     
     private String cachedMemoryContent;
     private Instant lastLoadTime;
     
+    public ProjectMemoryManager(String workingDirectory, ConfigManager configManager) {
+        this(workingDirectory, configManager, new ProjectAnalysisCache(workingDirectory));
+    }
+    
     @Inject
     public ProjectMemoryManager(
             @WorkingDirectory String workingDirectory,
-            ConfigManager configManager) {
+            ConfigManager configManager,
+            ProjectAnalysisCache analysisCache) {
         this.workingDirectory = workingDirectory;
         this.configManager = configManager;
+        this.analysisCache = analysisCache;
         this.cachedMemoryContent = null;
         this.lastLoadTime = null;
     }
@@ -137,7 +144,7 @@ public class ProjectMemoryManager {
     public String generateInitialMemory() {
         logger.info("Generating initial project memory...");
         
-        ProjectAnalyzer analyzer = new ProjectAnalyzer(workingDirectory);
+        ProjectAnalyzer analyzer = new ProjectAnalyzer(workingDirectory, analysisCache);
         
         StringBuilder md = new StringBuilder();
         
@@ -2,10 +2,13 @@ package io.leavesfly.joder.services.mention;
 
 import io.leavesfly.joder.domain.Mention;
 import io.leavesfly.joder.domain.MentionType;
-import io.leavesfly.joder.util.FuzzyMatcher;
+import io.leavesfly.joder.services.context.ContextPack;
+import io.leavesfly.joder.services.context.ContextPacker;
+import io.leavesfly.joder.services.index.FuzzyFileIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -23,6 +26,7 @@ import java.util.regex.Pattern;
  * <p>支持的 mention 格式：
  * <ul>
  *   <li>@file:path/to/file.txt - 文件引用</li>
+ *   <li>@context:path/to/File.java - 文件引用，并附带导入图中与它相关的文件</li>
  *   <li>@agent:agent-name - Agent 引用</li>
  *   <li>@model:model-name - 模型引用</li>
  *   <li>@run-agent:agent-name - 运行 Agent</li>
@@ -46,10 +50,26 @@ public class MentionProcessor {
             Pattern.MULTILINE
     );
     
-    private final FuzzyMatcher fuzzyMatcher;
+    /**
+     * @context 展开时相关文件内容可用的 token 数
+     */
+    static final int CONTEXT_TOKEN_BUDGET = 8000;
+    
+    private final FuzzyFileIndex fuzzyFileIndex;
+    private final ContextPacker contextPacker;
     
     public MentionProcessor() {
-        this.fuzzyMatcher = new FuzzyMatcher();
+        this(null, null);
+    }
+    
+    public MentionProcessor(FuzzyFileIndex fuzzyFileIndex) {
+        this(fuzzyFileIndex, null);
+    }
+    
+    @Inject
+    public MentionProcessor(FuzzyFileIndex fuzzyFileIndex, ContextPacker contextPacker) {
+        this.fuzzyFileIndex = fuzzyFileIndex;
+        this.contextPacker = contextPacker;
     }
     
     /**
@@ -102,6 +122,7 @@ public class MentionProcessor {
         
         switch (mention.getType()) {
             case FILE:
+            case CONTEXT:
                 validateFileMention(mention, workingDirectory);
                 break;
                 
@@ -211,39 +232,33 @@ public class MentionProcessor {
      * @return 最佳匹配结果
      */
     public List<String> fuzzyMatchFile(String partialPath, List<String> candidates, int maxResults) {
-        if (candidates == null || candidates.isEmpty()) {
+        if (candidates == null || candidates.isEmpty() || maxResults <= 0) {
             return new ArrayList<>();
         }
-        
-        List<MatchScore> scores = new ArrayList<>();
-        
-        for (String candidate : candidates) {
-            FuzzyMatcher.MatchResult result = fuzzyMatcher.match(candidate, partialPath);
-            if (result.getScore() > 0) {
-                scores.add(new MatchScore(candidate, result.getScore()));
-            }
-        }
-        
-        // 按分数降序排序
-        scores.sort((a, b) -> Double.compare(b.score, a.score));
-        
-        return scores.stream()
-                .limit(maxResults)
-                .map(s -> s.candidate)
-                .collect(java.util.stream.Collectors.toList());
+        return toPaths(FuzzyFileIndex.rank(partialPath, candidates, maxResults));
     }
     
     /**
-     * 匹配分数内部类
+     * 在工作区全部文件中模糊匹配文件路径
+     * 
+     * @param partialPath 部分路径
+     * @param maxResults 最大结果数
+     * @return 最佳匹配结果（相对工作目录）；索引不可用或尚未构建完成时为空
      */
-    private static class MatchScore {
-        final String candidate;
-        final double score;
-        
-        MatchScore(String candidate, double score) {
-            this.candidate = candidate;
-            this.score = score;
+    public List<String> fuzzyMatchFile(String partialPath, int maxResults) {
+        if (fuzzyFileIndex == null || maxResults <= 0) {
+            return new ArrayList<>();
         }
+        List<FuzzyFileIndex.Match> matches = fuzzyFileIndex.search(partialPath, maxResults);
+        return matches != null ? toPaths(matches) : new ArrayList<>();
+    }
+    
+    private static List<String> toPaths(List<FuzzyFileIndex.Match> matches) {
+        List<String> paths = new ArrayList<>(matches.size());
+        for (FuzzyFileIndex.Match match : matches) {
+            paths.add(match.getPath());
+        }
+        return paths;
     }
     
     /**
@@ -262,6 +277,9 @@ public class MentionProcessor {
             case FILE:
                 return expandFileMention(mention, workingDirectory);
                 
+            case CONTEXT:
+                return expandContextMention(mention, workingDirectory);
+                
             case AGENT:
             case RUN_AGENT:
                 return expandAgentMention(mention);
@@ -302,6 +320,27 @@ public class MentionProcessor {
         return mention.getRawText();
     }
     
+    /**
+     * 展开文件及其相关文件：先展开文件本身，再在预算内附上导入图中的相关文件；
+     * 导入图未就绪时只展开文件本身
+     */
+    private String expandContextMention(Mention mention, String workingDirectory) {
+        String expanded = expandFileMention(mention, workingDirectory);
+        if (contextPacker == null || expanded.equals(mention.getRawText())) {
+            return expanded;
+        }
+        Path path = Paths.get(mention.getValue());
+        if (!path.isAbsolute() && workingDirectory != null) {
+            path = Paths.get(workingDirectory).resolve(path);
+        }
+        ContextPack pack = contextPacker.pack(path, CONTEXT_TOKEN_BUDGET);
+        if (pack == null || pack.isEmpty()) {
+            return expanded;
+        }
+        logger.debug("Expanded context mention {} with {} related files", mention.getValue(), pack.getItems().size());
+        return expanded + "\n\nRelated files:\n\n" + pack.format();
+    }
+    
     /**
      * 展开 Agent 引用
      */
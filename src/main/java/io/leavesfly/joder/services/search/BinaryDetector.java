@@ -0,0 +1,282 @@
+package io.leavesfly.joder.services.search;
+
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 二进制文件检测器
+ *
+ * <p>不依赖扩展名，只读取文件开头的一块字节判断：
+ * 带 BOM 的视为文本；出现 NUL 字节视为二进制；
+ * 否则统计非法 UTF-8 序列与异常控制字符，占比超过阈值视为二进制。
+ * 判定结果按 (路径, 大小, 修改时间) 缓存，文件未变化时不再读取。
+ * 缓存容量随工作区文件数增长；写满时淘汰任意八分之一的条目，而不是整体清空，
+ * 以免文件数超过容量时每次搜索都重新读取大部分文件。</p>
+ */
+@Singleton
+public class BinaryDetector {
+
+    /** 检测读取的字节数 */
+    static final int SNIFF_BYTES = 8192;
+
+    /** 可疑字节占比超过 1/10 判为二进制 */
+    private static final int SUSPICIOUS_RATIO = 10;
+
+    /** 缓存容量的默认下限与上限 */
+    private static final int MIN_CACHE_ENTRIES = 65536;
+    private static final int MAX_CACHE_ENTRIES = 1 << 20;
+
+    private final Map<Path, Verdict> cache = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final int minCacheEntries;
+    private WorkspaceCatalog workspaceCatalog;
+
+    public BinaryDetector() {
+        this(MIN_CACHE_ENTRIES);
+    }
+
+    BinaryDetector(int minCacheEntries) {
+        this.minCacheEntries = minCacheEntries;
+    }
+
+    /**
+     * 注入工作区目录，按其文件数确定缓存容量
+     */
+    @Inject
+    public void setWorkspaceCatalog(WorkspaceCatalog workspaceCatalog) {
+        this.workspaceCatalog = workspaceCatalog;
+    }
+
+    /**
+     * 判断文件是否为文本文件，读取属性失败或不是普通文件时返回 false
+     */
+    public boolean isTextFile(Path file) {
+        try {
+            return isTextFile(file, Files.readAttributes(file, BasicFileAttributes.class));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 判断文件是否为文本文件，使用调用方已读取的属性避免重复 stat
+     */
+    public boolean isTextFile(Path file, BasicFileAttributes attrs) {
+        if (attrs == null || !attrs.isRegularFile()) {
+            return false;
+        }
+        if (attrs.size() == 0) {
+            return true;
+        }
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        Verdict cached = cache.get(file);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached.text;
+        }
+
+        boolean text;
+        try {
+            text = !isBinary(readHead(file));
+        } catch (IOException e) {
+            return false;
+        }
+        cache.put(file, new Verdict(size, lastModified, text));
+        if (cache.size() > minCacheEntries) {
+            evictIfFull();
+        }
+        return text;
+    }
+
+    /**
+     * 超出容量时按哈希顺序淘汰八分之一的条目；哈希顺序与遍历顺序无关，
+     * 文件数超过容量时循环搜索仍能命中留下的大部分条目
+     */
+    private void evictIfFull() {
+        int capacity = capacity();
+        if (cache.size() <= capacity || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = capacity - capacity / 8;
+            Iterator<Path> it = cache.keySet().iterator();
+            while (cache.size() > target && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * 缓存容量：工作区文件数的 1.25 倍，限制在上下限之间
+     */
+    private int capacity() {
+        WorkspaceCatalog catalog = workspaceCatalog;
+        long files = catalog != null ? catalog.size() : 0;
+        return (int) Math.max(minCacheEntries, Math.min(MAX_CACHE_ENTRIES, files + files / 4));
+    }
+
+    /**
+     * 清空判定缓存
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    int cacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * 根据完整文件内容判断是否为二进制，只检查开头一块
+     */
+    public static boolean isBinary(byte[] content) {
+        return isBinary(ByteBuffer.wrap(content, 0, Math.min(content.length, SNIFF_BYTES)));
+    }
+
+    /**
+     * 根据文件开头的字节判断是否为二进制内容
+     *
+     * @param head 文件开头的字节，position 到 limit 为有效内容
+     */
+    public static boolean isBinary(ByteBuffer head) {
+        int start = head.position();
+        int end = head.limit();
+        int length = end - start;
+        if (length == 0) {
+            return false;
+        }
+        if (hasByteOrderMark(head, start, length)) {
+            return false;
+        }
+
+        int suspicious = 0;
+        int i = start;
+        while (i < end) {
+            int b = head.get(i) & 0xFF;
+            if (b == 0) {
+                return true;
+            }
+            if (b < 0x80) {
+                if (b < 0x20 && !isTextControl(b)) {
+                    suspicious++;
+                }
+                i++;
+                continue;
+            }
+            int sequence = utf8SequenceLength(head, i, end);
+            if (sequence < 0) {
+                // 截断在读取块末尾的多字节字符不算非法
+                break;
+            }
+            if (sequence == 0) {
+                suspicious++;
+                i++;
+            } else {
+                i += sequence;
+            }
+        }
+        return suspicious * SUSPICIOUS_RATIO > length;
+    }
+
+    /**
+     * 读取文件开头最多 {@link #SNIFF_BYTES} 字节
+     */
+    private static ByteBuffer readHead(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SNIFF_BYTES);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // 读满一块或到达文件末尾
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static boolean hasByteOrderMark(ByteBuffer head, int start, int length) {
+        int b0 = head.get(start) & 0xFF;
+        int b1 = length > 1 ? head.get(start + 1) & 0xFF : -1;
+        int b2 = length > 2 ? head.get(start + 2) & 0xFF : -1;
+        int b3 = length > 3 ? head.get(start + 3) & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            return true;                                    // UTF-8
+        }
+        if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE)) {
+            return true;                                    // UTF-16 / UTF-32 LE
+        }
+        return b0 == 0 && b1 == 0 && b2 == 0xFE && b3 == 0xFF;  // UTF-32 BE
+    }
+
+    /**
+     * 文本中常见的控制字符：退格、制表、换行、换页、回车、ESC
+     */
+    private static boolean isTextControl(int b) {
+        return b == '\b' || b == '\t' || b == '\n' || b == '\f' || b == '\r' || b == 0x1B;
+    }
+
+    /**
+     * 校验从 i 开始的 UTF-8 多字节序列
+     *
+     * @return 合法时返回序列长度；非法返回 0；在 end 处被截断返回 -1
+     */
+    private static int utf8SequenceLength(ByteBuffer head, int i, int end) {
+        int b = head.get(i) & 0xFF;
+        int length;
+        int min;
+        if (b >= 0xC2 && b <= 0xDF) {
+            length = 2;
+            min = 0x80;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            length = 3;
+            min = 0x800;
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            length = 4;
+            min = 0x10000;
+        } else {
+            return 0;
+        }
+        int codePoint = b & (0x3F >> (length - 1));
+        for (int k = 1; k < length; k++) {
+            if (i + k >= end) {
+                return -1;
+            }
+            int c = head.get(i + k) & 0xFF;
+            if ((c & 0xC0) != 0x80) {
+                return 0;
+            }
+            codePoint = (codePoint << 6) | (c & 0x3F);
+        }
+        if (codePoint < min || codePoint > 0x10FFFF || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+            return 0;
+        }
+        return length;
+    }
+
+    private static final class Verdict {
+        final long size;
+        final long lastModified;
+        final boolean text;
+
+        Verdict(long size, long lastModified, boolean text) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.text = text;
+        }
+    }
+}
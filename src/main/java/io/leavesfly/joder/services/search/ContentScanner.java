@@ -0,0 +1,756 @@
+package io.leavesfly.joder.services.search;
+
+import io.leavesfly.joder.hooks.CancellationToken;
+import io.leavesfly.joder.services.index.TrigramQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 并行内容扫描引擎
+ *
+ * <p>供 Grep 与 SmartSearch 共用，分四个阶段：</p>
+ * <ol>
+ *   <li>在 ForkJoin 池上并行遍历目录（每个目录一个任务，大目录再按文件分片）；</li>
+ *   <li>大文件内存映射，小文件一次性读入字节；</li>
+ *   <li>用正则的必需字面量（{@link TrigramQuery#requiredLiteral(String)}）在原始字节上预筛选，
+ *       不含字面量的文件无需解码；</li>
+ *   <li>只解码包含字面量的行，再交给 java.util.regex 验证。</li>
+ * </ol>
+ *
+ * <p>行的划分与 {@link java.io.BufferedReader#readLine()} 一致（\n、\r 或 \r\n）。
+ * 扫描响应调用线程上的 {@link CancellationToken}，取消后尽快停止。</p>
+ *
+ * <p>按修改时间取前 K 个结果时（{@link ScanRequest.Builder#newestFirst(int)}），
+ * 结果保存在有界堆中；堆满后比第 K 新的文件还旧的文件不再读取。
+ * 时间与内存预算耗尽时提前结束，并在 {@link ScanResult} 中报告。</p>
+ */
+@Singleton
+public class ContentScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentScanner.class);
+
+    private static final long MMAP_THRESHOLD = 256 * 1024;
+    private static final int FILES_PER_TASK = 64;
+
+    private final ForkJoinPool pool;
+
+    public ContentScanner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ContentScanner(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("ContentScanner-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * 执行扫描
+     *
+     * @param request 扫描请求
+     * @return 扫描结果；未指定 newestFirst 时文件顺序不确定，由调用方排序
+     */
+    public ScanResult scan(ScanRequest request) throws IOException {
+        long begin = System.nanoTime();
+        Scan scan = new Scan(request, CancellationToken.current(), begin);
+        ForkJoinTask<?> task = request.candidates != null
+            ? new FileBatchTask(scan, request.candidates, null, 0, request.candidates.size())
+            : new DirectoryTask(scan, request.root);
+        Runnable detach = scan.token.onCancel(() -> scan.stopped.set(true));
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException e) {
+            scan.stopped.set(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            detach.run();
+        }
+        return new ScanResult(scan, (System.nanoTime() - begin) / 1_000_000);
+    }
+
+    /**
+     * 单次扫描的共享状态
+     */
+    private static final class Scan {
+        final ScanRequest request;
+        final CancellationToken token;
+        final byte[] literal;
+        final long deadline;
+        final Queue<FileResult> results = new ConcurrentLinkedQueue<>();
+        final TopKCollector<FileResult> newest;
+        final AtomicInteger found = new AtomicInteger();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final AtomicLong retainedBytes = new AtomicLong();
+        final LongAdder scannedFiles = new LongAdder();
+        final LongAdder skippedFiles = new LongAdder();
+        final LongAdder bytesRead = new LongAdder();
+        volatile boolean timedOut;
+        volatile boolean memoryBudgetExceeded;
+
+        /** 堆满后第 K 新文件的修改时间，更旧的文件无需读取 */
+        volatile long mtimeThreshold = Long.MIN_VALUE;
+
+        Scan(ScanRequest request, CancellationToken token, long begin) {
+            this.request = request;
+            this.token = token;
+            String required = TrigramQuery.requiredLiteral(request.pattern.pattern());
+            this.literal = required != null ? required.getBytes(StandardCharsets.UTF_8) : null;
+            this.deadline = request.timeBudgetMs > 0 ? begin + request.timeBudgetMs * 1_000_000 : 0;
+            this.newest = request.newestFirst > 0 ? new TopKCollector<>(request.newestFirst, NEWEST_FIRST) : null;
+        }
+
+        boolean shouldStop() {
+            if (stopped.get() || token.isCancelled()) {
+                return true;
+            }
+            if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                stopped.set(true);
+                return true;
+            }
+            return false;
+        }
+
+        void offer(FileResult result) {
+            int count = found.incrementAndGet();
+            long weight = result.estimatedBytes();
+            if (newest != null) {
+                FileResult dropped = newest.offer(result);
+                retainedBytes.addAndGet(weight - (dropped != null ? dropped.estimatedBytes() : 0));
+                FileResult worst = newest.threshold();
+                if (worst != null) {
+                    mtimeThreshold = worst.lastModified;
+                }
+            } else {
+                if (count <= request.maxFiles) {
+                    results.add(result);
+                    retainedBytes.addAndGet(weight);
+                }
+                if (count >= request.maxFiles) {
+                    stopped.set(true);
+                }
+            }
+            if (retainedBytes.get() > request.memoryBudgetBytes) {
+                memoryBudgetExceeded = true;
+                stopped.set(true);
+            }
+        }
+
+        List<FileResult> files() {
+            return newest != null ? newest.toSortedList() : new ArrayList<>(results);
+        }
+    }
+
+    /** 修改时间降序，相同时按路径升序保证结果稳定 */
+    private static final Comparator<FileResult> NEWEST_FIRST =
+        Comparator.comparingLong((FileResult r) -> r.lastModified).reversed()
+            .thenComparing(r -> r.path);
+
+    /**
+     * 目录任务：子目录派生新任务，当前目录的文件分片扫描
+     */
+    private static final class DirectoryTask extends RecursiveAction {
+        private final Scan scan;
+        private final Path dir;
+
+        DirectoryTask(Scan scan, Path dir) {
+            this.scan = scan;
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (scan.shouldStop() || !scan.request.directoryFilter.test(dir)) {
+                return;
+            }
+            List<DirectoryTask> subdirs = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            List<BasicFileAttributes> attributes = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        subdirs.add(new DirectoryTask(scan, entry));
+                    } else {
+                        files.add(entry);
+                        attributes.add(attrs);
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("读取目录失败: {}", dir, e);
+                return;
+            }
+
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(subdirs);
+            for (int from = 0; from < files.size(); from += FILES_PER_TASK) {
+                int to = Math.min(files.size(), from + FILES_PER_TASK);
+                tasks.add(new FileBatchTask(scan, files, attributes, from, to));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * 文件分片任务
+     */
+    private static final class FileBatchTask extends RecursiveAction {
+        private final Scan scan;
+        private final List<Path> files;
+        private final List<BasicFileAttributes> attributes;
+        private final int from;
+        private final int to;
+
+        /**
+         * @param attributes 与 files 一一对应的属性，为 null 时逐个读取
+         */
+        FileBatchTask(Scan scan, List<Path> files, List<BasicFileAttributes> attributes, int from, int to) {
+            this.scan = scan;
+            this.files = files;
+            this.attributes = attributes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FileBatchTask(scan, files, attributes, from, mid),
+                    new FileBatchTask(scan, files, attributes, mid, to));
+                return;
+            }
+            for (int i = from; i < to && !scan.shouldStop(); i++) {
+                Path file = files.get(i);
+                try {
+                    BasicFileAttributes attrs = attributes != null
+                        ? attributes.get(i)
+                        : Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    long lastModified = attrs.lastModifiedTime().toMillis();
+                    if (lastModified < scan.mtimeThreshold) {
+                        scan.skippedFiles.increment();
+                        continue;
+                    }
+                    if (!scan.request.fileFilter.test(file, attrs)) {
+                        continue;
+                    }
+                    FileResult result = scanFile(scan, file, lastModified);
+                    if (result != null) {
+                        scan.offer(result);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.debug("扫描文件失败: {}", file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 扫描单个文件
+     */
+    private static FileResult scanFile(Scan scan, Path file, long lastModified) throws IOException {
+        ByteBuffer buffer = readBytes(file);
+        if (buffer == null || buffer.limit() == 0) {
+            return null;
+        }
+        int size = buffer.limit();
+        scan.scannedFiles.increment();
+        scan.bytesRead.add(size);
+        byte[] literal = scan.literal;
+        ScanRequest request = scan.request;
+
+        FileResult result = null;
+        Matcher matcher = request.pattern.matcher("");
+        LineReader lines = new LineReader(buffer);
+        int position = 0;
+
+        while (position < size) {
+            int lineStart;
+            if (literal != null) {
+                // 跳到下一处字面量所在的行，中间的行无需解码
+                int hit = indexOf(buffer, literal, position, size);
+                if (hit < 0) {
+                    break;
+                }
+                lineStart = lines.lineStartBefore(hit, position);
+            } else {
+                lineStart = position;
+            }
+            int lineEnd = lines.lineEndFrom(lineStart);
+            int lineNumber = lines.lineNumberAt(lineStart);
+
+            String line = lines.decode(lineStart, lineEnd);
+            matcher.reset(line);
+            if (matcher.find()) {
+                if (result == null) {
+                    result = new FileResult(file, lastModified);
+                }
+                if (request.maxMatchesPerFile <= 0) {
+                    break;
+                }
+                result.matches.add(new LineMatch(lineNumber, line, matcher.start(), matcher.end()));
+                if (result.matches.size() >= request.maxMatchesPerFile) {
+                    break;
+                }
+            }
+            position = lines.nextLineStart(lineEnd);
+        }
+        return result;
+    }
+
+    /**
+     * 读取文件字节：大文件内存映射，小文件直接读入堆内存
+     */
+    private static ByteBuffer readBytes(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                logger.debug("文件过大，跳过: {}", file);
+                return null;
+            }
+            if (size >= MMAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // 继续读取
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * 在字节缓冲区中查找字面量（ASCII 大小写不敏感，literal 已折叠为小写）
+     */
+    static int indexOf(ByteBuffer buffer, byte[] literal, int from, int limit) {
+        byte first = literal[0];
+        byte firstUpper = (first >= 'a' && first <= 'z') ? (byte) (first - ('a' - 'A')) : first;
+        int last = limit - literal.length;
+        for (int i = from; i <= last; i++) {
+            byte b = buffer.get(i);
+            if (b != first && b != firstUpper) {
+                continue;
+            }
+            int j = 1;
+            while (j < literal.length && fold(buffer.get(i + j)) == literal[j]) {
+                j++;
+            }
+            if (j == literal.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte fold(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * 按 BufferedReader 的规则在字节上划分行，并增量维护行号
+     */
+    private static final class LineReader {
+        private final ByteBuffer buffer;
+        private final int size;
+        private byte[] scratch = new byte[256];
+        private int countedUpTo;
+        private int countedLines;
+
+        LineReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.size = buffer.limit();
+        }
+
+        int lineStartBefore(int offset, int floor) {
+            int i = offset;
+            while (i > floor) {
+                byte b = buffer.get(i - 1);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                i--;
+            }
+            return i;
+        }
+
+        int lineEndFrom(int start) {
+            int i = start;
+            while (i < size) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                i++;
+            }
+            return i;
+        }
+
+        int nextLineStart(int lineEnd) {
+            if (lineEnd >= size) {
+                return size;
+            }
+            if (buffer.get(lineEnd) == '\r' && lineEnd + 1 < size && buffer.get(lineEnd + 1) == '\n') {
+                return lineEnd + 2;
+            }
+            return lineEnd + 1;
+        }
+
+        /**
+         * 行号从 1 开始；调用方的 offset 单调递增
+         */
+        int lineNumberAt(int offset) {
+            for (int i = countedUpTo; i < offset; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    countedLines++;
+                } else if (b == '\r' && (i + 1 >= size || buffer.get(i + 1) != '\n')) {
+                    countedLines++;
+                }
+            }
+            countedUpTo = Math.max(countedUpTo, offset);
+            return countedLines + 1;
+        }
+
+        String decode(int start, int end) {
+            int length = end - start;
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+            }
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 扫描请求
+     */
+    public static class ScanRequest {
+        private final Path root;
+        private final List<Path> candidates;
+        private final Pattern pattern;
+        private final Predicate<Path> directoryFilter;
+        private final BiPredicate<Path, BasicFileAttributes> fileFilter;
+        private final int maxMatchesPerFile;
+        private final int maxFiles;
+        private final int newestFirst;
+        private final long timeBudgetMs;
+        private final long memoryBudgetBytes;
+
+        private ScanRequest(Builder builder) {
+            this.root = builder.root;
+            this.candidates = builder.candidates;
+            this.pattern = builder.pattern;
+            this.directoryFilter = builder.directoryFilter;
+            this.fileFilter = builder.fileFilter;
+            this.maxMatchesPerFile = builder.maxMatchesPerFile;
+            this.maxFiles = builder.maxFiles;
+            this.newestFirst = builder.newestFirst;
+            this.timeBudgetMs = builder.timeBudgetMs;
+            this.memoryBudgetBytes = builder.memoryBudgetBytes;
+        }
+
+        public static Builder builder(Path root, Pattern pattern) {
+            return new Builder(root, pattern);
+        }
+
+        public static class Builder {
+            private final Path root;
+            private final Pattern pattern;
+            private List<Path> candidates;
+            private Predicate<Path> directoryFilter = dir -> true;
+            private BiPredicate<Path, BasicFileAttributes> fileFilter = (file, attrs) -> true;
+            private int maxMatchesPerFile = 0;
+            private int maxFiles = Integer.MAX_VALUE;
+            private int newestFirst = 0;
+            private long timeBudgetMs = 0;
+            private long memoryBudgetBytes = Long.MAX_VALUE;
+
+            private Builder(Path root, Pattern pattern) {
+                this.root = root;
+                this.pattern = pattern;
+            }
+
+            /**
+             * 只扫描给定的候选文件（如索引筛选结果），不遍历目录
+             */
+            public Builder candidates(List<Path> candidates) {
+                this.candidates = candidates;
+                return this;
+            }
+
+            /**
+             * 目录过滤器，返回 false 的目录（含根目录）整体跳过
+             */
+            public Builder directoryFilter(Predicate<Path> directoryFilter) {
+                this.directoryFilter = directoryFilter;
+                return this;
+            }
+
+            /**
+             * 文件过滤器，在读取内容前调用
+             */
+            public Builder fileFilter(BiPredicate<Path, BasicFileAttributes> fileFilter) {
+                this.fileFilter = fileFilter;
+                return this;
+            }
+
+            /**
+             * 每个文件最多记录的匹配行数，0 表示只判断是否匹配（命中第一行即停止）
+             */
+            public Builder maxMatchesPerFile(int maxMatchesPerFile) {
+                this.maxMatchesPerFile = maxMatchesPerFile;
+                return this;
+            }
+
+            /**
+             * 最多返回的文件数，达到后停止扫描
+             */
+            public Builder maxFiles(int maxFiles) {
+                this.maxFiles = maxFiles;
+                return this;
+            }
+
+            /**
+             * 只保留修改时间最新的 limit 个文件，结果按修改时间降序排列；
+             * 与 maxFiles 不同，扫描不会在找到 limit 个文件后停止
+             */
+            public Builder newestFirst(int limit) {
+                this.newestFirst = limit;
+                return this;
+            }
+
+            /**
+             * 时间预算（毫秒），耗尽后停止扫描，0 表示不限
+             */
+            public Builder timeBudgetMs(long timeBudgetMs) {
+                this.timeBudgetMs = timeBudgetMs;
+                return this;
+            }
+
+            /**
+             * 结果占用内存的预算（估算字节数），超出后停止扫描
+             */
+            public Builder memoryBudgetBytes(long memoryBudgetBytes) {
+                this.memoryBudgetBytes = memoryBudgetBytes;
+                return this;
+            }
+
+            public ScanRequest build() {
+                return new ScanRequest(this);
+            }
+        }
+    }
+
+    /**
+     * 一次扫描的结果与统计
+     */
+    public static class ScanResult {
+        private final List<FileResult> files;
+        private final int matchedFiles;
+        private final long scannedFiles;
+        private final long skippedFiles;
+        private final long bytesRead;
+        private final long retainedBytes;
+        private final long elapsedMs;
+        private final boolean timedOut;
+        private final boolean memoryBudgetExceeded;
+        private final boolean stoppedEarly;
+
+        private ScanResult(Scan scan, long elapsedMs) {
+            this.files = scan.files();
+            this.matchedFiles = scan.found.get();
+            this.scannedFiles = scan.scannedFiles.sum();
+            this.skippedFiles = scan.skippedFiles.sum();
+            this.bytesRead = scan.bytesRead.sum();
+            this.retainedBytes = scan.retainedBytes.get();
+            this.elapsedMs = elapsedMs;
+            this.timedOut = scan.timedOut;
+            this.memoryBudgetExceeded = scan.memoryBudgetExceeded;
+            this.stoppedEarly = scan.stopped.get() || scan.token.isCancelled();
+        }
+
+        /**
+         * 返回的文件：newestFirst 模式下按修改时间降序，否则顺序不确定
+         */
+        public List<FileResult> getFiles() {
+            return files;
+        }
+
+        /**
+         * 发现的匹配文件总数（可能多于返回的文件数）
+         */
+        public int getMatchedFiles() {
+            return matchedFiles;
+        }
+
+        /**
+         * 读取了内容的文件数
+         */
+        public long getScannedFiles() {
+            return scannedFiles;
+        }
+
+        /**
+         * 因修改时间不可能进入前 K 而未读取的文件数
+         */
+        public long getSkippedFiles() {
+            return skippedFiles;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * 结果占用内存的估算字节数
+         */
+        public long getRetainedBytes() {
+            return retainedBytes;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public boolean isMemoryBudgetExceeded() {
+            return memoryBudgetExceeded;
+        }
+
+        /**
+         * 是否未遍历完（达到 maxFiles、预算耗尽或被取消）
+         */
+        public boolean isStoppedEarly() {
+            return stoppedEarly;
+        }
+    }
+
+    /**
+     * 文件扫描结果
+     */
+    public static class FileResult {
+        private final Path path;
+        private final long lastModified;
+        private final List<LineMatch> matches = new ArrayList<>();
+
+        FileResult(Path path, long lastModified) {
+            this.path = path;
+            this.lastModified = lastModified;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * 匹配行，只判断是否匹配时为空
+         */
+        public List<LineMatch> getMatches() {
+            return Collections.unmodifiableList(matches);
+        }
+
+        /**
+         * 估算占用的堆内存字节数
+         */
+        long estimatedBytes() {
+            long bytes = 64 + 2L * path.toString().length();
+            for (LineMatch match : matches) {
+                bytes += 48 + 2L * match.line.length();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 匹配行
+     */
+    public static class LineMatch {
+        private final int lineNumber;
+        private final String line;
+        private final int start;
+        private final int end;
+
+        LineMatch(int lineNumber, String line, int start, int end) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * 行号（从 1 开始）
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        /**
+         * 首个匹配在行内的起始位置
+         */
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.leavesfly.joder.services.search;
+
+/**
+ * 单次搜索调用的时间与内存预算
+ *
+ * <p>搜索工具在预算耗尽时提前结束并返回已有结果，
+ * 预算使用情况通过 {@link #describe(long, long, boolean, boolean)} 写入结果元数据。</p>
+ */
+public final class SearchBudget {
+
+    /** 搜索工具默认预算：30 秒，结果占用 16MB */
+    public static final SearchBudget DEFAULT = new SearchBudget(30_000, 16L * 1024 * 1024);
+
+    private final long timeMs;
+    private final long memoryBytes;
+
+    public SearchBudget(long timeMs, long memoryBytes) {
+        this.timeMs = timeMs;
+        this.memoryBytes = memoryBytes;
+    }
+
+    public long getTimeMs() {
+        return timeMs;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * 生成预算使用情况描述，如 "预算: 时间 120/30000ms, 内存 4.2 KB/16.0 MB"
+     */
+    public String describe(long elapsedMs, long retainedBytes, boolean timedOut, boolean memoryExceeded) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("预算: 时间 %d/%dms, 内存 %s/%s",
+            elapsedMs, timeMs, formatSize(retainedBytes), formatSize(memoryBytes)));
+        if (timedOut) {
+            sb.append(" (时间预算耗尽，结果不完整)");
+        } else if (memoryExceeded) {
+            sb.append(" (内存预算耗尽，结果不完整)");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 格式化字节数
+     */
+    public static String formatSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        } else {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.leavesfly.joder.services.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 有界 Top-K 收集器
+ *
+ * <p>用容量为 K 的小顶堆（堆顶是当前最差的元素）保留最好的 K 个结果，
+ * 内存与排序开销只与 K 相关，与候选总数无关。线程安全。</p>
+ *
+ * @param <T> 元素类型
+ */
+public class TopKCollector<T> {
+
+    private final int limit;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+    private long offered;
+
+    /**
+     * @param limit 保留的元素个数
+     * @param order 排序规则，排在前面的更好
+     */
+    public TopKCollector(int limit, Comparator<? super T> order) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit 必须大于 0: " + limit);
+        }
+        this.limit = limit;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, order.reversed());
+    }
+
+    /**
+     * 提交一个元素
+     *
+     * @return 因此被丢弃的元素（被挤出的旧元素或未入选的 item 本身），没有丢弃时返回 null
+     */
+    public synchronized T offer(T item) {
+        offered++;
+        if (heap.size() < limit) {
+            heap.add(item);
+            return null;
+        }
+        T worst = heap.peek();
+        if (order.compare(item, worst) >= 0) {
+            return item;
+        }
+        heap.poll();
+        heap.add(item);
+        return worst;
+    }
+
+    /**
+     * 当前保留的最差元素，未满时返回 null；用于在计算昂贵的元素前剪枝
+     */
+    public synchronized T threshold() {
+        return heap.size() < limit ? null : heap.peek();
+    }
+
+    /**
+     * 累计提交的元素数
+     */
+    public synchronized long getOffered() {
+        return offered;
+    }
+
+    public synchronized int size() {
+        return heap.size();
+    }
+
+    /**
+     * 是否有元素未入选
+     */
+    public synchronized boolean isTruncated() {
+        return offered > heap.size();
+    }
+
+    /**
+     * 按排序规则返回保留的元素
+     */
+    public synchronized List<T> toSortedList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+}
@@ -0,0 +1,649 @@
+package io.leavesfly.joder.services.workspace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 目录列表引擎
+ * <p>
+ * 按深度优先顺序逐项产出目录内容，同时在后台并行读取即将展开的子目录；条目较多的目录并行读取文件属性。
+ * 结果按页返回，未列完时给出游标，凭游标继续取下一页时沿用同一次遍历，不会重新遍历已列出的部分。
+ * 根目录的直接子项全部可以翻页取到；更深的目录只列出前 {@code maxPerDirectory} 项，其余汇总为一条“还有 N 项”；
+ * 超出深度预算的目录不展开，只给出子项数量。
+ * </p>
+ * <p>
+ * 注入了 {@link WorkspaceCatalog} 时优先从内存目录取子项，目录不可用时读取文件系统。符号链接不跟随。
+ * </p>
+ */
+@Singleton
+public class DirectoryLister {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryLister.class);
+
+    /**
+     * 子项达到该数量的目录并行读取文件属性
+     */
+    static final int PARALLEL_STAT_THRESHOLD = 256;
+
+    /**
+     * 每展开一个目录，最多预读的子目录数
+     */
+    private static final int PREFETCH_DIRECTORIES = 32;
+
+    private static final int MAX_SESSIONS = 16;
+    private static final long SESSION_TTL_MS = 10 * 60 * 1000;
+
+    private final WorkspaceCatalog workspaceCatalog;
+    /** 未列完的遍历，按最近访问排序 */
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong sessionIds = new AtomicLong();
+
+    public DirectoryLister() {
+        this(null);
+    }
+
+    @Inject
+    public DirectoryLister(WorkspaceCatalog workspaceCatalog) {
+        this.workspaceCatalog = workspaceCatalog;
+    }
+
+    /**
+     * 开始列出目录并返回第一页
+     *
+     * @throws IOException 根目录无法读取
+     */
+    public Page list(ListingRequest request) throws IOException {
+        Session session = new Session(Long.toString(sessionIds.incrementAndGet(), 36), request);
+        Page page = session.page(0);
+        if (page.hasMore()) {
+            synchronized (sessions) {
+                evictExpired();
+                sessions.put(session.id, session);
+                if (sessions.size() > MAX_SESSIONS) {
+                    Iterator<String> eldest = sessions.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * 按游标取下一页；同一游标可以重复使用，直到取过它之后的页
+     *
+     * @return 下一页；游标无效、已过期或已被更靠后的页取代时返回 null
+     */
+    public Page next(String cursor) {
+        int colon = cursor != null ? cursor.lastIndexOf(':') : -1;
+        if (colon <= 0) {
+            return null;
+        }
+        int offset;
+        try {
+            offset = Integer.parseInt(cursor.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String id = cursor.substring(0, colon);
+        Session session;
+        synchronized (sessions) {
+            evictExpired();
+            session = sessions.get(id);
+        }
+        if (session == null) {
+            return null;
+        }
+        Page page = session.page(offset);
+        if (page != null && !page.hasMore()) {
+            synchronized (sessions) {
+                sessions.remove(id);
+            }
+        }
+        return page;
+    }
+
+    int activeSessions() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> now - session.lastAccess > SESSION_TTL_MS);
+    }
+
+    /**
+     * 读取目录的直接子项，过滤并排序
+     */
+    private List<Child> readDirectory(Path dir, ListingRequest request) throws IOException {
+        List<Child> children = new ArrayList<>();
+        List<WorkspaceCatalog.Entry> entries = workspaceCatalog != null ? workspaceCatalog.listChildren(dir) : null;
+        if (entries != null) {
+            for (WorkspaceCatalog.Entry entry : entries) {
+                if (!request.filter.skip(entry.getPath(), entry.isDirectory())) {
+                    children.add(new Child(entry.getPath(), entry.getName(), entry.isDirectory(), entry.getSize()));
+                }
+            }
+        } else {
+            List<Path> paths = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    paths.add(path);
+                }
+            }
+            Child[] stats = new Child[paths.size()];
+            StatTask task = new StatTask(paths, stats, 0, stats.length);
+            if (stats.length >= PARALLEL_STAT_THRESHOLD) {
+                ForkJoinPool.commonPool().invoke(task);
+            } else {
+                task.compute();
+            }
+            for (Child child : stats) {
+                if (child != null && !request.filter.skip(child.path, child.directory)) {
+                    children.add(child);
+                }
+            }
+        }
+        children.sort(request.order.comparator);
+        return children;
+    }
+
+    /**
+     * 统计未展开目录的子项数，只读取名称，不区分文件与目录
+     */
+    private int countChildren(Path dir, ListingRequest request) {
+        List<WorkspaceCatalog.Entry> entries = workspaceCatalog != null ? workspaceCatalog.listChildren(dir) : null;
+        int count = 0;
+        if (entries != null) {
+            for (WorkspaceCatalog.Entry entry : entries) {
+                if (!request.filter.skip(entry.getPath(), entry.isDirectory())) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                if (!request.filter.skip(path, false)) {
+                    count++;
+                }
+            }
+            return count;
+        } catch (IOException e) {
+            logger.debug("统计目录子项失败: {}: {}", dir, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 一次未列完的遍历：深度优先的目录栈与已产出但调用方可能还会再取的条目
+     */
+    private final class Session {
+        final String id;
+        final ListingRequest request;
+        final Deque<Frame> stack = new ArrayDeque<>();
+        final Map<Path, CompletableFuture<List<Child>>> prefetched = new HashMap<>();
+        final Map<Path, CompletableFuture<Integer>> prefetchedCounts = new HashMap<>();
+        /** 从 base 开始已产出的条目 */
+        final List<Item> produced = new ArrayList<>();
+        int base;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        Session(String id, ListingRequest request) throws IOException {
+            this.id = id;
+            this.request = request;
+            push(request.root, readDirectory(request.root, request), 0, new boolean[0], Integer.MAX_VALUE);
+        }
+
+        synchronized Page page(int offset) {
+            lastAccess = System.currentTimeMillis();
+            if (offset < base) {
+                return null;
+            }
+            int end = offset + request.pageSize;
+            while (base + produced.size() < end && advance()) {
+                // 逐项产出直到本页填满或遍历结束
+            }
+            if (offset > base + produced.size()) {
+                return null;
+            }
+            // 早于本页的条目不会再被取到；保留本页，同一游标重试时直接返回
+            produced.subList(0, offset - base).clear();
+            base = offset;
+            List<Item> items = new ArrayList<>(produced.subList(0, Math.min(request.pageSize, produced.size())));
+            boolean more = produced.size() > items.size() || !stack.isEmpty();
+            return new Page(request.root, items, offset, more ? id + ":" + (offset + items.size()) : null);
+        }
+
+        /**
+         * 产出下一项
+         *
+         * @return 遍历已结束时返回 false
+         */
+        private boolean advance() {
+            Frame frame = stack.peek();
+            if (frame == null) {
+                return false;
+            }
+            if (frame.next < frame.children.size()) {
+                Child child = frame.children.get(frame.next++);
+                boolean last = frame.next == frame.children.size() && frame.omitted == 0;
+                if (child.directory && expands(frame.depth)) {
+                    produced.add(new Item(child, frame.depth, last, frame.openAncestors, -1));
+                    push(child.path, take(child.path), frame.depth + 1, append(frame.openAncestors, !last),
+                        request.maxPerDirectory);
+                } else {
+                    int collapsed = child.directory ? takeCount(child.path) : -1;
+                    produced.add(new Item(child, frame.depth, last, frame.openAncestors, collapsed));
+                }
+                return true;
+            }
+            stack.pop();
+            if (frame.omitted > 0) {
+                produced.add(Item.summary(frame.directory, frame.depth, frame.openAncestors, frame.omitted));
+            }
+            return true;
+        }
+
+        /**
+         * depth 层的目录是否展开
+         */
+        private boolean expands(int depth) {
+            return depth + 1 < request.maxDepth;
+        }
+
+        private void push(Path directory, List<Child> children, int depth, boolean[] openAncestors, int cap) {
+            int omitted = Math.max(0, children.size() - cap);
+            List<Child> shown = omitted > 0 ? children.subList(0, cap) : children;
+            stack.push(new Frame(directory, shown, depth, openAncestors, omitted));
+            prefetch(shown, depth);
+        }
+
+        /**
+         * 在后台读取即将展开的子目录；不展开的目录只统计子项数
+         */
+        private void prefetch(List<Child> children, int depth) {
+            int submitted = 0;
+            for (Child child : children) {
+                if (submitted >= PREFETCH_DIRECTORIES) {
+                    break;
+                }
+                if (!child.directory) {
+                    continue;
+                }
+                if (expands(depth)) {
+                    prefetched.computeIfAbsent(child.path, path -> CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return readDirectory(path, request);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, ForkJoinPool.commonPool()));
+                } else {
+                    prefetchedCounts.computeIfAbsent(child.path, path -> CompletableFuture.supplyAsync(
+                        () -> countChildren(path, request), ForkJoinPool.commonPool()));
+                }
+                submitted++;
+            }
+        }
+
+        private List<Child> take(Path dir) {
+            CompletableFuture<List<Child>> future = prefetched.remove(dir);
+            try {
+                return future != null ? future.join() : readDirectory(dir, request);
+            } catch (IOException | CompletionException e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                logger.debug("读取目录失败: {}: {}", dir, cause.getMessage());
+                return List.of();
+            }
+        }
+
+        private int takeCount(Path dir) {
+            CompletableFuture<Integer> future = prefetchedCounts.remove(dir);
+            return future != null ? future.join() : countChildren(dir, request);
+        }
+    }
+
+    private static boolean[] append(boolean[] flags, boolean value) {
+        boolean[] result = Arrays.copyOf(flags, flags.length + 1);
+        result[flags.length] = value;
+        return result;
+    }
+
+    /**
+     * 深度优先栈中的一个目录
+     */
+    private static final class Frame {
+        final Path directory;
+        final List<Child> children;
+        final int depth;
+        final boolean[] openAncestors;
+        final int omitted;
+        int next;
+
+        Frame(Path directory, List<Child> children, int depth, boolean[] openAncestors, int omitted) {
+            this.directory = directory;
+            this.children = children;
+            this.depth = depth;
+            this.openAncestors = openAncestors;
+            this.omitted = omitted;
+        }
+    }
+
+    /**
+     * 目录中的一个子项
+     */
+    private static final class Child {
+        final Path path;
+        final String name;
+        final boolean directory;
+        final long size;
+
+        Child(Path path, String name, boolean directory, long size) {
+            this.path = path;
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 读取一段子项的文件属性，较长的区间拆分后并行执行；读取失败（如已被删除）的子项留空
+     */
+    private static final class StatTask extends RecursiveAction {
+        private final List<Path> paths;
+        private final Child[] out;
+        private final int from;
+        private final int to;
+
+        StatTask(List<Path> paths, Child[] out, int from, int to) {
+            this.paths = paths;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_STAT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new StatTask(paths, out, from, mid), new StatTask(paths, out, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Path path = paths.get(i);
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                    out[i] = new Child(path, path.getFileName().toString(), attrs.isDirectory(),
+                        attrs.isDirectory() ? 0 : attrs.size());
+                } catch (IOException e) {
+                    logger.debug("读取文件属性失败: {}: {}", path, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 同级子项的排列顺序
+     */
+    public enum Order {
+        /** 按名称 */
+        NAME(Comparator.comparing((Child c) -> c.name)),
+        /** 目录在前，同类按名称 */
+        DIRECTORIES_FIRST(Comparator.comparing((Child c) -> !c.directory).thenComparing(c -> c.name));
+
+        private final Comparator<Child> comparator;
+
+        Order(Comparator<Child> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    /**
+     * 列表请求
+     */
+    public static class ListingRequest {
+        private final Path root;
+        private final IgnoreRules.Filter filter;
+        private final Order order;
+        private final int maxDepth;
+        private final int pageSize;
+        private final int maxPerDirectory;
+
+        private ListingRequest(Builder builder) {
+            this.root = builder.root;
+            this.filter = builder.filter;
+            this.order = builder.order;
+            this.maxDepth = builder.maxDepth;
+            this.pageSize = builder.pageSize;
+            this.maxPerDirectory = builder.maxPerDirectory;
+        }
+
+        public static Builder builder(Path root) {
+            return new Builder(root);
+        }
+
+        public static class Builder {
+            private final Path root;
+            private IgnoreRules.Filter filter = (path, directory) -> false;
+            private Order order = Order.NAME;
+            private int maxDepth = Integer.MAX_VALUE;
+            private int pageSize = 1000;
+            private int maxPerDirectory = Integer.MAX_VALUE;
+
+            private Builder(Path root) {
+                this.root = root;
+            }
+
+            /**
+             * 过滤器，跳过的目录不列出也不展开
+             */
+            public Builder filter(IgnoreRules.Filter filter) {
+                this.filter = filter;
+                return this;
+            }
+
+            public Builder order(Order order) {
+                this.order = order;
+                return this;
+            }
+
+            /**
+             * 列出的层数：1 只列根目录的直接子项
+             */
+            public Builder maxDepth(int maxDepth) {
+                this.maxDepth = Math.max(1, maxDepth);
+                return this;
+            }
+
+            /**
+             * 每页最多的条目数（含汇总条目）
+             */
+            public Builder pageSize(int pageSize) {
+                this.pageSize = Math.max(1, pageSize);
+                return this;
+            }
+
+            /**
+             * 根目录以下每个目录最多列出的子项数，其余汇总为一条
+             */
+            public Builder maxPerDirectory(int maxPerDirectory) {
+                this.maxPerDirectory = Math.max(1, maxPerDirectory);
+                return this;
+            }
+
+            public ListingRequest build() {
+                return new ListingRequest(this);
+            }
+        }
+    }
+
+    /**
+     * 一页列表
+     */
+    public static class Page {
+        private final Path root;
+        private final List<Item> items;
+        private final int offset;
+        private final String cursor;
+
+        Page(Path root, List<Item> items, int offset, String cursor) {
+            this.root = root;
+            this.items = items;
+            this.offset = offset;
+            this.cursor = cursor;
+        }
+
+        public Path getRoot() {
+            return root;
+        }
+
+        /**
+         * 本页条目，按深度优先顺序
+         */
+        public List<Item> getItems() {
+            return items;
+        }
+
+        /**
+         * 本页第一项在整个列表中的序号（从 0 开始）
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * 取下一页的游标，已列完时为 null
+         */
+        public String getCursor() {
+            return cursor;
+        }
+
+        public boolean hasMore() {
+            return cursor != null;
+        }
+    }
+
+    /**
+     * 列表中的一项：文件、目录，或“还有 N 项”的汇总
+     */
+    public static class Item {
+        private final Path path;
+        private final String name;
+        private final int depth;
+        private final boolean directory;
+        private final long size;
+        private final boolean lastSibling;
+        private final boolean[] openAncestors;
+        private final int collapsedChildren;
+        private final int omitted;
+
+        private Item(Path path, String name, int depth, boolean directory, long size, boolean lastSibling,
+                     boolean[] openAncestors, int collapsedChildren, int omitted) {
+            this.path = path;
+            this.name = name;
+            this.depth = depth;
+            this.directory = directory;
+            this.size = size;
+            this.lastSibling = lastSibling;
+            this.openAncestors = openAncestors;
+            this.collapsedChildren = collapsedChildren;
+            this.omitted = omitted;
+        }
+
+        Item(Child child, int depth, boolean lastSibling, boolean[] openAncestors, int collapsedChildren) {
+            this(child.path, child.name, depth, child.directory, child.size, lastSibling, openAncestors,
+                collapsedChildren, 0);
+        }
+
+        static Item summary(Path directory, int depth, boolean[] openAncestors, int omitted) {
+            return new Item(directory, null, depth, false, 0, true, openAncestors, -1, omitted);
+        }
+
+        /**
+         * 条目路径；汇总条目为被省略子项所在的目录
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 根目录的直接子项为 0
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * 是否为同级的最后一项
+         */
+        public boolean isLastSibling() {
+            return lastSibling;
+        }
+
+        /**
+         * 第 level 层（0 ≤ level &lt; depth）的祖先目录之后是否还有同级条目，用于绘制树形连线
+         */
+        public boolean isAncestorOpen(int level) {
+            return openAncestors[level];
+        }
+
+        public boolean isSummary() {
+            return omitted > 0;
+        }
+
+        /**
+         * 汇总条目省略的子项数
+         */
+        public int getOmitted() {
+            return omitted;
+        }
+
+        /**
+         * 超出深度预算而未展开的目录的子项数；已展开的目录与文件为 -1，无法读取时也为 -1
+         */
+        public int getCollapsedChildren() {
+            return collapsedChildren;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package io.leavesfly.joder.services.workspace;
+
+import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 忽略规则引擎
+ *
+ * <p>按 git 语义读取工作目录及其子目录中的 {@code .gitignore}、{@code .ignore}
+ * 以及 {@code .git/info/exclude}，把每个文件编译成一组匹配器。
+ * 规则按目录组织成树：判断一个路径时从所在目录的规则开始逐级向上查找，
+ * 更深层的文件优先，同一文件中靠后的规则优先；目录被忽略时其下所有内容都被忽略，
+ * 遍历方可以在进入目录前整体跳过。</p>
+ *
+ * <p>每个目录的编译结果（以及该目录自身是否被忽略）会被缓存，
+ * 忽略文件变化时通过 {@link FileChangeBus} 失效对应子树。</p>
+ */
+@Singleton
+public class IgnoreRules {
+
+    private static final Logger logger = LoggerFactory.getLogger(IgnoreRules.class);
+
+    /** 目录中的忽略文件，靠后的优先 */
+    public static final List<String> IGNORE_FILES = List.of(".gitignore", ".ignore");
+
+    private static final String GIT_EXCLUDE = ".git/info/exclude";
+
+    private static final int MAX_CACHED_DIRECTORIES = 65536;
+
+    private final Path root;
+    private final Map<Path, DirectoryRules> cache = new ConcurrentHashMap<>();
+    // 每次失效加一；读取规则期间发生过失效时结果不写入缓存，避免旧规则覆盖失效
+    private final AtomicLong generation = new AtomicLong();
+
+    public IgnoreRules(String workingDirectory) {
+        this.root = Paths.get(workingDirectory).toAbsolutePath().normalize();
+    }
+
+    @Inject
+    public IgnoreRules(@WorkingDirectory String workingDirectory, FileChangeBus fileChangeBus) {
+        this(workingDirectory);
+        fileChangeBus.subscribe(new FileChangeBus.Listener() {
+            @Override
+            public void onPathChanged(Path path) {
+                if (isRulesFile(path)) {
+                    invalidate(path);
+                }
+            }
+
+            @Override
+            public void onUnknownChange() {
+                // 监听运行时，规则文件的修改会由监听逐一发布
+                if (!fileChangeBus.isWatched(root)) {
+                    invalidateAll();
+                }
+            }
+
+            @Override
+            public void onWatchOverflow() {
+                invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * 判断路径是否被忽略；祖先目录被忽略时同样返回 true，工作目录之外的路径返回 false
+     *
+     * @param path      文件或目录
+     * @param directory 路径是否为目录（以 / 结尾的规则只匹配目录）
+     */
+    public boolean isIgnored(Path path, boolean directory) {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (!absolute.startsWith(root) || absolute.equals(root)) {
+            return false;
+        }
+        DirectoryRules parent = rulesFor(absolute.getParent());
+        return parent.ignored || parent.matches(absolute.getFileName().toString(), directory);
+    }
+
+    /**
+     * 遍历 start 时使用的过滤器：跳过隐藏文件、排除目录以及被忽略的路径。
+     * start 本身被忽略时（调用方明确指定了该目录）只按名称过滤。
+     */
+    public Filter filterFor(Path start) {
+        boolean active = !isIgnored(start, true);
+        return (path, directory) -> WorkspaceCatalog.isSkippedName(path.getFileName().toString())
+            || (active && isIgnored(path, directory));
+    }
+
+    /**
+     * 判断路径是否是会影响忽略结果的规则文件
+     */
+    public boolean isRulesFile(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (absolute.equals(root.resolve(GIT_EXCLUDE))) {
+            return true;
+        }
+        Path name = absolute.getFileName();
+        return name != null && IGNORE_FILES.contains(name.toString()) && absolute.startsWith(root);
+    }
+
+    /**
+     * 规则文件变化后失效其所在目录及子目录的缓存
+     */
+    public void invalidate(Path rulesFile) {
+        Path absolute = rulesFile.toAbsolutePath().normalize();
+        if (absolute.equals(root.resolve(GIT_EXCLUDE))) {
+            invalidateAll();
+            return;
+        }
+        Path dir = absolute.getParent();
+        if (dir != null) {
+            generation.incrementAndGet();
+            cache.keySet().removeIf(cached -> cached.startsWith(dir));
+        }
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * 规则缓存的失效计数；计数不变时此前的忽略判断仍然有效
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    int cachedDirectories() {
+        return cache.size();
+    }
+
+    /**
+     * 获取目录的规则节点，父目录节点先行构建
+     */
+    private DirectoryRules rulesFor(Path dir) {
+        DirectoryRules cached = cache.get(dir);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAt = generation.get();
+        DirectoryRules rules;
+        if (dir.equals(root)) {
+            rules = new DirectoryRules(null, "", false, load(dir, true));
+        } else {
+            DirectoryRules parent = rulesFor(dir.getParent());
+            String name = dir.getFileName().toString();
+            boolean ignored = parent.ignored || parent.matches(name, true);
+            // 被忽略目录下的规则不会生效，无需读取
+            rules = new DirectoryRules(parent, parent.prefix + name + "/", ignored,
+                ignored ? RuleSet.EMPTY : load(dir, false));
+        }
+        if (cache.size() >= MAX_CACHED_DIRECTORIES) {
+            cache.clear();
+        }
+        DirectoryRules existing = cache.putIfAbsent(dir, rules);
+        if (existing == null && generation.get() != loadedAt) {
+            // 读取期间规则已失效，本次结果可能过时
+            cache.remove(dir, rules);
+        }
+        return existing != null ? existing : rules;
+    }
+
+    private RuleSet load(Path dir, boolean isRoot) {
+        List<Rule> rules = new ArrayList<>();
+        if (isRoot) {
+            parse(root.resolve(GIT_EXCLUDE), rules);
+        }
+        for (String file : IGNORE_FILES) {
+            parse(dir.resolve(file), rules);
+        }
+        return rules.isEmpty() ? RuleSet.EMPTY : new RuleSet(rules);
+    }
+
+    private static void parse(Path file, List<Rule> rules) {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                Rule rule = Rule.parse(line);
+                if (rule != null) {
+                    rules.add(rule);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("读取忽略文件失败: {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 遍历过滤器
+     */
+    @FunctionalInterface
+    public interface Filter {
+
+        /**
+         * @return 路径（目录时连同其子树）是否应跳过
+         */
+        boolean skip(Path path, boolean directory);
+
+        /**
+         * 两个过滤器任一跳过即跳过
+         */
+        default Filter or(Filter other) {
+            return (path, directory) -> skip(path, directory) || other.skip(path, directory);
+        }
+    }
+
+    /**
+     * 某个目录的规则节点
+     */
+    private static final class DirectoryRules {
+        final DirectoryRules parent;
+        /** 相对工作目录的路径前缀，以 / 结尾，根目录为空串 */
+        final String prefix;
+        /** 该目录自身是否被忽略 */
+        final boolean ignored;
+        final RuleSet rules;
+
+        DirectoryRules(DirectoryRules parent, String prefix, boolean ignored, RuleSet rules) {
+            this.parent = parent;
+            this.prefix = prefix;
+            this.ignored = ignored;
+            this.rules = rules;
+        }
+
+        /**
+         * 判断该目录下名为 name 的直接子项是否被忽略（不考虑本目录自身是否被忽略）
+         */
+        boolean matches(String name, boolean directory) {
+            String relative = prefix + name;
+            for (DirectoryRules node = this; node != null; node = node.parent) {
+                Boolean verdict = node.rules.match(relative.substring(node.prefix.length()), name, directory);
+                if (verdict != null) {
+                    return verdict;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 一个目录中编译后的全部规则：不含通配符的名称规则放入哈希表，其余按顺序保存
+     */
+    static final class RuleSet {
+        static final RuleSet EMPTY = new RuleSet(List.of());
+
+        private final Rule[] rules;
+        /** 名称 -> 最后一条同名字面量规则的下标 */
+        private final Map<String, Integer> literalNames = new HashMap<>();
+        private final int[] patternIndexes;
+
+        RuleSet(List<Rule> rules) {
+            this.rules = rules.toArray(new Rule[0]);
+            List<Integer> patterns = new ArrayList<>();
+            for (int i = 0; i < this.rules.length; i++) {
+                Rule rule = this.rules[i];
+                if (rule.literal != null && !rule.anchored && !rule.directoryOnly) {
+                    literalNames.put(rule.literal, i);
+                } else {
+                    patterns.add(i);
+                }
+            }
+            this.patternIndexes = patterns.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * @param relative  相对于规则文件所在目录的路径
+         * @param name      文件名
+         * @return 最后一条匹配规则的结论（true 忽略，false 取消忽略），没有匹配时返回 null
+         */
+        Boolean match(String relative, String name, boolean directory) {
+            if (rules.length == 0) {
+                return null;
+            }
+            Integer literal = literalNames.get(name);
+            int best = literal != null ? literal : -1;
+            for (int k = patternIndexes.length - 1; k >= 0 && patternIndexes[k] > best; k--) {
+                if (rules[patternIndexes[k]].matches(relative, name, directory)) {
+                    best = patternIndexes[k];
+                    break;
+                }
+            }
+            return best < 0 ? null : !rules[best].negated;
+        }
+    }
+
+    /**
+     * 单条忽略规则
+     */
+    static final class Rule {
+        final boolean negated;
+        final boolean directoryOnly;
+        /** 含 / 的规则相对规则文件所在目录匹配完整路径，否则只匹配文件名 */
+        final boolean anchored;
+        /** 不含通配符时的字面量，此时 pattern 为 null */
+        final String literal;
+        final Pattern pattern;
+
+        private Rule(boolean negated, boolean directoryOnly, boolean anchored, String literal, Pattern pattern) {
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.anchored = anchored;
+            this.literal = literal;
+            this.pattern = pattern;
+        }
+
+        boolean matches(String relative, String name, boolean directory) {
+            if (directoryOnly && !directory) {
+                return false;
+            }
+            String target = anchored ? relative : name;
+            return literal != null ? literal.equals(target) : pattern.matcher(target).matches();
+        }
+
+        /**
+         * 解析 .gitignore 中的一行，空行和注释返回 null
+         */
+        static Rule parse(String line) {
+            String text = stripTrailingSpaces(line);
+            if (text.isEmpty() || text.startsWith("#")) {
+                return null;
+            }
+            boolean negated = false;
+            if (text.startsWith("!")) {
+                negated = true;
+                text = text.substring(1);
+            }
+            boolean directoryOnly = false;
+            while (text.endsWith("/")) {
+                directoryOnly = true;
+                text = text.substring(0, text.length() - 1);
+            }
+            boolean anchored = text.indexOf('/') >= 0;
+            while (text.startsWith("/")) {
+                text = text.substring(1);
+            }
+            if (text.isEmpty()) {
+                return null;
+            }
+
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            boolean wildcard = compile(text, regex, literal);
+            if (wildcard) {
+                return new Rule(negated, directoryOnly, anchored, null, Pattern.compile(regex.toString()));
+            }
+            return new Rule(negated, directoryOnly, anchored, literal.toString(), null);
+        }
+
+        /**
+         * 把通配模式翻译为正则表达式，同时收集去除转义后的字面量
+         *
+         * @return 是否含有通配符
+         */
+        private static boolean compile(String glob, StringBuilder regex, StringBuilder literal) {
+            boolean wildcard = false;
+            int length = glob.length();
+            for (int i = 0; i < length; i++) {
+                char c = glob.charAt(i);
+                switch (c) {
+                    case '*':
+                        wildcard = true;
+                        if (i + 1 < length && glob.charAt(i + 1) == '*'
+                                && (i == 0 || glob.charAt(i - 1) == '/')) {
+                            if (i + 2 == length) {
+                                regex.append(".*");                 // 末尾的 /**：目录下的一切
+                                i++;
+                            } else if (glob.charAt(i + 2) == '/') {
+                                regex.append("(?:.*/)?");           // **/：零到多级目录
+                                i += 2;
+                            } else {
+                                regex.append("[^/]*");
+                                i++;
+                            }
+                        } else {
+                            regex.append("[^/]*");
+                        }
+                        break;
+                    case '?':
+                        wildcard = true;
+                        regex.append("[^/]");
+                        break;
+                    case '[': {
+                        int end = glob.indexOf(']', i + 2);
+                        if (end < 0) {
+                            regex.append("\\[");
+                            literal.append(c);
+                            break;
+                        }
+                        wildcard = true;
+                        regex.append('[');
+                        int k = i + 1;
+                        if (glob.charAt(k) == '!' || glob.charAt(k) == '^') {
+                            regex.append('^');
+                            k++;
+                        }
+                        for (; k < end; k++) {
+                            char member = glob.charAt(k);
+                            if (member == '\\' || member == '[' || member == '&' || member == '^') {
+                                regex.append('\\');
+                            }
+                            regex.append(member);
+                        }
+                        regex.append(']');
+                        i = end;
+                        break;
+                    }
+                    case '\\':
+                        if (i + 1 < length) {
+                            c = glob.charAt(++i);
+                        }
+                        regex.append(Pattern.quote(String.valueOf(c)));
+                        literal.append(c);
+                        break;
+                    default:
+                        if (".()[]{}+|^$".indexOf(c) >= 0) {
+                            regex.append('\\');
+                        }
+                        regex.append(c);
+                        literal.append(c);
+                }
+            }
+            return wildcard;
+        }
+
+        /**
+         * 去掉行尾未转义的空格
+         */
+        private static String stripTrailingSpaces(String line) {
+            int end = line.length();
+            if (end > 0 && line.charAt(end - 1) == '\r') {
+                end--;
+            }
+            while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+                end--;
+            }
+            return line.substring(0, end);
+        }
+    }
+}
@@ -0,0 +1,1067 @@
+package io.leavesfly.joder.services.workspace;
+
+import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 工作区文件目录
+ *
+ * <p>在内存中维护工作目录的文件树（路径、大小、修改时间），供 Glob、Grep、LS、FileTree、
+ * 文件补全和项目分析统一查询，不再各自遍历文件系统。</p>
+ *
+ * <ul>
+ *   <li>节点保存在并行的基本类型数组中（父节点、子节点链表、大小、修改时间、标志），
+ *       (父节点, 名称) 到节点的查找使用开放寻址哈希表；</li>
+ *   <li>启动时在 ForkJoin 池上并行遍历构建；</li>
+ *   <li>每个目录注册 {@link WatchService}，监听到的变更发布到 {@link FileChangeBus}；
+ *       目录自身也订阅该总线，工具编辑与外部修改走同一条更新路径；</li>
+ *   <li>{@link #EXCLUDED_DIRECTORIES} 中的目录以及被 {@link IgnoreRules} 忽略的目录
+ *       只记录自身，不展开也不监听；忽略文件变化时重新校验整棵树。</li>
+ * </ul>
+ *
+ * <p>构建完成前、待处理的变更无法在短时间内完成时，或查询落在排除目录中时，
+ * 查询方法返回 null/false，由调用方回退到直接访问文件系统。</p>
+ */
+@Singleton
+public class WorkspaceCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceCatalog.class);
+
+    /** 只记录自身、不展开内容的目录名 */
+    public static final Set<String> EXCLUDED_DIRECTORIES = Set.of(
+        ".git", ".hg", ".svn", ".joder", ".gradle", ".idea",
+        "node_modules", "target", "build", "dist", "__pycache__");
+
+    private static final long REVERIFY_INTERVAL_MS = 60_000;
+    private static final long DRAIN_TIMEOUT_MS = 200;
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final byte DIRECTORY = 1;
+    private static final byte EXCLUDED = 2;
+
+    private final Path root;
+    private final FileChangeBus fileChangeBus;
+    private final IgnoreRules ignoreRules;
+    private final ScheduledExecutorService worker;
+    private final ForkJoinPool scanPool;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 节点数组，只由目录线程修改，修改时持写锁；names[id] 为 null 表示空闲槽位
+    private String[] names = new String[1024];
+    private int[] parents = new int[1024];
+    private int[] firstChildren = new int[1024];
+    private int[] nextSiblings = new int[1024];
+    private int[] prevSiblings = new int[1024];
+    private long[] sizes = new long[1024];
+    private long[] modifiedTimes = new long[1024];
+    private byte[] flags = new byte[1024];
+    private int nodeCount;
+    private int[] freeIds = new int[64];
+    private int freeCount;
+    private int fileCount;
+    private final ChildTable children = new ChildTable();
+    // 只由目录线程在写锁内递增
+    private volatile long structureVersion;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean fullSyncQueued = new AtomicBoolean(false);
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private volatile boolean ready;
+    private volatile long lastSyncAt;
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchKeys = new ConcurrentHashMap<>();
+    private volatile boolean watching;
+
+    public WorkspaceCatalog(String workingDirectory, FileChangeBus fileChangeBus) {
+        this(workingDirectory, fileChangeBus, new IgnoreRules(workingDirectory, fileChangeBus));
+    }
+
+    @Inject
+    public WorkspaceCatalog(@WorkingDirectory String workingDirectory, FileChangeBus fileChangeBus,
+                            IgnoreRules ignoreRules) {
+        this.root = Paths.get(workingDirectory).toAbsolutePath().normalize();
+        this.fileChangeBus = fileChangeBus;
+        this.ignoreRules = ignoreRules;
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "WorkspaceCatalog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scanPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("WorkspaceCatalog-scan-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+
+        names[ROOT] = "";
+        parents[ROOT] = NONE;
+        firstChildren[ROOT] = NONE;
+        nextSiblings[ROOT] = NONE;
+        prevSiblings[ROOT] = NONE;
+        flags[ROOT] = DIRECTORY;
+        nodeCount = 1;
+
+        fileChangeBus.subscribe(new FileChangeBus.Listener() {
+            @Override
+            public void onPathChanged(Path path) {
+                if (started.get() && ignoreRules.isRulesFile(path)) {
+                    // 忽略规则变化会改变哪些目录需要展开
+                    ignoreRules.invalidate(path);
+                    queueFullSync();
+                } else if (started.get() && path.startsWith(root)) {
+                    pendingUpdates.incrementAndGet();
+                    submit(() -> {
+                        try {
+                            syncPath(path);
+                        } finally {
+                            pendingUpdates.decrementAndGet();
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onUnknownChange() {
+                // 监听运行时，shell 命令等造成的修改会由监听逐一发布
+                if (started.get() && !watching) {
+                    queueFullSync();
+                }
+            }
+
+            @Override
+            public void onWatchOverflow() {
+                if (started.get()) {
+                    queueFullSync();
+                }
+            }
+        });
+    }
+
+    /**
+     * 启动后台构建与文件监听，可重复调用
+     */
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            startWatching();
+            pendingUpdates.incrementAndGet();
+            submit(() -> {
+                try {
+                    long begin = System.currentTimeMillis();
+                    watch(List.of(root));
+                    syncPath(root);
+                    ready = true;
+                    logger.debug("工作区目录构建完成: {} 个文件, 耗时 {}ms", size(), System.currentTimeMillis() - begin);
+                } finally {
+                    pendingUpdates.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * 目录已构建且没有待处理的变更；查询时有少量排队的变更会先等待其完成
+     */
+    public boolean isFresh() {
+        return ready && pendingUpdates.get() == 0;
+    }
+
+    /**
+     * 目录使用的忽略规则，遍历方可用它过滤被忽略的文件
+     */
+    public IgnoreRules getIgnoreRules() {
+        return ignoreRules;
+    }
+
+    /**
+     * 是否正在通过 WatchService 监听外部修改；监听不可用时改为定期校验
+     */
+    public boolean isWatching() {
+        return watching;
+    }
+
+    /**
+     * 已收录的文件数（不含目录）
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return fileCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 目录结构的修改计数：增删节点、目录排除状态变化时递增，文件大小与修改时间的变化不计入。
+     * 计数不变且 {@link #isFresh()} 时，此前查询到的目录结构仍然有效
+     */
+    public long getStructureVersion() {
+        return structureVersion;
+    }
+
+    /**
+     * 遍历目录树，语义与 {@link Files#walkFileTree} 一致，先对起始目录调用 preVisitDirectory。
+     * 排除目录的内容未收录，访问器对其返回 CONTINUE 时遍历中止并返回 false。
+     *
+     * @param start   起始目录
+     * @param visitor 访问器
+     * @return 目录不可用（未就绪、已过期、不在工作区内、位于排除目录中或需要展开排除目录）时返回 false，
+     *         调用方应丢弃已收到的条目并回退到文件系统
+     */
+    public boolean walk(Path start, Visitor visitor) {
+        if (!checkFresh()) {
+            return false;
+        }
+        Path normalized = start.toAbsolutePath().normalize();
+        lock.readLock().lock();
+        try {
+            int id = resolve(normalized);
+            if (id == NONE || !isDirectory(id) || isExcluded(id)) {
+                return false;
+            }
+            return walkDirectory(id, normalized, visitor) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 列出目录的直接子项（顺序不确定）
+     *
+     * @return 目录不可用时返回 null
+     */
+    public List<Entry> listChildren(Path dir) {
+        if (!checkFresh()) {
+            return null;
+        }
+        Path normalized = dir.toAbsolutePath().normalize();
+        lock.readLock().lock();
+        try {
+            int id = resolve(normalized);
+            if (id == NONE || !isDirectory(id) || isExcluded(id)) {
+                return null;
+            }
+            List<Entry> result = new ArrayList<>();
+            for (int c = firstChildren[id]; c != NONE; c = nextSiblings[c]) {
+                result.add(entry(c, normalized.resolve(names[c])));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 列出起始目录下的全部文件，排除目录的内容未收录，不会列出
+     *
+     * @param start           起始目录
+     * @param directoryFilter 目录过滤器（含起始目录），返回 false 的目录整体跳过
+     * @return 目录不可用时返回 null
+     */
+    public List<Path> listFiles(Path start, Predicate<Path> directoryFilter) {
+        List<Path> files = new ArrayList<>();
+        boolean available = walk(start, new Visitor() {
+            @Override
+            public FileVisitResult preVisitDirectory(Entry directory) {
+                return !directory.isExcluded() && directoryFilter.test(directory.getPath())
+                    ? FileVisitResult.CONTINUE
+                    : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Entry file) {
+                files.add(file.getPath());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return available ? files : null;
+    }
+
+    /**
+     * 同步刷新（阻塞直到与磁盘一致）
+     */
+    public void refresh() {
+        start();
+        // 不依赖监听事件到达的先后，直接重新读取忽略规则
+        ignoreRules.invalidateAll();
+        queueFullSync();
+        awaitIdle();
+    }
+
+    /**
+     * 等待已提交的更新任务全部完成
+     */
+    void awaitIdle() {
+        try {
+            worker.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.debug("等待目录更新失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 停止监听与后台线程
+     */
+    public void shutdown() {
+        setWatching(false);
+        worker.shutdownNow();
+        scanPool.shutdownNow();
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("关闭文件监听失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 判断目录名是否只记录自身、不展开
+     */
+    public static boolean isExcludedName(String name) {
+        return EXCLUDED_DIRECTORIES.contains(name);
+    }
+
+    /**
+     * 搜索与列目录类工具默认跳过的名称：隐藏文件/目录以及排除目录
+     */
+    public static boolean isSkippedName(String name) {
+        return (!name.equals(".") && name.startsWith(".")) || isExcludedName(name);
+    }
+
+    /**
+     * 目录是否只记录自身：排除目录名或被忽略规则命中
+     */
+    private boolean isExcludedDirectory(Path dir, String name) {
+        return isExcludedName(name) || ignoreRules.isIgnored(dir, true);
+    }
+
+    /**
+     * 查询前确认目录可用：有排队中的更新时短暂等待其完成，超时则视为过期
+     */
+    private boolean checkFresh() {
+        start();
+        if (!ready || (pendingUpdates.get() > 0 && !drain(DRAIN_TIMEOUT_MS))) {
+            logger.debug("工作区目录未就绪或有待处理的变更，回退到文件系统");
+            return false;
+        }
+        if (!watching && System.currentTimeMillis() - lastSyncAt > REVERIFY_INTERVAL_MS) {
+            queueBackgroundVerify();
+        }
+        return true;
+    }
+
+    /**
+     * 等待此前提交的更新任务完成
+     */
+    private boolean drain(long timeoutMs) {
+        try {
+            worker.submit(() -> { }).get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            worker.execute(task);
+        } catch (Exception e) {
+            logger.debug("目录更新任务提交失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 排队一次完整校验，期间目录视为过期；已有排队中的校验时合并
+     */
+    private void queueFullSync() {
+        if (fullSyncQueued.compareAndSet(false, true)) {
+            pendingUpdates.incrementAndGet();
+            submit(() -> {
+                fullSyncQueued.set(false);
+                try {
+                    syncPath(root);
+                } finally {
+                    pendingUpdates.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * 监听不可用时周期性校验外部修改，不阻断查询
+     */
+    private void queueBackgroundVerify() {
+        lastSyncAt = System.currentTimeMillis();
+        submit(() -> syncPath(root));
+    }
+
+    // ---------------------------------------------------------------- 更新
+
+    /**
+     * 将单个路径与磁盘同步：目录整体重新扫描，文件只更新自身
+     */
+    private void syncPath(Path path) {
+        // 找到路径上第一个未收录的节点，从它开始同步，缺失的父目录随之补全
+        Path target = root;
+        int parentId = NONE;
+        lock.readLock().lock();
+        try {
+            int id = ROOT;
+            for (Path part : root.relativize(path)) {
+                String name = part.toString();
+                if (name.isEmpty()) {
+                    continue;
+                }
+                if (!isDirectory(id)) {
+                    break;
+                }
+                if (isExcluded(id)) {
+                    return;
+                }
+                parentId = id;
+                target = target.resolve(name);
+                id = children.find(id, name);
+                if (id == NONE) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            attrs = null;
+        }
+        String name = target.equals(root) ? "" : target.getFileName().toString();
+
+        ScannedDirectory scanned = null;
+        if (attrs != null && attrs.isDirectory()) {
+            scanned = new ScannedDirectory(name, attrs.lastModifiedTime().toMillis(),
+                parentId != NONE && isExcludedDirectory(target, name));
+            scanPool.invoke(new ScanTask(this, target, scanned));
+        }
+
+        List<Path> addedDirs = new ArrayList<>();
+        List<Path> removedDirs = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            int id = parentId == NONE ? ROOT : children.find(parentId, name);
+            if (attrs == null) {
+                if (id != NONE && id != ROOT) {
+                    if (isDirectory(id)) {
+                        removedDirs.add(target);
+                    }
+                    removeNode(id);
+                }
+            } else if (scanned != null) {
+                if (id != NONE && !isDirectory(id)) {
+                    removeNode(id);
+                    id = NONE;
+                }
+                if (id == NONE) {
+                    id = addNode(parentId, name, true, 0, scanned.modified);
+                    if (!scanned.excluded) {
+                        addedDirs.add(target);
+                    }
+                }
+                merge(id, scanned, target, addedDirs, removedDirs);
+            } else {
+                if (id != NONE && isDirectory(id)) {
+                    removedDirs.add(target);
+                    removeNode(id);
+                    id = NONE;
+                }
+                if (id == NONE) {
+                    addNode(parentId, name, false, attrs.size(), attrs.lastModifiedTime().toMillis());
+                } else {
+                    sizes[id] = attrs.size();
+                    modifiedTimes[id] = attrs.lastModifiedTime().toMillis();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (target.equals(root)) {
+            lastSyncAt = System.currentTimeMillis();
+        }
+        unwatch(removedDirs);
+        watch(addedDirs);
+    }
+
+    /**
+     * 将扫描结果合并到已有节点：新增、更新、删除子项
+     */
+    private void merge(int id, ScannedDirectory scanned, Path dir, List<Path> addedDirs, List<Path> removedDirs) {
+        modifiedTimes[id] = scanned.modified;
+        if (scanned.excluded != isExcluded(id)) {
+            structureVersion++;
+        }
+        if (scanned.excluded) {
+            flags[id] |= EXCLUDED;
+            while (firstChildren[id] != NONE) {
+                removeNode(firstChildren[id]);
+            }
+            return;
+        }
+        flags[id] &= ~EXCLUDED;
+        if (!scanned.complete) {
+            // 读取失败时保留原有内容
+            return;
+        }
+
+        Map<String, Integer> existing = new HashMap<>();
+        for (int c = firstChildren[id]; c != NONE; c = nextSiblings[c]) {
+            existing.put(names[c], c);
+        }
+        for (ScannedFile file : scanned.files) {
+            Integer old = existing.remove(file.name);
+            if (old != null && isDirectory(old)) {
+                removedDirs.add(dir.resolve(file.name));
+                removeNode(old);
+                old = null;
+            }
+            if (old == null) {
+                addNode(id, file.name, false, file.size, file.modified);
+            } else {
+                sizes[old] = file.size;
+                modifiedTimes[old] = file.modified;
+            }
+        }
+        for (ScannedDirectory sub : scanned.directories) {
+            Integer old = existing.remove(sub.name);
+            if (old != null && !isDirectory(old)) {
+                removeNode(old);
+                old = null;
+            }
+            Path subPath = dir.resolve(sub.name);
+            int childId;
+            if (old == null) {
+                childId = addNode(id, sub.name, true, 0, sub.modified);
+                if (!sub.excluded) {
+                    addedDirs.add(subPath);
+                }
+            } else {
+                childId = old;
+                if (isExcluded(old) && !sub.excluded) {
+                    addedDirs.add(subPath);
+                } else if (!isExcluded(old) && sub.excluded) {
+                    removedDirs.add(subPath);
+                }
+            }
+            merge(childId, sub, subPath, addedDirs, removedDirs);
+        }
+        for (int stale : existing.values()) {
+            if (isDirectory(stale)) {
+                removedDirs.add(dir.resolve(names[stale]));
+            }
+            removeNode(stale);
+        }
+    }
+
+    private int addNode(int parent, String name, boolean directory, long size, long modified) {
+        int id = freeCount > 0 ? freeIds[--freeCount] : nodeCount++;
+        ensureCapacity(id + 1);
+        names[id] = name;
+        parents[id] = parent;
+        firstChildren[id] = NONE;
+        sizes[id] = size;
+        modifiedTimes[id] = modified;
+        flags[id] = directory ? DIRECTORY : 0;
+
+        int head = firstChildren[parent];
+        nextSiblings[id] = head;
+        prevSiblings[id] = NONE;
+        if (head != NONE) {
+            prevSiblings[head] = id;
+        }
+        firstChildren[parent] = id;
+
+        children.insert(id);
+        if (!directory) {
+            fileCount++;
+        }
+        structureVersion++;
+        return id;
+    }
+
+    /**
+     * 从父节点摘除并释放整棵子树
+     */
+    private void removeNode(int id) {
+        int prev = prevSiblings[id];
+        int next = nextSiblings[id];
+        if (prev != NONE) {
+            nextSiblings[prev] = next;
+        } else {
+            firstChildren[parents[id]] = next;
+        }
+        if (next != NONE) {
+            prevSiblings[next] = prev;
+        }
+        structureVersion++;
+
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = id;
+        while (top > 0) {
+            int node = stack[--top];
+            for (int c = firstChildren[node]; c != NONE; c = nextSiblings[c]) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = c;
+            }
+            children.remove(node);
+            if (!isDirectory(node)) {
+                fileCount--;
+            }
+            names[node] = null;
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            }
+            freeIds[freeCount++] = node;
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= names.length) {
+            return;
+        }
+        int capacity = Math.max(required, names.length * 2);
+        names = Arrays.copyOf(names, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        prevSiblings = Arrays.copyOf(prevSiblings, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        modifiedTimes = Arrays.copyOf(modifiedTimes, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    // ---------------------------------------------------------------- 查询
+
+    /**
+     * 解析绝对路径对应的节点，不存在或穿过排除目录时返回 NONE
+     */
+    private int resolve(Path absolute) {
+        if (!absolute.startsWith(root)) {
+            return NONE;
+        }
+        int id = ROOT;
+        for (Path part : root.relativize(absolute)) {
+            String name = part.toString();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!isDirectory(id) || isExcluded(id)) {
+                return NONE;
+            }
+            id = children.find(id, name);
+            if (id == NONE) {
+                return NONE;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @return 遍历结果；需要展开排除目录时返回 null
+     */
+    private FileVisitResult walkDirectory(int id, Path dir, Visitor visitor) {
+        FileVisitResult result = visitor.preVisitDirectory(entry(id, dir));
+        if (result == FileVisitResult.TERMINATE) {
+            return result;
+        }
+        if (result != FileVisitResult.CONTINUE) {
+            return FileVisitResult.CONTINUE;
+        }
+        if (isExcluded(id)) {
+            return null;
+        }
+        for (int c = firstChildren[id]; c != NONE; c = nextSiblings[c]) {
+            Path child = dir.resolve(names[c]);
+            FileVisitResult childResult = isDirectory(c)
+                ? walkDirectory(c, child, visitor)
+                : visitor.visitFile(entry(c, child));
+            if (childResult == null || childResult == FileVisitResult.TERMINATE) {
+                return childResult;
+            }
+            if (childResult == FileVisitResult.SKIP_SIBLINGS) {
+                break;
+            }
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    private Entry entry(int id, Path path) {
+        return new Entry(path, isDirectory(id), isExcluded(id), sizes[id], modifiedTimes[id]);
+    }
+
+    private boolean isDirectory(int id) {
+        return (flags[id] & DIRECTORY) != 0;
+    }
+
+    private boolean isExcluded(int id) {
+        return (flags[id] & EXCLUDED) != 0;
+    }
+
+    // ---------------------------------------------------------------- 监听
+
+    private void startWatching() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("文件监听不可用，改为定期校验: {}", e.getMessage());
+            return;
+        }
+        setWatching(true);
+        watchThread = new Thread(this::watchLoop, "WorkspaceCatalog-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private void watch(List<Path> dirs) {
+        if (watchService == null) {
+            return;
+        }
+        for (Path dir : dirs) {
+            try {
+                WatchKey key = dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirs.put(key, dir);
+                watchKeys.put(dir, key);
+            } catch (IOException e) {
+                if (watching) {
+                    logger.warn("无法监听目录 {}，改为定期校验: {}", dir, e.getMessage());
+                    setWatching(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * 更新监听状态，并在事件总线上登记，订阅方据此判断范围未知的变更是否已被监听覆盖
+     */
+    private void setWatching(boolean active) {
+        watching = active;
+        fileChangeBus.setWatched(root, active);
+    }
+
+    /**
+     * 取消已删除目录（含子目录）的监听；目录被移动时同一个 key 可能已登记到新路径，此时保留
+     */
+    private void unwatch(List<Path> dirs) {
+        for (Path dir : dirs) {
+            watchKeys.entrySet().removeIf(e -> {
+                if (!e.getKey().startsWith(dir)) {
+                    return false;
+                }
+                WatchKey key = e.getValue();
+                if (e.getKey().equals(watchedDirs.get(key))) {
+                    watchedDirs.remove(key);
+                    key.cancel();
+                }
+                return true;
+            });
+        }
+    }
+
+    private void watchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    logger.debug("文件监听事件溢出，完整校验");
+                    fileChangeBus.publishOverflow();
+                    continue;
+                }
+                if (dir == null) {
+                    continue;
+                }
+                Path child = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY
+                        && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    // 目录自身的元数据变化，内容变化会由其自身的监听报告
+                    continue;
+                }
+                fileChangeBus.publish(child);
+            }
+            if (!key.reset()) {
+                Path removed = watchedDirs.remove(key);
+                if (removed != null) {
+                    watchKeys.remove(removed, key);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 内部结构
+
+    /**
+     * (父节点, 名称) → 节点的开放寻址哈希表，槽位存 id + 1，0 为空，-1 为已删除
+     */
+    private final class ChildTable {
+        private int[] slots = new int[2048];
+        private int occupied;
+
+        int find(int parent, String name) {
+            int mask = slots.length - 1;
+            for (int i = hash(parent, name) & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) {
+                    return NONE;
+                }
+                if (slot > 0) {
+                    int id = slot - 1;
+                    if (parents[id] == parent && name.equals(names[id])) {
+                        return id;
+                    }
+                }
+            }
+        }
+
+        void insert(int id) {
+            if ((occupied + 1) * 2 > slots.length) {
+                rehash(id);
+            }
+            int mask = slots.length - 1;
+            for (int i = hash(parents[id], names[id]) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] <= 0) {
+                    if (slots[i] == 0) {
+                        occupied++;
+                    }
+                    slots[i] = id + 1;
+                    return;
+                }
+            }
+        }
+
+        void remove(int id) {
+            if (id == ROOT) {
+                return;
+            }
+            int mask = slots.length - 1;
+            for (int i = hash(parents[id], names[id]) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == id + 1) {
+                    slots[i] = -1;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 按存活节点数重建，同时清理删除标记
+         *
+         * @param pending 正在插入、由调用方随后放入的节点
+         */
+        private void rehash(int pending) {
+            int live = nodeCount - freeCount;
+            int capacity = Math.max(2048, Integer.highestOneBit(Math.max(1, live) * 4 - 1) << 1);
+            slots = new int[capacity];
+            occupied = 0;
+            for (int id = 1; id < nodeCount; id++) {
+                if (names[id] != null && id != pending) {
+                    insert(id);
+                }
+            }
+        }
+
+        private int hash(int parent, String name) {
+            int h = (name.hashCode() * 31 + parent) * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * 并行扫描的目录快照，不持锁构建，再合并到节点数组
+     */
+    private static final class ScannedDirectory {
+        final String name;
+        final long modified;
+        final boolean excluded;
+        final List<ScannedDirectory> directories = new ArrayList<>();
+        final List<ScannedFile> files = new ArrayList<>();
+        volatile boolean complete;
+
+        ScannedDirectory(String name, long modified, boolean excluded) {
+            this.name = name;
+            this.modified = modified;
+            this.excluded = excluded;
+        }
+    }
+
+    private static final class ScannedFile {
+        final String name;
+        final long size;
+        final long modified;
+
+        ScannedFile(String name, long size, long modified) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    private static final class ScanTask extends RecursiveAction {
+        private final WorkspaceCatalog catalog;
+        private final Path dir;
+        private final ScannedDirectory result;
+
+        ScanTask(WorkspaceCatalog catalog, Path dir, ScannedDirectory result) {
+            this.catalog = catalog;
+            this.dir = dir;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (result.excluded) {
+                return;
+            }
+            List<ScanTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    String name = entry.getFileName().toString();
+                    long modified = attrs.lastModifiedTime().toMillis();
+                    if (attrs.isDirectory()) {
+                        ScannedDirectory child = new ScannedDirectory(name, modified,
+                            catalog.isExcludedDirectory(entry, name));
+                        result.directories.add(child);
+                        subtasks.add(new ScanTask(catalog, entry, child));
+                    } else {
+                        result.files.add(new ScannedFile(name, attrs.size(), modified));
+                    }
+                }
+                result.complete = true;
+            } catch (IOException e) {
+                logger.debug("读取目录失败: {}: {}", dir, e.getMessage());
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * 目录条目（查询时生成的只读视图）
+     */
+    public static final class Entry {
+        private final Path path;
+        private final boolean directory;
+        private final boolean excluded;
+        private final long size;
+        private final long lastModified;
+
+        Entry(Path path, boolean directory, boolean excluded, long size, long lastModified) {
+            this.path = path;
+            this.directory = directory;
+            this.excluded = excluded;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getName() {
+            return path.getFileName().toString();
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        /**
+         * 是否为只记录自身、内容未收录的排除目录
+         */
+        public boolean isExcluded() {
+            return excluded;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * 目录树访问器，返回值含义与 {@link java.nio.file.FileVisitor} 相同
+     */
+    public interface Visitor {
+
+        default FileVisitResult preVisitDirectory(Entry directory) {
+            return FileVisitResult.CONTINUE;
+        }
+
+        FileVisitResult visitFile(Entry file);
+    }
+}
@@ -1,5 +1,7 @@
 package io.leavesfly.joder.tools;
 
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -43,6 +45,24 @@ public interface Tool {
      */
     boolean needsPermissions();
 
+    /**
+     * 结果是否可缓存
+     * 仅当工具只读、且结果只取决于输入与文件系统状态时返回 true
+     */
+    default boolean isCacheable() {
+        return false;
+    }
+
+    /**
+     * 获取本次调用将修改的文件路径（用于缓存与索引失效）
+     *
+     * @param input 工具输入参数
+     * @return 绝对路径列表；返回 null 表示修改范围未知
+     */
+    default List<Path> getModifiedPaths(Map<String, Object> input) {
+        return null;
+    }
+
     /**
      * 执行工具逻辑
      *
@@ -51,6 +71,25 @@ public interface Tool {
      */
     ToolResult call(Map<String, Object> input);
 
+    /**
+     * 是否支持流式输出
+     */
+    default boolean supportsStreaming() {
+        return false;
+    }
+
+    /**
+     * 以流式模式执行工具
+     * 输出块通过 channel 实时发送，返回的结果只需包含摘录
+     *
+     * @param input 工具输入参数
+     * @param channel 输出通道
+     * @return 工具执行结果
+     */
+    default ToolResult call(Map<String, Object> input, ToolOutputChannel channel) {
+        return call(input);
+    }
+
     /**
      * 渲染工具调用消息
      */
@@ -1,41 +1,143 @@
 package io.leavesfly.joder.tools;
 
 import io.leavesfly.joder.hooks.CancelRequestHook;
+import io.leavesfly.joder.hooks.CancellationToken;
 import io.leavesfly.joder.hooks.ToolPermissionHook;
+import io.leavesfly.joder.services.cache.ToolResultCache;
+import io.leavesfly.joder.services.checkpoint.CheckpointStore;
+import io.leavesfly.joder.services.context.TokenCounter;
+import io.leavesfly.joder.services.cost.CostTrackingService;
+import io.leavesfly.joder.services.cost.ToolMetricsService;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.tools.mcp.McpToolAdapter;
+import io.leavesfly.joder.ui.components.MessageRenderer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * 工具执行器
  * 统一管理工具执行流程，集成权限检查与取消机制
+ * 
+ * <p>等待过程完全由完成事件驱动：工具完成、取消监听器触发、调度的超时任务触发，
+ * 三者谁先到达谁完成结果，不再轮询。工具运行在有界的命名执行通道（lane）上：
+ * 可并发的工具共享 {@link #LANE_CONCURRENT}，其余工具在 {@link #LANE_EXCLUSIVE} 上串行。
+ * 超时从工具开始运行时计起，排队等待的时间不计入。独占通道上的工具被取消或超时后
+ * 仍不响应中断时，放弃该线程并换用新的工作线程，排队中的工具转移过去继续执行。
+ * 线程统一由 {@link #newThreadFactory(String)} 创建，迁移到虚拟线程时只需替换该工厂。</p>
+ * 
+ * <p>取消按作用域分层：轮次 → 批次 → 单个工具，见 {@link CancellationToken}。
+ * 工具执行期间可通过 {@link CancellationToken#current()} 取得自身令牌。</p>
+ * 
+ * <p>流式工具的输出经有界的 {@link ToolOutputChannel} 转发给调用方的监听器；
+ * 调用方未提供监听器时，由 {@link MessageRenderer} 实时打印到终端。</p>
+ * 
+ * <p>可缓存工具（{@link Tool#isCacheable()}）的结果经 {@link ToolResultCache} 记忆化；
+ * 写类工具执行后，其修改的路径会发布到 {@link FileChangeBus} 以精确失效缓存。</p>
+ * 
+ * <p>写类工具执行前，其将要修改的文件记入 {@link CheckpointStore} 的当前检查点，供撤销时回滚。</p>
+ * 
+ * <p>每次调用的耗时、输出规模和结果分类记录到 {@link ToolMetricsService}。</p>
  */
 @Singleton
 public class ToolExecutor {
     
     private static final Logger logger = LoggerFactory.getLogger(ToolExecutor.class);
     private static final long DEFAULT_TIMEOUT_MS = 300000; // 5 分钟超时
+    private static final String REASON_TIMEOUT = "执行超时";
+    private static final String REASON_CANCELLED = "执行已取消";
+    
+    public static final String LANE_CONCURRENT = "concurrent";
+    public static final String LANE_EXCLUSIVE = "exclusive";
+    public static final String LANE_ASYNC = "async";
+    public static final String LANE_OUTPUT = "output";
+    
+    private static final int CONCURRENT_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int LANE_QUEUE_CAPACITY = 256;
+    private static final long WEDGED_GRACE_MS = 1000;
     
     private final ToolPermissionHook permissionHook;
     private final CancelRequestHook cancelHook;
-    private final ExecutorService executorService;
+    private final ToolResultCache resultCache;
+    private final FileChangeBus fileChangeBus;
+    private final ToolMetricsService metrics;
+    private final Map<String, ThreadPoolExecutor> lanes;
+    private final Object exclusiveLaneLock = new Object();
+    private final ScheduledExecutorService timeoutScheduler;
+    
+    /**
+     * 文件检查点存储，未注入时不记录检查点
+     */
+    private CheckpointStore checkpointStore;
+    
+    /**
+     * 消息渲染器，未注入时流式输出只收集不打印
+     */
+    private MessageRenderer messageRenderer;
     
-    @Inject
     public ToolExecutor(
             ToolPermissionHook permissionHook,
             CancelRequestHook cancelHook) {
+        this(permissionHook, cancelHook, new FileChangeBus());
+    }
+    
+    private ToolExecutor(
+            ToolPermissionHook permissionHook,
+            CancelRequestHook cancelHook,
+            FileChangeBus fileChangeBus) {
+        this(permissionHook, cancelHook,
+            new ToolResultCache(System.getProperty("user.dir"), fileChangeBus), fileChangeBus,
+            new ToolMetricsService(new CostTrackingService(), new TokenCounter()));
+    }
+    
+    @Inject
+    public ToolExecutor(
+            ToolPermissionHook permissionHook,
+            CancelRequestHook cancelHook,
+            ToolResultCache resultCache,
+            FileChangeBus fileChangeBus,
+            ToolMetricsService metrics) {
         this.permissionHook = permissionHook;
         this.cancelHook = cancelHook;
-        this.executorService = Executors.newCachedThreadPool(r -> {
-            Thread thread = new Thread(r);
-            thread.setName("ToolExecutor-" + thread.getId());
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.resultCache = resultCache;
+        this.fileChangeBus = fileChangeBus;
+        this.metrics = metrics;
+        this.lanes = new ConcurrentHashMap<>();
+        this.lanes.put(LANE_CONCURRENT, newLane(LANE_CONCURRENT, CONCURRENT_THREADS));
+        this.lanes.put(LANE_EXCLUSIVE, newLane(LANE_EXCLUSIVE, 1));
+        this.lanes.put(LANE_ASYNC, newLane(LANE_ASYNC, CONCURRENT_THREADS));
+        this.lanes.put(LANE_OUTPUT, newLane(LANE_OUTPUT, CONCURRENT_THREADS, 0));
+        
+        ScheduledThreadPoolExecutor scheduler =
+            new ScheduledThreadPoolExecutor(1, newThreadFactory("timeout"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.timeoutScheduler = scheduler;
+    }
+    
+    /**
+     * 注入文件检查点存储
+     */
+    @Inject
+    public void setCheckpointStore(CheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+    
+    /**
+     * 注入消息渲染器，用于实时打印流式工具的输出
+     */
+    @Inject
+    public void setMessageRenderer(MessageRenderer messageRenderer) {
+        this.messageRenderer = messageRenderer;
     }
     
     /**
@@ -51,6 +153,7 @@ public class ToolExecutor {
     
     /**
      * 执行工具（同步，带超时）
+     * 取消作用域挂在当前轮次的令牌下
      * 
      * @param tool 要执行的工具
      * @param input 输入参数
@@ -58,6 +161,42 @@ public class ToolExecutor {
      * @return 执行结果
      */
     public ToolResult execute(Tool tool, Map<String, Object> input, long timeoutMs) {
+        return execute(tool, input, timeoutMs, cancelHook.getTurnToken());
+    }
+    
+    /**
+     * 执行工具（同步，带超时与父级取消作用域）
+     * 每次调用派生独立的工具级令牌：父级取消会级联到本次调用，
+     * 而本次调用超时只取消它自己，不影响并发执行的其他工具
+     * 
+     * @param tool 要执行的工具
+     * @param input 输入参数
+     * @param timeoutMs 超时时间（毫秒）
+     * @param parent 父级取消令牌（轮次或批次）
+     * @return 执行结果
+     */
+    public ToolResult execute(Tool tool, Map<String, Object> input, long timeoutMs, CancellationToken parent) {
+        return execute(tool, input, timeoutMs, parent, null);
+    }
+    
+    /**
+     * 执行工具（同步，带流式输出监听）
+     * 支持流式输出的工具（{@link Tool#supportsStreaming()}）会把输出块实时转发给监听器，
+     * 监听器在独立的输出通道线程上被调用
+     * 
+     * @param tool 要执行的工具
+     * @param input 输入参数
+     * @param timeoutMs 超时时间（毫秒）
+     * @param parent 父级取消令牌（轮次或批次）
+     * @param outputListener 输出块监听器，可为 null
+     * @return 执行结果
+     */
+    public ToolResult execute(
+            Tool tool,
+            Map<String, Object> input,
+            long timeoutMs,
+            CancellationToken parent,
+            Consumer<String> outputListener) {
         logger.info("执行工具: {}", tool.getName());
         
         // 1. 权限检查
@@ -69,65 +208,301 @@ public class ToolExecutor {
             return ToolResult.error("权限被拒绝: " + permissionResult.getMessage());
         }
         
-        // 2. 重置取消状态
-        cancelHook.reset();
+        // 2. 可缓存工具优先命中缓存
+        boolean cacheable = tool.isCacheable();
+        long cacheGeneration = resultCache.currentGeneration();
+        if (cacheable) {
+            ToolResult cached = resultCache.get(tool.getName(), input);
+            if (cached != null) {
+                metrics.recordCacheHit(tool.getName());
+                return cached;
+            }
+        }
+        
+        // 3. 写类工具在修改前记录检查点
+        if (!cacheable && !tool.isReadOnly()) {
+            captureCheckpoint(tool, input);
+        }
         
-        // 3. 异步执行工具
-        Future<ToolResult> future = executorService.submit((Callable<ToolResult>) () -> {
+        ToolResult result = runWithScope(tool, input, timeoutMs, parent, outputListener);
+        
+        // 4. 更新缓存：只读工具写入结果，写类工具发布变更事件
+        if (cacheable) {
+            resultCache.put(tool.getName(), input, result, cacheGeneration);
+        } else if (!tool.isReadOnly()) {
+            publishModifications(tool, input);
+        }
+        return result;
+    }
+    
+    /**
+     * 在独立的工具级取消作用域中执行工具并等待结果
+     */
+    private ToolResult runWithScope(
+            Tool tool,
+            Map<String, Object> input,
+            long timeoutMs,
+            CancellationToken parent,
+            Consumer<String> outputListener) {
+        // 1. 派生工具级取消作用域
+        long startNanos = System.nanoTime();
+        CancellationToken toolToken = parent.child(tool.getName());
+        CompletableFuture<ToolResult> outcome = new CompletableFuture<>();
+        
+        // 2. 提交到执行通道，超时在开始运行时才计时
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        Runnable body = () -> {
+            worker.set(Thread.currentThread());
             try {
-                // 检查是否已取消
-                cancelHook.throwIfCancelled();
-                
-                // 执行工具
-                return tool.call(input);
-                
-            } catch (CancelRequestHook.CancellationException e) {
-                logger.info("工具 {} 执行被取消", tool.getName());
-                return ToolResult.error("执行已取消");
-            } catch (Exception e) {
-                logger.error("工具 {} 执行失败", tool.getName(), e);
-                return ToolResult.error("执行失败: " + e.getMessage());
+                if (!outcome.isDone()) {
+                    scheduleTimeout(tool, toolToken, timeoutMs, outcome);
+                    runTool(tool, input, toolToken, outputListener, outcome);
+                }
+            } finally {
+                worker.set(null);
             }
-        });
-        
-        // 4. 等待结果（支持超时与取消）
+        };
+        boolean exclusive = !tool.isConcurrencySafe();
+        ThreadPoolExecutor lane;
+        Future<?> task;
         try {
-            long startTime = System.currentTimeMillis();
-            
-            while (!future.isDone()) {
-                // 检查是否超时
-                if (System.currentTimeMillis() - startTime > timeoutMs) {
-                    logger.warn("工具 {} 执行超时 ({}ms)", tool.getName(), timeoutMs);
-                    future.cancel(true);
-                    return ToolResult.error("执行超时");
-                }
-                
-                // 检查是否已取消
-                if (cancelHook.isCancelled()) {
-                    future.cancel(true);
-                    logger.info("工具 {} 执行被取消", tool.getName());
-                    return ToolResult.error("执行已取消");
-                }
-                
-                // 短暂等待，避免忙等待
-                try {
-                    return future.get(100, TimeUnit.MILLISECONDS);
-                } catch (TimeoutException e) {
-                    // 继续等待
+            if (exclusive) {
+                synchronized (exclusiveLaneLock) {
+                    lane = lanes.get(LANE_EXCLUSIVE);
+                    task = lane.submit(body);
                 }
+            } else {
+                lane = lanes.get(LANE_CONCURRENT);
+                task = lane.submit(body);
             }
-            
-            return future.get();
+        } catch (RejectedExecutionException e) {
+            toolToken.close();
+            logger.warn("工具 {} 提交失败，执行队列已满", tool.getName());
+            ToolResult rejected = ToolResult.error("执行队列已满，请稍后重试");
+            recordMetrics(tool, startNanos, rejected, ToolMetricsService.Outcome.FAILURE);
+            return rejected;
+        }
+        
+        // 3. 注册取消，与工具完成、超时三者由最先到达的事件完成结果
+        toolToken.onCancel(() -> {
+            if (outcome.complete(ToolResult.error(toolToken.getReason()))) {
+                logger.info("工具 {} 执行结束: {}", toolToken.getPath(), toolToken.getReason());
+            }
+        });
+        
+        // 4. 等待结果
+        ToolResult result;
+        try {
+            result = outcome.get();
+            recordMetrics(tool, startNanos, result, classify(result, toolToken));
+            return result;
             
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.warn("工具 {} 执行被中断", tool.getName());
-            future.cancel(true);
-            return ToolResult.error("执行被中断");
+            result = ToolResult.error("执行被中断");
+            recordMetrics(tool, startNanos, result, ToolMetricsService.Outcome.CANCELLED);
+            return result;
             
         } catch (ExecutionException e) {
             logger.error("工具 {} 执行异常", tool.getName(), e);
-            return ToolResult.error("执行异常: " + e.getCause().getMessage());
+            result = ToolResult.error("执行异常: " + e.getCause().getMessage());
+            recordMetrics(tool, startNanos, result, ToolMetricsService.Outcome.FAILURE);
+            return result;
+            
+        } finally {
+            if (!task.isDone()) {
+                // 取消或超时后立即释放子进程等资源并中断仍在运行的工具线程
+                toolToken.cancel(REASON_CANCELLED);
+                task.cancel(true);
+                if (exclusive && worker.get() != null) {
+                    watchExclusiveWorker(tool, lane, worker);
+                }
+            }
+            toolToken.close();
+        }
+    }
+    
+    /**
+     * 工具开始运行时调度超时任务，结果完成后撤销
+     */
+    private void scheduleTimeout(
+            Tool tool,
+            CancellationToken toolToken,
+            long timeoutMs,
+            CompletableFuture<ToolResult> outcome) {
+        ScheduledFuture<?> timeout;
+        try {
+            timeout = timeoutScheduler.schedule(() -> {
+                logger.warn("工具 {} 执行超时 ({}ms)", tool.getName(), timeoutMs);
+                toolToken.cancel(REASON_TIMEOUT);
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("执行器已关闭，工具 {} 不再计时", tool.getName());
+            return;
+        }
+        outcome.whenComplete((result, error) -> timeout.cancel(false));
+    }
+    
+    /**
+     * 被中断的独占工具在宽限期后仍未退出时，放弃其所在的工作线程
+     */
+    private void watchExclusiveWorker(Tool tool, ThreadPoolExecutor lane, AtomicReference<Thread> worker) {
+        try {
+            timeoutScheduler.schedule(() -> {
+                if (worker.get() != null) {
+                    logger.warn("工具 {} 未响应中断，放弃线程 {}", tool.getName(), worker.get().getName());
+                    replaceExclusiveLane(lane);
+                }
+            }, WEDGED_GRACE_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("执行器已关闭，不再检查工具 {} 的线程", tool.getName());
+        }
+    }
+    
+    /**
+     * 用新的单线程通道替换卡住的独占通道，排队中的工具按原顺序转移过去
+     */
+    private void replaceExclusiveLane(ThreadPoolExecutor wedged) {
+        synchronized (exclusiveLaneLock) {
+            if (lanes.get(LANE_EXCLUSIVE) != wedged || wedged.isShutdown()) {
+                return;
+            }
+            ThreadPoolExecutor fresh = newLane(LANE_EXCLUSIVE, 1);
+            List<Runnable> pending = wedged.shutdownNow();
+            pending.forEach(fresh::execute);
+            lanes.put(LANE_EXCLUSIVE, fresh);
+        }
+    }
+    
+    /**
+     * 判定调用结果分类：令牌被取消时按取消原因区分超时与取消
+     */
+    private static ToolMetricsService.Outcome classify(ToolResult result, CancellationToken toolToken) {
+        if (toolToken.isCancelled()) {
+            return REASON_TIMEOUT.equals(toolToken.getReason())
+                ? ToolMetricsService.Outcome.TIMEOUT
+                : ToolMetricsService.Outcome.CANCELLED;
+        }
+        return result.isSuccess() ? ToolMetricsService.Outcome.SUCCESS : ToolMetricsService.Outcome.FAILURE;
+    }
+    
+    private void recordMetrics(Tool tool, long startNanos, ToolResult result, ToolMetricsService.Outcome outcome) {
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        String serverName = tool instanceof McpToolAdapter ? ((McpToolAdapter) tool).getServerName() : null;
+        try {
+            metrics.record(tool.getName(), serverName, durationMs, result, outcome);
+        } catch (Exception e) {
+            logger.debug("记录工具指标失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 写类工具执行前，把它将要修改的文件记入当前检查点
+     */
+    private void captureCheckpoint(Tool tool, Map<String, Object> input) {
+        if (checkpointStore == null) {
+            return;
+        }
+        try {
+            List<Path> modified = tool.getModifiedPaths(input);
+            if (modified != null) {
+                checkpointStore.captureAll(modified);
+            }
+        } catch (Exception e) {
+            logger.debug("记录工具 {} 检查点失败: {}", tool.getName(), e.getMessage());
+        }
+    }
+    
+    /**
+     * 发布写类工具造成的文件变更，无法确定修改路径时发布未知变更
+     */
+    private void publishModifications(Tool tool, Map<String, Object> input) {
+        List<Path> modified;
+        try {
+            modified = tool.getModifiedPaths(input);
+        } catch (Exception e) {
+            logger.debug("获取工具 {} 修改路径失败: {}", tool.getName(), e.getMessage());
+            modified = null;
+        }
+        if (modified == null) {
+            fileChangeBus.publishUnknown();
+        } else {
+            modified.forEach(fileChangeBus::publish);
+        }
+    }
+    
+    /**
+     * 获取工具结果缓存
+     */
+    public ToolResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    /**
+     * 获取工具调用指标
+     */
+    public ToolMetricsService getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * 在工作线程中执行工具，并将结果写入 outcome
+     */
+    private void runTool(
+            Tool tool,
+            Map<String, Object> input,
+            CancellationToken toolToken,
+            Consumer<String> outputListener,
+            CompletableFuture<ToolResult> outcome) {
+        if (outcome.isDone()) {
+            return;
+        }
+        CancellationToken previous = CancellationToken.bind(toolToken);
+        try {
+            // 检查是否已取消
+            toolToken.throwIfCancelled();
+            
+            // 执行工具
+            if (tool.supportsStreaming()) {
+                try (ToolOutputChannel channel = openOutputChannel(tool, outputListener)) {
+                    outcome.complete(tool.call(input, channel));
+                }
+            } else {
+                outcome.complete(tool.call(input));
+            }
+            
+        } catch (CancelRequestHook.CancellationException e) {
+            logger.info("工具 {} 执行被取消", tool.getName());
+            outcome.complete(ToolResult.error(e.getMessage()));
+        } catch (Exception e) {
+            if (outcome.isDone()) {
+                logger.debug("工具 {} 在结束后抛出异常: {}", tool.getName(), e.getMessage());
+            } else {
+                logger.error("工具 {} 执行失败", tool.getName(), e);
+                outcome.complete(ToolResult.error("执行失败: " + e.getMessage()));
+            }
+        } finally {
+            CancellationToken.bind(previous);
+        }
+    }
+    
+    /**
+     * 创建流式输出通道
+     * 调用方未提供监听器时使用渲染器的打印器；有监听器时在输出通道线程上转发，否则在工具线程上同步收集
+     */
+    private ToolOutputChannel openOutputChannel(Tool tool, Consumer<String> outputListener) {
+        if (outputListener == null && messageRenderer != null) {
+            outputListener = messageRenderer.createToolOutputPrinter();
+        }
+        if (outputListener == null) {
+            return new ToolOutputChannel(tool.getName(), null, null);
+        }
+        try {
+            return new ToolOutputChannel(tool.getName(), outputListener, lanes.get(LANE_OUTPUT));
+        } catch (RejectedExecutionException e) {
+            logger.debug("输出通道线程不足，改为同步转发: {}", tool.getName());
+            return new ToolOutputChannel(tool.getName(), outputListener, null);
         }
     }
     
@@ -141,14 +516,38 @@ public class ToolExecutor {
     public void executeAsync(
             Tool tool, 
             Map<String, Object> input,
-            java.util.function.Consumer<ToolResult> callback) {
+            Consumer<ToolResult> callback) {
+        executeAsync(tool, input, null, callback);
+    }
+    
+    /**
+     * 执行工具（异步，带流式输出监听）
+     * 
+     * @param tool 要执行的工具
+     * @param input 输入参数
+     * @param outputListener 输出块监听器，可为 null
+     * @param callback 完成回调
+     */
+    public void executeAsync(
+            Tool tool,
+            Map<String, Object> input,
+            Consumer<String> outputListener,
+            Consumer<ToolResult> callback) {
         
-        executorService.submit(() -> {
-            ToolResult result = execute(tool, input);
+        // 异步调用方在独立通道上等待，避免占用工具通道的线程
+        try {
+            lanes.get(LANE_ASYNC).submit(() -> {
+                ToolResult result = execute(tool, input, DEFAULT_TIMEOUT_MS, cancelHook.getTurnToken(), outputListener);
+                if (callback != null) {
+                    callback.accept(result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("工具 {} 异步提交失败，执行队列已满", tool.getName());
             if (callback != null) {
-                callback.accept(result);
+                callback.accept(ToolResult.error("执行队列已满，请稍后重试"));
             }
-        });
+        }
     }
     
     /**
@@ -160,41 +559,92 @@ public class ToolExecutor {
     public java.util.List<ToolResult> executeBatch(java.util.List<ToolExecution> executions) {
         java.util.List<ToolResult> results = new java.util.ArrayList<>();
         
-        for (ToolExecution execution : executions) {
-            // 检查是否已取消
-            if (cancelHook.isCancelled()) {
-                logger.info("批量执行已取消，停止后续工具");
-                break;
-            }
-            
-            ToolResult result = execute(execution.tool, execution.input);
-            results.add(result);
-            
-            // 如果执行失败且配置为停止，则中断批量执行
-            if (!result.isSuccess() && execution.stopOnError) {
-                logger.warn("工具 {} 执行失败，停止批量执行", execution.tool.getName());
-                break;
+        try (CancellationToken batchToken = cancelHook.getTurnToken().child("batch")) {
+            for (ToolExecution execution : executions) {
+                // 检查是否已取消
+                if (batchToken.isCancelled()) {
+                    logger.info("批量执行已取消，停止后续工具");
+                    break;
+                }
+                
+                ToolResult result = execute(execution.tool, execution.input, DEFAULT_TIMEOUT_MS, batchToken);
+                results.add(result);
+                
+                // 如果执行失败且配置为停止，则中断批量执行
+                if (!result.isSuccess() && execution.stopOnError) {
+                    logger.warn("工具 {} 执行失败，停止批量执行", execution.tool.getName());
+                    break;
+                }
             }
         }
         
         return results;
     }
     
+    /**
+     * 获取各执行通道当前的排队任务数
+     */
+    public Map<String, Integer> getQueueSizes() {
+        Map<String, Integer> sizes = new TreeMap<>();
+        lanes.forEach((name, lane) -> sizes.put(name, lane.getQueue().size()));
+        return sizes;
+    }
+    
     /**
      * 关闭执行器
      */
     public void shutdown() {
-        executorService.shutdown();
+        timeoutScheduler.shutdownNow();
+        lanes.values().forEach(ExecutorService::shutdown);
         try {
-            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
+            for (ExecutorService lane : lanes.values()) {
+                if (!lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                    lane.shutdownNow();
+                }
             }
         } catch (InterruptedException e) {
-            executorService.shutdownNow();
+            lanes.values().forEach(ExecutorService::shutdownNow);
             Thread.currentThread().interrupt();
         }
     }
     
+    /**
+     * 创建有界执行通道
+     */
+    private static ThreadPoolExecutor newLane(String name, int threads) {
+        return newLane(name, threads, LANE_QUEUE_CAPACITY);
+    }
+    
+    /**
+     * 创建有界执行通道
+     * 
+     * @param queueCapacity 排队容量，0 表示不排队（线程用尽时直接拒绝）
+     */
+    private static ThreadPoolExecutor newLane(String name, int threads, int queueCapacity) {
+        ThreadPoolExecutor lane = new ThreadPoolExecutor(
+            threads, threads,
+            60L, TimeUnit.SECONDS,
+            queueCapacity > 0 ? new LinkedBlockingQueue<>(queueCapacity) : new SynchronousQueue<>(),
+            newThreadFactory(name),
+            new ThreadPoolExecutor.AbortPolicy());
+        lane.allowCoreThreadTimeOut(true);
+        return lane;
+    }
+    
+    /**
+     * 工具线程工厂
+     * 升级到 JDK 21 后可替换为 Thread.ofVirtual().name("ToolExecutor-" + lane + "-", 0).factory()
+     */
+    private static ThreadFactory newThreadFactory(String lane) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r);
+            thread.setName("ToolExecutor-" + lane + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
     /**
      * 工具执行配置
      */
@@ -0,0 +1,314 @@
+package io.leavesfly.joder.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 工具输出流通道
+ *
+ * <p>流式工具通过 {@link #emit(String)} 逐块发送输出。通道内部是有界队列，
+ * 由独立线程取出后转发给监听器（UI 实时渲染），消费不及时时 emit 会阻塞，
+ * 从而把背压传回生产者（例如子进程的管道写满后自然暂停）。</p>
+ *
+ * <p>通道只在内存中保留头部与尾部摘录；输出超过阈值后完整内容写入溢出文件，
+ * 最终的 {@link ToolResult} 只携带摘录和溢出文件路径。溢出文件在进程退出时删除，
+ * 异常退出遗留的文件由下一次创建溢出文件前的按龄清理回收；未完成即关闭的通道立即删除其溢出文件。</p>
+ */
+public class ToolOutputChannel implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolOutputChannel.class);
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int HEAD_CHARS = 8 * 1024;
+    private static final int TAIL_CHARS = 16 * 1024;
+    private static final Object END_OF_STREAM = new Object();
+    private static final Path SPILL_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "joder-tool-output");
+    private static final long SPILL_MAX_AGE_MS = TimeUnit.DAYS.toMillis(1);
+    private static final AtomicBoolean SPILL_DIR_SWEPT = new AtomicBoolean(false);
+
+    private final Consumer<String> listener;
+    private final BlockingQueue<Object> queue;
+    private final CountDownLatch drained;
+    private final String spillPrefix;
+
+    // 以下字段仅由消费线程（同步模式下为生产线程）访问
+    private StringBuilder buffer = new StringBuilder();
+    private String head;
+    private StringBuilder tail;
+    private BufferedWriter spillWriter;
+    private Path spillFile;
+    private long totalChars;
+
+    private volatile boolean closed;
+    private Summary summary;
+
+    /**
+     * 创建通道
+     *
+     * @param spillPrefix 溢出文件名前缀（通常为工具名）
+     * @param listener 输出块监听器，可为 null
+     * @param drainExecutor 消费线程所在的执行器；为 null 时在 emit 调用线程上同步处理
+     */
+    public ToolOutputChannel(String spillPrefix, Consumer<String> listener, Executor drainExecutor) {
+        this.spillPrefix = spillPrefix;
+        this.listener = listener;
+        this.drained = new CountDownLatch(1);
+        if (drainExecutor != null) {
+            this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            drainExecutor.execute(this::drain);
+        } else {
+            this.queue = null;
+            this.drained.countDown();
+        }
+    }
+
+    /**
+     * 发送一块输出，队列已满时阻塞
+     */
+    public void emit(String chunk) throws InterruptedException {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        if (closed) {
+            throw new IllegalStateException("输出通道已关闭");
+        }
+        if (queue != null) {
+            queue.put(chunk);
+        } else {
+            consume(chunk);
+        }
+    }
+
+    /**
+     * 结束输出并等待消费完成
+     *
+     * @return 输出摘要
+     */
+    public synchronized Summary finish() throws InterruptedException {
+        if (summary != null) {
+            return summary;
+        }
+        closed = true;
+        if (queue != null) {
+            queue.put(END_OF_STREAM);
+        }
+        drained.await();
+        closeSpill();
+        summary = buildSummary();
+        return summary;
+    }
+
+    /**
+     * 关闭通道，未调用 {@link #finish()} 时放弃剩余输出并删除溢出文件
+     * 先等待消费线程退出，再关闭溢出文件，避免与进行中的写入竞争
+     */
+    @Override
+    public synchronized void close() {
+        if (summary != null) {
+            return;
+        }
+        closed = true;
+        if (queue != null) {
+            do {
+                queue.clear();
+            } while (!queue.offer(END_OF_STREAM));
+            awaitDrained();
+        }
+        closeSpill();
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                logger.debug("删除溢出文件失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 等待消费线程退出，期间的中断延后到返回时恢复
+     */
+    private void awaitDrained() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                drained.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Object item = queue.take();
+                if (item == END_OF_STREAM) {
+                    break;
+                }
+                consume((String) item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            drained.countDown();
+        }
+    }
+
+    private void consume(String chunk) {
+        if (listener != null) {
+            try {
+                listener.accept(chunk);
+            } catch (Exception e) {
+                logger.debug("输出监听器处理失败: {}", e.getMessage());
+            }
+        }
+        totalChars += chunk.length();
+
+        if (buffer != null) {
+            buffer.append(chunk);
+            if (buffer.length() > HEAD_CHARS + TAIL_CHARS) {
+                startSpill();
+            }
+            return;
+        }
+
+        writeSpill(chunk);
+        tail.append(chunk);
+        if (tail.length() > 2 * TAIL_CHARS) {
+            tail.delete(0, tail.length() - TAIL_CHARS);
+        }
+    }
+
+    /**
+     * 输出超过内存阈值：保留头部，其余写入溢出文件
+     */
+    private void startSpill() {
+        head = buffer.substring(0, HEAD_CHARS);
+        tail = new StringBuilder(buffer.substring(buffer.length() - TAIL_CHARS));
+        try {
+            Files.createDirectories(SPILL_DIR);
+            if (SPILL_DIR_SWEPT.compareAndSet(false, true)) {
+                sweepSpillDir(System.currentTimeMillis() - SPILL_MAX_AGE_MS);
+            }
+            spillFile = Files.createTempFile(SPILL_DIR, spillPrefix + "-", ".log");
+            spillFile.toFile().deleteOnExit();
+            spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("无法创建溢出文件，完整输出将被丢弃: {}", e.getMessage());
+            spillFile = null;
+        }
+        writeSpill(buffer.toString());
+        buffer = null;
+    }
+
+    /**
+     * 删除早于给定时间的溢出文件（异常退出的会话遗留）
+     */
+    static void sweepSpillDir(long cutoffMillis) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(SPILL_DIR, "*.log")) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoffMillis) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    logger.debug("清理溢出文件失败: {}", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("清理溢出目录失败: {}", e.getMessage());
+        }
+    }
+
+    private void writeSpill(String text) {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.write(text);
+        } catch (IOException e) {
+            logger.warn("写入溢出文件失败: {}", e.getMessage());
+            closeSpill();
+        }
+    }
+
+    private void closeSpill() {
+        if (spillWriter != null) {
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                logger.debug("关闭溢出文件失败: {}", e.getMessage());
+            }
+            spillWriter = null;
+        }
+    }
+
+    private Summary buildSummary() {
+        if (buffer != null) {
+            return new Summary(buffer.toString(), totalChars, null);
+        }
+        if (tail.length() > TAIL_CHARS) {
+            tail.delete(0, tail.length() - TAIL_CHARS);
+        }
+        long omitted = totalChars - head.length() - tail.length();
+        StringBuilder text = new StringBuilder(head);
+        text.append("\n\n... [已省略 ").append(omitted).append(" 个字符");
+        if (spillFile != null) {
+            text.append("，完整输出见: ").append(spillFile);
+        }
+        text.append("] ...\n\n").append(tail);
+        return new Summary(text.toString(), totalChars, spillFile);
+    }
+
+    /**
+     * 输出摘要
+     */
+    public static class Summary {
+        private final String text;
+        private final long totalChars;
+        private final Path spillFile;
+
+        Summary(String text, long totalChars, Path spillFile) {
+            this.text = text;
+            this.totalChars = totalChars;
+            this.spillFile = spillFile;
+        }
+
+        /**
+         * 完整输出或「头部 + 省略提示 + 尾部」摘录
+         */
+        public String getText() {
+            return text;
+        }
+
+        public long getTotalChars() {
+            return totalChars;
+        }
+
+        /**
+         * 溢出文件路径，输出未超过阈值时为 null
+         */
+        public Path getSpillFile() {
+            return spillFile;
+        }
+    }
+}
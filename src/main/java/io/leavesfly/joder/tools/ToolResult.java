@@ -1,5 +1,7 @@
 package io.leavesfly.joder.tools;
 
+import java.nio.file.Path;
+
 /**
  * 工具执行结果
  */
@@ -8,25 +10,43 @@ public class ToolResult {
     private final boolean success;
     private final String output;
     private final String error;
+    private final Path spillFile;
+    private final boolean cacheable;
     
-    private ToolResult(boolean success, String output, String error) {
+    private ToolResult(boolean success, String output, String error, Path spillFile, boolean cacheable) {
         this.success = success;
         this.output = output;
         this.error = error;
+        this.spillFile = spillFile;
+        this.cacheable = cacheable;
     }
     
     /**
      * 创建成功结果
      */
     public static ToolResult success(String output) {
-        return new ToolResult(true, output, null);
+        return new ToolResult(true, output, null, null, true);
     }
     
     /**
      * 创建错误结果
      */
     public static ToolResult error(String error) {
-        return new ToolResult(false, null, error);
+        return new ToolResult(false, null, error, null, true);
+    }
+    
+    /**
+     * 附加溢出文件（完整输出过大时，结果中只保留摘录）
+     */
+    public ToolResult withSpillFile(Path spillFile) {
+        return new ToolResult(success, output, error, spillFile, cacheable);
+    }
+    
+    /**
+     * 标记结果不写入结果缓存（如输出中含有会失效的分页游标）
+     */
+    public ToolResult withoutCaching() {
+        return new ToolResult(success, output, error, spillFile, false);
     }
     
     public boolean isSuccess() {
@@ -41,6 +61,20 @@ public class ToolResult {
         return error;
     }
     
+    /**
+     * 获取完整输出的溢出文件，未溢出时为 null
+     */
+    public Path getSpillFile() {
+        return spillFile;
+    }
+    
+    /**
+     * 可缓存工具的本次结果是否可以写入结果缓存
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+    
     @Override
     public String toString() {
         if (success) {
@@ -3,8 +3,12 @@ package io.leavesfly.joder.tools.architect;
 import io.leavesfly.joder.WorkingDirectory;
 import io.leavesfly.joder.domain.Message;
 import io.leavesfly.joder.domain.MessageRole;
+import io.leavesfly.joder.services.context.ContextPack;
+import io.leavesfly.joder.services.context.ContextPacker;
+import io.leavesfly.joder.services.memory.ProjectAnalysisCache;
 import io.leavesfly.joder.services.model.ModelAdapter;
 import io.leavesfly.joder.services.model.ModelAdapterFactory;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
 import io.leavesfly.joder.tools.Tool;
 import io.leavesfly.joder.tools.ToolResult;
 import org.slf4j.Logger;
@@ -12,11 +16,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Architect Tool - 架构分析工具
@@ -28,14 +30,59 @@ public class ArchitectTool implements Tool {
     
     private static final Logger logger = LoggerFactory.getLogger(ArchitectTool.class);
     
+    /** 项目分析的最大目录深度 */
+    private static final int MAX_ANALYZE_DEPTH = 5;
+    
+    /** 聚焦文件时相关文件内容可用的 token 数 */
+    private static final int RELATED_FILES_TOKEN_BUDGET = 6000;
+    
+    /**
+     * 文件统计：跳过隐藏文件与构建、依赖目录，子目录的统计合并到父目录
+     */
+    private static final ProjectAnalysisCache.Fold<ProjectInfo> PROJECT_INFO_FOLD = (directory, subResult) -> {
+        ProjectInfo info = new ProjectInfo();
+        for (ProjectAnalysisCache.Child child : directory.getChildren()) {
+            if (WorkspaceCatalog.isSkippedName(child.getName())) {
+                continue;
+            }
+            if (child.isDirectory()) {
+                ProjectInfo sub = child.isExcluded() ? null : subResult.apply(child.getName());
+                if (sub != null) {
+                    info.merge(sub);
+                }
+                continue;
+            }
+            info.fileCount++;
+            String lang = mapExtensionToLanguage(getFileExtension(child.getName()));
+            if (lang != null) {
+                info.codeFileCount++;
+                info.langCount.merge(lang, 1, Integer::sum);
+            }
+            if (child.getName().matches("pom\\.xml|build\\.gradle|package\\.json|Cargo\\.toml|go\\.mod")) {
+                info.buildFiles.add(child.getName());
+            }
+        }
+        return info;
+    };
+    
     private final String workingDirectory;
     private final ModelAdapterFactory modelAdapterFactory;
+    private final ProjectAnalysisCache analysisCache;
+    private final ContextPacker contextPacker;
+    
+    public ArchitectTool(String workingDirectory, ModelAdapterFactory modelAdapterFactory) {
+        this(workingDirectory, modelAdapterFactory, new ProjectAnalysisCache(workingDirectory), null);
+    }
     
     @Inject
     public ArchitectTool(@WorkingDirectory String workingDirectory,
-                         ModelAdapterFactory modelAdapterFactory) {
+                         ModelAdapterFactory modelAdapterFactory,
+                         ProjectAnalysisCache analysisCache,
+                         ContextPacker contextPacker) {
         this.workingDirectory = workingDirectory;
         this.modelAdapterFactory = modelAdapterFactory;
+        this.analysisCache = analysisCache;
+        this.contextPacker = contextPacker;
     }
     
     @Override
@@ -58,7 +105,8 @@ public class ArchitectTool implements Tool {
                "**参数**：\n" +
                "- prompt: 要分析的技术请求或编码任务（必需）\n" +
                "- context: 可选的上下文信息\n" +
-               "- directory: 要分析的目录（默认：当前目录）\n\n" +
+               "- directory: 要分析的目录（默认：当前目录）\n" +
+               "- file: 可选，重点分析的文件；会附带与它有导入关系的相关文件内容\n\n" +
                "**分析维度**：\n" +
                "1. 项目结构\n" +
                "   - 目录组织\n" +
@@ -115,6 +163,7 @@ public class ArchitectTool implements Tool {
         String prompt = (String) input.get("prompt");
         String context = (String) input.get("context");
         String directory = (String) input.getOrDefault("directory", ".");
+        String file = (String) input.get("file");
         
         // 验证参数
         if (prompt == null || prompt.trim().isEmpty()) {
@@ -140,6 +189,10 @@ public class ArchitectTool implements Tool {
             
             // 构建分析请求
             String analysisPrompt = buildAnalysisPrompt(prompt, context, projectInfo);
+            String relatedFiles = packRelatedFiles(file);
+            if (relatedFiles != null) {
+                analysisPrompt = relatedFiles + "\n\n" + analysisPrompt;
+            }
             
             // 使用 AI 模型进行分析
             ModelAdapter adapter = modelAdapterFactory.createAdapter("gpt-4");
@@ -163,7 +216,7 @@ public class ArchitectTool implements Tool {
             result.append(String.format("总文件数:     %d\n", projectInfo.fileCount));
             result.append(String.format("代码文件:     %d\n", projectInfo.codeFileCount));
             result.append(String.format("主要语言:     %s\n\n", 
-                String.join(", ", projectInfo.languages)));
+                String.join(", ", projectInfo.languages())));
             
             result.append("🤖 AI 分析\n");
             result.append("─".repeat(60)).append("\n");
@@ -180,46 +233,11 @@ public class ArchitectTool implements Tool {
     }
     
     /**
-     * 分析项目信息
+     * 分析项目信息：统计目录下最多 {@value #MAX_ANALYZE_DEPTH} 层内的文件，
+     * 目录结构未变化的子树直接复用上次的统计
      */
-    private ProjectInfo analyzeProject(Path directory) throws IOException {
-        ProjectInfo info = new ProjectInfo();
-        
-        try (Stream<Path> paths = Files.walk(directory, 5)) {
-            List<Path> files = paths
-                .filter(Files::isRegularFile)
-                .filter(p -> !p.toString().contains("/.") && !p.toString().contains("\\."))
-                .collect(Collectors.toList());
-            
-            info.fileCount = files.size();
-            
-            // 分析文件类型
-            Map<String, Integer> langCount = new HashMap<>();
-            for (Path file : files) {
-                String ext = getFileExtension(file);
-                String lang = mapExtensionToLanguage(ext);
-                if (lang != null) {
-                    info.codeFileCount++;
-                    langCount.put(lang, langCount.getOrDefault(lang, 0) + 1);
-                }
-            }
-            
-            // 提取主要语言（前3个）
-            info.languages = langCount.entrySet().stream()
-                .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-                .limit(3)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-            
-            // 检测配置文件
-            info.buildFiles = files.stream()
-                .map(Path::getFileName)
-                .map(Path::toString)
-                .filter(name -> name.matches("pom\\.xml|build\\.gradle|package\\.json|Cargo\\.toml|go\\.mod"))
-                .collect(Collectors.toList());
-        }
-        
-        return info;
+    private ProjectInfo analyzeProject(Path directory) {
+        return analysisCache.snapshot(directory, MAX_ANALYZE_DEPTH).fold(PROJECT_INFO_FOLD);
     }
     
     /**
@@ -235,7 +253,7 @@ public class ArchitectTool implements Tool {
         sb.append("**项目信息**:\n");
         sb.append(String.format("- 总文件数: %d\n", projectInfo.fileCount));
         sb.append(String.format("- 代码文件数: %d\n", projectInfo.codeFileCount));
-        sb.append(String.format("- 主要语言: %s\n", String.join(", ", projectInfo.languages)));
+        sb.append(String.format("- 主要语言: %s\n", String.join(", ", projectInfo.languages())));
         
         if (!projectInfo.buildFiles.isEmpty()) {
             sb.append(String.format("- 构建文件: %s\n", String.join(", ", projectInfo.buildFiles)));
@@ -247,11 +265,25 @@ public class ArchitectTool implements Tool {
         return sb.toString();
     }
     
+    /**
+     * 打包重点文件及其相关文件的内容；未指定文件或导入图未就绪时返回 null
+     */
+    private String packRelatedFiles(String file) {
+        if (file == null || file.trim().isEmpty() || contextPacker == null) {
+            return null;
+        }
+        ContextPack pack = contextPacker.pack(Paths.get(file.trim()), RELATED_FILES_TOKEN_BUDGET);
+        if (pack == null || pack.isEmpty()) {
+            return null;
+        }
+        logger.debug("架构分析附带 {} 个相关文件", pack.getItems().size());
+        return String.format("**相关文件**（与 %s 有导入关系）:\n%s", pack.getTarget(), pack.format());
+    }
+    
     /**
      * 获取文件扩展名
      */
-    private String getFileExtension(Path file) {
-        String name = file.getFileName().toString();
+    private static String getFileExtension(String name) {
         int lastDot = name.lastIndexOf('.');
         return lastDot > 0 ? name.substring(lastDot + 1) : "";
     }
@@ -259,7 +291,7 @@ public class ArchitectTool implements Tool {
     /**
      * 映射扩展名到语言
      */
-    private String mapExtensionToLanguage(String ext) {
+    private static String mapExtensionToLanguage(String ext) {
         return switch (ext.toLowerCase()) {
             case "java" -> "Java";
             case "kt", "kts" -> "Kotlin";
@@ -295,12 +327,30 @@ public class ArchitectTool implements Tool {
     }
     
     /**
-     * 项目信息类
+     * 项目信息类（作为缓存结果共享，构建完成后不再修改）
      */
     private static class ProjectInfo {
         int fileCount = 0;
         int codeFileCount = 0;
-        List<String> languages = new ArrayList<>();
+        Map<String, Integer> langCount = new HashMap<>();
         List<String> buildFiles = new ArrayList<>();
+        
+        void merge(ProjectInfo other) {
+            fileCount += other.fileCount;
+            codeFileCount += other.codeFileCount;
+            other.langCount.forEach((lang, count) -> langCount.merge(lang, count, Integer::sum));
+            buildFiles.addAll(other.buildFiles);
+        }
+        
+        /**
+         * 主要语言（前3个）
+         */
+        List<String> languages() {
+            return langCount.entrySet().stream()
+                .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
+                .limit(3)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        }
     }
 }
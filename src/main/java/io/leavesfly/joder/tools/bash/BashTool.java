@@ -1,11 +1,13 @@
 package io.leavesfly.joder.tools.bash;
 
+import io.leavesfly.joder.hooks.CancellationToken;
 import io.leavesfly.joder.tools.AbstractTool;
+import io.leavesfly.joder.tools.ToolOutputChannel;
 import io.leavesfly.joder.tools.ToolResult;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -15,6 +17,7 @@ import java.util.concurrent.TimeUnit;
 public class BashTool extends AbstractTool {
     
     private static final int DEFAULT_TIMEOUT_SECONDS = 60;
+    private static final int READ_BUFFER_CHARS = 4096;
     
     @Override
     public String getName() {
@@ -36,8 +39,20 @@ public class BashTool extends AbstractTool {
         return false;
     }
     
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+    
     @Override
     public ToolResult call(Map<String, Object> input) {
+        try (ToolOutputChannel channel = new ToolOutputChannel(getName(), null, null)) {
+            return call(input, channel);
+        }
+    }
+    
+    @Override
+    public ToolResult call(Map<String, Object> input, ToolOutputChannel channel) {
         try {
             // 验证必需参数
             requireParameter(input, "command");
@@ -57,42 +72,51 @@ public class BashTool extends AbstractTool {
             processBuilder.directory(new java.io.File(workingDir));
             processBuilder.redirectErrorStream(true);
             
-            // 启动进程
+            // 启动进程，并将其挂到当前工具调用的取消作用域上
             Process process = processBuilder.start();
+            Runnable detach = CancellationToken.current().onCancel(() -> destroyProcessTree(process));
             
-            // 读取输出
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
+            int exitCode;
+            try {
+                // 按块读取输出并实时发送，通道满时阻塞形成背压
+                try (Reader reader = new InputStreamReader(process.getInputStream())) {
+                    char[] buffer = new char[READ_BUFFER_CHARS];
+                    int read;
+                    while ((read = reader.read(buffer)) != -1) {
+                        channel.emit(new String(buffer, 0, read));
+                    }
+                }
+                
+                // 等待进程完成
+                boolean completed = process.waitFor(timeout, TimeUnit.SECONDS);
+                
+                if (!completed) {
+                    destroyProcessTree(process);
+                    return ToolResult.error("命令执行超时（" + timeout + "秒）");
                 }
+                
+                exitCode = process.exitValue();
+            } finally {
+                detach.run();
             }
             
-            // 等待进程完成
-            boolean completed = process.waitFor(timeout, TimeUnit.SECONDS);
-            
-            if (!completed) {
-                process.destroyForcibly();
-                return ToolResult.error("命令执行超时（" + timeout + "秒）");
+            if (CancellationToken.current().isCancelled()) {
+                return ToolResult.error("命令已取消");
             }
             
-            int exitCode = process.exitValue();
-            
-            // 构建结果
+            // 构建结果（超长输出只保留头尾摘录，完整内容在溢出文件中）
+            ToolOutputChannel.Summary output = channel.finish();
             StringBuilder result = new StringBuilder();
             result.append("命令: ").append(command).append("\n");
             result.append("工作目录: ").append(workingDir).append("\n");
             result.append("退出码: ").append(exitCode).append("\n");
             result.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
-            result.append(output);
+            result.append(output.getText());
             
-            if (exitCode == 0) {
-                return ToolResult.success(result.toString());
-            } else {
-                return ToolResult.error(result.toString());
-            }
+            ToolResult toolResult = exitCode == 0
+                ? ToolResult.success(result.toString())
+                : ToolResult.error(result.toString());
+            return toolResult.withSpillFile(output.getSpillFile());
             
         } catch (IOException e) {
             logger.error("Failed to execute command", e);
@@ -107,6 +131,14 @@ public class BashTool extends AbstractTool {
         }
     }
     
+    /**
+     * 终止进程及其子进程
+     */
+    private void destroyProcessTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+    
     /**
      * 检查是否为危险命令
      */
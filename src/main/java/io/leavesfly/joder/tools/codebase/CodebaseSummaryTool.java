@@ -3,6 +3,7 @@ package io.leavesfly.joder.tools.codebase;
 import io.leavesfly.joder.WorkingDirectory;
 import io.leavesfly.joder.tools.Tool;
 import io.leavesfly.joder.tools.ToolResult;
+import io.leavesfly.joder.services.memory.ProjectAnalysisCache;
 import io.leavesfly.joder.services.memory.ProjectAnalyzer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,10 +20,16 @@ public class CodebaseSummaryTool implements Tool {
     private static final Logger logger = LoggerFactory.getLogger(CodebaseSummaryTool.class);
     
     private final String workingDirectory;
+    private final ProjectAnalysisCache analysisCache;
+    
+    public CodebaseSummaryTool(String workingDirectory) {
+        this(workingDirectory, new ProjectAnalysisCache(workingDirectory));
+    }
     
     @Inject
-    public CodebaseSummaryTool(@WorkingDirectory String workingDirectory) {
+    public CodebaseSummaryTool(@WorkingDirectory String workingDirectory, ProjectAnalysisCache analysisCache) {
         this.workingDirectory = workingDirectory;
+        this.analysisCache = analysisCache;
     }
     
     @Override
@@ -61,6 +68,11 @@ public class CodebaseSummaryTool implements Tool {
         return true;
     }
     
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return true;
@@ -76,7 +88,7 @@ public class CodebaseSummaryTool implements Tool {
         int depth = getIntParameter(input, "depth", 2);
         
         try {
-            ProjectAnalyzer analyzer = new ProjectAnalyzer(workingDirectory);
+            ProjectAnalyzer analyzer = new ProjectAnalyzer(workingDirectory, analysisCache);
             
             StringBuilder summary = new StringBuilder();
             
@@ -1,6 +1,7 @@
 package io.leavesfly.joder.tools.edit;
 
 import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.checkpoint.CheckpointStore;
 import io.leavesfly.joder.tools.Tool;
 import io.leavesfly.joder.tools.ToolResult;
 import io.leavesfly.joder.ui.renderer.DiffRenderer;
@@ -8,11 +9,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -28,6 +26,7 @@ public class BatchEditTool implements Tool {
     private final String workingDirectory;
     private final FileEditTool fileEditTool;
     private final DiffRenderer diffRenderer;
+    private final CheckpointStore checkpointStore;
     
     private boolean transactional = false; // 是否启用事务性执行
     private boolean showUnifiedDiff = true; // 是否显示统一Diff预览
@@ -35,10 +34,12 @@ public class BatchEditTool implements Tool {
     @Inject
     public BatchEditTool(@WorkingDirectory String workingDirectory,
                          FileEditTool fileEditTool,
-                         DiffRenderer diffRenderer) {
+                         DiffRenderer diffRenderer,
+                         CheckpointStore checkpointStore) {
         this.workingDirectory = workingDirectory;
         this.fileEditTool = fileEditTool;
         this.diffRenderer = diffRenderer;
+        this.checkpointStore = checkpointStore;
     }
     
     @Override
@@ -79,7 +80,7 @@ public class BatchEditTool implements Tool {
                "警告:\n" +
                "- 非事务性模式下,部分成功/部分失败是可能的\n" +
                "- 建议在重要操作前备份文件或使用版本控制\n" +
-               "- 事务性模式会创建临时备份,但仍建议使用版本控制";
+               "- 事务性模式会记录检查点以便回滚,但仍建议使用版本控制";
     }
     
     @Override
@@ -92,6 +93,21 @@ public class BatchEditTool implements Tool {
         return false;
     }
     
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Path> getModifiedPaths(Map<String, Object> input) {
+        Object edits = input.get("edits");
+        if (!(edits instanceof List)) {
+            return List.of();
+        }
+        return ((List<Map<String, Object>>) edits).stream()
+            .map(edit -> (String) edit.get("file_path"))
+            .filter(Objects::nonNull)
+            .map(this::resolvePath)
+            .distinct()
+            .collect(Collectors.toList());
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return false; // 批量编辑不支持并发
@@ -177,96 +193,64 @@ public class BatchEditTool implements Tool {
     
     /**
      * 执行事务性批量编辑（全部成功或全部回滚）
+     * <p>
+     * 编辑前开启检查点记录所有文件的当前状态，失败时回滚到该检查点：
+     * 只重写实际被修改过的文件。成功时检查点保留在本轮历史中，供撤销整轮对话使用。
+     * </p>
      */
     private BatchEditResult executeTransactionalBatchEdits(List<Map<String, Object>> edits) {
         BatchEditResult result = new BatchEditResult();
-        Map<String, Path> backups = new HashMap<>();
         
-        try {
-            // 第一阶段：创建所有文件的备份
-            for (Map<String, Object> edit : edits) {
-                String filePath = (String) edit.get("file_path");
-                Path path = resolvePath(filePath);
-                
-                if (Files.exists(path)) {
-                    Path backup = createBackup(path);
-                    backups.put(filePath, backup);
-                    logger.debug("已创建备份: {} -> {}", filePath, backup);
-                }
-            }
+        // 第一阶段：开启检查点并记录所有文件
+        long checkpoint = checkpointStore.begin("batch");
+        for (Map<String, Object> edit : edits) {
+            String filePath = (String) edit.get("file_path");
+            checkpointStore.capture(resolvePath(filePath));
+        }
+        logger.debug("已记录检查点 {}: {} 个编辑", checkpoint, edits.size());
+        
+        // 第二阶段：执行所有编辑
+        for (int i = 0; i < edits.size(); i++) {
+            Map<String, Object> edit = edits.get(i);
+            String filePath = (String) edit.get("file_path");
             
-            // 第二阶段：执行所有编辑
-            for (int i = 0; i < edits.size(); i++) {
-                Map<String, Object> edit = edits.get(i);
-                String filePath = (String) edit.get("file_path");
+            try {
+                ToolResult editResult = fileEditTool.call(edit);
                 
-                try {
-                    ToolResult editResult = fileEditTool.call(edit);
-                    
-                    if (editResult.isSuccess()) {
-                        result.addSuccess(filePath, editResult.getOutput());
-                        logger.info("事务性编辑成功 [{}/{}]: {}", i + 1, edits.size(), filePath);
-                    } else {
-                        // 编辑失败，触发回滚
-                        throw new RuntimeException("编辑失败: " + editResult.getError());
-                    }
-                    
-                } catch (Exception e) {
-                    // 发生异常，触发回滚
-                    logger.error("事务性编辑异常 [{}/{}]: {}", i + 1, edits.size(), filePath, e);
-                    rollbackAllEdits(backups);
-                    result.addFailure(filePath, "编辑失败，已回滚所有修改: " + e.getMessage());
-                    result.setTransactionRolledBack(true);
-                    return result;
+                if (editResult.isSuccess()) {
+                    result.addSuccess(filePath, editResult.getOutput());
+                    logger.info("事务性编辑成功 [{}/{}]: {}", i + 1, edits.size(), filePath);
+                } else {
+                    // 编辑失败，触发回滚
+                    throw new RuntimeException("编辑失败: " + editResult.getError());
                 }
+                
+            } catch (Exception e) {
+                // 发生异常，触发回滚
+                logger.error("事务性编辑异常 [{}/{}]: {}", i + 1, edits.size(), filePath, e);
+                rollbackAllEdits(checkpoint);
+                result.addFailure(filePath, "编辑失败，已回滚所有修改: " + e.getMessage());
+                result.setTransactionRolledBack(true);
+                return result;
             }
-            
-            // 第三阶段：所有编辑成功，删除备份
-            for (Path backup : backups.values()) {
-                Files.deleteIfExists(backup);
-            }
-            
-            logger.info("事务性批量编辑全部成功");
-            
-        } catch (IOException e) {
-            logger.error("事务性批量编辑失败", e);
-            rollbackAllEdits(backups);
-            result.addFailure("transaction", "事务失败，已回滚: " + e.getMessage());
-            result.setTransactionRolledBack(true);
         }
         
+        logger.info("事务性批量编辑全部成功");
         return result;
     }
     
-    /**
-     * 创建文件备份
-     */
-    private Path createBackup(Path original) throws IOException {
-        String fileName = original.getFileName().toString();
-        Path parent = original.getParent();
-        Path backup = parent.resolve("." + fileName + ".backup." + System.currentTimeMillis());
-        Files.copy(original, backup, StandardCopyOption.REPLACE_EXISTING);
-        return backup;
-    }
-    
     /**
      * 回滚所有编辑
      */
-    private void rollbackAllEdits(Map<String, Path> backups) {
+    private void rollbackAllEdits(long checkpoint) {
         logger.info("开始回滚所有编辑...");
         
-        for (Map.Entry<String, Path> entry : backups.entrySet()) {
-            String filePath = entry.getKey();
-            Path backup = entry.getValue();
-            
-            try {
-                Path original = resolvePath(filePath);
-                Files.copy(backup, original, StandardCopyOption.REPLACE_EXISTING);
-                Files.deleteIfExists(backup);
-                logger.info("已回滚: {}", filePath);
-            } catch (IOException e) {
-                logger.error("回滚文件失败: {}", filePath, e);
-            }
+        CheckpointStore.RestoreResult restore = checkpointStore.restore(checkpoint);
+        for (Path restored : restore.getRestoredFiles()) {
+            logger.info("已回滚: {}", restored);
+        }
+        for (String failure : restore.getFailures()) {
+            logger.error("回滚文件失败: {}", failure);
         }
     }
     
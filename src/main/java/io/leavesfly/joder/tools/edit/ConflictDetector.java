@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
@@ -36,14 +37,14 @@ public class ConflictDetector {
             }
             
             FileTime lastModifiedTime = Files.getLastModifiedTime(filePath);
-            String content = Files.readString(filePath);
-            String contentHash = calculateHash(content);
+            long[] hashAndLength = hashFile(filePath);
+            String contentHash = formatHash(hashAndLength[0]);
             
             FileSnapshot snapshot = new FileSnapshot(
                 filePath.toString(),
                 lastModifiedTime.toMillis(),
                 contentHash,
-                content.length()
+                hashAndLength[1]
             );
             
             snapshots.put(filePath.toString(), snapshot);
@@ -78,8 +79,7 @@ public class ConflictDetector {
             
             // 检查修改时间
             if (currentTimestamp > snapshot.timestamp) {
-                String currentContent = Files.readString(filePath);
-                String currentHash = calculateHash(currentContent);
+                String currentHash = formatHash(hashFile(filePath)[0]);
                 
                 // 即使时间变化，如果内容哈希相同，则无冲突
                 if (!currentHash.equals(snapshot.contentHash)) {
@@ -125,12 +125,28 @@ public class ConflictDetector {
     }
     
     /**
-     * 计算内容哈希（简单实现）
+     * 流式计算内容哈希（与 String#hashCode 一致），不把整个文件读入内存
+     * 
+     * @return {哈希, 字符数}
      */
-    private String calculateHash(String content) {
-        // 使用简单的哈希算法
-        int hash = content.hashCode();
-        return String.format("%08x", hash);
+    private long[] hashFile(Path filePath) throws IOException {
+        int hash = 0;
+        long length = 0;
+        char[] buffer = new char[8192];
+        try (Reader reader = Files.newBufferedReader(filePath)) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    hash = 31 * hash + buffer[i];
+                }
+                length += read;
+            }
+        }
+        return new long[] {hash, length};
+    }
+    
+    private String formatHash(long hash) {
+        return String.format("%08x", (int) hash);
     }
     
     /**
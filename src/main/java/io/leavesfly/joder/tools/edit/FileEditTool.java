@@ -94,6 +94,15 @@ public class FileEditTool implements Tool {
         return false;
     }
     
+    @Override
+    public List<Path> getModifiedPaths(Map<String, Object> input) {
+        String filePathStr = (String) input.get("file_path");
+        if (filePathStr == null || filePathStr.trim().isEmpty()) {
+            return List.of();
+        }
+        return List.of(Paths.get(workingDirectory).resolve(filePathStr).normalize());
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return false; // 文件编辑修改文件，不支持并发执行
@@ -197,15 +206,19 @@ public class FileEditTool implements Tool {
                 return "文件自读取后已被修改（用户或格式化工具）。请在尝试写入前重新读取它。";
             }
             
-            // 读取文件内容并检查 old_string
-            String content = Files.readString(filePath, detectEncoding(filePath));
+            // 读取文件内容并检查 old_string（大文件流式查找，不整体读入）
+            int matches;
+            if (largeFileOptimizer.isLargeFile(filePath)) {
+                matches = largeFileOptimizer.countMatches(filePath, oldString, detectEncoding(filePath), Integer.MAX_VALUE);
+            } else {
+                String content = Files.readString(filePath, detectEncoding(filePath));
+                matches = countMatches(content, oldString);
+            }
             
-            if (!content.contains(oldString)) {
+            if (matches == 0) {
                 return "文件中未找到要替换的字符串";
             }
             
-            // 计算匹配次数
-            int matches = countMatches(content, oldString);
             if (matches > 1) {
                 return String.format("找到 %d 处要替换的字符串匹配。为安全起见，此工具一次仅支持替换一处。请在编辑中添加更多上下文行，然后重试。", matches);
             }
@@ -246,6 +259,11 @@ public class FileEditTool implements Tool {
         // 检测编码
         Charset encoding = detectEncoding(filePath);
         
+        // 大文件流式编辑，不整体读入内存
+        if (largeFileOptimizer.isLargeFile(filePath)) {
+            return editLargeFile(filePath, oldString, newString, encoding);
+        }
+        
         // 读取原始内容
         String originalContent = Files.readString(filePath, encoding);
         
@@ -288,29 +306,6 @@ public class FileEditTool implements Tool {
             }
         }
         
-        // 大文件优化
-        if (largeFileOptimizer.isLargeFile(filePath)) {
-            logger.info("检测到大文件，使用优化处理: {}", filePath);
-            LargeFileOptimizer.EditResult editResult = largeFileOptimizer.editLargeFile(
-                filePath, oldString, newString, encoding);
-            
-            if (editResult.isSuccess()) {
-                // 更新时间戳和快照
-                FileTime newModifiedTime = Files.getLastModifiedTime(filePath);
-                readFileTimestamps.put(filePath.toString(), newModifiedTime.toMillis());
-                conflictDetector.updateSnapshot(filePath);
-                
-                logger.info("大文件已编辑: {}", filePath);
-                
-                String preview = generatePreview(filePath.toString(), originalContent, oldString, newString);
-                return ToolResult.success(String.format("✅ 大文件已更新: %s\n大小变化: %d -> %d 字节 (%+d)\n\n%s", 
-                    filePath, editResult.getOldSize(), editResult.getNewSize(), 
-                    editResult.getSizeDiff(), preview));
-            } else {
-                return ToolResult.error("大文件编辑失败: " + editResult.getMessage());
-            }
-        }
-        
         // 标准编辑流程
         String updatedContent = originalContent.replace(oldString, newString);
         Files.writeString(filePath, updatedContent, encoding);
@@ -329,6 +324,41 @@ public class FileEditTool implements Tool {
             filePath, preview));
     }
     
+    /**
+     * 编辑大文件：冲突时不做三方合并，预览只读取替换处附近的片段
+     */
+    private ToolResult editLargeFile(Path filePath, String oldString, String newString,
+                                     Charset encoding) throws IOException {
+        logger.info("检测到大文件，使用优化处理: {}", filePath);
+        if (enableConflictDetection) {
+            ConflictDetector.ConflictResult conflictResult = conflictDetector.detectConflict(filePath);
+            if (conflictResult.hasConflict()) {
+                logger.warn("检测到文件冲突: {}", conflictResult.getMessage());
+                return ToolResult.error("文件冲突: " + conflictResult.getMessage() + 
+                    "\n请先重新读取文件后重试。");
+            }
+        }
+        
+        LargeFileOptimizer.EditResult editResult = largeFileOptimizer.editLargeFile(
+            filePath, oldString, newString, encoding);
+        if (!editResult.isSuccess()) {
+            return ToolResult.error("大文件编辑失败: " + editResult.getMessage());
+        }
+        
+        // 更新时间戳和快照
+        FileTime newModifiedTime = Files.getLastModifiedTime(filePath);
+        readFileTimestamps.put(filePath.toString(), newModifiedTime.toMillis());
+        conflictDetector.updateSnapshot(filePath);
+        
+        logger.info("大文件已编辑: {}", filePath);
+        
+        String snippet = largeFileOptimizer.snippetAround(filePath, editResult.getFirstMatchOffset(),
+            newString.getBytes(encoding).length, N_LINES_SNIPPET, encoding);
+        return ToolResult.success(String.format("✅ 大文件已更新: %s\n大小变化: %d -> %d 字节 (%+d)\n\n修改后的代码片段：\n%s", 
+            filePath, editResult.getOldSize(), editResult.getNewSize(), 
+            editResult.getSizeDiff(), snippet));
+    }
+    
     /**
      * 生成编辑预览信息
      */
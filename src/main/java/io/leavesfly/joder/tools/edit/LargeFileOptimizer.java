@@ -1,137 +1,311 @@
 package io.leavesfly.joder.tools.edit;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Set;
 
 /**
  * 大文件优化处理器
- * 对大文件进行分块处理和增量更新
+ * 对大文件进行流式拼接编辑，内存占用与文件大小无关
+ *
+ * <p>在内存映射的窗口中按字节查找目标串（Horspool 算法），把未变化的区间用
+ * {@link FileChannel#transferTo} 直接拷贝到同目录下的临时文件，匹配处写入替换字节，
+ * 完成后原子重命名覆盖原文件。中途失败时原文件保持不变。</p>
+ *
+ * <p>按字节匹配要求编码自同步：UTF-8 或单字节编码，其他编码会被拒绝。</p>
  */
 public class LargeFileOptimizer {
-    
+
     private static final int LARGE_FILE_THRESHOLD = 1024 * 1024; // 1MB
-    private static final int CHUNK_SIZE = 64 * 1024; // 64KB
-    
+    private static final long MAP_WINDOW = 64L * 1024 * 1024; // 64MB
+    private static final int SNIPPET_BYTES = 2 * 1024; // 片段前后各读取的字节数
+
+    private final long mapWindow;
+
+    public LargeFileOptimizer() {
+        this(MAP_WINDOW);
+    }
+
+    LargeFileOptimizer(long mapWindow) {
+        this.mapWindow = mapWindow;
+    }
+
     /**
      * 判断是否为大文件
-     * 
+     *
      * @param filePath 文件路径
      * @return 是否为大文件
      */
     public boolean isLargeFile(Path filePath) throws IOException {
         return Files.size(filePath) > LARGE_FILE_THRESHOLD;
     }
-    
+
+    /**
+     * 统计目标串出现次数（不重叠），达到 limit 即停止
+     *
+     * @param filePath 文件路径
+     * @param target 要查找的字符串
+     * @param encoding 文件编码
+     * @param limit 最多统计的次数
+     * @return 出现次数，不超过 limit
+     */
+    public int countMatches(Path filePath, String target, Charset encoding, int limit) throws IOException {
+        byte[] pattern = encode(target, encoding);
+        if (pattern.length == 0) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            Matcher matcher = new Matcher(channel, pattern, mapWindow);
+            int count = 0;
+            while (count < limit && matcher.next() >= 0) {
+                count++;
+            }
+            return count;
+        }
+    }
+
     /**
-     * 优化的大文件编辑
-     * 使用内存映射和分块处理
-     * 
+     * 优化的大文件编辑：替换全部出现
+     *
      * @param filePath 文件路径
      * @param oldString 要替换的字符串
      * @param newString 新字符串
      * @param encoding 文件编码
      * @return 编辑结果
      */
-    public EditResult editLargeFile(Path filePath, String oldString, 
+    public EditResult editLargeFile(Path filePath, String oldString,
                                     String newString, Charset encoding) throws IOException {
-        
-        long fileSize = Files.size(filePath);
-        
-        // 读取文件内容（分块）
-        StringBuilder content = new StringBuilder((int) fileSize);
-        
-        try (RandomAccessFile raf = new RandomAccessFile(filePath.toFile(), "r");
-             FileChannel channel = raf.getChannel()) {
-            
-            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
-            
-            while (channel.read(buffer) > 0) {
-                buffer.flip();
-                content.append(encoding.decode(buffer));
-                buffer.clear();
-            }
-        }
-        
-        String originalContent = content.toString();
-        
-        // 检查是否包含要替换的字符串
-        if (!originalContent.contains(oldString)) {
-            return new EditResult(false, "文件中未找到要替换的字符串", 0, 0);
-        }
-        
-        // 执行替换
-        String updatedContent = originalContent.replace(oldString, newString);
-        
-        // 写回文件（分块）
-        try (RandomAccessFile raf = new RandomAccessFile(filePath.toFile(), "rw");
-             FileChannel channel = raf.getChannel()) {
-            
-            // 清空文件
-            channel.truncate(0);
-            
-            // 分块写入
-            byte[] bytes = updatedContent.getBytes(encoding);
-            ByteBuffer buffer = ByteBuffer.wrap(bytes);
-            
-            while (buffer.hasRemaining()) {
-                channel.write(buffer);
-            }
-        }
-        
-        long newSize = Files.size(filePath);
-        
-        return new EditResult(true, "大文件编辑成功", fileSize, newSize);
+        return splice(filePath, oldString, newString, encoding, Integer.MAX_VALUE, "大文件编辑成功");
     }
-    
+
     /**
-     * 增量更新：仅修改变更部分
-     * 适用于文件中只有少量内容变更的情况
-     * 
+     * 增量更新：仅替换第一处出现
+     * 替换前后字节数相同时原地写入，否则流式拼接
+     *
      * @param filePath 文件路径
      * @param oldString 要替换的字符串
      * @param newString 新字符串
      * @param encoding 文件编码
      * @return 编辑结果
      */
-    public EditResult incrementalEdit(Path filePath, String oldString, 
+    public EditResult incrementalEdit(Path filePath, String oldString,
                                       String newString, Charset encoding) throws IOException {
-        
-        // 对于增量编辑，仍然需要读取全文件来定位替换位置
-        // 这是一个简化实现，真正的增量编辑需要更复杂的算法
-        
-        String content = Files.readString(filePath, encoding);
-        
-        int oldIndex = content.indexOf(oldString);
-        if (oldIndex == -1) {
-            return new EditResult(false, "文件中未找到要替换的字符串", 0, 0);
-        }
-        
-        // 计算替换前后的大小差异
-        int sizeDiff = newString.length() - oldString.length();
-        
-        if (sizeDiff == 0) {
-            // 大小相同，可以原地替换
-            try (RandomAccessFile raf = new RandomAccessFile(filePath.toFile(), "rw")) {
-                raf.seek(oldIndex);
-                raf.write(newString.getBytes(encoding));
+        byte[] oldBytes = encode(oldString, encoding);
+        byte[] newBytes = encode(newString, encoding);
+        if (oldBytes.length != newBytes.length || oldBytes.length == 0) {
+            return splice(filePath, oldString, newString, encoding, 1, "增量编辑成功");
+        }
+
+        // 大小相同，可以原地替换（按字节偏移定位）
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long offset = new Matcher(channel, oldBytes, mapWindow).next();
+            if (offset < 0) {
+                return new EditResult(false, "文件中未找到要替换的字符串", size, size);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(newBytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            channel.force(false);
+            return new EditResult(true, "增量编辑成功", size, size, 1, offset);
+        }
+    }
+
+    /**
+     * 读取编辑后文件中偏移 offset 附近的片段，供预览使用
+     *
+     * @param filePath 文件路径
+     * @param offset 片段中心的字节偏移
+     * @param length 需要完整包含的字节数
+     * @param contextLines 前后各保留的行数
+     * @param encoding 文件编码
+     */
+    public String snippetAround(Path filePath, long offset, int length, int contextLines,
+                                Charset encoding) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long start = Math.max(0, offset - SNIPPET_BYTES);
+            long end = Math.min(channel.size(), offset + length + SNIPPET_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            byte[] bytes = buffer.array();
+            int from = (int) (offset - start);
+            int to = (int) Math.min(bytes.length, from + (long) length);
+            for (int lines = 0; from > 0; from--) {
+                if (bytes[from - 1] == '\n' && lines++ == contextLines) {
+                    break;
+                }
+            }
+            for (int lines = 0; to < bytes.length; to++) {
+                if (bytes[to] == '\n' && lines++ == contextLines) {
+                    break;
+                }
+            }
+            return new String(bytes, from, to - from, encoding);
+        }
+    }
+
+    /**
+     * 流式拼接：原文件未变化的区间直接拷贝，匹配处写入替换字节，最多替换 limit 处
+     */
+    private EditResult splice(Path filePath, String oldString, String newString, Charset encoding,
+                              int limit, String message) throws IOException {
+        byte[] oldBytes = encode(oldString, encoding);
+        byte[] newBytes = encode(newString, encoding);
+        if (oldBytes.length == 0) {
+            return new EditResult(false, "要替换的字符串不能为空", 0, 0);
+        }
+
+        // 符号链接替换其指向的文件，而不是把链接本身换成普通文件
+        Path realPath = filePath.toRealPath();
+        Path temp = null;
+        try (FileChannel source = FileChannel.open(realPath, StandardOpenOption.READ)) {
+            long size = source.size();
+            Matcher matcher = new Matcher(source, oldBytes, mapWindow);
+            long match = matcher.next();
+            if (match < 0) {
+                return new EditResult(false, "文件中未找到要替换的字符串", size, size);
+            }
+            long firstMatch = match;
+
+            temp = Files.createTempFile(realPath.getParent(), "." + realPath.getFileName(), ".tmp");
+            int replacements = 0;
+            try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long position = 0;
+                while (match >= 0) {
+                    transfer(source, position, match - position, target);
+                    ByteBuffer replacement = ByteBuffer.wrap(newBytes);
+                    while (replacement.hasRemaining()) {
+                        target.write(replacement);
+                    }
+                    position = match + oldBytes.length;
+                    match = ++replacements < limit ? matcher.next() : -1;
+                }
+                transfer(source, position, size - position, target);
+                target.force(true);
+            }
+
+            copyPermissions(realPath, temp);
+            moveIntoPlace(temp, realPath);
+            temp = null;
+            return new EditResult(true, message, size, Files.size(realPath), replacements, firstMatch);
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static void transfer(FileChannel source, long position, long count, FileChannel target)
+            throws IOException {
+        long done = 0;
+        while (done < count) {
+            long transferred = source.transferTo(position + done, count - done, target);
+            if (transferred <= 0) {
+                throw new IOException("文件在编辑过程中被截断");
+            }
+            done += transferred;
+        }
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (view != null) {
+            Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+            Files.setPosixFilePermissions(to, permissions);
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static byte[] encode(String text, Charset encoding) throws IOException {
+        if (!StandardCharsets.UTF_8.equals(encoding) && encoding.newEncoder().maxBytesPerChar() > 1) {
+            throw new IOException("大文件编辑不支持编码: " + encoding.name());
+        }
+        return text.getBytes(encoding);
+    }
+
+    /**
+     * 在内存映射窗口中顺序查找不重叠的匹配，相邻窗口重叠 pattern.length - 1 字节以免漏掉跨窗口的匹配
+     */
+    private static final class Matcher {
+        private final FileChannel channel;
+        private final byte[] pattern;
+        private final int[] shift = new int[256];
+        private final long size;
+        private final long mapWindow;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+
+        Matcher(FileChannel channel, byte[] pattern, long mapWindow) throws IOException {
+            this.channel = channel;
+            this.pattern = pattern;
+            this.mapWindow = mapWindow;
+            this.size = channel.size();
+            Arrays.fill(shift, pattern.length);
+            for (int i = 0; i < pattern.length - 1; i++) {
+                shift[pattern[i] & 0xff] = pattern.length - 1 - i;
             }
-        } else {
-            // 大小不同，需要重写文件
-            String updatedContent = content.replace(oldString, newString);
-            Files.writeString(filePath, updatedContent, encoding);
-        }
-        
-        long newSize = Files.size(filePath);
-        
-        return new EditResult(true, "增量编辑成功", content.length(), newSize);
+        }
+
+        /**
+         * @return 下一处匹配的字节偏移，没有时返回 -1
+         */
+        long next() throws IOException {
+            int last = pattern.length - 1;
+            while (position + pattern.length <= size) {
+                if (window == null || position + pattern.length > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                        Math.min(Math.max(mapWindow, pattern.length), size - windowStart));
+                }
+                int end = window.limit() - pattern.length;
+                int i = (int) (position - windowStart);
+                while (i <= end) {
+                    int j = last;
+                    while (j >= 0 && window.get(i + j) == pattern[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        long match = windowStart + i;
+                        position = match + pattern.length;
+                        return match;
+                    }
+                    i += shift[window.get(i + last) & 0xff];
+                }
+                position = windowStart + i;
+                if (windowStart + window.limit() >= size) {
+                    break;
+                }
+            }
+            position = size;
+            return -1;
+        }
     }
-    
+
     /**
      * 编辑结果
      */
@@ -140,37 +314,60 @@ public class LargeFileOptimizer {
         private final String message;
         private final long oldSize;
         private final long newSize;
-        
+        private final int replacements;
+        private final long firstMatchOffset;
+
         public EditResult(boolean success, String message, long oldSize, long newSize) {
+            this(success, message, oldSize, newSize, 0, -1);
+        }
+
+        public EditResult(boolean success, String message, long oldSize, long newSize,
+                          int replacements, long firstMatchOffset) {
             this.success = success;
             this.message = message;
             this.oldSize = oldSize;
             this.newSize = newSize;
+            this.replacements = replacements;
+            this.firstMatchOffset = firstMatchOffset;
         }
-        
+
         public boolean isSuccess() {
             return success;
         }
-        
+
         public String getMessage() {
             return message;
         }
-        
+
         public long getOldSize() {
             return oldSize;
         }
-        
+
         public long getNewSize() {
             return newSize;
         }
-        
+
         public long getSizeDiff() {
             return newSize - oldSize;
         }
-        
+
+        /**
+         * 替换的处数
+         */
+        public int getReplacements() {
+            return replacements;
+        }
+
+        /**
+         * 第一处匹配在原文件中的字节偏移，也是替换内容在新文件中的起点；未匹配时为 -1
+         */
+        public long getFirstMatchOffset() {
+            return firstMatchOffset;
+        }
+
         @Override
         public String toString() {
-            return String.format("EditResult{success=%s, message='%s', oldSize=%d, newSize=%d, diff=%+d}", 
+            return String.format("EditResult{success=%s, message='%s', oldSize=%d, newSize=%d, diff=%+d}",
                 success, message, oldSize, newSize, getSizeDiff());
         }
     }
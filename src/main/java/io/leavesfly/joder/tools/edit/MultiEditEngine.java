@@ -0,0 +1,558 @@
+package io.leavesfly.joder.tools.edit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 单文件多次编辑引擎
+ *
+ * <p>语义与逐个应用编辑完全一致：每个编辑作用于前一个编辑的结果，
+ * 第一个失败的编辑决定错误信息。实现上先用 Aho-Corasick 自动机一次扫描找出所有
+ * old_string 的出现位置，再在扫描结果上预先判断编辑之间是否相互影响：
+ * <ul>
+ *   <li>较早编辑替换的区域与较晚编辑的任一出现位置重叠（较晚编辑的目标被改写）</li>
+ *   <li>较早编辑写入的文本与周围内容拼出了较晚编辑的 old_string（凭空产生新的目标）</li>
+ * </ul>
+ * 两者都不存在时，每个编辑在中间结果中的匹配与原始内容中的匹配完全相同，
+ * 唯一性校验直接基于扫描结果，结果内容一次线性拷贝生成。
+ * 存在相互影响或 old_string 为空时，回退为逐个应用。
+ */
+final class MultiEditEngine {
+
+    private MultiEditEngine() {
+    }
+
+    /**
+     * 单个编辑操作
+     */
+    static final class Edit {
+        final String oldString;
+        final String newString;
+        final boolean replaceAll;
+
+        Edit(String oldString, String newString, boolean replaceAll) {
+            this.oldString = oldString;
+            this.newString = newString;
+            this.replaceAll = replaceAll;
+        }
+    }
+
+    /**
+     * 编辑结果：成功时包含新内容和每个编辑的替换次数，失败时只包含错误信息
+     */
+    static final class Result {
+        private final String content;
+        private final int[] replacements;
+        private final String error;
+        private final boolean singlePass;
+
+        private Result(String content, int[] replacements, String error, boolean singlePass) {
+            this.content = content;
+            this.replacements = replacements;
+            this.error = error;
+            this.singlePass = singlePass;
+        }
+
+        boolean isSuccess() {
+            return error == null;
+        }
+
+        String getContent() {
+            return content;
+        }
+
+        /**
+         * 第 index 个编辑替换的次数
+         */
+        int getReplacements(int index) {
+            return replacements[index];
+        }
+
+        String getError() {
+            return error;
+        }
+
+        /**
+         * 是否通过单次扫描完成（未回退为逐个应用）
+         */
+        boolean isSinglePass() {
+            return singlePass;
+        }
+    }
+
+    /**
+     * 对内容应用全部编辑
+     */
+    static Result apply(String content, List<Edit> edits) {
+        for (Edit edit : edits) {
+            if (edit.oldString.isEmpty()) {
+                return applySequentially(content, edits);
+            }
+        }
+        Result result = new Planner(content, edits).plan();
+        return result != null ? result : applySequentially(content, edits);
+    }
+
+    /**
+     * 逐个应用编辑，每个编辑作用于前一个编辑的结果
+     */
+    static Result applySequentially(String content, List<Edit> edits) {
+        String currentContent = content;
+        int[] replacements = new int[edits.size()];
+
+        for (int i = 0; i < edits.size(); i++) {
+            Edit edit = edits.get(i);
+            String error = validate(i, edit, null);
+            if (error != null) {
+                return failure(error);
+            }
+
+            if (edit.replaceAll) {
+                // 替换所有出现
+                String escapedOld = Pattern.quote(edit.oldString);
+                replacements[i] = currentContent.split(escapedOld, -1).length - 1;
+            } else {
+                // 只替换一次
+                if (!currentContent.contains(edit.oldString)) {
+                    return failure(notFound(i));
+                }
+                int occurrences = countOccurrences(currentContent, edit.oldString);
+                if (occurrences > 1) {
+                    return failure(ambiguous(i, occurrences));
+                }
+                replacements[i] = 1;
+            }
+            currentContent = currentContent.replace(edit.oldString, edit.newString);
+        }
+        return new Result(currentContent, replacements, null, false);
+    }
+
+    /**
+     * 校验单个编辑；matches 为 null 时只做与内容无关的校验
+     */
+    private static String validate(int index, Edit edit, int[] matches) {
+        if (edit.oldString.equals(edit.newString)) {
+            return String.format("编辑 #%d: old_string 和 new_string 相同，无需更改", index + 1);
+        }
+        if (matches != null && !edit.replaceAll) {
+            if (matches.length == 0) {
+                return notFound(index);
+            }
+            if (matches.length > 1) {
+                return ambiguous(index, matches.length);
+            }
+        }
+        return null;
+    }
+
+    private static String notFound(int index) {
+        return String.format("编辑 #%d: 文件中未找到要替换的字符串", index + 1);
+    }
+
+    private static String ambiguous(int index, int occurrences) {
+        return String.format("编辑 #%d: 找到 %d 处匹配。为安全起见，请设置 replace_all=true 或添加更多上下文以唯一标识",
+            index + 1, occurrences);
+    }
+
+    private static Result failure(String error) {
+        return new Result(null, null, error, false);
+    }
+
+    /**
+     * 计算字符串出现次数（不重叠）
+     */
+    static int countOccurrences(String text, String substring) {
+        if (substring.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        int index = 0;
+        while ((index = text.indexOf(substring, index)) != -1) {
+            count++;
+            index += substring.length();
+        }
+        return count;
+    }
+
+    /**
+     * 单次扫描的编辑规划
+     */
+    private static final class Planner {
+        private final String content;
+        private final List<Edit> edits;
+
+        /** 去重后的 old_string，以及每个编辑对应的模式下标 */
+        private final List<String> patterns = new ArrayList<>();
+        private final int[] patternOfEdit;
+        private final Automaton automaton;
+
+        /** 全部替换位置，按起点排序 */
+        private int[] siteStart;
+        private int[] siteEnd;
+        private int[] siteOwner;
+
+        Planner(String content, List<Edit> edits) {
+            this.content = content;
+            this.edits = edits;
+            this.patternOfEdit = new int[edits.size()];
+            Map<String, Integer> ids = new HashMap<>();
+            for (int i = 0; i < edits.size(); i++) {
+                String oldString = edits.get(i).oldString;
+                Integer id = ids.get(oldString);
+                if (id == null) {
+                    id = patterns.size();
+                    ids.put(oldString, id);
+                    patterns.add(oldString);
+                }
+                patternOfEdit[i] = id;
+            }
+            this.automaton = new Automaton(patterns);
+        }
+
+        /**
+         * @return 编辑结果；编辑之间相互影响时返回 null
+         */
+        Result plan() {
+            // 1. 一次扫描找出所有模式的全部出现位置（含重叠）
+            int[][] occurrences = automaton.findAll(content);
+
+            // 2. 每个编辑按 String#replace 的规则选取不重叠的匹配
+            int[][] matches = new int[edits.size()][];
+            for (int i = 0; i < edits.size(); i++) {
+                int pattern = patternOfEdit[i];
+                matches[i] = selectNonOverlapping(occurrences[pattern], patterns.get(pattern).length());
+            }
+
+            // 3. 按原顺序校验，第一个失败的编辑决定错误信息
+            for (int i = 0; i < edits.size(); i++) {
+                String error = validate(i, edits.get(i), matches[i]);
+                if (error != null) {
+                    // 该编辑之前的编辑相互影响时，以逐个应用的结果为准；
+                    // 匹配相关的错误还要确认之前的编辑没有改变该编辑自身的匹配
+                    boolean contentDependent = !edits.get(i).oldString.equals(edits.get(i).newString);
+                    return interacts(occurrences, matches, i, contentDependent ? i + 1 : i) ? null : failure(error);
+                }
+            }
+            if (interacts(occurrences, matches, edits.size(), edits.size())) {
+                return null;
+            }
+
+            // 4. 一次线性拷贝生成结果
+            int[] replacements = new int[edits.size()];
+            long length = content.length();
+            for (int k = 0; k < siteStart.length; k++) {
+                int owner = siteOwner[k];
+                replacements[owner]++;
+                length += edits.get(owner).newString.length() - (siteEnd[k] - siteStart[k]);
+            }
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("编辑结果过大");
+            }
+            StringBuilder output = new StringBuilder((int) length);
+            int cursor = 0;
+            for (int k = 0; k < siteStart.length; k++) {
+                output.append(content, cursor, siteStart[k]);
+                output.append(edits.get(siteOwner[k]).newString);
+                cursor = siteEnd[k];
+            }
+            output.append(content, cursor, content.length());
+            return new Result(output.toString(), replacements, null, true);
+        }
+
+        /**
+         * 判断前 applied 个编辑的替换是否影响前 checked 个编辑的匹配
+         */
+        private boolean interacts(int[][] occurrences, int[][] matches, int applied, int checked) {
+            if (!collectSites(matches, applied)) {
+                return true;
+            }
+            // 较早编辑的替换区域不能触及较晚编辑的任何出现位置
+            for (int j = 1; j < checked; j++) {
+                int length = edits.get(j).oldString.length();
+                for (int start : occurrences[patternOfEdit[j]]) {
+                    if (touchesEarlierSite(start, start + length, j)) {
+                        return true;
+                    }
+                }
+            }
+            // 替换后的文本不能与周围内容拼出较晚编辑的目标
+            for (int k = 0; k < siteStart.length; k++) {
+                if (siteOwner[k] < checked - 1 && createsLaterTarget(k, checked)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 汇总替换位置并按起点排序
+         *
+         * @return 不同编辑的替换区域互不重叠时返回 true
+         */
+        private boolean collectSites(int[][] matches, int limit) {
+            int total = 0;
+            for (int i = 0; i < limit; i++) {
+                total += matches[i].length;
+            }
+            long[] packed = new long[total];
+            int n = 0;
+            for (int i = 0; i < limit; i++) {
+                for (int start : matches[i]) {
+                    packed[n++] = ((long) start << 32) | i;
+                }
+            }
+            Arrays.sort(packed);
+            siteStart = new int[total];
+            siteEnd = new int[total];
+            siteOwner = new int[total];
+            for (int k = 0; k < total; k++) {
+                siteStart[k] = (int) (packed[k] >>> 32);
+                siteOwner[k] = (int) packed[k];
+                siteEnd[k] = siteStart[k] + edits.get(siteOwner[k]).oldString.length();
+                if (k > 0 && siteStart[k] < siteEnd[k - 1]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean touchesEarlierSite(int start, int end, int edit) {
+            // 最后一个起点小于 end 的替换位置，向前检查所有与 [start, end) 相交的位置
+            int k = Arrays.binarySearch(siteStart, end);
+            k = k >= 0 ? k - 1 : -k - 2;
+            for (; k >= 0 && siteEnd[k] > start; k--) {
+                if (siteOwner[k] < edit) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 检查替换位置 site 写入的文本是否与周围内容拼出较晚编辑的目标
+         * <p>
+         * 对每个较晚编辑 j，窗口取自编辑 j 应用前的中间内容：所属编辑早于 j 的替换位置已替换，
+         * 其余仍为原文。只关心与替换文本重叠的出现；替换为空时则是跨越删除处的拼接。
+         * </p>
+         */
+        private boolean createsLaterTarget(int site, int checked) {
+            int owner = siteOwner[site];
+            String replacement = edits.get(owner).newString;
+            for (int j = owner + 1; j < checked; j++) {
+                String target = edits.get(j).oldString;
+                int context = target.length() - 1;
+                String left = leftContext(site, j, context);
+                String window = left + replacement + rightContext(site, j, context);
+                int regionStart = left.length();
+                int regionEnd = regionStart + replacement.length();
+                int lastStart = replacement.isEmpty() ? regionStart - 1 : regionEnd - 1;
+                int from = Math.max(0, regionStart - context);
+                for (int index = window.indexOf(target, from); index >= 0 && index <= lastStart;
+                     index = window.indexOf(target, index + 1)) {
+                    if (index + target.length() > regionStart) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 编辑 edit 应用前的中间内容里，替换位置 site 之前的 length 个字符
+         */
+        private String leftContext(int site, int edit, int length) {
+            Deque<String> pieces = new ArrayDeque<>();
+            int need = length;
+            int position = siteStart[site];
+            for (int k = site - 1; need > 0; k--) {
+                int gapStart = k >= 0 ? siteEnd[k] : 0;
+                int take = Math.min(need, position - gapStart);
+                pieces.addFirst(content.substring(position - take, position));
+                need -= take;
+                if (need == 0 || k < 0) {
+                    break;
+                }
+                String text = textAt(k, edit);
+                take = Math.min(need, text.length());
+                pieces.addFirst(text.substring(text.length() - take));
+                need -= take;
+                position = siteStart[k];
+            }
+            return String.join("", pieces);
+        }
+
+        /**
+         * 编辑 edit 应用前的中间内容里，替换位置 site 之后的 length 个字符
+         */
+        private String rightContext(int site, int edit, int length) {
+            StringBuilder piece = new StringBuilder();
+            int need = length;
+            int position = siteEnd[site];
+            for (int k = site + 1; need > 0; k++) {
+                int gapEnd = k < siteStart.length ? siteStart[k] : content.length();
+                int take = Math.min(need, gapEnd - position);
+                piece.append(content, position, position + take);
+                need -= take;
+                if (need == 0 || k >= siteStart.length) {
+                    break;
+                }
+                String text = textAt(k, edit);
+                take = Math.min(need, text.length());
+                piece.append(text, 0, take);
+                need -= take;
+                position = siteEnd[k];
+            }
+            return piece.toString();
+        }
+
+        /**
+         * 编辑 edit 应用前，替换位置 k 处的文本
+         */
+        private String textAt(int k, int edit) {
+            return siteOwner[k] < edit
+                ? edits.get(siteOwner[k]).newString
+                : content.substring(siteStart[k], siteEnd[k]);
+        }
+
+        private static int[] selectNonOverlapping(int[] occurrences, int length) {
+            int[] selected = new int[occurrences.length];
+            int n = 0;
+            int nextFree = 0;
+            for (int start : occurrences) {
+                if (start >= nextFree) {
+                    selected[n++] = start;
+                    nextFree = start + length;
+                }
+            }
+            return Arrays.copyOf(selected, n);
+        }
+    }
+
+    /**
+     * Aho-Corasick 多模式匹配自动机
+     */
+    private static final class Automaton {
+
+        interface MatchCallback {
+            boolean onMatch(int pattern, int start, int end);
+        }
+
+        private static final class Node {
+            char[] keys = new char[0];
+            Node[] children = new Node[0];
+            Node fail;
+            /** 失败链上最近的终止节点 */
+            Node output;
+            int pattern = -1;
+            int depth;
+
+            Node child(char c) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == c) {
+                        return children[i];
+                    }
+                }
+                return null;
+            }
+
+            Node addChild(char c) {
+                Node node = new Node();
+                node.depth = depth + 1;
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = node;
+                return node;
+            }
+        }
+
+        private final Node root = new Node();
+        private final int patternCount;
+
+        Automaton(List<String> patterns) {
+            this.patternCount = patterns.size();
+            for (int p = 0; p < patterns.size(); p++) {
+                Node node = root;
+                for (char c : patterns.get(p).toCharArray()) {
+                    Node next = node.child(c);
+                    node = next != null ? next : node.addChild(c);
+                }
+                node.pattern = p;
+            }
+
+            // 广度优先构建失败链
+            Deque<Node> queue = new ArrayDeque<>();
+            root.fail = root;
+            for (Node child : root.children) {
+                child.fail = root;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                node.output = node.fail.pattern >= 0 ? node.fail : node.fail.output;
+                for (int i = 0; i < node.keys.length; i++) {
+                    Node child = node.children[i];
+                    child.fail = step(node.fail, node.keys[i]);
+                    queue.add(child);
+                }
+            }
+        }
+
+        private Node step(Node node, char c) {
+            while (true) {
+                Node next = node.child(c);
+                if (next != null) {
+                    return next;
+                }
+                if (node == root) {
+                    return root;
+                }
+                node = node.fail;
+            }
+        }
+
+        /**
+         * 找出每个模式的全部出现位置（含重叠），按起点升序
+         */
+        int[][] findAll(String text) {
+            int[][] found = new int[patternCount][];
+            int[] counts = new int[patternCount];
+            for (int p = 0; p < patternCount; p++) {
+                found[p] = new int[4];
+            }
+            scan(text, (pattern, start, end) -> {
+                if (counts[pattern] == found[pattern].length) {
+                    found[pattern] = Arrays.copyOf(found[pattern], counts[pattern] * 2);
+                }
+                found[pattern][counts[pattern]++] = start;
+                return false;
+            });
+            for (int p = 0; p < patternCount; p++) {
+                found[p] = Arrays.copyOf(found[p], counts[p]);
+            }
+            return found;
+        }
+
+        /**
+         * 扫描文本，对每个匹配调用回调，回调返回 true 时提前结束
+         */
+        private boolean scan(String text, MatchCallback callback) {
+            Node node = root;
+            for (int i = 0; i < text.length(); i++) {
+                node = step(node, text.charAt(i));
+                for (Node match = node.pattern >= 0 ? node : node.output; match != null; match = match.output) {
+                    if (callback.onMatch(match.pattern, i + 1 - match.depth, i + 1)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -15,7 +15,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * MultiEdit Tool - 批量编辑工具
@@ -93,6 +92,15 @@ public class MultiEditTool implements Tool {
         return false;
     }
     
+    @Override
+    public List<Path> getModifiedPaths(Map<String, Object> input) {
+        String filePathStr = (String) input.get("file_path");
+        if (filePathStr == null || filePathStr.trim().isEmpty()) {
+            return List.of();
+        }
+        return List.of(Paths.get(workingDirectory).resolve(filePathStr).normalize());
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return false; // 批量编辑修改文件，不支持并发执行
@@ -118,17 +126,14 @@ public class MultiEditTool implements Tool {
         }
         
         // 解析编辑操作
-        List<EditOperation> edits = new ArrayList<>();
+        List<MultiEditEngine.Edit> edits = new ArrayList<>();
         for (Map<String, Object> editRaw : editsRaw) {
-            EditOperation edit = new EditOperation();
-            edit.oldString = (String) editRaw.get("old_string");
-            edit.newString = (String) editRaw.get("new_string");
-            edit.replaceAll = Boolean.TRUE.equals(editRaw.get("replace_all"));
-            
-            if (edit.oldString == null) edit.oldString = "";
-            if (edit.newString == null) edit.newString = "";
-            
-            edits.add(edit);
+            String oldString = (String) editRaw.get("old_string");
+            String newString = (String) editRaw.get("new_string");
+            edits.add(new MultiEditEngine.Edit(
+                oldString == null ? "" : oldString,
+                newString == null ? "" : newString,
+                Boolean.TRUE.equals(editRaw.get("replace_all"))));
         }
         
         Path filePath = Paths.get(filePathStr);
@@ -146,8 +151,9 @@ public class MultiEditTool implements Tool {
     
     /**
      * 应用多次编辑
+     * 编辑语义与逐个应用相同，由 {@link MultiEditEngine} 单次扫描完成
      */
-    private ToolResult applyMultipleEdits(Path filePath, List<EditOperation> edits) throws IOException {
+    private ToolResult applyMultipleEdits(Path filePath, List<MultiEditEngine.Edit> edits) throws IOException {
         boolean isNewFile = !Files.exists(filePath);
         
         // 验证新文件的第一次编辑
@@ -177,45 +183,17 @@ public class MultiEditTool implements Tool {
             }
         }
         
-        // 逐个应用编辑
-        StringBuilder changeLog = new StringBuilder();
-        int editCount = 0;
+        // 一次扫描定位全部编辑目标并生成结果
+        MultiEditEngine.Result applied = MultiEditEngine.apply(currentContent, edits);
+        if (!applied.isSuccess()) {
+            return ToolResult.error(applied.getError());
+        }
+        currentContent = applied.getContent();
         
-        for (int i = 0; i < edits.size(); i++) {
-            EditOperation edit = edits.get(i);
-            
-            // 验证编辑
-            if (edit.oldString.equals(edit.newString)) {
-                return ToolResult.error(String.format("编辑 #%d: old_string 和 new_string 相同，无需更改", i + 1));
-            }
-            
-            // 应用编辑
-            try {
-                if (edit.replaceAll) {
-                    // 替换所有出现
-                    String escapedOld = Pattern.quote(edit.oldString);
-                    int occurrences = currentContent.split(escapedOld, -1).length - 1;
-                    currentContent = currentContent.replace(edit.oldString, edit.newString);
-                    changeLog.append(String.format("  编辑 #%d: 替换了 %d 处\n", i + 1, occurrences));
-                    editCount++;
-                } else {
-                    // 只替换一次
-                    if (!currentContent.contains(edit.oldString)) {
-                        return ToolResult.error(String.format("编辑 #%d: 文件中未找到要替换的字符串", i + 1));
-                    }
-                    
-                    int occurrences = countOccurrences(currentContent, edit.oldString);
-                    if (occurrences > 1) {
-                        return ToolResult.error(String.format("编辑 #%d: 找到 %d 处匹配。为安全起见，请设置 replace_all=true 或添加更多上下文以唯一标识", i + 1, occurrences));
-                    }
-                    
-                    currentContent = currentContent.replace(edit.oldString, edit.newString);
-                    changeLog.append(String.format("  编辑 #%d: 替换了 1 处\n", i + 1));
-                    editCount++;
-                }
-            } catch (Exception e) {
-                return ToolResult.error(String.format("编辑 #%d 失败: %s", i + 1, e.getMessage()));
-            }
+        StringBuilder changeLog = new StringBuilder();
+        int editCount = edits.size();
+        for (int i = 0; i < editCount; i++) {
+            changeLog.append(String.format("  编辑 #%d: 替换了 %d 处\n", i + 1, applied.getReplacements(i)));
         }
         
         // 写入文件
@@ -243,7 +221,7 @@ public class MultiEditTool implements Tool {
     /**
      * 获取第一次编辑的代码片段
      */
-    private String getSnippetForFirstEdit(String finalContent, EditOperation firstEdit) {
+    private String getSnippetForFirstEdit(String finalContent, MultiEditEngine.Edit firstEdit) {
         String[] lines = finalContent.split("\r?\n");
         
         // 找到新字符串所在的行
@@ -271,22 +249,6 @@ public class MultiEditTool implements Tool {
         return snippet.toString();
     }
     
-    /**
-     * 计算字符串出现次数
-     */
-    private int countOccurrences(String text, String substring) {
-        if (substring.isEmpty()) {
-            return 0;
-        }
-        int count = 0;
-        int index = 0;
-        while ((index = text.indexOf(substring, index)) != -1) {
-            count++;
-            index += substring.length();
-        }
-        return count;
-    }
-    
     /**
      * 检测文件编码
      */
@@ -323,13 +285,4 @@ public class MultiEditTool implements Tool {
             return "❌ 批量编辑失败: " + result.getError();
         }
     }
-    
-    /**
-     * 编辑操作类
-     */
-    private static class EditOperation {
-        String oldString;
-        String newString;
-        boolean replaceAll;
-    }
 }
@@ -1,8 +1,10 @@
 package io.leavesfly.joder.tools.file;
 
+import io.leavesfly.joder.services.cache.FileContentCache;
 import io.leavesfly.joder.tools.AbstractTool;
 import io.leavesfly.joder.tools.ToolResult;
 
+import javax.inject.Inject;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -12,9 +14,27 @@ import java.util.Map;
 
 /**
  * 文件读取工具
+ * 
+ * <p>小文件经 {@link FileContentCache} 读取，与其他读取方共享缓存内容；超过 {@value #LARGE_FILE_BYTES} 字节的文件
+ * 经 {@link LineIndex} 定位行范围，每次最多返回 {@value #MAX_LINES_PER_READ} 行，tail 参数从文件末尾向前扫描，
+ * 都不会把整个文件读入内存。</p>
  */
 public class FileReadTool extends AbstractTool {
     
+    static final long LARGE_FILE_BYTES = 4L * 1024 * 1024;
+    static final int MAX_LINES_PER_READ = 2000;
+    
+    private final FileContentCache fileContentCache;
+    
+    public FileReadTool() {
+        this(new FileContentCache());
+    }
+    
+    @Inject
+    public FileReadTool(FileContentCache fileContentCache) {
+        this.fileContentCache = fileContentCache;
+    }
+    
     @Override
     public String getName() {
         return "FileReadTool";
@@ -22,7 +42,7 @@ public class FileReadTool extends AbstractTool {
     
     @Override
     public String getDescription() {
-        return "读取文件内容，支持指定行范围";
+        return "读取文件内容，支持指定行范围（startLine 起、endLine 止，从 0 开始，不含 endLine）或用 tail 读取末尾若干行";
     }
     
     @Override
@@ -30,6 +50,11 @@ public class FileReadTool extends AbstractTool {
         return true;
     }
     
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+    
     @Override
     public ToolResult call(Map<String, Object> input) {
         try {
@@ -39,6 +64,7 @@ public class FileReadTool extends AbstractTool {
             String pathStr = getString(input, "path");
             Integer startLine = getInt(input, "startLine");
             Integer endLine = getInt(input, "endLine");
+            Integer tail = getInt(input, "tail");
             
             // 解析路径
             Path path = Paths.get(pathStr);
@@ -53,19 +79,47 @@ public class FileReadTool extends AbstractTool {
                 return ToolResult.error("不是一个文件: " + pathStr);
             }
             
-            // 读取文件内容
-            List<String> lines = Files.readAllLines(path);
+            if (startLine != null && endLine != null && endLine < startLine) {
+                return ToolResult.error("结束行号不能小于起始行号");
+            }
             
-            // 应用行范围过滤
-            if (startLine != null || endLine != null) {
+            // 读取文件内容
+            List<String> lines;
+            String notice = null;
+            long firstLineNumber = (startLine != null ? Math.max(0, startLine) : 0) + 1;
+            if (tail != null) {
+                if (tail <= 0) {
+                    return ToolResult.error("tail 必须为正整数");
+                }
+                lines = LineIndex.readTail(path, tail);
+                long total = LineIndex.cachedLineCount(path);
+                // 未扫描过全文时不知道绝对行号，以倒数行号（-1 为最后一行）显示
+                firstLineNumber = total >= 0 ? total - lines.size() + 1 : -lines.size();
+            } else if (Files.size(path) > LARGE_FILE_BYTES) {
                 int start = startLine != null ? Math.max(0, startLine) : 0;
-                int end = endLine != null ? Math.min(lines.size(), endLine) : lines.size();
-                
-                if (start >= lines.size()) {
+                long requested = endLine != null ? (long) endLine - start : Long.MAX_VALUE;
+                long count = Math.min(requested, MAX_LINES_PER_READ);
+                lines = LineIndex.forFile(path).readLines(start, start + count);
+                if (lines.isEmpty() && count > 0) {
                     return ToolResult.error("起始行号超出文件范围");
                 }
-                
-                lines = lines.subList(start, end);
+                if (lines.size() == MAX_LINES_PER_READ && requested > MAX_LINES_PER_READ) {
+                    notice = String.format("文件较大，本次最多显示 %d 行；传入 startLine=%d 继续读取，或使用 tail 读取末尾",
+                        MAX_LINES_PER_READ, start + MAX_LINES_PER_READ);
+                }
+            } else {
+                // 应用行范围过滤
+                if (startLine != null || endLine != null) {
+                    int start = startLine != null ? Math.max(0, startLine) : 0;
+                    int end = endLine != null ? endLine : Integer.MAX_VALUE;
+                    lines = fileContentCache.readRange(pathStr, start, end);
+                    
+                    if (lines.isEmpty() && end > start) {
+                        return ToolResult.error("起始行号超出文件范围");
+                    }
+                } else {
+                    lines = fileContentCache.readLines(pathStr);
+                }
             }
             
             // 构建输出
@@ -74,11 +128,14 @@ public class FileReadTool extends AbstractTool {
             output.append("总行数: ").append(lines.size()).append("\n");
             output.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
             
-            int lineNumber = startLine != null ? startLine : 0;
+            long lineNumber = firstLineNumber;
             for (String line : lines) {
-                output.append(String.format("%4d: %s\n", lineNumber + 1, line));
+                output.append(String.format("%4d: %s\n", lineNumber, line));
                 lineNumber++;
             }
+            if (notice != null) {
+                output.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n").append(notice).append("\n");
+            }
             
             return ToolResult.success(output.toString());
             
@@ -96,11 +153,14 @@ public class FileReadTool extends AbstractTool {
         String path = getString(input, "path");
         Integer startLine = getInt(input, "startLine");
         Integer endLine = getInt(input, "endLine");
+        Integer tail = getInt(input, "tail");
         
         StringBuilder sb = new StringBuilder();
         sb.append("▶ 读取文件: ").append(path);
         
-        if (startLine != null || endLine != null) {
+        if (tail != null) {
+            sb.append(" (末尾 ").append(tail).append(" 行)");
+        } else if (startLine != null || endLine != null) {
             sb.append(" (");
             if (startLine != null) {
                 sb.append("起始行: ").append(startLine);
@@ -8,6 +8,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -30,6 +31,15 @@ public class FileWriteTool extends AbstractTool {
         return false;
     }
     
+    @Override
+    public List<Path> getModifiedPaths(Map<String, Object> input) {
+        String pathStr = getString(input, "path");
+        if (pathStr == null || pathStr.trim().isEmpty()) {
+            return List.of();
+        }
+        return List.of(Paths.get(pathStr).toAbsolutePath().normalize());
+    }
+    
     @Override
     public ToolResult call(Map<String, Object> input) {
         try {
@@ -0,0 +1,293 @@
+package io.leavesfly.joder.tools.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 稀疏行偏移索引
+ * <p>
+ * 每 {@value #STRIDE} 行记录一次行首的字节偏移。索引按需向后扩展：读取第 n 行时只扫描到 n 所在的区段，
+ * 之后从最近的检查点经内存映射的 {@link FileChannel} 定位读取，不会把整个文件读入内存。
+ * 索引按 (路径, 大小, 修改时间) 缓存，文件变化后重建。
+ * </p>
+ * <p>
+ * 行以 \n 分隔，行尾的 \r 会被去掉，与 {@link Files#readAllLines(Path)} 对 \n、\r\n 的处理一致；
+ * 非法的 UTF-8 字节按替换字符解码。
+ * </p>
+ */
+final class LineIndex {
+
+    /**
+     * 相邻检查点之间的行数
+     */
+    static final int STRIDE = 1024;
+
+    /**
+     * 单次内存映射的窗口大小
+     */
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    /**
+     * 从末尾向前扫描时每次读取的字节数
+     */
+    private static final int TAIL_BLOCK = 64 * 1024;
+
+    private static final int MAX_CACHED = 32;
+
+    private static final Map<Path, LineIndex> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, LineIndex> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private final Path path;
+    private final long size;
+    private final FileTime modified;
+
+    /** checkpoints[i] 为第 i * STRIDE 行的行首偏移 */
+    private long[] checkpoints = new long[16];
+    private int checkpointCount;
+    /** [0, scannedOffset) 已扫描，其中共有 lineStarts 个行首 */
+    private long scannedOffset;
+    private long lineStarts;
+    private boolean complete;
+    /** 读到过文件末尾时得知的总行数，未知为 -1 */
+    private long lineCount = -1;
+
+    private LineIndex(Path path, long size, FileTime modified) {
+        this.path = path;
+        this.size = size;
+        this.modified = modified;
+        if (size > 0) {
+            checkpointCount = 1;
+            lineStarts = 1;
+        } else {
+            complete = true;
+            lineCount = 0;
+        }
+    }
+
+    /**
+     * 取得文件的索引，文件自上次建立索引后未变化时复用缓存
+     */
+    static LineIndex forFile(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        synchronized (CACHE) {
+            LineIndex cached = CACHE.get(key);
+            if (cached != null && cached.size == attributes.size()
+                    && cached.modified.equals(attributes.lastModifiedTime())) {
+                return cached;
+            }
+            LineIndex index = new LineIndex(key, attributes.size(), attributes.lastModifiedTime());
+            CACHE.put(key, index);
+            return index;
+        }
+    }
+
+    /**
+     * 缓存的索引已知的总行数（扫描或读取到过文件末尾），否则返回 -1，不触发扫描
+     */
+    static long cachedLineCount(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        LineIndex cached;
+        synchronized (CACHE) {
+            cached = CACHE.get(key);
+        }
+        if (cached == null || cached.size != attributes.size()
+                || !cached.modified.equals(attributes.lastModifiedTime())) {
+            return -1;
+        }
+        synchronized (cached) {
+            return cached.lineCount;
+        }
+    }
+
+    /**
+     * 读取 [start, end) 行，文件不足 end 行时读到末尾为止；start 超出文件时返回空列表
+     */
+    List<String> readLines(long start, long end) throws IOException {
+        if (start >= end) {
+            return new ArrayList<>();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Window window = new Window(channel, size);
+            long line;
+            long offset;
+            synchronized (this) {
+                int slot = (int) Math.min(start / STRIDE, Integer.MAX_VALUE);
+                ensureCheckpoint(window, slot);
+                slot = Math.min(slot, checkpointCount - 1);
+                if (slot < 0) {
+                    return new ArrayList<>();
+                }
+                line = (long) slot * STRIDE;
+                offset = checkpoints[slot];
+            }
+            while (line < start && offset < size) {
+                offset = skipLine(window, offset);
+                line++;
+            }
+            List<String> lines = collect(window, offset, size, end - start);
+            if (lines.size() < end - start) {
+                // 读到了文件末尾，顺带得知总行数
+                synchronized (this) {
+                    lineCount = line + lines.size();
+                }
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * 从文件末尾向前扫描，读取最后 count 行，不建立索引
+     */
+    static List<String> readTail(Path path, int count) throws IOException {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // 末尾的换行不开启新行
+            long end = size;
+            if (end > 0 && readByte(channel, end - 1) == '\n') {
+                end--;
+            }
+            long start = 0;
+            int newlines = 0;
+            ByteBuffer block = ByteBuffer.allocate(TAIL_BLOCK);
+            long position = end;
+            scan:
+            while (position > 0) {
+                int length = (int) Math.min(TAIL_BLOCK, position);
+                position -= length;
+                block.clear().limit(length);
+                while (block.hasRemaining()) {
+                    if (channel.read(block, position + block.position()) < 0) {
+                        throw new IOException("文件在读取过程中被截断: " + path);
+                    }
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (block.get(i) == '\n' && ++newlines == count) {
+                        start = position + i + 1;
+                        break scan;
+                    }
+                }
+            }
+            return collect(new Window(channel, size), start, end, count);
+        }
+    }
+
+    /**
+     * 向后扫描直到第 slot 个检查点已知或文件结束
+     */
+    private void ensureCheckpoint(Window window, int slot) throws IOException {
+        if (complete || slot < checkpointCount) {
+            return;
+        }
+        long position = scannedOffset;
+        while (position < size) {
+            if (window.get(position) == '\n' && position + 1 < size) {
+                if (lineStarts % STRIDE == 0) {
+                    if (checkpointCount == checkpoints.length) {
+                        checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+                    }
+                    checkpoints[checkpointCount++] = position + 1;
+                }
+                lineStarts++;
+                if (slot < checkpointCount) {
+                    scannedOffset = position + 1;
+                    return;
+                }
+            }
+            position++;
+        }
+        scannedOffset = size;
+        complete = true;
+        lineCount = lineStarts;
+    }
+
+    /**
+     * @return 下一行的行首偏移
+     */
+    private static long skipLine(Window window, long offset) throws IOException {
+        long position = offset;
+        while (position < window.size && window.get(position) != '\n') {
+            position++;
+        }
+        return position + 1;
+    }
+
+    /**
+     * 从 offset 起在 limit 之前读取最多 count 行
+     */
+    private static List<String> collect(Window window, long offset, long limit, long count) throws IOException {
+        List<String> lines = new ArrayList<>();
+        byte[] buffer = new byte[256];
+        long position = offset;
+        while (position < limit && lines.size() < count) {
+            int length = 0;
+            while (position < limit) {
+                byte b = window.get(position++);
+                if (b == '\n') {
+                    break;
+                }
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = b;
+            }
+            if (length > 0 && buffer[length - 1] == '\r') {
+                length--;
+            }
+            lines.add(new String(buffer, 0, length, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private static byte readByte(FileChannel channel, long position) throws IOException {
+        ByteBuffer single = ByteBuffer.allocate(1);
+        if (channel.read(single, position) < 1) {
+            throw new IOException("无法读取偏移 " + position);
+        }
+        return single.get(0);
+    }
+
+    /**
+     * 顺序访问时按窗口映射文件，避免一次映射整个大文件
+     */
+    private static final class Window {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buffer;
+        private long base;
+
+        Window(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        byte get(long position) throws IOException {
+            if (buffer == null || position < base || position >= base + buffer.limit()) {
+                base = position;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(MAP_WINDOW, size - base));
+            }
+            return buffer.get((int) (position - base));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.leavesfly.joder.tools.filetree;
 
 import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.workspace.DirectoryLister;
 import io.leavesfly.joder.tools.Tool;
 import io.leavesfly.joder.tools.ToolResult;
 import org.slf4j.Logger;
@@ -8,25 +9,36 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.regex.Pattern;
 
 /**
  * FileTree Tool - 文件树展示工具
  * 
  * 以树状结构展示目录内容
+ * 
+ * <p>由 {@link DirectoryLister} 分页列出：每页最多 {@value #MAX_ENTRIES} 项，每个子目录最多展示
+ * {@value #MAX_ENTRIES_PER_DIRECTORY} 项，超出深度的目录只显示子项数量；未列完时输出游标。</p>
  */
 @Singleton
 public class FileTreeTool implements Tool {
     
     private static final Logger logger = LoggerFactory.getLogger(FileTreeTool.class);
+    private static final int MAX_ENTRIES = 500;
+    private static final int MAX_ENTRIES_PER_DIRECTORY = 100;
     
     private final String workingDirectory;
+    private final DirectoryLister directoryLister;
+    
+    public FileTreeTool(String workingDirectory) {
+        this(workingDirectory, new DirectoryLister());
+    }
     
     @Inject
-    public FileTreeTool(@WorkingDirectory String workingDirectory) {
+    public FileTreeTool(@WorkingDirectory String workingDirectory, DirectoryLister directoryLister) {
         this.workingDirectory = workingDirectory;
+        this.directoryLister = directoryLister;
     }
     
     @Override
@@ -38,7 +50,7 @@ public class FileTreeTool implements Tool {
     public String getDescription() {
         return "以树状结构展示目录内容。\n" +
                "- 递归显示目录结构\n" +
-               "- 支持深度限制\n" +
+               "- 支持深度限制，大目录分页输出\n" +
                "- 支持文件类型过滤\n" +
                "- 显示文件大小和类型";
     }
@@ -50,7 +62,8 @@ public class FileTreeTool implements Tool {
                "- path: 要展示的目录路径（默认：当前目录）\n" +
                "- max_depth: 最大递归深度（默认：3）\n" +
                "- show_hidden: 是否显示隐藏文件（默认：false）\n" +
-               "- pattern: 文件名模式过滤（可选，如 \"*.java\"）\n\n" +
+               "- pattern: 文件名模式过滤（可选，如 \"*.java\"）\n" +
+               "- cursor: 上一页输出的游标，用于获取下一页（可选）\n\n" +
                "**适用场景**：\n" +
                "- 了解项目结构\n" +
                "- 查找特定类型的文件\n" +
@@ -83,6 +96,11 @@ public class FileTreeTool implements Tool {
         return true; // 只读操作
     }
     
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return true;
@@ -101,8 +119,17 @@ public class FileTreeTool implements Tool {
             : 3;
         Boolean showHidden = (Boolean) input.getOrDefault("show_hidden", false);
         String pattern = (String) input.get("pattern");
+        String cursor = (String) input.get("cursor");
         
         try {
+            if (cursor != null && !cursor.trim().isEmpty()) {
+                DirectoryLister.Page page = directoryLister.next(cursor.trim());
+                if (page == null) {
+                    return ToolResult.error("游标已失效，请重新调用 FileTree 生成文件树");
+                }
+                return toResult(page);
+            }
+            
             // 解析路径
             Path basePath = Paths.get(workingDirectory).resolve(pathStr).normalize();
             
@@ -114,13 +141,21 @@ public class FileTreeTool implements Tool {
                 return ToolResult.error("路径不是目录: " + pathStr);
             }
             
-            // 生成文件树
-            StringBuilder tree = new StringBuilder();
-            tree.append("📁 ").append(basePath.getFileName()).append("/\n");
+            // 过滤隐藏文件与不匹配模式的条目（模式同样作用于目录名）
+            Pattern namePattern = pattern != null ? Pattern.compile(pattern.replace("*", ".*")) : null;
+            DirectoryLister.ListingRequest request = DirectoryLister.ListingRequest.builder(basePath)
+                .filter((path, directory) -> {
+                    String name = path.getFileName().toString();
+                    return (!showHidden && name.startsWith("."))
+                        || (namePattern != null && !namePattern.matcher(name).matches());
+                })
+                .order(DirectoryLister.Order.DIRECTORIES_FIRST)
+                .maxDepth(maxDepth)
+                .pageSize(MAX_ENTRIES)
+                .maxPerDirectory(MAX_ENTRIES_PER_DIRECTORY)
+                .build();
             
-            buildTree(basePath, tree, "", maxDepth, 0, showHidden, pattern);
-            
-            return ToolResult.success(tree.toString());
+            return toResult(directoryLister.list(request));
             
         } catch (Exception e) {
             logger.error("生成文件树失败", e);
@@ -129,62 +164,72 @@ public class FileTreeTool implements Tool {
     }
     
     /**
-     * 递归构建文件树
+     * 输出一页；带游标的页不进结果缓存，否则重复调用会拿到已经失效的游标
      */
-    private void buildTree(Path dir, StringBuilder tree, String prefix, 
-                          int maxDepth, int currentDepth, boolean showHidden, String pattern) throws IOException {
-        
-        if (currentDepth >= maxDepth) {
-            return;
+    private ToolResult toResult(DirectoryLister.Page page) {
+        ToolResult result = ToolResult.success(render(page));
+        return page.hasMore() ? result.withoutCaching() : result;
+    }
+    
+    /**
+     * 输出一页文件树；续页先补上本页第一项的各级祖先目录
+     */
+    private String render(DirectoryLister.Page page) {
+        StringBuilder tree = new StringBuilder();
+        List<DirectoryLister.Item> items = page.getItems();
+        tree.append("📁 ").append(page.getRoot().getFileName()).append("/");
+        if (page.getOffset() > 0) {
+            tree.append(" (续，第 ").append(page.getOffset() + 1).append(" 项起)");
         }
+        tree.append("\n");
         
-        // 获取目录内容
-        List<Path> entries = new ArrayList<>();
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-            for (Path entry : stream) {
-                // 过滤隐藏文件
-                if (!showHidden && entry.getFileName().toString().startsWith(".")) {
+        if (page.getOffset() > 0 && !items.isEmpty()) {
+            DirectoryLister.Item first = items.get(0);
+            Path parent = first.isSummary() ? first.getPath() : first.getPath().getParent();
+            int level = 0;
+            for (Path part : page.getRoot().relativize(parent)) {
+                if (part.toString().isEmpty()) {
                     continue;
                 }
-                
-                // 过滤模式
-                if (pattern != null && !entry.getFileName().toString().matches(pattern.replace("*", ".*"))) {
-                    continue;
-                }
-                
-                entries.add(entry);
+                tree.append(prefix(first, level))
+                    .append(first.isAncestorOpen(level) ? "├── " : "└── ")
+                    .append("📁 ").append(part).append("/\n");
+                level++;
             }
         }
         
-        // 排序：目录在前，文件在后
-        entries.sort((a, b) -> {
-            boolean aIsDir = Files.isDirectory(a);
-            boolean bIsDir = Files.isDirectory(b);
-            if (aIsDir != bIsDir) {
-                return aIsDir ? -1 : 1;
-            }
-            return a.getFileName().toString().compareTo(b.getFileName().toString());
-        });
-        
-        // 遍历并构建树
-        for (int i = 0; i < entries.size(); i++) {
-            Path entry = entries.get(i);
-            boolean isLast = (i == entries.size() - 1);
-            
-            String connector = isLast ? "└── " : "├── ";
-            String childPrefix = isLast ? "    " : "│   ";
-            
-            tree.append(prefix).append(connector);
-            
-            if (Files.isDirectory(entry)) {
-                tree.append("📁 ").append(entry.getFileName()).append("/\n");
-                buildTree(entry, tree, prefix + childPrefix, maxDepth, currentDepth + 1, showHidden, pattern);
+        for (DirectoryLister.Item item : items) {
+            tree.append(prefix(item, item.getDepth())).append(item.isLastSibling() ? "└── " : "├── ");
+            if (item.isSummary()) {
+                tree.append("… 还有 ").append(item.getOmitted()).append(" 项\n");
+            } else if (item.isDirectory()) {
+                tree.append("📁 ").append(item.getName()).append("/");
+                if (item.getCollapsedChildren() > 0) {
+                    tree.append(" (").append(item.getCollapsedChildren()).append(" 项未展开)");
+                }
+                tree.append("\n");
             } else {
-                long size = Files.size(entry);
-                String sizeStr = formatFileSize(size);
-                tree.append("📄 ").append(entry.getFileName()).append(" (").append(sizeStr).append(")\n");
+                String sizeStr = formatFileSize(item.getSize());
+                tree.append("📄 ").append(item.getName()).append(" (").append(sizeStr).append(")\n");
             }
         }
+        
+        if (page.hasMore()) {
+            tree.append(String.format("\n(已列出第 %d–%d 项，传入 cursor=\"%s\" 获取下一页)",
+                page.getOffset() + 1, page.getOffset() + items.size(), page.getCursor()));
+        }
+        return tree.toString();
+    }
+    
+    /**
+     * 前 levels 层祖先目录对应的连线前缀
+     */
+    private static String prefix(DirectoryLister.Item item, int levels) {
+        StringBuilder prefix = new StringBuilder();
+        for (int level = 0; level < levels; level++) {
+            prefix.append(item.isAncestorOpen(level) ? "│   " : "    ");
+        }
+        return prefix.toString();
     }
     
     /**
@@ -0,0 +1,413 @@
+package io.leavesfly.joder.tools.glob;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的 glob 模式
+ *
+ * <p>把模式按 / 拆成三部分：开头的字面量目录前缀（直接定位起始目录）、
+ * 逐段匹配的段自动机，以及可跨越任意层目录的 {@code **} 段。
+ * 遍历时每个目录携带一个状态（位集合，第 i 位表示「下一个待匹配的是第 i 段」），
+ * 进入子目录前先推进状态，状态为空说明其下不可能有匹配，整棵子树直接跳过。</p>
+ *
+ * <p>单段匹配按形式选择最便宜的实现：字面量比较、{@code *.ext} 后缀比较、
+ * {@code {a,b}} 与 {@code *.{java,kt}} 哈希查找，其余才编译为正则。</p>
+ *
+ * <p>不含 / 的模式按文件名匹配任意层级的文件（等价于前置 {@code **}/）；
+ * {@code **} 可以匹配零层目录。无法拆段的模式（绝对路径、花括号内含 /、
+ * 段内的 {@code **}、段数过多）退回 {@link PathMatcher}，对相对路径和文件名各匹配一次，
+ * 此时不做剪枝。</p>
+ */
+final class GlobPattern {
+
+    /** 状态用 long 位集合表示，最后一位留给「全部匹配完成」 */
+    private static final int MAX_SEGMENTS = 62;
+
+    private final String literalPrefix;
+    private final Segment[] segments;
+    private final long acceptBit;
+    private final PathMatcher fallback;
+
+    private GlobPattern(String literalPrefix, Segment[] segments, PathMatcher fallback) {
+        this.literalPrefix = literalPrefix;
+        this.segments = segments;
+        this.acceptBit = segments != null ? 1L << segments.length : 0;
+        this.fallback = fallback;
+    }
+
+    /**
+     * 编译 glob 模式
+     *
+     * @throws java.util.regex.PatternSyntaxException 模式语法错误
+     */
+    static GlobPattern compile(String glob) {
+        List<String> parts = splitSegments(glob);
+        if (parts == null || parts.isEmpty() || parts.size() > MAX_SEGMENTS) {
+            return generic(glob);
+        }
+        if (parts.size() == 1 && !parts.get(0).equals("**")) {
+            // 不含 / 的模式匹配任意层级的文件名
+            parts.add(0, "**");
+        }
+
+        // 开头的字面量段（最后一段除外）直接拼成起始目录
+        int prefixCount = 0;
+        while (prefixCount < parts.size() - 1 && isLiteral(parts.get(prefixCount))) {
+            prefixCount++;
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < prefixCount; i++) {
+            String literal = unescape(parts.get(i));
+            if (literal.equals(".") || literal.equals("..")) {
+                return generic(glob);
+            }
+            if (prefix.length() > 0) {
+                prefix.append('/');
+            }
+            prefix.append(literal);
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        for (int i = prefixCount; i < parts.size(); i++) {
+            String part = parts.get(i);
+            if (part.equals("**")) {
+                segments.add(Segment.ANY_DIRECTORIES);
+            } else if (part.contains("**")) {
+                return generic(glob);
+            } else {
+                segments.add(Segment.compile(part));
+            }
+        }
+        return new GlobPattern(prefix.toString(), segments.toArray(new Segment[0]), null);
+    }
+
+    private static GlobPattern generic(String glob) {
+        return new GlobPattern("", null, FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * 字面量目录前缀，以 / 分隔，没有时为空串；遍历从搜索目录下的该子目录开始
+     */
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * 是否按段匹配并剪枝；否则只能遍历全部文件并用 {@link #matchesPath} 匹配
+     */
+    boolean isCompiled() {
+        return segments != null;
+    }
+
+    /**
+     * 起始目录的状态
+     */
+    long initialState() {
+        return segments != null ? closure(1L) : 1L;
+    }
+
+    /**
+     * 进入名为 name 的子目录后的状态
+     *
+     * @return 0 表示该目录下不可能有匹配的文件
+     */
+    long enterDirectory(long state, String name) {
+        if (segments == null) {
+            return state;
+        }
+        return step(state, name) & ~acceptBit;
+    }
+
+    /**
+     * 在状态为 state 的目录中，名为 name 的文件是否匹配
+     */
+    boolean matchesName(long state, String name) {
+        return (step(state, name) & acceptBit) != 0;
+    }
+
+    /**
+     * 未编译的模式：按相对路径或文件名匹配
+     */
+    boolean matchesPath(Path relative) {
+        Path name = relative.getFileName();
+        return fallback.matches(relative) || (name != null && fallback.matches(name));
+    }
+
+    private long step(long state, String name) {
+        long next = 0;
+        for (long bits = state & ~acceptBit; bits != 0; bits &= bits - 1) {
+            int i = Long.numberOfTrailingZeros(bits);
+            Segment segment = segments[i];
+            if (segment == Segment.ANY_DIRECTORIES) {
+                next |= 1L << i;
+            } else if (segment.matches(name)) {
+                next |= 1L << (i + 1);
+            }
+        }
+        return closure(next);
+    }
+
+    /**
+     * ** 可以匹配零层目录：处于 ** 之前时也同时处于其后
+     */
+    private long closure(long state) {
+        for (int i = 0; i < segments.length; i++) {
+            if ((state & (1L << i)) != 0 && segments[i] == Segment.ANY_DIRECTORIES) {
+                state |= 1L << (i + 1);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * 按 / 拆段，方括号和花括号内的 / 或绝对路径返回 null
+     */
+    private static List<String> splitSegments(String glob) {
+        if (glob.startsWith("/")) {
+            return null;
+        }
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int braces = 0;
+        boolean bracket = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                current.append(c).append(glob.charAt(++i));
+                continue;
+            }
+            if (bracket) {
+                if (c == '/') {
+                    return null;
+                }
+                bracket = c != ']';
+            } else if (c == '[') {
+                bracket = true;
+            } else if (c == '{') {
+                braces++;
+            } else if (c == '}') {
+                braces--;
+            } else if (c == '/') {
+                if (braces > 0) {
+                    return null;
+                }
+                if (current.length() > 0) {
+                    parts.add(current.toString());
+                    current.setLength(0);
+                }
+                continue;
+            }
+            current.append(c);
+        }
+        if (current.length() > 0) {
+            parts.add(current.toString());
+        }
+        return parts;
+    }
+
+    private static boolean isLiteral(String part) {
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if ("*?[{".indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String unescape(String part) {
+        StringBuilder sb = new StringBuilder(part.length());
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c == '\\' && i + 1 < part.length()) {
+                c = part.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 单段匹配器
+     */
+    private abstract static class Segment {
+
+        /** 跨越任意层目录的 ** 段 */
+        static final Segment ANY_DIRECTORIES = new Segment() {
+            @Override
+            boolean matches(String name) {
+                return true;
+            }
+        };
+
+        abstract boolean matches(String name);
+
+        static Segment compile(String part) {
+            if (part.equals("*")) {
+                return new Segment() {
+                    @Override
+                    boolean matches(String name) {
+                        return true;
+                    }
+                };
+            }
+            if (isLiteral(part)) {
+                String literal = unescape(part);
+                return new Segment() {
+                    @Override
+                    boolean matches(String name) {
+                        return name.equals(literal);
+                    }
+                };
+            }
+            if (part.startsWith("*") && isLiteral(part.substring(1))) {
+                String suffix = unescape(part.substring(1));
+                return new Segment() {
+                    @Override
+                    boolean matches(String name) {
+                        return name.endsWith(suffix);
+                    }
+                };
+            }
+            Set<String> alternatives = literalAlternatives(part);
+            if (alternatives != null) {
+                return new Segment() {
+                    @Override
+                    boolean matches(String name) {
+                        return alternatives.contains(name);
+                    }
+                };
+            }
+            if (part.startsWith("*")) {
+                Set<String> suffixes = literalAlternatives(part.substring(1));
+                if (suffixes != null) {
+                    return suffixSet(suffixes);
+                }
+            }
+            Pattern regex = Pattern.compile(toRegex(part));
+            return new Segment() {
+                @Override
+                boolean matches(String name) {
+                    return regex.matcher(name).matches();
+                }
+            };
+        }
+
+        /**
+         * 后缀集合：按集合中出现的后缀长度截取文件名尾部做哈希查找
+         */
+        private static Segment suffixSet(Set<String> suffixes) {
+            int[] lengths = suffixes.stream().mapToInt(String::length).distinct().sorted().toArray();
+            return new Segment() {
+                @Override
+                boolean matches(String name) {
+                    for (int length : lengths) {
+                        if (length <= name.length()
+                                && suffixes.contains(name.substring(name.length() - length))) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * 形如 prefix{a,b,c}suffix 且各部分都是字面量时展开为集合，否则返回 null
+         */
+        private static Set<String> literalAlternatives(String part) {
+            int open = part.indexOf('{');
+            int close = part.indexOf('}');
+            if (open < 0 || close < open || part.indexOf('{', open + 1) >= 0 || part.indexOf('}', close + 1) >= 0) {
+                return null;
+            }
+            String head = part.substring(0, open);
+            String tail = part.substring(close + 1);
+            if (!isLiteral(head) || !isLiteral(tail)) {
+                return null;
+            }
+            Set<String> result = new HashSet<>();
+            for (String alternative : part.substring(open + 1, close).split(",", -1)) {
+                if (!isLiteral(alternative)) {
+                    return null;
+                }
+                result.add(unescape(head) + unescape(alternative) + unescape(tail));
+            }
+            return result;
+        }
+
+        /**
+         * 单段 glob 翻译为正则（段内不含 /）
+         */
+        private static String toRegex(String part) {
+            StringBuilder regex = new StringBuilder();
+            boolean inBraces = false;
+            for (int i = 0; i < part.length(); i++) {
+                char c = part.charAt(i);
+                switch (c) {
+                    case '*':
+                        regex.append("[^/]*");
+                        break;
+                    case '?':
+                        regex.append("[^/]");
+                        break;
+                    case '[': {
+                        int end = part.indexOf(']', i + 2);
+                        if (end < 0) {
+                            regex.append("\\[");
+                            break;
+                        }
+                        regex.append('[');
+                        int k = i + 1;
+                        if (part.charAt(k) == '!' || part.charAt(k) == '^') {
+                            regex.append('^');
+                            k++;
+                        }
+                        for (; k < end; k++) {
+                            char member = part.charAt(k);
+                            if (member == '\\' || member == '[' || member == '&' || member == '^') {
+                                regex.append('\\');
+                            }
+                            regex.append(member);
+                        }
+                        regex.append(']');
+                        i = end;
+                        break;
+                    }
+                    case '{':
+                        inBraces = true;
+                        regex.append("(?:");
+                        break;
+                    case '}':
+                        inBraces = false;
+                        regex.append(')');
+                        break;
+                    case ',':
+                        regex.append(inBraces ? "|" : ",");
+                        break;
+                    case '\\':
+                        if (i + 1 < part.length()) {
+                            c = part.charAt(++i);
+                        }
+                        regex.append(Pattern.quote(String.valueOf(c)));
+                        break;
+                    default:
+                        if (".()]+|^$".indexOf(c) >= 0) {
+                            regex.append('\\');
+                        }
+                        regex.append(c);
+                }
+            }
+            return regex.toString();
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package io.leavesfly.joder.tools.glob;
 
 import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.git.GitRepository;
+import io.leavesfly.joder.services.search.SearchBudget;
+import io.leavesfly.joder.services.search.TopKCollector;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
 import io.leavesfly.joder.tools.Tool;
 import io.leavesfly.joder.tools.ToolResult;
 import org.slf4j.Logger;
@@ -11,21 +16,42 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Glob Tool - 文件模式匹配工具
  * 支持 glob 模式快速查找文件
+ * 
+ * <p>注入了 {@link WorkspaceCatalog} 时完全在内存中匹配，目录不可用时回退到遍历文件系统。</p>
+ * <p>隐藏文件、构建与依赖目录以及被 {@link IgnoreRules}（.gitignore 等）忽略的路径不参与匹配；
+ * tracked_only 为 true 时还按 {@link GitRepository} 读取的索引跳过未被 Git 跟踪的文件。</p>
  */
 public class GlobTool implements Tool {
     
     private static final Logger logger = LoggerFactory.getLogger(GlobTool.class);
     private static final int DEFAULT_LIMIT = 100;
+    private static final SearchBudget BUDGET = SearchBudget.DEFAULT;
+    
+    /** 修改时间降序（最新的在前），相同时按路径排序 */
+    private static final Comparator<FileMatch> NEWEST_FIRST =
+        Comparator.comparingLong((FileMatch m) -> m.lastModified).reversed()
+            .thenComparing(m -> m.path);
     
     private final String workingDirectory;
+    private final WorkspaceCatalog workspaceCatalog;
+    private final IgnoreRules ignoreRules;
+    
+    public GlobTool(String workingDirectory) {
+        this(workingDirectory, null);
+    }
     
     @Inject
-    public GlobTool(@WorkingDirectory String workingDirectory) {
+    public GlobTool(@WorkingDirectory String workingDirectory, WorkspaceCatalog workspaceCatalog) {
         this.workingDirectory = workingDirectory;
+        this.workspaceCatalog = workspaceCatalog;
+        this.ignoreRules = workspaceCatalog != null
+            ? workspaceCatalog.getIgnoreRules()
+            : new IgnoreRules(workingDirectory);
     }
     
     @Override
@@ -38,6 +64,7 @@ public class GlobTool implements Tool {
         return "快速文件模式匹配工具，适用于任意规模的代码库。\n" +
                "- 支持 glob 模式如 \"**/*.java\" 或 \"src/**/*.txt\"\n" +
                "- 返回按修改时间排序的匹配文件路径\n" +
+               "- tracked_only 为 true 时只匹配 Git 已跟踪的文件\n" +
                "- 当需要按名称模式查找文件时使用此工具\n" +
                "- 对于需要多轮 glob 和 grep 的开放式搜索，建议使用 Task 工具";
     }
@@ -57,6 +84,11 @@ public class GlobTool implements Tool {
         return true;
     }
     
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return true; // GlobTool 是只读的，支持并发执行
@@ -71,6 +103,7 @@ public class GlobTool implements Tool {
     public ToolResult call(Map<String, Object> input) {
         String pattern = (String) input.get("pattern");
         String pathStr = (String) input.get("path");
+        boolean trackedOnly = Boolean.TRUE.equals(input.get("tracked_only"));
         
         if (pattern == null || pattern.trim().isEmpty()) {
             return ToolResult.error("模式参数不能为空");
@@ -97,15 +130,13 @@ public class GlobTool implements Tool {
         long start = System.currentTimeMillis();
         
         try {
-            List<FileMatch> matches = findMatches(pattern, searchPath);
-            
-            // 按修改时间降序排序（最新的在前）
-            matches.sort((a, b) -> Long.compare(b.lastModified, a.lastModified));
-            
-            boolean truncated = matches.size() > DEFAULT_LIMIT;
-            if (truncated) {
-                matches = matches.subList(0, DEFAULT_LIMIT);
-            }
+            GlobScan scan = findMatches(pattern, searchPath, trackedOnly);
+            List<FileMatch> matches = scan.newest.toSortedList();
+            boolean truncated = scan.newest.isTruncated() || scan.timedOut;
+            // 堆只保留最新的若干个，总数取遍历中的匹配数；遍历超时提前结束时只是下限
+            String matchedCount = scan.timedOut
+                ? "至少 " + scan.newest.getOffered()
+                : String.valueOf(scan.newest.getOffered());
             
             long duration = System.currentTimeMillis() - start;
             
@@ -127,11 +158,19 @@ public class GlobTool implements Tool {
             }
             
             // 添加元数据
-            String metadata = String.format("\n\n找到 %d 个文件 (耗时: %dms)", 
-                matches.size(), duration);
+            long retainedBytes = 0;
+            for (FileMatch match : matches) {
+                retainedBytes += match.estimatedBytes();
+            }
+            String metadata = String.format("\n\n找到 %s 个文件 (耗时: %dms)\n扫描: 遍历 %d 个文件 (%s), 剪枝 %d 个目录, 列出最新的 %d 个\n%s", 
+                matchedCount, duration, scan.visitedFiles, scan.inMemory ? "内存目录" : "文件系统",
+                scan.prunedDirectories, matches.size(),
+                BUDGET.describe(duration, retainedBytes, scan.timedOut, false));
             
             return ToolResult.success(result.toString().trim() + metadata);
             
+        } catch (PatternSyntaxException e) {
+            return ToolResult.error("无效的 glob 模式: " + e.getMessage());
         } catch (IOException e) {
             logger.error("Glob 搜索失败: pattern={}, path={}", pattern, searchPath, e);
             return ToolResult.error("搜索失败: " + e.getMessage());
@@ -139,42 +178,53 @@ public class GlobTool implements Tool {
     }
     
     /**
-     * 查找匹配的文件
+     * 查找匹配的文件，只保留最新的 DEFAULT_LIMIT 个，超出时间预算时停止遍历。
+     * 模式的字面量目录前缀直接定位起始目录，不可能匹配的子目录整体跳过。
      */
-    private List<FileMatch> findMatches(String globPattern, Path searchPath) throws IOException {
-        List<FileMatch> matches = new ArrayList<>();
+    private GlobScan findMatches(String globPattern, Path searchPath, boolean trackedOnly) throws IOException {
+        GlobPattern glob = GlobPattern.compile(globPattern);
+        Path base = searchPath.resolve(glob.getLiteralPrefix()).normalize();
+        long deadline = System.nanoTime() + BUDGET.getTimeMs() * 1_000_000;
+        // 字面量前缀视为明确指定的目录，即使它被忽略规则命中也照常遍历
+        IgnoreRules.Filter filter = ignoreRules.filterFor(base);
+        if (trackedOnly) {
+            filter = filter.or(trackedFilter(searchPath));
+        }
         
-        // 将 glob 模式转换为 PathMatcher
-        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + globPattern);
+        if (!Files.isDirectory(base)) {
+            return new GlobScan(glob, searchPath, base, filter, deadline);
+        }
         
-        // 遍历目录树
-        Files.walkFileTree(searchPath, new SimpleFileVisitor<Path>() {
+        // 优先查询内存中的工作区目录，不可用时遍历文件系统
+        if (workspaceCatalog != null) {
+            GlobScan scan = new GlobScan(glob, searchPath, base.toAbsolutePath().normalize(), filter, deadline);
+            boolean available = workspaceCatalog.walk(scan.base, new WorkspaceCatalog.Visitor() {
+                @Override
+                public FileVisitResult preVisitDirectory(WorkspaceCatalog.Entry dir) {
+                    return scan.enter(dir.getPath());
+                }
+                
+                @Override
+                public FileVisitResult visitFile(WorkspaceCatalog.Entry file) {
+                    return scan.visit(file.getPath(), file.getLastModified());
+                }
+            });
+            if (available) {
+                scan.inMemory = true;
+                return scan;
+            }
+        }
+        
+        GlobScan scan = new GlobScan(glob, searchPath, base, filter, deadline);
+        Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                if (shouldSkip(dir)) {
-                    return FileVisitResult.SKIP_SUBTREE;
-                }
-                return FileVisitResult.CONTINUE;
+                return scan.enter(dir);
             }
             
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                if (shouldSkip(file)) {
-                    return FileVisitResult.CONTINUE;
-                }
-                
-                // 获取相对路径进行匹配
-                Path relativePath = searchPath.relativize(file);
-                
-                // 同时匹配完整路径和文件名
-                if (matcher.matches(relativePath) || matcher.matches(file.getFileName())) {
-                    FileMatch match = new FileMatch();
-                    match.path = file;
-                    match.lastModified = attrs.lastModifiedTime().toMillis();
-                    matches.add(match);
-                }
-                
-                return FileVisitResult.CONTINUE;
+                return scan.visit(file, attrs.lastModifiedTime().toMillis());
             }
             
             @Override
@@ -184,30 +234,18 @@ public class GlobTool implements Tool {
             }
         });
         
-        return matches;
+        return scan;
     }
     
     /**
-     * 判断是否应该跳过该路径
+     * 只保留 Git 已跟踪文件的过滤器
      */
-    private boolean shouldSkip(Path path) {
-        String name = path.getFileName().toString();
-        
-        // 跳过隐藏文件和目录（以 . 开头）
-        if (!name.equals(".") && name.startsWith(".")) {
-            return true;
-        }
-        
-        // 跳过常见的构建和依赖目录
-        if (name.equals("node_modules") || 
-            name.equals("target") || 
-            name.equals("build") ||
-            name.equals("dist") ||
-            name.equals("__pycache__")) {
-            return true;
+    private static IgnoreRules.Filter trackedFilter(Path searchPath) throws IOException {
+        GitRepository repository = GitRepository.open(searchPath);
+        if (repository == null) {
+            throw new IOException("tracked_only 只能用于 Git 仓库: " + searchPath);
         }
-        
-        return false;
+        return repository.trackedFilter();
     }
     
     @Override
@@ -250,11 +288,85 @@ public class GlobTool implements Tool {
         }
     }
     
+    /**
+     * 单次遍历的状态
+     */
+    private static class GlobScan {
+        final TopKCollector<FileMatch> newest = new TopKCollector<>(DEFAULT_LIMIT, NEWEST_FIRST);
+        final GlobPattern glob;
+        final Path searchPath;
+        final Path base;
+        final IgnoreRules.Filter filter;
+        final long deadline;
+        /** 已进入目录的匹配状态 */
+        final Map<Path, Long> states = new HashMap<>();
+        long visitedFiles;
+        long prunedDirectories;
+        boolean timedOut;
+        boolean inMemory;
+        
+        GlobScan(GlobPattern glob, Path searchPath, Path base, IgnoreRules.Filter filter, long deadline) {
+            this.glob = glob;
+            this.searchPath = searchPath;
+            this.base = base;
+            this.filter = filter;
+            this.deadline = deadline;
+        }
+        
+        FileVisitResult enter(Path dir) {
+            if (dir.equals(base)) {
+                states.put(dir, glob.initialState());
+                return FileVisitResult.CONTINUE;
+            }
+            if (filter.skip(dir, true)) {
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            Long parent = states.get(dir.getParent());
+            long state = parent != null ? glob.enterDirectory(parent, dir.getFileName().toString()) : 0;
+            if (state == 0) {
+                prunedDirectories++;
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            states.put(dir, state);
+            return FileVisitResult.CONTINUE;
+        }
+        
+        FileVisitResult visit(Path file, long lastModified) {
+            if (System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                return FileVisitResult.TERMINATE;
+            }
+            if (filter.skip(file, false)) {
+                return FileVisitResult.CONTINUE;
+            }
+            visitedFiles++;
+            
+            boolean matched;
+            if (glob.isCompiled()) {
+                Long state = states.get(file.getParent());
+                matched = state != null && glob.matchesName(state, file.getFileName().toString());
+            } else {
+                matched = glob.matchesPath(searchPath.relativize(file));
+            }
+            if (matched) {
+                FileMatch match = new FileMatch();
+                match.path = file;
+                match.lastModified = lastModified;
+                newest.offer(match);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+    }
+    
     /**
      * 文件匹配结果
      */
     private static class FileMatch {
         Path path;
         long lastModified;
+        
+        long estimatedBytes() {
+            return 48 + 2L * path.toString().length();
+        }
     }
 }
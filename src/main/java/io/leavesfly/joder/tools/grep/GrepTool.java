@@ -1,36 +1,67 @@
 package io.leavesfly.joder.tools.grep;
 
 import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.git.GitRepository;
+import io.leavesfly.joder.services.index.TrigramIndex;
+import io.leavesfly.joder.services.search.BinaryDetector;
+import io.leavesfly.joder.services.search.ContentScanner;
+import io.leavesfly.joder.services.search.SearchBudget;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
 import io.leavesfly.joder.tools.Tool;
 import io.leavesfly.joder.tools.ToolResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 /**
  * Grep Tool - 文件内容搜索工具
  * 使用正则表达式搜索文件内容
+ * 
+ * <p>注入了 {@link TrigramIndex} 时，先用三元组索引筛选候选文件，
+ * 索引未就绪或已过期时从 {@link WorkspaceCatalog} 取文件列表，二者都不可用时才遍历目录。
+ * 文件内容由 {@link ContentScanner} 并行扫描，是否为文本文件由 {@link BinaryDetector} 根据文件内容判断，
+ * 被 {@link IgnoreRules}（.gitignore 等）忽略的路径不参与搜索；tracked_only 为 true 时
+ * 还按 {@link GitRepository} 读取的索引跳过未被 Git 跟踪的文件。</p>
  */
 public class GrepTool implements Tool {
     
     private static final Logger logger = LoggerFactory.getLogger(GrepTool.class);
     private static final int MAX_RESULTS = 100;
+    private static final SearchBudget BUDGET = SearchBudget.DEFAULT;
     
     private final String workingDirectory;
+    private final TrigramIndex trigramIndex;
+    private final WorkspaceCatalog workspaceCatalog;
+    private final ContentScanner contentScanner;
+    private final BinaryDetector binaryDetector;
+    private final IgnoreRules ignoreRules;
+    
+    public GrepTool(String workingDirectory) {
+        this(workingDirectory, null, null, new ContentScanner(), new BinaryDetector());
+    }
     
     @Inject
-    public GrepTool(@WorkingDirectory String workingDirectory) {
+    public GrepTool(
+            @WorkingDirectory String workingDirectory,
+            TrigramIndex trigramIndex,
+            WorkspaceCatalog workspaceCatalog,
+            ContentScanner contentScanner,
+            BinaryDetector binaryDetector) {
         this.workingDirectory = workingDirectory;
+        this.trigramIndex = trigramIndex;
+        this.workspaceCatalog = workspaceCatalog;
+        this.contentScanner = contentScanner;
+        this.binaryDetector = binaryDetector;
+        this.ignoreRules = workspaceCatalog != null
+            ? workspaceCatalog.getIgnoreRules()
+            : new IgnoreRules(workingDirectory);
     }
     
     @Override
@@ -45,6 +76,7 @@ public class GrepTool implements Tool {
                "- 支持完整的正则语法（如 \"log.*Error\", \"function\\\\s+\\\\w+\" 等）\n" +
                "- 使用 include 参数按模式过滤文件（如 \"*.java\", \"*.{ts,tsx}\"）\n" +
                "- 返回按修改时间排序的匹配文件路径\n" +
+               "- tracked_only 为 true 时只搜索 Git 已跟踪的文件\n" +
                "- 当需要查找包含特定模式的文件时使用此工具\n" +
                "- 对于需要多轮 glob 和 grep 的开放式搜索，建议使用 Task 工具";
     }
@@ -64,6 +96,11 @@ public class GrepTool implements Tool {
         return true;
     }
     
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return true; // GrepTool 是只读的，支持并发执行
@@ -79,6 +116,7 @@ public class GrepTool implements Tool {
         String patternStr = (String) input.get("pattern");
         String pathStr = (String) input.get("path");
         String includePattern = (String) input.get("include");
+        boolean trackedOnly = Boolean.TRUE.equals(input.get("tracked_only"));
         
         if (patternStr == null || patternStr.trim().isEmpty()) {
             return ToolResult.error("搜索模式不能为空");
@@ -120,13 +158,15 @@ public class GrepTool implements Tool {
                     .getPathMatcher("glob:" + includePattern);
             }
             
-            List<FileMatch> matches = searchFiles(searchPattern, searchPath, includeMatcher);
-            
-            // 按修改时间降序排序（最新的在前）
-            matches.sort((a, b) -> Long.compare(b.lastModified, a.lastModified));
-            
-            boolean truncated = matches.size() > MAX_RESULTS;
-            int resultCount = Math.min(matches.size(), MAX_RESULTS);
+            // 只保留最新的 MAX_RESULTS 个文件，更旧的文件不会被读取
+            ContentScanner.ScanResult scan = searchFiles(searchPattern, searchPath, includeMatcher, trackedOnly);
+            List<ContentScanner.FileResult> matches = scan.getFiles();
+            // 跳过了较旧文件或提前结束时，匹配数只是下限
+            boolean truncated = scan.getMatchedFiles() > matches.size() || scan.getSkippedFiles() > 0
+                || scan.isStoppedEarly() || scan.isTimedOut() || scan.isMemoryBudgetExceeded();
+            String matchedCount = truncated
+                ? "至少 " + scan.getMatchedFiles()
+                : String.valueOf(scan.getMatchedFiles());
             
             long duration = System.currentTimeMillis() - start;
             
@@ -137,22 +177,25 @@ public class GrepTool implements Tool {
             if (matches.isEmpty()) {
                 result.append("未找到匹配的文件");
             } else {
-                result.append(String.format("找到 %d 个文件\n", matches.size()));
+                result.append(String.format("找到 %s 个文件\n", matchedCount));
                 
-                for (int i = 0; i < resultCount; i++) {
-                    FileMatch match = matches.get(i);
-                    String relativePath = cwd.relativize(match.path).toString();
+                for (ContentScanner.FileResult match : matches) {
+                    String relativePath = cwd.relativize(match.getPath()).toString();
                     result.append(relativePath).append("\n");
                 }
                 
                 if (truncated) {
-                    result.append("\n(结果已截断，考虑使用更具体的路径或模式)");
+                    result.append(String.format("\n(结果已截断，仅列出最新的 %d 个文件，考虑使用更具体的路径或模式)",
+                        matches.size()));
                 }
             }
             
             // 添加元数据
-            String metadata = String.format("\n\n匹配文件数: %d (耗时: %dms)", 
-                matches.size(), duration);
+            String metadata = String.format("\n\n匹配文件数: %s (耗时: %dms)\n扫描: 读取 %d 个文件 (%s), 跳过 %d 个较旧文件\n%s",
+                matchedCount, duration, scan.getScannedFiles(),
+                SearchBudget.formatSize(scan.getBytesRead()), scan.getSkippedFiles(),
+                BUDGET.describe(scan.getElapsedMs(), scan.getRetainedBytes(),
+                    scan.isTimedOut(), scan.isMemoryBudgetExceeded()));
             
             return ToolResult.success(result.toString().trim() + metadata);
             
@@ -164,140 +207,52 @@ public class GrepTool implements Tool {
     
     /**
      * 搜索文件内容
+     * 有可用的索引或工作区目录时只扫描给出的文件，否则并行遍历整个目录
      */
-    private List<FileMatch> searchFiles(Pattern searchPattern, Path searchPath, 
-                                       PathMatcher includeMatcher) throws IOException {
-        List<FileMatch> matches = new ArrayList<>();
+    private ContentScanner.ScanResult searchFiles(Pattern searchPattern, Path searchPath, 
+                                                 PathMatcher includeMatcher, boolean trackedOnly) throws IOException {
+        IgnoreRules.Filter filter = trackedOnly
+            ? ignoreRules.filterFor(searchPath).or(trackedFilter(searchPath))
+            : ignoreRules.filterFor(searchPath);
+        List<Path> candidates = trigramIndex != null
+            ? trigramIndex.findCandidates(searchPattern.pattern(), searchPath)
+            : null;
+        if (candidates == null && workspaceCatalog != null) {
+            candidates = workspaceCatalog.listFiles(searchPath, dir -> !filter.skip(dir, true));
+        }
         
-        Files.walkFileTree(searchPath, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                if (shouldSkip(dir)) {
-                    return FileVisitResult.SKIP_SUBTREE;
-                }
-                return FileVisitResult.CONTINUE;
-            }
-            
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                if (shouldSkip(file)) {
-                    return FileVisitResult.CONTINUE;
-                }
-                
-                // 检查 include 过滤
-                if (includeMatcher != null) {
-                    Path relativePath = searchPath.relativize(file);
-                    if (!includeMatcher.matches(relativePath) && 
-                        !includeMatcher.matches(file.getFileName())) {
-                        return FileVisitResult.CONTINUE;
-                    }
-                }
-                
-                // 只搜索文本文件
-                if (!isTextFile(file)) {
-                    return FileVisitResult.CONTINUE;
-                }
-                
-                // 搜索文件内容
-                if (fileContainsPattern(file, searchPattern)) {
-                    FileMatch match = new FileMatch();
-                    match.path = file;
-                    match.lastModified = attrs.lastModifiedTime().toMillis();
-                    matches.add(match);
-                }
-                
-                return FileVisitResult.CONTINUE;
-            }
-            
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                logger.warn("访问文件失败: {}", file, exc);
-                return FileVisitResult.CONTINUE;
-            }
-        });
+        ContentScanner.ScanRequest request = ContentScanner.ScanRequest.builder(searchPath, searchPattern)
+            .candidates(candidates)
+            .directoryFilter(dir -> !filter.skip(dir, true))
+            .fileFilter((file, attrs) -> !filter.skip(file, false)
+                && matchesInclude(file, searchPath, includeMatcher)
+                && binaryDetector.isTextFile(file, attrs))
+            .newestFirst(MAX_RESULTS)
+            .timeBudgetMs(BUDGET.getTimeMs())
+            .memoryBudgetBytes(BUDGET.getMemoryBytes())
+            .build();
         
-        return matches;
+        return contentScanner.scan(request);
     }
     
     /**
-     * 检查文件内容是否包含模式
+     * 只保留 Git 已跟踪文件的过滤器
      */
-    private boolean fileContainsPattern(Path file, Pattern pattern) {
-        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                Matcher matcher = pattern.matcher(line);
-                if (matcher.find()) {
-                    return true;
-                }
-            }
-        } catch (IOException e) {
-            logger.debug("读取文件失败: {}", file, e);
-        } catch (Exception e) {
-            // 可能是二进制文件，跳过
-            logger.debug("解析文件失败（可能是二进制文件）: {}", file);
-        }
-        return false;
-    }
-    
-    /**
-     * 简单判断是否为文本文件
-     */
-    private boolean isTextFile(Path file) {
-        String name = file.getFileName().toString();
-        String lowerName = name.toLowerCase();
-        
-        // 常见文本文件扩展名
-        String[] textExtensions = {
-            ".txt", ".md", ".java", ".js", ".ts", ".tsx", ".jsx",
-            ".py", ".rb", ".go", ".rs", ".c", ".cpp", ".h", ".hpp",
-            ".cs", ".php", ".html", ".css", ".scss", ".sass", ".less",
-            ".xml", ".json", ".yaml", ".yml", ".toml", ".ini", ".conf",
-            ".sh", ".bash", ".zsh", ".properties", ".gradle", ".maven"
-        };
-        
-        for (String ext : textExtensions) {
-            if (lowerName.endsWith(ext)) {
-                return true;
-            }
-        }
-        
-        // 无扩展名的常见文本文件
-        String[] textFiles = {
-            "readme", "license", "makefile", "dockerfile", 
-            "gemfile", "rakefile", "gradlew"
-        };
-        
-        for (String textFile : textFiles) {
-            if (lowerName.equals(textFile)) {
-                return true;
-            }
+    private static IgnoreRules.Filter trackedFilter(Path searchPath) throws IOException {
+        GitRepository repository = GitRepository.open(searchPath);
+        if (repository == null) {
+            throw new IOException("tracked_only 只能用于 Git 仓库: " + searchPath);
         }
-        
-        return false;
+        return repository.trackedFilter();
     }
     
     /**
-     * 判断是否应该跳过该路径
+     * 检查 include 过滤（相对路径或文件名任一匹配即可）
      */
-    private boolean shouldSkip(Path path) {
-        String name = path.getFileName().toString();
-        
-        // 跳过隐藏文件和目录
-        if (!name.equals(".") && name.startsWith(".")) {
-            return true;
-        }
-        
-        // 跳过常见的构建和依赖目录
-        if (name.equals("node_modules") || 
-            name.equals("target") || 
-            name.equals("build") ||
-            name.equals("dist") ||
-            name.equals("__pycache__")) {
-            return true;
-        }
-        
-        return false;
+    private boolean matchesInclude(Path file, Path searchPath, PathMatcher includeMatcher) {
+        return includeMatcher == null
+            || includeMatcher.matches(searchPath.relativize(file))
+            || includeMatcher.matches(file.getFileName());
     }
     
     @Override
@@ -343,12 +298,5 @@ public class GrepTool implements Tool {
             return "❌ 搜索失败: " + result.getError();
         }
     }
-    
-    /**
-     * 文件匹配结果
-     */
-    private static class FileMatch {
-        Path path;
-        long lastModified;
-    }
+
 }
@@ -1,6 +1,9 @@
 package io.leavesfly.joder.tools.ls;
 
 import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.workspace.DirectoryLister;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
 import io.leavesfly.joder.tools.Tool;
 import io.leavesfly.joder.tools.ToolResult;
 import org.slf4j.Logger;
@@ -10,26 +13,40 @@ import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 
 /**
  * LS Tool - 列出目录内容工具
  * 递归遍历目录并以树状结构显示文件和子目录
+ * 
+ * <p>由 {@link DirectoryLister} 分页列出：每页最多 {@value #MAX_FILES} 项，子目录中超过
+ * {@value #MAX_ENTRIES_PER_DIRECTORY} 项的部分汇总为一行；未列完时输出游标，传入 cursor 即可继续列出下一页。</p>
  */
 public class LSTool implements Tool {
     
     private static final Logger logger = LoggerFactory.getLogger(LSTool.class);
     private static final int MAX_FILES = 1000;
+    private static final int MAX_ENTRIES_PER_DIRECTORY = 200;
     private static final String TRUNCATED_MESSAGE = 
-        String.format("目录包含超过 %d 个文件。使用 LS 工具指定具体路径，或使用 Bash、Glob 等工具探索嵌套目录。前 %d 个文件和目录如下：\n\n", 
-        MAX_FILES, MAX_FILES);
+        "目录包含超过 " + MAX_FILES + " 个文件和目录，以下为第 %d–%d 项。传入 cursor=\"%s\" 调用 LS 获取下一页，" +
+        "或使用 LS 指定具体路径、使用 Bash、Glob 等工具探索嵌套目录。\n\n";
     
     private final String workingDirectory;
+    private final DirectoryLister directoryLister;
+    private final IgnoreRules ignoreRules;
+    
+    public LSTool(String workingDirectory) {
+        this(workingDirectory, null, new DirectoryLister());
+    }
     
     @Inject
-    public LSTool(@WorkingDirectory String workingDirectory) {
+    public LSTool(@WorkingDirectory String workingDirectory, WorkspaceCatalog workspaceCatalog,
+                  DirectoryLister directoryLister) {
         this.workingDirectory = workingDirectory;
+        this.directoryLister = directoryLister;
+        this.ignoreRules = workspaceCatalog != null
+            ? workspaceCatalog.getIgnoreRules()
+            : new IgnoreRules(workingDirectory);
     }
     
     @Override
@@ -39,7 +56,8 @@ public class LSTool implements Tool {
     
     @Override
     public String getDescription() {
-        return "列出指定路径下的文件和目录。路径参数必须是绝对路径。如果知道要搜索的目录，建议优先使用 Glob 和 Grep 工具。";
+        return "列出指定路径下的文件和目录。路径参数必须是绝对路径。如果知道要搜索的目录，建议优先使用 Glob 和 Grep 工具。" +
+               "目录较大时结果分页，传入上一页给出的 cursor 即可获取下一页。";
     }
     
     @Override
@@ -57,6 +75,11 @@ public class LSTool implements Tool {
         return true;
     }
     
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return true; // LSTool 是只读的，支持并发执行
@@ -70,6 +93,15 @@ public class LSTool implements Tool {
     @Override
     public ToolResult call(Map<String, Object> input) {
         String pathStr = (String) input.get("path");
+        String cursor = (String) input.get("cursor");
+        
+        if (cursor != null && !cursor.trim().isEmpty()) {
+            DirectoryLister.Page page = directoryLister.next(cursor.trim());
+            if (page == null) {
+                return ToolResult.error("游标已失效，请重新调用 LS 列出目录");
+            }
+            return toResult(page);
+        }
         
         if (pathStr == null || pathStr.trim().isEmpty()) {
             return ToolResult.error("路径参数不能为空");
@@ -91,22 +123,12 @@ public class LSTool implements Tool {
         }
         
         try {
-            List<String> allPaths = listDirectory(path);
-            
-            // 排序
-            Collections.sort(allPaths);
-            
-            // 创建树状结构
-            String tree = printTree(createFileTree(allPaths, path));
-            
-            String result;
-            if (allPaths.size() >= MAX_FILES) {
-                result = TRUNCATED_MESSAGE + tree;
-            } else {
-                result = tree;
-            }
-            
-            return ToolResult.success(result);
+            DirectoryLister.ListingRequest request = DirectoryLister.ListingRequest.builder(path)
+                .filter(ignoreRules.filterFor(path))
+                .pageSize(MAX_FILES)
+                .maxPerDirectory(MAX_ENTRIES_PER_DIRECTORY)
+                .build();
+            return toResult(directoryLister.list(request));
             
         } catch (IOException e) {
             logger.error("列出目录失败: {}", path, e);
@@ -115,173 +137,71 @@ public class LSTool implements Tool {
     }
     
     /**
-     * 递归列出目录内容
+     * 输出一页；未列完的页含有游标，游标随遍历结束而失效，这样的结果不写入结果缓存
      */
-    private List<String> listDirectory(Path rootPath) throws IOException {
-        List<String> results = new ArrayList<>();
-        Path cwd = Paths.get(workingDirectory);
-        
-        Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                if (results.size() > MAX_FILES) {
-                    return FileVisitResult.TERMINATE;
-                }
-                
-                if (shouldSkip(dir)) {
-                    return FileVisitResult.SKIP_SUBTREE;
-                }
-                
-                if (!dir.equals(rootPath)) {
-                    String relativePath = cwd.relativize(dir).toString();
-                    results.add(relativePath + File.separator);
-                }
-                
-                return FileVisitResult.CONTINUE;
-            }
-            
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                if (results.size() > MAX_FILES) {
-                    return FileVisitResult.TERMINATE;
-                }
-                
-                if (shouldSkip(file)) {
-                    return FileVisitResult.CONTINUE;
-                }
-                
-                String relativePath = cwd.relativize(file).toString();
-                results.add(relativePath);
-                
-                return FileVisitResult.CONTINUE;
-            }
-            
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                logger.warn("访问文件失败: {}", file, exc);
-                return FileVisitResult.CONTINUE;
-            }
-        });
-        
-        return results;
+    private ToolResult toResult(DirectoryLister.Page page) {
+        ToolResult result = ToolResult.success(render(page));
+        return page.hasMore() ? result.withoutCaching() : result;
     }
     
     /**
-     * 判断是否应该跳过该路径
+     * 以缩进列表输出一页：先输出工作目录到列出目录之间的各级目录，
+     * 续页再补上本页第一项的祖先目录，最后是本页条目
      */
-    private boolean shouldSkip(Path path) {
-        String name = path.getFileName().toString();
-        
-        // 跳过隐藏文件和目录（以 . 开头）
-        if (!name.equals(".") && name.startsWith(".")) {
-            return true;
-        }
-        
-        // 跳过 __pycache__ 目录
-        if (name.equals("__pycache__")) {
-            return true;
-        }
-        
-        // 跳过 node_modules 目录
-        if (name.equals("node_modules")) {
-            return true;
-        }
-        
-        // 跳过 target 目录（Maven）
-        if (name.equals("target")) {
-            return true;
-        }
-        
-        // 跳过 build 目录
-        if (name.equals("build")) {
-            return true;
+    private String render(DirectoryLister.Page page) {
+        StringBuilder result = new StringBuilder();
+        List<DirectoryLister.Item> items = page.getItems();
+        if (page.hasMore()) {
+            result.append(String.format(TRUNCATED_MESSAGE, page.getOffset() + 1,
+                page.getOffset() + items.size(), page.getCursor()));
         }
         
-        return false;
-    }
-    
-    /**
-     * 创建文件树结构
-     */
-    private TreeNode[] createFileTree(List<String> sortedPaths, Path rootPath) {
-        List<TreeNode> root = new ArrayList<>();
-        
-        for (String pathStr : sortedPaths) {
-            String[] parts = pathStr.split(File.separator.equals("\\") ? "\\\\" : File.separator);
-            List<TreeNode> currentLevel = root;
-            StringBuilder currentPath = new StringBuilder();
-            
-            for (int i = 0; i < parts.length; i++) {
-                String part = parts[i];
-                if (part.isEmpty()) {
-                    continue;
-                }
-                
-                if (currentPath.length() > 0) {
-                    currentPath.append(File.separator);
-                }
-                currentPath.append(part);
-                
-                boolean isLastPart = (i == parts.length - 1);
-                
-                // 查找是否已存在
-                TreeNode existingNode = null;
-                for (TreeNode node : currentLevel) {
-                    if (node.name.equals(part)) {
-                        existingNode = node;
-                        break;
-                    }
-                }
-                
-                if (existingNode != null) {
-                    currentLevel = existingNode.children;
-                } else {
-                    TreeNode newNode = new TreeNode();
-                    newNode.name = part;
-                    newNode.path = currentPath.toString();
-                    newNode.type = isLastPart ? "file" : "directory";
-                    newNode.children = isLastPart ? null : new ArrayList<>();
-                    
-                    currentLevel.add(newNode);
-                    currentLevel = newNode.children != null ? newNode.children : new ArrayList<>();
+        result.append("- ").append(workingDirectory).append(File.separator).append("\n");
+        Path root = page.getRoot().toAbsolutePath().normalize();
+        Path cwd = Paths.get(workingDirectory).toAbsolutePath().normalize();
+        String indent = "  ";
+        if (root.startsWith(cwd)) {
+            for (Path part : cwd.relativize(root)) {
+                if (!part.toString().isEmpty()) {
+                    result.append(indent).append("- ").append(part).append(File.separator).append("\n");
+                    indent += "  ";
                 }
             }
         }
         
-        return root.toArray(new TreeNode[0]);
-    }
-    
-    /**
-     * 打印树状结构
-     */
-    private String printTree(TreeNode[] tree) {
-        StringBuilder result = new StringBuilder();
-        result.append("- ").append(workingDirectory).append(File.separator).append("\n");
-        printTreeLevel(tree, "  ", result);
-        return result.toString();
-    }
-    
-    private void printTreeLevel(TreeNode[] nodes, String prefix, StringBuilder result) {
-        if (nodes == null) {
-            return;
+        if (page.getOffset() > 0 && !items.isEmpty()) {
+            DirectoryLister.Item first = items.get(0);
+            Path parent = first.isSummary() ? first.getPath() : first.getPath().getParent();
+            String ancestorIndent = indent;
+            for (Path part : root.relativize(parent)) {
+                if (!part.toString().isEmpty()) {
+                    result.append(ancestorIndent).append("- ").append(part).append(File.separator).append("\n");
+                    ancestorIndent += "  ";
+                }
+            }
         }
         
-        for (TreeNode node : nodes) {
-            result.append(prefix).append("- ").append(node.name);
-            if ("directory".equals(node.type)) {
-                result.append(File.separator);
+        for (DirectoryLister.Item item : items) {
+            result.append(indent).append("  ".repeat(item.getDepth())).append("- ");
+            if (item.isSummary()) {
+                result.append("… 还有 ").append(item.getOmitted()).append(" 项");
+            } else {
+                result.append(item.getName());
+                if (item.isDirectory()) {
+                    result.append(File.separator);
+                }
             }
             result.append("\n");
-            
-            if (node.children != null && !node.children.isEmpty()) {
-                printTreeLevel(node.children.toArray(new TreeNode[0]), prefix + "  ", result);
-            }
         }
+        return result.toString();
     }
     
     @Override
     public String renderToolUseMessage(Map<String, Object> input) {
         String path = (String) input.get("path");
+        if (path == null || path.trim().isEmpty()) {
+            return "列出目录: 下一页";
+        }
         Path absolutePath = Paths.get(path);
         if (!absolutePath.isAbsolute()) {
             absolutePath = Paths.get(workingDirectory).resolve(path);
@@ -307,14 +227,4 @@ public class LSTool implements Tool {
             return "❌ 列出目录失败: " + result.getError();
         }
     }
-    
-    /**
-     * 树节点类
-     */
-    private static class TreeNode {
-        String name;
-        String path;
-        String type;
-        List<TreeNode> children;
-    }
 }
@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -99,6 +100,15 @@ public class NotebookEditTool implements Tool {
         return false; // 修改文件
     }
     
+    @Override
+    public List<Path> getModifiedPaths(Map<String, Object> input) {
+        String filePathStr = (String) input.get("notebook_path");
+        if (filePathStr == null || filePathStr.trim().isEmpty()) {
+            return List.of();
+        }
+        return List.of(Paths.get(workingDirectory).resolve(filePathStr).normalize());
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return false; // 文件操作不安全并发
@@ -92,6 +92,11 @@ public class NotebookReadTool implements Tool {
         return true; // 只读操作
     }
     
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+    
     @Override
     public boolean isConcurrencySafe() {
         return true;
@@ -1,21 +1,42 @@
 package io.leavesfly.joder.tools.search;
 
+import io.leavesfly.joder.hooks.CancellationToken;
+import io.leavesfly.joder.services.index.TokenIndex;
+import io.leavesfly.joder.services.search.BinaryDetector;
+import io.leavesfly.joder.services.search.ContentScanner;
+import io.leavesfly.joder.services.search.SearchBudget;
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
+import javax.inject.Inject;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 /**
  * 搜索执行器
- * 基于给定的搜索策略执行高性能文件内容搜索
+ * 基于给定的搜索策略执行高性能文件内容搜索，文件内容由 {@link ContentScanner} 并行扫描，
+ * 候选文件优先从内存中的 {@link WorkspaceCatalog} 获取
+ * 
+ * <p>{@link #executeSpeculative} 在后台先行列出工作目录下的候选文件并执行一次预判搜索，
+ * 列出的文件保留一小段时间，紧随其后的 {@link #execute} 直接在其中筛选，不再重新遍历；
+ * 预判搜索读过的文件也已在二进制判定缓存和系统页缓存中。</p>
+ * 
+ * <p>注入了 {@link TokenIndex} 时，结果按正则中的词计算 BM25 相关性参与排序，
+ * {@link #rankFiles} 只查索引即可按相关性列出文件。</p>
  */
 public class SearchExecutor {
     
@@ -23,6 +44,34 @@ public class SearchExecutor {
     
     private static final int MAX_LINE_LENGTH = 500; // 超长行截断
     private static final int MAX_MATCHES_PER_FILE = 50; // 每个文件最多匹配行数
+    private static final long WARM_LISTING_TTL_MS = 15_000; // 预判列出的文件的有效期
+    private static final long SPECULATIVE_TIME_BUDGET_MS = 10_000; // 预判搜索的时间预算
+    private static final double BM25_WEIGHT = 10.0; // BM25 得分的权重，使词的相关性主导匹配次数与新鲜度
+    private static final int RANK_OVERFETCH = 4; // 索引排序多取的倍数，留给包含与排除模式过滤
+    
+    private final ContentScanner contentScanner;
+    private final BinaryDetector binaryDetector;
+    private final WorkspaceCatalog workspaceCatalog;
+    private final TokenIndex tokenIndex;
+    private final AtomicReference<WarmListing> warmListing = new AtomicReference<>();
+    private final ExecutorService speculativeWorker = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "SearchExecutor-speculative");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public SearchExecutor() {
+        this(new ContentScanner(), new BinaryDetector(), null, null);
+    }
+    
+    @Inject
+    public SearchExecutor(ContentScanner contentScanner, BinaryDetector binaryDetector,
+                          WorkspaceCatalog workspaceCatalog, TokenIndex tokenIndex) {
+        this.contentScanner = contentScanner;
+        this.binaryDetector = binaryDetector;
+        this.workspaceCatalog = workspaceCatalog;
+        this.tokenIndex = tokenIndex;
+    }
     
     /**
      * 执行搜索
@@ -32,6 +81,104 @@ public class SearchExecutor {
      * @return 搜索结果列表
      */
     public List<SearchMatch> execute(SearchStrategy strategy, Path workingDir) throws IOException {
+        return search(strategy, workingDir, takeWarmListing(workingDir), SearchBudget.DEFAULT.getTimeMs());
+    }
+    
+    /**
+     * 在后台执行预判搜索
+     * 
+     * <p>先列出工作目录下的候选文件（跳过隐藏、排除与被忽略的目录）并保留供随后的
+     * {@link #execute} 复用，再按给定策略搜索。令牌取消后扫描尽快结束。</p>
+     * 
+     * @param strategy 预判策略，通常由意图中的关键词直接推导
+     * @param workingDir 工作目录
+     * @param token 预判搜索的取消令牌
+     * @return 预判搜索结果
+     */
+    public CompletableFuture<List<SearchMatch>> executeSpeculative(SearchStrategy strategy, Path workingDir,
+                                                                   CancellationToken token) {
+        return CompletableFuture.supplyAsync(() -> {
+            CancellationToken previous = CancellationToken.bind(token);
+            try {
+                Path root = workingDir.toAbsolutePath().normalize();
+                List<Path> files = listWorkspaceFiles(root, token);
+                WarmListing listing = null;
+                if (files != null && !token.isCancelled()) {
+                    listing = new WarmListing(root, files, System.currentTimeMillis());
+                    warmListing.set(listing);
+                    logger.debug("预判搜索列出 {} 个候选文件", files.size());
+                }
+                return search(strategy, workingDir, listing, SPECULATIVE_TIME_BUDGET_MS);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                CancellationToken.bind(previous);
+            }
+        }, speculativeWorker);
+    }
+    
+    /**
+     * 判断文件是否落在策略的搜索范围内（搜索路径、排除目录、包含与排除模式）
+     */
+    public boolean isInScope(SearchStrategy strategy, Path workingDir, Path file) {
+        Path searchPath = resolveSearchPath(strategy.getSearchPath(), workingDir);
+        return isInScope(file, searchPath, compilePatterns(strategy.getIncludePatterns()),
+            compilePatterns(strategy.getExcludePatterns()));
+    }
+    
+    /**
+     * 只用代码词索引按 BM25 相关性列出策略范围内的文件，不扫描文件内容
+     * 
+     * <p>查询词取自策略的正则（跳过转义与字符类），结果不含匹配行。</p>
+     * 
+     * @param strategy 搜索策略，取其正则、搜索范围、包含与排除模式和最大结果数
+     * @param workingDir 工作目录
+     * @return 按相关性降序排列的文件；未注入索引、索引未就绪或正则中没有可用的词时返回 null
+     */
+    public List<SearchMatch> rankFiles(SearchStrategy strategy, Path workingDir) {
+        if (tokenIndex == null) {
+            return null;
+        }
+        Path searchPath = resolveSearchPath(strategy.getSearchPath(), workingDir);
+        List<TokenIndex.Hit> hits = tokenIndex.search(strategy.getRegex(), searchPath,
+            strategy.getMaxResults() * RANK_OVERFETCH);
+        if (hits == null) {
+            return null;
+        }
+        List<PathMatcher> includeMatchers = compilePatterns(strategy.getIncludePatterns());
+        List<PathMatcher> excludeMatchers = compilePatterns(strategy.getExcludePatterns());
+        List<SearchMatch> matches = new ArrayList<>();
+        for (TokenIndex.Hit hit : hits) {
+            if (matches.size() >= strategy.getMaxResults()) {
+                break;
+            }
+            if (isInScope(hit.getPath(), searchPath, includeMatchers, excludeMatchers)) {
+                SearchMatch match = new SearchMatch();
+                match.setFilePath(hit.getPath());
+                match.setLastModified(hit.getLastModified());
+                match.setRelevanceScore(hit.getScore());
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+    
+    private boolean isInScope(Path file, Path searchPath, List<PathMatcher> includeMatchers,
+                              List<PathMatcher> excludeMatchers) {
+        if (!file.startsWith(searchPath)) {
+            return false;
+        }
+        for (Path dir = file.getParent(); dir != null && dir.startsWith(searchPath) && !dir.equals(searchPath);
+             dir = dir.getParent()) {
+            if (shouldExcludeDirectory(dir, searchPath, excludeMatchers)) {
+                return false;
+            }
+        }
+        return shouldIncludeFile(file, searchPath, includeMatchers, excludeMatchers);
+    }
+    
+    private List<SearchMatch> search(SearchStrategy strategy, Path workingDir, WarmListing listing,
+                                     long timeBudgetMs) throws IOException {
         
         Path searchPath = resolveSearchPath(strategy.getSearchPath(), workingDir);
         
@@ -51,54 +198,140 @@ public class SearchExecutor {
         List<PathMatcher> includeMatchers = compilePatterns(strategy.getIncludePatterns());
         List<PathMatcher> excludeMatchers = compilePatterns(strategy.getExcludePatterns());
         
+        // .gitignore 等规则忽略的路径不参与搜索，明确指定被忽略的目录时不生效
+        IgnoreRules ignoreRules = workspaceCatalog != null ? workspaceCatalog.getIgnoreRules() : null;
+        boolean applyIgnore = ignoreRules != null && !ignoreRules.isIgnored(searchPath, true);
+        Predicate<Path> directoryFilter = dir -> !shouldExcludeDirectory(dir, searchPath, excludeMatchers)
+            && !(applyIgnore && ignoreRules.isIgnored(dir, true));
+        
+        // 候选文件：优先在预判搜索列出的文件中筛选，其次由工作区目录列出，否则由扫描器遍历文件系统
+        List<Path> candidates = ignoreRules == null || applyIgnore
+            ? filterListing(listing, searchPath, directoryFilter)
+            : null;
+        if (candidates == null && workspaceCatalog != null) {
+            candidates = workspaceCatalog.listFiles(searchPath, directoryFilter);
+        }
+        
         // 执行搜索
+        ContentScanner.ScanRequest request = ContentScanner.ScanRequest.builder(searchPath, searchPattern)
+            .candidates(candidates)
+            .directoryFilter(directoryFilter)
+            .fileFilter((file, attrs) -> shouldIncludeFile(file, searchPath, includeMatchers, excludeMatchers)
+                && !(applyIgnore && ignoreRules.isIgnored(file, false))
+                && binaryDetector.isTextFile(file, attrs))
+            .maxMatchesPerFile(strategy.isFilesOnly() ? 0 : MAX_MATCHES_PER_FILE)
+            .maxFiles(strategy.getMaxResults())
+            .timeBudgetMs(timeBudgetMs)
+            .memoryBudgetBytes(SearchBudget.DEFAULT.getMemoryBytes())
+            .build();
+        
         List<SearchMatch> matches = new ArrayList<>();
+        for (ContentScanner.FileResult result : contentScanner.scan(request).getFiles()) {
+            matches.add(toSearchMatch(result));
+        }
         
-        Files.walkFileTree(searchPath, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                if (shouldExcludeDirectory(dir, searchPath, excludeMatchers)) {
-                    return FileVisitResult.SKIP_SUBTREE;
-                }
-                return FileVisitResult.CONTINUE;
+        // 计算相关性分数并排序
+        rankAndSort(matches, strategy);
+        
+        return matches;
+    }
+    
+    /**
+     * 取出同一工作目录下未过期的预判文件列表，每份列表只复用一次
+     */
+    private WarmListing takeWarmListing(Path workingDir) {
+        WarmListing listing = warmListing.getAndSet(null);
+        if (listing == null || !listing.root.equals(workingDir.toAbsolutePath().normalize())
+                || System.currentTimeMillis() - listing.createdAt > WARM_LISTING_TTL_MS) {
+            return null;
+        }
+        return listing;
+    }
+    
+    /**
+     * 从预判列出的文件中筛选搜索路径下、所在目录均通过过滤器的文件
+     * 
+     * @return 列表不可用或搜索路径位于列出时跳过的目录中时返回 null
+     */
+    private List<Path> filterListing(WarmListing listing, Path searchPath, Predicate<Path> directoryFilter) {
+        if (listing == null || !searchPath.startsWith(listing.root)) {
+            return null;
+        }
+        for (Path segment : listing.root.relativize(searchPath)) {
+            if (WorkspaceCatalog.isSkippedName(segment.toString())) {
+                return null;
             }
-            
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                // 检查是否已达到最大结果数
-                if (matches.size() >= strategy.getMaxResults()) {
-                    return FileVisitResult.TERMINATE;
+        }
+        Map<Path, Boolean> verdicts = new HashMap<>();
+        List<Path> files = new ArrayList<>();
+        for (Path file : listing.files) {
+            if (file.startsWith(searchPath) && isAccepted(file.getParent(), searchPath, directoryFilter, verdicts)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+    
+    /**
+     * 目录及其到搜索路径之间的各级目录（含搜索路径）都通过过滤器
+     */
+    private static boolean isAccepted(Path dir, Path searchPath, Predicate<Path> directoryFilter,
+                                      Map<Path, Boolean> verdicts) {
+        Boolean verdict = verdicts.get(dir);
+        if (verdict == null) {
+            verdict = directoryFilter.test(dir)
+                && (dir.equals(searchPath) || isAccepted(dir.getParent(), searchPath, directoryFilter, verdicts));
+            verdicts.put(dir, verdict);
+        }
+        return verdict;
+    }
+    
+    /**
+     * 列出工作目录下的全部文件，跳过隐藏、排除与被忽略的目录
+     * 
+     * @return 遍历失败或被取消时返回 null
+     */
+    private List<Path> listWorkspaceFiles(Path root, CancellationToken token) {
+        IgnoreRules ignoreRules = workspaceCatalog != null ? workspaceCatalog.getIgnoreRules() : null;
+        Predicate<Path> directoryFilter = dir -> dir.equals(root)
+            || (!WorkspaceCatalog.isSkippedName(dir.getFileName().toString())
+                && !(ignoreRules != null && ignoreRules.isIgnored(dir, true)));
+        if (workspaceCatalog != null) {
+            List<Path> files = workspaceCatalog.listFiles(root, directoryFilter);
+            if (files != null) {
+                return files;
+            }
+        }
+        
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (token.isCancelled()) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    return directoryFilter.test(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
                 }
                 
-                // 应用文件过滤
-                if (!shouldIncludeFile(file, searchPath, includeMatchers, excludeMatchers)) {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        files.add(file);
+                    }
                     return FileVisitResult.CONTINUE;
                 }
                 
-                // 只搜索文本文件
-                if (!isTextFile(file)) {
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
                     return FileVisitResult.CONTINUE;
                 }
-                
-                // 搜索文件内容
-                try {
-                    SearchMatch match = searchFile(file, searchPattern, attrs.lastModifiedTime().toMillis(), 
-                                                   strategy.isFilesOnly());
-                    if (match != null) {
-                        matches.add(match);
-                    }
-                } catch (Exception e) {
-                    logger.debug("搜索文件失败: {}", file, e);
-                }
-                
-                return FileVisitResult.CONTINUE;
-            }
-        });
-        
-        // 计算相关性分数并排序
-        rankAndSort(matches);
-        
-        return matches;
+            });
+        } catch (IOException e) {
+            logger.debug("预判搜索列出文件失败: {}", e.getMessage());
+            return null;
+        }
+        return token.isCancelled() ? null : files;
     }
     
     /**
@@ -139,15 +372,8 @@ public class SearchExecutor {
     private boolean shouldExcludeDirectory(Path dir, Path basePath, List<PathMatcher> excludeMatchers) {
         String dirName = dir.getFileName().toString();
         
-        // 跳过隐藏目录
-        if (dirName.startsWith(".") && !dirName.equals(".")) {
-            return true;
-        }
-        
-        // 默认排除的目录
-        if (dirName.equals("node_modules") || dirName.equals("target") || 
-            dirName.equals("build") || dirName.equals("dist") || 
-            dirName.equals("__pycache__")) {
+        // 跳过隐藏目录与默认排除的构建、依赖目录
+        if (WorkspaceCatalog.isSkippedName(dirName)) {
             return true;
         }
         
@@ -194,93 +420,44 @@ public class SearchExecutor {
     }
     
     /**
-     * 搜索单个文件
+     * 转换扫描结果，截断超长行
      */
-    private SearchMatch searchFile(Path file, Pattern pattern, long lastModified, boolean filesOnly) {
-        SearchMatch match = null;
+    private SearchMatch toSearchMatch(ContentScanner.FileResult result) {
+        SearchMatch match = new SearchMatch();
+        match.setFilePath(result.getPath());
+        match.setLastModified(result.getLastModified());
         
-        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-            String line;
-            int lineNumber = 0;
-            int matchCount = 0;
+        for (ContentScanner.LineMatch line : result.getMatches()) {
+            String content = line.getLine();
+            String displayLine = content.length() > MAX_LINE_LENGTH 
+                ? content.substring(0, MAX_LINE_LENGTH) + "..." 
+                : content;
             
-            while ((line = reader.readLine()) != null && matchCount < MAX_MATCHES_PER_FILE) {
-                lineNumber++;
-                
-                Matcher matcher = pattern.matcher(line);
-                if (matcher.find()) {
-                    if (match == null) {
-                        match = new SearchMatch();
-                        match.setFilePath(file);
-                        match.setLastModified(lastModified);
-                    }
-                    
-                    if (!filesOnly) {
-                        // 截断超长行
-                        String displayLine = line.length() > MAX_LINE_LENGTH 
-                            ? line.substring(0, MAX_LINE_LENGTH) + "..." 
-                            : line;
-                        
-                        match.addMatchedLine(new SearchMatch.MatchedLine(
-                            lineNumber, 
-                            displayLine, 
-                            matcher.start(), 
-                            matcher.end() - matcher.start()
-                        ));
-                        matchCount++;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            logger.debug("读取文件失败: {}", file, e);
+            match.addMatchedLine(new SearchMatch.MatchedLine(
+                line.getLineNumber(), 
+                displayLine, 
+                line.getStart(), 
+                line.getEnd() - line.getStart()
+            ));
         }
-        
         return match;
     }
     
     /**
-     * 判断是否为文本文件
+     * 计算相关性分数并排序，索引可用时计入正则中的词的 BM25 得分
      */
-    private boolean isTextFile(Path file) {
-        String name = file.getFileName().toString().toLowerCase();
-        
-        // 常见文本文件扩展名
-        String[] textExtensions = {
-            ".txt", ".md", ".java", ".js", ".ts", ".tsx", ".jsx",
-            ".py", ".rb", ".go", ".rs", ".c", ".cpp", ".h", ".hpp",
-            ".cs", ".php", ".html", ".css", ".scss", ".sass", ".less",
-            ".xml", ".json", ".yaml", ".yml", ".toml", ".ini", ".conf",
-            ".sh", ".bash", ".zsh", ".properties", ".gradle", ".kt", ".scala"
-        };
-        
-        for (String ext : textExtensions) {
-            if (name.endsWith(ext)) {
-                return true;
-            }
-        }
-        
-        // 无扩展名的常见文本文件
-        String[] textFiles = {
-            "readme", "license", "makefile", "dockerfile", 
-            "gemfile", "rakefile", "gradlew", "changelog"
-        };
-        
-        for (String textFile : textFiles) {
-            if (name.equals(textFile)) {
-                return true;
+    private void rankAndSort(List<SearchMatch> matches, SearchStrategy strategy) {
+        Map<Path, Double> bm25Scores = null;
+        if (tokenIndex != null && !matches.isEmpty()) {
+            List<Path> paths = new ArrayList<>(matches.size());
+            for (SearchMatch match : matches) {
+                paths.add(match.getFilePath());
             }
+            bm25Scores = tokenIndex.score(strategy.getRegex(), paths);
         }
-        
-        return false;
-    }
-    
-    /**
-     * 计算相关性分数并排序
-     */
-    private void rankAndSort(List<SearchMatch> matches) {
         for (SearchMatch match : matches) {
-            double score = calculateRelevanceScore(match);
-            match.setRelevanceScore(score);
+            double bm25 = bm25Scores != null ? bm25Scores.getOrDefault(match.getFilePath(), 0.0) : 0.0;
+            match.setRelevanceScore(calculateRelevanceScore(match, bm25));
         }
         
         // 按相关性分数降序排序
@@ -293,9 +470,10 @@ public class SearchExecutor {
      * 1. 匹配次数（更多匹配 = 更相关）
      * 2. 文件新鲜度（最近修改的文件得分更高）
      * 3. 文件路径深度（浅层文件可能更重要）
+     * 4. 代码词索引的 BM25 得分（文件名、声明中含有查询词的文件更相关）
      */
-    private double calculateRelevanceScore(SearchMatch match) {
-        double score = 0.0;
+    private double calculateRelevanceScore(SearchMatch match, double bm25Score) {
+        double score = bm25Score * BM25_WEIGHT;
         
         // 匹配次数权重（最多50行）
         int matchCount = match.getMatchedLines().size();
@@ -314,4 +492,19 @@ public class SearchExecutor {
         
         return score;
     }
+    
+    /**
+     * 预判搜索列出的文件
+     */
+    private static final class WarmListing {
+        final Path root;
+        final List<Path> files;
+        final long createdAt;
+        
+        WarmListing(Path root, List<Path> files, long createdAt) {
+            this.root = root;
+            this.files = files;
+            this.createdAt = createdAt;
+        }
+    }
 }
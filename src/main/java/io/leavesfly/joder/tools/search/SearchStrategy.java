@@ -100,6 +100,21 @@ public class SearchStrategy {
         this.filesOnly = filesOnly;
     }
     
+    /**
+     * 复制策略，缓存中的策略交给调用方前先复制，避免调用方的修改影响缓存
+     */
+    public SearchStrategy copy() {
+        SearchStrategy copy = new SearchStrategy();
+        copy.regex = regex;
+        copy.searchPath = searchPath;
+        copy.includePatterns = new ArrayList<>(includePatterns);
+        copy.excludePatterns = new ArrayList<>(excludePatterns);
+        copy.caseSensitive = caseSensitive;
+        copy.maxResults = maxResults;
+        copy.filesOnly = filesOnly;
+        return copy;
+    }
+    
     @Override
     public String toString() {
         return "SearchStrategy{" +
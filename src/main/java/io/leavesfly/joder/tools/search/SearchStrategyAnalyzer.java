@@ -15,16 +15,53 @@ import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 搜索策略分析器
  * 使用轻量级 LLM 将自然语言搜索意图转换为结构化搜索策略
+ * 
+ * <p>模型生成的策略按规范化后的意图与上下文缓存，重复的搜索不再请求模型；
+ * 解析失败时的降级策略不缓存。</p>
  */
 public class SearchStrategyAnalyzer {
     
     private static final Logger logger = LoggerFactory.getLogger(SearchStrategyAnalyzer.class);
     
+    private static final int MAX_CACHED_STRATEGIES = 128;
+    private static final int MAX_SPECULATIVE_TERMS = 8;
+    
+    /** 引号或反引号括起的字面量 */
+    private static final Pattern QUOTED = Pattern.compile("`([^`]+)`|\"([^\"]+)\"|'([^']+)'|“([^”]+)”|‘([^’]+)’");
+    
+    /** 标识符，允许 a.b.c 形式的限定名 */
+    private static final Pattern IDENTIFIER = Pattern.compile(
+        "[A-Za-z_$][A-Za-z0-9_$]*(?:\\.[A-Za-z_$][A-Za-z0-9_$]*)*");
+    
+    /** 描述搜索动作本身的常见英文词，不作为关键词 */
+    private static final Set<String> STOP_WORDS = Set.of(
+        "the", "and", "for", "with", "where", "what", "which", "how", "that", "this", "from", "into",
+        "find", "search", "show", "list", "look", "get", "all", "any", "code", "file", "files",
+        "function", "functions", "method", "methods", "class", "classes", "usage", "usages", "use",
+        "used", "uses", "call", "calls", "called", "defined", "definition", "implementation", "related",
+        "handle", "handles", "handling", "logic", "project", "module", "please"
+    );
+    
+    private final Map<String, SearchStrategy> strategyCache =
+        new LinkedHashMap<String, SearchStrategy>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SearchStrategy> eldest) {
+                return size() > MAX_CACHED_STRATEGIES;
+            }
+        };
+    
     private final ModelRouter modelRouter;
     private final ModelAdapterFactory modelAdapterFactory;
     private final ObjectMapper objectMapper;
@@ -47,6 +84,12 @@ public class SearchStrategyAnalyzer {
      * @return 搜索策略
      */
     public SearchStrategy analyze(String userIntent, String projectContext) {
+        SearchStrategy cached = getCached(userIntent, projectContext);
+        if (cached != null) {
+            logger.debug("命中搜索策略缓存: {}", userIntent);
+            return cached;
+        }
+        
         try {
             // 使用轻量级模型进行分析
             ModelAdapter adapter = modelRouter.routeModel(TaskType.SEARCH_OPTIMIZATION);
@@ -62,7 +105,11 @@ public class SearchStrategyAnalyzer {
             
             logger.debug("LLM 搜索策略分析响应: {}", response);
             
-            return parseStrategy(response);
+            SearchStrategy strategy = parseStrategy(response);
+            synchronized (strategyCache) {
+                strategyCache.put(cacheKey(userIntent, projectContext), strategy.copy());
+            }
+            return strategy;
             
         } catch (Exception e) {
             logger.error("分析搜索策略失败", e);
@@ -71,6 +118,111 @@ public class SearchStrategyAnalyzer {
         }
     }
     
+    /**
+     * 查找缓存的搜索策略
+     * 
+     * @param userIntent 用户的自然语言搜索意图
+     * @param projectContext 项目上下文信息（可选）
+     * @return 策略副本，未缓存时返回 null
+     */
+    public SearchStrategy getCached(String userIntent, String projectContext) {
+        synchronized (strategyCache) {
+            SearchStrategy cached = strategyCache.get(cacheKey(userIntent, projectContext));
+            return cached != null ? cached.copy() : null;
+        }
+    }
+    
+    /**
+     * 规范化意图与上下文：忽略大小写、首尾空白、连续空白和结尾的标点
+     */
+    private static String cacheKey(String userIntent, String projectContext) {
+        return normalize(userIntent) + "\u0000" + normalize(projectContext);
+    }
+    
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim()
+            .replaceAll("\\s+", " ")
+            .replaceAll("[\\p{Punct}。？！，、；：\\s]+$", "")
+            .toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * 从原始意图中直接推导字面量搜索策略，用于在模型分析期间先行搜索
+     * 
+     * <p>取引号内的字面量与形似代码的标识符（驼峰、下划线、含数字或限定名）；
+     * 没有这类词时退而取非常见词的英文单词。意图中没有可用的词时返回 null。</p>
+     * 
+     * @param userIntent 用户的自然语言搜索意图
+     * @return 多个关键词任一命中即匹配的不区分大小写策略，或 null
+     */
+    public static SearchStrategy createSpeculativeStrategy(String userIntent) {
+        if (userIntent == null || userIntent.isBlank()) {
+            return null;
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        Matcher quoted = QUOTED.matcher(userIntent);
+        while (quoted.find()) {
+            for (int group = 1; group <= quoted.groupCount(); group++) {
+                String literal = quoted.group(group);
+                if (literal != null && !literal.isBlank()) {
+                    terms.add(literal.trim());
+                }
+            }
+        }
+        
+        List<String> words = new ArrayList<>();
+        Matcher identifier = IDENTIFIER.matcher(QUOTED.matcher(userIntent).replaceAll(" "));
+        while (identifier.find()) {
+            String word = identifier.group();
+            if (word.length() >= 3 && !STOP_WORDS.contains(word.toLowerCase(Locale.ROOT))) {
+                if (looksLikeIdentifier(word)) {
+                    terms.add(word);
+                } else {
+                    words.add(word);
+                }
+            }
+        }
+        if (terms.isEmpty()) {
+            terms.addAll(words);
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        
+        List<String> alternatives = new ArrayList<>();
+        for (String term : terms) {
+            if (alternatives.size() == MAX_SPECULATIVE_TERMS) {
+                break;
+            }
+            alternatives.add(term.replaceAll("[\\[\\](){}.*+?^$|\\\\]", "\\\\$0"));
+        }
+        
+        SearchStrategy strategy = new SearchStrategy();
+        strategy.setRegex(String.join("|", alternatives));
+        strategy.setSearchPath(".");
+        strategy.setCaseSensitive(false);
+        return strategy;
+    }
+    
+    /**
+     * 驼峰、下划线、含数字或限定名的词更可能是代码中的名字
+     */
+    private static boolean looksLikeIdentifier(String word) {
+        if (word.indexOf('_') >= 0 || word.indexOf('.') >= 0 || word.indexOf('$') >= 0) {
+            return true;
+        }
+        for (int i = 1; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (Character.isDigit(c) || (Character.isUpperCase(c) && Character.isLowerCase(word.charAt(i - 1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     /**
      * 构建系统提示词
      */
@@ -1,20 +1,34 @@
 package io.leavesfly.joder.tools.search;
 
 import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.hooks.CancellationToken;
 import io.leavesfly.joder.tools.AbstractTool;
 import io.leavesfly.joder.tools.ToolResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * 智能代码搜索工具
  * 结合 LLM 理解用户意图并构建精确的搜索表达式
+ * 
+ * <p>等待模型生成策略的同时，用意图中直接出现的标识符和引号字面量在后台先行搜索，
+ * 同时列出候选文件供正式搜索复用。策略返回后执行正式搜索，并把落在策略范围内的预判结果合并进来：
+ * 两者都命中的文件排在最前，仅预判命中的文件补在最后。正式搜索失败时退回预判结果。
+ * 命中策略缓存时不请求模型，也不做预判搜索。</p>
+ * 
+ * <p>只要文件路径（filesOnly）且意图中有可用关键词时，先查代码词索引按 BM25 相关性排出文件，
+ * 有结果即直接返回，既不请求模型也不扫描文件内容；索引未就绪或没有命中时按上述流程搜索。</p>
  */
 public class SmartSearchTool extends AbstractTool {
     
@@ -54,7 +68,8 @@ public class SmartSearchTool extends AbstractTool {
                "  * \"搜索数据库配置相关的代码\"\n" +
                "- context: 项目上下文信息（可选），帮助更准确地理解搜索意图\n" +
                "- maxResults: 最大返回结果数（可选，默认100）\n" +
-               "- filesOnly: 是否只返回文件路径不显示匹配内容（可选，默认false）";
+               "- filesOnly: 是否只返回文件路径不显示匹配内容（可选，默认false），" +
+               "索引可用时直接按相关性排序返回，响应更快";
     }
     
     @Override
@@ -80,27 +95,66 @@ public class SmartSearchTool extends AbstractTool {
             logger.info("开始智能搜索: query={}, maxResults={}, filesOnly={}", 
                        query, maxResults, filesOnly);
             
-            // 第一步：使用 LLM 分析搜索意图并生成策略
-            logger.debug("分析搜索意图...");
-            SearchStrategy strategy = strategyAnalyzer.analyze(query, context);
-            strategy.setMaxResults(maxResults);
-            strategy.setFilesOnly(filesOnly);
-            
-            logger.info("生成搜索策略: {}", strategy);
-            
-            // 第二步：执行搜索
-            logger.debug("执行搜索...");
             Path workingDir = Paths.get(workingDirectory);
-            List<SearchMatch> matches = searchExecutor.execute(strategy, workingDir);
-            
-            long duration = System.currentTimeMillis() - startTime;
-            
-            // 第三步：格式化结果
-            String result = formatResults(matches, workingDir, strategy, duration);
-            
-            logger.info("搜索完成: 找到 {} 个匹配，耗时 {}ms", matches.size(), duration);
+            if (filesOnly) {
+                ToolResult ranked = rankFromIndex(query, maxResults, workingDir, startTime);
+                if (ranked != null) {
+                    return ranked;
+                }
+            }
             
-            return ToolResult.success(result);
+            SearchStrategy strategy = strategyAnalyzer.getCached(query, context);
+            boolean cached = strategy != null;
+            Speculation speculation = null;
+            try {
+                if (!cached) {
+                    // 第一步：模型分析意图期间先行执行关键词搜索
+                    speculation = startSpeculation(query, maxResults, filesOnly, workingDir);
+                    logger.debug("分析搜索意图...");
+                    strategy = strategyAnalyzer.analyze(query, context);
+                }
+                strategy.setMaxResults(maxResults);
+                strategy.setFilesOnly(filesOnly);
+                
+                logger.info("生成搜索策略: {}{}", strategy, cached ? "（缓存）" : "");
+                
+                // 第二步：执行搜索，复用预判搜索列出的文件
+                logger.debug("执行搜索...");
+                List<SearchMatch> matches;
+                int merged = 0;
+                boolean speculativeOnly = false;
+                try {
+                    matches = searchExecutor.execute(strategy, workingDir);
+                    List<SearchMatch> speculative = speculation != null ? speculation.resultIfDone() : null;
+                    if (speculative != null) {
+                        int before = matches.size();
+                        matches = merge(matches, speculative, strategy, workingDir);
+                        merged = matches.size() - before;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    List<SearchMatch> speculative = speculation != null ? speculation.await() : null;
+                    if (speculative == null || speculative.isEmpty()) {
+                        throw e;
+                    }
+                    logger.warn("按策略搜索失败，使用预判搜索结果: {}", e.getMessage());
+                    matches = speculative;
+                    speculativeOnly = true;
+                }
+                
+                long duration = System.currentTimeMillis() - startTime;
+                
+                // 第三步：格式化结果
+                String result = formatResults(matches, workingDir, strategy, duration,
+                    describeSource(cached, speculation, merged, speculativeOnly));
+                
+                logger.info("搜索完成: 找到 {} 个匹配，耗时 {}ms", matches.size(), duration);
+                
+                return ToolResult.success(result);
+            } finally {
+                if (speculation != null) {
+                    speculation.cancel();
+                }
+            }
             
         } catch (Exception e) {
             logger.error("智能搜索失败", e);
@@ -108,11 +162,98 @@ public class SmartSearchTool extends AbstractTool {
         }
     }
     
+    /**
+     * 用意图中的关键词查询代码词索引，按 BM25 相关性返回文件；索引不可用或没有命中时返回 null
+     */
+    private ToolResult rankFromIndex(String query, int maxResults, Path workingDir, long startTime) {
+        SearchStrategy keywords = SearchStrategyAnalyzer.createSpeculativeStrategy(query);
+        if (keywords == null) {
+            return null;
+        }
+        keywords.setMaxResults(maxResults);
+        keywords.setFilesOnly(true);
+        List<SearchMatch> matches = searchExecutor.rankFiles(keywords, workingDir);
+        if (matches == null || matches.isEmpty()) {
+            return null;
+        }
+        long duration = System.currentTimeMillis() - startTime;
+        logger.info("代码词索引排序完成: {} 个文件，耗时 {}ms", matches.size(), duration);
+        return ToolResult.success(formatResults(matches, workingDir, keywords, duration,
+            "代码词索引 BM25 排序（未扫描文件内容）"));
+    }
+    
+    /**
+     * 用意图中的关键词在后台先行搜索，意图中没有可用关键词时返回 null
+     */
+    private Speculation startSpeculation(String query, int maxResults, boolean filesOnly, Path workingDir) {
+        SearchStrategy speculative = SearchStrategyAnalyzer.createSpeculativeStrategy(query);
+        if (speculative == null) {
+            return null;
+        }
+        speculative.setMaxResults(maxResults);
+        speculative.setFilesOnly(filesOnly);
+        CancellationToken token = CancellationToken.current().child("speculative-search");
+        CompletableFuture<List<SearchMatch>> future = searchExecutor.executeSpeculative(speculative, workingDir, token);
+        if (future == null) {
+            token.close();
+            return null;
+        }
+        logger.debug("预判搜索: {}", speculative.getRegex());
+        return new Speculation(speculative, token, future);
+    }
+    
+    /**
+     * 合并预判结果：两者都命中的文件在前，其余正式结果其次，仅预判命中且在策略范围内的文件补在最后
+     */
+    private List<SearchMatch> merge(List<SearchMatch> matches, List<SearchMatch> speculative,
+                                    SearchStrategy strategy, Path workingDir) {
+        Map<Path, SearchMatch> extra = new LinkedHashMap<>();
+        for (SearchMatch match : speculative) {
+            if (searchExecutor.isInScope(strategy, workingDir, match.getFilePath())) {
+                extra.put(match.getFilePath(), match);
+            }
+        }
+        if (extra.isEmpty()) {
+            return matches;
+        }
+        List<SearchMatch> both = new ArrayList<>();
+        List<SearchMatch> rest = new ArrayList<>();
+        for (SearchMatch match : matches) {
+            (extra.remove(match.getFilePath()) != null ? both : rest).add(match);
+        }
+        List<SearchMatch> result = new ArrayList<>(both);
+        result.addAll(rest);
+        for (SearchMatch match : extra.values()) {
+            if (result.size() >= strategy.getMaxResults()) {
+                break;
+            }
+            result.add(match);
+        }
+        return result;
+    }
+    
+    /**
+     * 描述策略来源与预判搜索的贡献，没有可说明的内容时返回 null
+     */
+    private String describeSource(boolean cached, Speculation speculation, int merged, boolean speculativeOnly) {
+        if (cached) {
+            return "缓存（跳过模型分析）";
+        }
+        if (speculation == null) {
+            return null;
+        }
+        String regex = speculation.strategy.getRegex();
+        if (speculativeOnly) {
+            return "按策略搜索失败，显示预判搜索 " + regex + " 的结果";
+        }
+        return merged > 0 ? "预判搜索 " + regex + " 补充 " + merged + " 个文件" : null;
+    }
+    
     /**
      * 格式化搜索结果
      */
     private String formatResults(List<SearchMatch> matches, Path workingDir, 
-                                 SearchStrategy strategy, long duration) {
+                                 SearchStrategy strategy, long duration, String source) {
         StringBuilder result = new StringBuilder();
         
         // 显示搜索策略
@@ -124,6 +265,9 @@ public class SmartSearchTool extends AbstractTool {
         if (!strategy.getExcludePatterns().isEmpty()) {
             result.append("  - 排除模式: ").append(String.join(", ", strategy.getExcludePatterns())).append("\n");
         }
+        if (source != null) {
+            result.append("  - 说明: ").append(source).append("\n");
+        }
         result.append("\n");
         
         // 显示结果统计
@@ -197,4 +341,48 @@ public class SmartSearchTool extends AbstractTool {
             return "❌ 搜索失败: " + result.getError();
         }
     }
+    
+    /**
+     * 进行中的预判搜索
+     */
+    private static final class Speculation {
+        final SearchStrategy strategy;
+        final CancellationToken token;
+        final CompletableFuture<List<SearchMatch>> future;
+        
+        Speculation(SearchStrategy strategy, CancellationToken token, CompletableFuture<List<SearchMatch>> future) {
+            this.strategy = strategy;
+            this.token = token;
+            this.future = future;
+        }
+        
+        /**
+         * 已正常完成时返回结果，否则返回 null（不等待）
+         */
+        List<SearchMatch> resultIfDone() {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                return null;
+            }
+            return future.join();
+        }
+        
+        /**
+         * 等待预判搜索完成，失败时返回 null
+         */
+        List<SearchMatch> await() {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+        
+        void cancel() {
+            token.cancel("预判搜索不再需要");
+            token.close();
+        }
+    }
 }
@@ -0,0 +1,310 @@
+package io.leavesfly.joder.tools.symbol;
+
+import io.leavesfly.joder.WorkingDirectory;
+import io.leavesfly.joder.services.index.Symbol;
+import io.leavesfly.joder.services.index.SymbolIndex;
+import io.leavesfly.joder.services.index.SymbolKind;
+import io.leavesfly.joder.services.index.TokenIndex;
+import io.leavesfly.joder.tools.AbstractTool;
+import io.leavesfly.joder.tools.ToolResult;
+
+import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 符号定义跳转工具
+ *
+ * <p>基于 {@link SymbolIndex} 回答三类查询：按名称查定义、按名称查引用、列出文件大纲。
+ * 查定义只做一次索引查找，再读取命中文件的声明行；查引用先用 {@link TokenIndex} 找出包含该标识符的文件，
+ * 只在这些文件中按整词扫描。索引未就绪时提示稍后重试或改用 Grep。</p>
+ */
+public class GoToDefinitionTool extends AbstractTool {
+
+    private static final int DEFAULT_MAX_RESULTS = 50;
+    private static final long MAX_SCAN_BYTES = 1024 * 1024; // 查引用时跳过更大的文件
+    private static final int MAX_LINE_LENGTH = 200;
+
+    private final Path root;
+    private final SymbolIndex symbolIndex;
+    private final TokenIndex tokenIndex;
+
+    @Inject
+    public GoToDefinitionTool(@WorkingDirectory String workingDirectory, SymbolIndex symbolIndex,
+                              TokenIndex tokenIndex) {
+        this.root = Paths.get(workingDirectory).toAbsolutePath().normalize();
+        this.symbolIndex = symbolIndex;
+        this.tokenIndex = tokenIndex;
+    }
+
+    @Override
+    public String getName() {
+        return "GoToDefinition";
+    }
+
+    @Override
+    public String getDescription() {
+        return "按符号名查找定义、引用或列出文件结构，基于后台符号索引，响应很快。\n" +
+               "- 支持 Java、Kotlin、TypeScript/JavaScript、Python、Go\n" +
+               "- 收录类、接口、枚举、方法、函数与字段的声明位置和行范围\n" +
+               "- 文件修改后自动增量更新\n\n" +
+               "参数:\n" +
+               "- action: definition（默认，查定义）、references（查引用）或 outline（文件大纲）\n" +
+               "- symbol: 符号名（definition/references 必需），可写作 UserService.findUser 限定所属类型\n" +
+               "- file: 文件路径（outline 必需）\n" +
+               "- kind: 只返回某种符号（可选）: class、interface、enum、type、method、function、field、variable\n" +
+               "- maxResults: 最大返回结果数（可选，默认50）";
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public ToolResult call(Map<String, Object> input) {
+        try {
+            String action = getString(input, "action", "definition").trim().toLowerCase(Locale.ROOT);
+            int maxResults = Math.max(1, getInt(input, "maxResults", DEFAULT_MAX_RESULTS));
+            SymbolKind kind = parseKind(getString(input, "kind"));
+            switch (action) {
+                case "definition":
+                    return findDefinitions(getString(input, "symbol"), kind, maxResults);
+                case "references":
+                    return findReferences(getString(input, "symbol"), maxResults);
+                case "outline":
+                    return outline(getString(input, "file"), kind);
+                default:
+                    return ToolResult.error("未知的 action: " + action + "（可选 definition、references、outline）");
+            }
+        } catch (IllegalArgumentException e) {
+            return ToolResult.error(e.getMessage());
+        } catch (Exception e) {
+            logger.error("符号查询失败", e);
+            return ToolResult.error("符号查询失败: " + e.getMessage());
+        }
+    }
+
+    private ToolResult findDefinitions(String name, SymbolKind kind, int maxResults) {
+        if (name == null || name.trim().isEmpty()) {
+            return ToolResult.error("symbol 不能为空");
+        }
+        long startTime = System.currentTimeMillis();
+        // 按种类过滤时多取一些，过滤后再截断
+        List<Symbol> symbols = symbolIndex.findDefinitions(name, kind != null ? maxResults * 4 : maxResults);
+        if (symbols == null) {
+            return notReady();
+        }
+        if (kind != null) {
+            symbols.removeIf(symbol -> symbol.getKind() != kind);
+            if (symbols.size() > maxResults) {
+                symbols = symbols.subList(0, maxResults);
+            }
+        }
+        if (symbols.isEmpty()) {
+            return ToolResult.success("未找到 " + name.trim() + " 的定义");
+        }
+
+        Map<String, List<String>> lines = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        sb.append("找到 ").append(symbols.size()).append(" 个 ").append(name.trim()).append(" 的定义:\n");
+        for (Symbol symbol : symbols) {
+            sb.append("\n").append(describe(symbol)).append("  ").append(symbol.getPath())
+                .append(":").append(formatRange(symbol)).append("\n");
+            String declaration = lineAt(lines, symbol.getPath(), symbol.getStartLine());
+            if (declaration != null) {
+                sb.append("    ").append(declaration).append("\n");
+            }
+        }
+        logger.debug("查找定义 {} 耗时 {}ms", name, System.currentTimeMillis() - startTime);
+        return ToolResult.success(sb.toString());
+    }
+
+    private ToolResult findReferences(String name, int maxResults) {
+        if (name == null || name.trim().isEmpty()) {
+            return ToolResult.error("symbol 不能为空");
+        }
+        String trimmed = name.trim();
+        String simpleName = trimmed.substring(Math.max(Math.max(trimmed.lastIndexOf('.'), trimmed.lastIndexOf('#')),
+            trimmed.lastIndexOf(':')) + 1);
+        if (simpleName.isEmpty()) {
+            return ToolResult.error("symbol 不能为空");
+        }
+
+        List<Path> candidates = tokenIndex != null ? tokenIndex.filesContaining(simpleName, root) : null;
+        if (candidates == null) {
+            candidates = symbolIndex.sourceFiles();
+        }
+        if (candidates == null) {
+            return notReady();
+        }
+        candidates.sort(null);
+
+        // 定义所在行单独标出
+        Set<String> definitionLines = new HashSet<>();
+        List<Symbol> definitions = symbolIndex.findDefinitions(simpleName, Integer.MAX_VALUE);
+        if (definitions != null) {
+            for (Symbol symbol : definitions) {
+                if (symbol.getName().equals(simpleName)) {
+                    definitionLines.add(symbol.getPath() + ":" + symbol.getStartLine());
+                }
+            }
+        }
+
+        Pattern word = Pattern.compile("(?<![\\w$])" + Pattern.quote(simpleName) + "(?![\\w$])");
+        StringBuilder sb = new StringBuilder();
+        int found = 0;
+        int fileCount = 0;
+        boolean truncated = false;
+        for (Path file : candidates) {
+            if (truncated) {
+                break;
+            }
+            String path = root.relativize(file).toString();
+            try {
+                if (Files.size(file) > MAX_SCAN_BYTES) {
+                    continue;
+                }
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    int lineNumber = 0;
+                    boolean header = false;
+                    while ((line = reader.readLine()) != null) {
+                        lineNumber++;
+                        if (!word.matcher(line).find()) {
+                            continue;
+                        }
+                        if (found == maxResults) {
+                            truncated = true;
+                            break;
+                        }
+                        if (!header) {
+                            sb.append("\n").append(path).append("\n");
+                            header = true;
+                            fileCount++;
+                        }
+                        sb.append("  ").append(lineNumber).append(": ").append(abbreviate(line.trim()));
+                        if (definitionLines.contains(path + ":" + lineNumber)) {
+                            sb.append("  [定义]");
+                        }
+                        sb.append("\n");
+                        found++;
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("读取文件失败: {}: {}", file, e.getMessage());
+            }
+        }
+
+        if (found == 0) {
+            return ToolResult.success("未找到 " + simpleName + " 的引用");
+        }
+        StringBuilder result = new StringBuilder();
+        result.append(simpleName).append(" 出现在 ").append(fileCount).append(" 个文件的 ")
+            .append(found).append(" 行中").append(truncated ? "（已截断）" : "").append(":\n");
+        result.append(sb);
+        return ToolResult.success(result.toString());
+    }
+
+    private ToolResult outline(String file, SymbolKind kind) {
+        if (file == null || file.trim().isEmpty()) {
+            return ToolResult.error("file 不能为空");
+        }
+        Path path = root.resolve(file.trim()).normalize();
+        if (!Files.isRegularFile(path)) {
+            return ToolResult.error("文件不存在: " + file);
+        }
+        if (!SymbolIndex.isSupported(path)) {
+            return ToolResult.error("不支持的文件类型: " + file);
+        }
+        List<Symbol> symbols = symbolIndex.outline(path);
+        if (symbols == null) {
+            return ToolResult.error("无法解析文件: " + file);
+        }
+
+        String displayPath = path.startsWith(root) ? root.relativize(path).toString() : path.toString();
+        StringBuilder sb = new StringBuilder();
+        sb.append(displayPath).append(" 的结构（").append(symbols.size()).append(" 个符号）:\n");
+        // 按行范围的包含关系缩进
+        Deque<Integer> enclosingEnds = new ArrayDeque<>();
+        for (Symbol symbol : symbols) {
+            while (!enclosingEnds.isEmpty() && enclosingEnds.peek() < symbol.getStartLine()) {
+                enclosingEnds.pop();
+            }
+            if (kind == null || symbol.getKind() == kind) {
+                sb.append("  ".repeat(enclosingEnds.size()))
+                    .append(symbol.getKind().getDisplayName()).append(" ").append(symbol.getName())
+                    .append("  ").append(formatRange(symbol)).append("\n");
+            }
+            if (symbol.getEndLine() > symbol.getStartLine()) {
+                enclosingEnds.push(symbol.getEndLine());
+            }
+        }
+        return ToolResult.success(sb.toString());
+    }
+
+    private ToolResult notReady() {
+        return ToolResult.success("符号索引正在构建或更新中，请稍后重试，或使用 Grep 搜索");
+    }
+
+    /**
+     * 读取文件中的一行，同一文件只读取一次
+     */
+    private String lineAt(Map<String, List<String>> cache, String path, int lineNumber) {
+        List<String> lines = cache.computeIfAbsent(path, p -> {
+            try {
+                return Files.readAllLines(root.resolve(p), StandardCharsets.UTF_8);
+            } catch (IOException | RuntimeException e) {
+                return List.of();
+            }
+        });
+        return lineNumber >= 1 && lineNumber <= lines.size() ? abbreviate(lines.get(lineNumber - 1).trim()) : null;
+    }
+
+    private static SymbolKind parseKind(String kind) {
+        if (kind == null || kind.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return SymbolKind.valueOf(kind.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("未知的符号种类: " + kind);
+        }
+    }
+
+    private static String describe(Symbol symbol) {
+        String name = symbol.getContainer() != null ? symbol.getContainer() + "." + symbol.getName() : symbol.getName();
+        return symbol.getKind().getDisplayName() + " " + name;
+    }
+
+    private static String formatRange(Symbol symbol) {
+        return symbol.getEndLine() > symbol.getStartLine()
+            ? symbol.getStartLine() + "-" + symbol.getEndLine()
+            : String.valueOf(symbol.getStartLine());
+    }
+
+    private static String abbreviate(String line) {
+        return line.length() > MAX_LINE_LENGTH ? line.substring(0, MAX_LINE_LENGTH) + "..." : line;
+    }
+
+    @Override
+    public String renderToolUseMessage(Map<String, Object> input) {
+        String action = getString(input, "action", "definition");
+        Object target = "outline".equals(action) ? input.get("file") : input.get("symbol");
+        return String.format("🔎 符号查询 (%s): %s", action, target);
+    }
+}
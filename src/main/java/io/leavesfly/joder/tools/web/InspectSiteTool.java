@@ -1,7 +1,9 @@
 package io.leavesfly.joder.tools.web;
 
+import io.leavesfly.joder.hooks.CancellationToken;
 import io.leavesfly.joder.tools.Tool;
 import io.leavesfly.joder.tools.ToolResult;
+import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -130,7 +132,9 @@ public class InspectSiteTool implements Tool {
             long startTime = System.currentTimeMillis();
             
             // 发送请求
-            try (Response response = httpClient.newCall(request).execute()) {
+            Call call = httpClient.newCall(request);
+            Runnable detach = CancellationToken.current().onCancel(call::cancel);
+            try (Response response = call.execute()) {
                 long responseTime = System.currentTimeMillis() - startTime;
                 
                 // 获取响应信息
@@ -189,6 +193,8 @@ public class InspectSiteTool implements Tool {
                 report.append("\n═".repeat(60)).append("\n");
                 
                 return ToolResult.success(report.toString());
+            } finally {
+                detach.run();
             }
             
         } catch (IOException e) {
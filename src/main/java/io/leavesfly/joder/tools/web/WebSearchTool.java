@@ -1,7 +1,9 @@
 package io.leavesfly.joder.tools.web;
 
+import io.leavesfly.joder.hooks.CancellationToken;
 import io.leavesfly.joder.tools.AbstractTool;
 import io.leavesfly.joder.tools.ToolResult;
+import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -100,13 +102,17 @@ public class WebSearchTool extends AbstractTool {
                 .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
                 .build();
         
-        try (Response response = httpClient.newCall(request).execute()) {
+        Call call = httpClient.newCall(request);
+        Runnable detach = CancellationToken.current().onCancel(call::cancel);
+        try (Response response = call.execute()) {
             if (!response.isSuccessful()) {
                 throw new IOException("HTTP " + response.code());
             }
             
             String html = response.body().string();
             return parseSearchResults(html, maxResults);
+        } finally {
+            detach.run();
         }
     }
     
@@ -13,6 +13,7 @@ import javax.inject.Singleton;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -167,6 +168,30 @@ public class MessageRenderer {
         return "\n⚠ Warning: " + warningMessage + "\n";
     }
     
+    /**
+     * 创建工具流式输出的打印器
+     * 输出块可能在行中间断开，打印器记录行首状态，为每一行加上缩进前缀
+     */
+    public Consumer<String> createToolOutputPrinter() {
+        boolean[] atLineStart = {true};
+        return chunk -> {
+            StringBuilder out = new StringBuilder(chunk.length() + 16);
+            for (int i = 0; i < chunk.length(); i++) {
+                char c = chunk.charAt(i);
+                if (atLineStart[0]) {
+                    out.append("  │ ");
+                    atLineStart[0] = false;
+                }
+                out.append(c);
+                if (c == '\n') {
+                    atLineStart[0] = true;
+                }
+            }
+            System.out.print(out);
+            System.out.flush();
+        };
+    }
+    
     /**
      * 渲染信息提示
      */
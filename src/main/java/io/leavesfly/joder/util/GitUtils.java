@@ -1,14 +1,20 @@
 package io.leavesfly.joder.util;
 
+import io.leavesfly.joder.services.git.GitRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
  * Git 工具类
  * 对应 Kode 的 git.ts
+ * 
+ * <p>优先用 {@link GitRepository} 直接读取 .git 目录，不启动进程；
+ * 仓库使用了不支持的格式或读取失败时才改用 git 命令。</p>
  */
 public class GitUtils {
     
@@ -82,6 +88,11 @@ public class GitUtils {
         String cacheKey = workingDir != null ? workingDir : System.getProperty("user.dir");
         
         return isGitCache.computeIfAbsent(cacheKey, dir -> {
+            try {
+                return GitRepository.open(Paths.get(dir)) != null;
+            } catch (IOException e) {
+                logFallback(e);
+            }
             ProcessUtils.ProcessResult result = ProcessUtils.execNoThrow(
                 "git",
                 new String[]{"rev-parse", "--is-inside-work-tree"},
@@ -109,6 +120,14 @@ public class GitUtils {
      * @return commit hash
      */
     public static String getHead(String workingDir) {
+        try {
+            GitRepository repository = openRepository(workingDir);
+            String head = repository != null ? repository.getHead() : null;
+            return head != null ? head : "";
+        } catch (IOException e) {
+            logFallback(e);
+        }
+        
         ProcessUtils.ProcessResult result = ProcessUtils.execNoThrow(
             "git",
             new String[]{"rev-parse", "HEAD"},
@@ -136,6 +155,13 @@ public class GitUtils {
      * @return 分支名称
      */
     public static String getBranch(String workingDir) {
+        try {
+            GitRepository repository = openRepository(workingDir);
+            return repository != null ? repository.getBranch() : "";
+        } catch (IOException e) {
+            logFallback(e);
+        }
+        
         ProcessUtils.ProcessResult result = ProcessUtils.execNoThrow(
             "git",
             new String[]{"rev-parse", "--abbrev-ref", "HEAD"},
@@ -163,6 +189,13 @@ public class GitUtils {
      * @return 远程仓库 URL，失败返回 null
      */
     public static String getRemoteUrl(String workingDir) {
+        try {
+            GitRepository repository = openRepository(workingDir);
+            return repository != null ? repository.getRemoteUrl("origin") : null;
+        } catch (IOException e) {
+            logFallback(e);
+        }
+        
         ProcessUtils.ProcessResult result = ProcessUtils.execNoThrow(
             "git",
             new String[]{"remote", "get-url", "origin"},
@@ -190,6 +223,13 @@ public class GitUtils {
      * @return 是否在远程分支上
      */
     public static boolean isHeadOnRemote(String workingDir) {
+        try {
+            GitRepository repository = openRepository(workingDir);
+            return repository != null && repository.isHeadOnRemote();
+        } catch (IOException e) {
+            logFallback(e);
+        }
+        
         ProcessUtils.ProcessResult result = ProcessUtils.execNoThrow(
             "git",
             new String[]{"rev-parse", "@{u}"},
@@ -217,6 +257,13 @@ public class GitUtils {
      * @return 是否干净
      */
     public static boolean isClean(String workingDir) {
+        try {
+            GitRepository repository = openRepository(workingDir);
+            return repository != null && repository.isClean();
+        } catch (IOException e) {
+            logFallback(e);
+        }
+        
         ProcessUtils.ProcessResult result = ProcessUtils.execNoThrow(
             "git",
             new String[]{"status", "--porcelain"},
@@ -249,7 +296,23 @@ public class GitUtils {
      */
     public static GitRepoState getGitState(String workingDir) {
         try {
-            // 并行执行所有 Git 命令
+            GitRepository repository = openRepository(workingDir);
+            if (repository == null) {
+                return new GitRepoState("", "", null, false, false);
+            }
+            String head = repository.getHead();
+            return new GitRepoState(
+                head != null ? head : "",
+                repository.getBranch(),
+                repository.getRemoteUrl("origin"),
+                repository.isHeadOnRemote(),
+                repository.isClean()
+            );
+        } catch (IOException e) {
+            logFallback(e);
+        }
+        
+        try {
             String commitHash = getHead(workingDir);
             String branchName = getBranch(workingDir);
             String remoteUrl = getRemoteUrl(workingDir);
@@ -270,6 +333,19 @@ public class GitUtils {
         }
     }
     
+    /**
+     * 打开 workingDir 所在的仓库
+     * 
+     * @return 仓库，不在 Git 工作区内时返回 null
+     */
+    private static GitRepository openRepository(String workingDir) throws IOException {
+        return GitRepository.open(Paths.get(workingDir != null ? workingDir : System.getProperty("user.dir")));
+    }
+    
+    private static void logFallback(IOException e) {
+        logger.debug("直接读取 Git 仓库失败，改用 git 命令: {}", e.getMessage());
+    }
+    
     /**
      * 清除缓存
      */
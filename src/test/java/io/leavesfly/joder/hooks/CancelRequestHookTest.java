@@ -0,0 +1,60 @@
+package io.leavesfly.joder.hooks;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CancelRequestHook 测试
+ */
+@DisplayName("CancelRequestHook 请求取消钩子测试")
+class CancelRequestHookTest {
+    
+    @Test
+    @DisplayName("取消状态应由当前轮次的令牌决定")
+    void testCancelledStateFollowsTurnToken() {
+        CancelRequestHook hook = new CancelRequestHook();
+        CancellationToken turn = hook.getTurnToken();
+        
+        turn.cancel("外部取消");
+        
+        assertTrue(hook.isCancelled());
+        assertThrows(CancelRequestHook.CancellationException.class, hook::throwIfCancelled);
+        
+        hook.reset();
+        
+        assertFalse(hook.isCancelled());
+        assertNotSame(turn, hook.getTurnToken());
+    }
+    
+    @Test
+    @DisplayName("重置应取消仍挂在旧轮次下的子令牌")
+    void testResetCancelsOrphanedChildren() {
+        CancelRequestHook hook = new CancelRequestHook();
+        CancellationToken batch = hook.getTurnToken().child("batch");
+        
+        hook.beginTurn();
+        
+        assertTrue(batch.isCancelled());
+        assertFalse(hook.isCancelled());
+        assertFalse(hook.getTurnToken().child("batch").isCancelled());
+    }
+    
+    @Test
+    @DisplayName("同一轮次内的重复取消只触发一次回调")
+    void testCallbackRunsOncePerTurn() {
+        CancelRequestHook hook = new CancelRequestHook();
+        AtomicInteger calls = new AtomicInteger();
+        hook.setOnCancel(calls::incrementAndGet);
+        
+        hook.cancel();
+        hook.cancel();
+        hook.beginTurn();
+        hook.cancel();
+        
+        assertEquals(2, calls.get());
+    }
+}
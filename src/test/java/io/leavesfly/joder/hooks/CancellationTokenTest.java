@@ -0,0 +1,137 @@
+package io.leavesfly.joder.hooks;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CancellationToken 测试
+ */
+@DisplayName("CancellationToken 层级取消令牌测试")
+class CancellationTokenTest {
+    
+    @Test
+    @DisplayName("取消父令牌应级联到所有子令牌")
+    void testCancelCascadesToChildren() {
+        CancellationToken turn = CancellationToken.root("turn");
+        CancellationToken batch = turn.child("batch");
+        CancellationToken tool = batch.child("GrepTool");
+        
+        turn.cancel("执行已取消");
+        
+        assertTrue(batch.isCancelled());
+        assertTrue(tool.isCancelled());
+        assertEquals("执行已取消", tool.getReason());
+    }
+    
+    @Test
+    @DisplayName("取消子令牌不影响父令牌与兄弟令牌")
+    void testChildCancelIsIsolated() {
+        CancellationToken batch = CancellationToken.root("batch");
+        CancellationToken slow = batch.child("slow");
+        CancellationToken fast = batch.child("fast");
+        
+        slow.cancel("执行超时");
+        
+        assertTrue(slow.isCancelled());
+        assertFalse(fast.isCancelled());
+        assertFalse(batch.isCancelled());
+    }
+    
+    @Test
+    @DisplayName("回调只执行一次，已取消时注册立即执行")
+    void testListeners() {
+        CancellationToken token = CancellationToken.root("turn");
+        AtomicInteger count = new AtomicInteger();
+        
+        token.onCancel(count::incrementAndGet);
+        token.cancel("a");
+        token.cancel("b");
+        assertEquals(1, count.get());
+        assertEquals("a", token.getReason());
+        
+        token.onCancel(count::incrementAndGet);
+        assertEquals(2, count.get());
+    }
+    
+    @Test
+    @DisplayName("注销后的回调不再执行")
+    void testUnregister() {
+        CancellationToken token = CancellationToken.root("turn");
+        AtomicInteger count = new AtomicInteger();
+        
+        Runnable unregister = token.onCancel(count::incrementAndGet);
+        unregister.run();
+        token.cancel("x");
+        
+        assertEquals(0, count.get());
+    }
+    
+    @Test
+    @DisplayName("已取消的父令牌派生的子令牌应立即处于取消状态")
+    void testChildOfCancelledParent() {
+        CancellationToken turn = CancellationToken.root("turn");
+        turn.cancel("执行已取消");
+        
+        assertTrue(turn.child("tool").isCancelled());
+    }
+    
+    @Test
+    @DisplayName("关闭后的子令牌不再接收父级取消")
+    void testClose() {
+        CancellationToken turn = CancellationToken.root("turn");
+        CancellationToken tool = turn.child("tool");
+        tool.close();
+        
+        turn.cancel("执行已取消");
+        
+        assertFalse(tool.isCancelled());
+    }
+    
+    @Test
+    @DisplayName("线程绑定与恢复")
+    void testCurrentBinding() {
+        assertSame(CancellationToken.NONE, CancellationToken.current());
+        
+        CancellationToken token = CancellationToken.root("turn");
+        CancellationToken previous = CancellationToken.bind(token);
+        assertSame(token, CancellationToken.current());
+        
+        CancellationToken.bind(previous);
+        assertSame(CancellationToken.NONE, CancellationToken.current());
+        
+        CancellationToken.NONE.cancel("ignored");
+        assertFalse(CancellationToken.NONE.isCancelled());
+    }
+    
+    @Test
+    @DisplayName("并发取消时已取消的令牌总能读到原因")
+    void testReasonVisibleWithCancelledState() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            CancellationToken turn = CancellationToken.root("turn");
+            List<String> seen = new CopyOnWriteArrayList<>();
+            turn.onCancel(() -> seen.add(String.valueOf(turn.getReason())));
+            Thread canceller = new Thread(() -> turn.cancel("超时"));
+            canceller.start();
+            while (!turn.isCancelled()) {
+                CancellationToken child = turn.child("tool");
+                if (child.isCancelled()) {
+                    assertEquals("超时", child.getReason());
+                }
+            }
+            assertEquals("超时", turn.getReason());
+            assertEquals("超时", turn.child("late").getReason());
+            canceller.join();
+            assertEquals(List.of("超时"), seen);
+        }
+        
+        CancellationToken token = CancellationToken.root("turn");
+        token.cancel(null);
+        assertNotNull(token.getReason());
+    }
+}
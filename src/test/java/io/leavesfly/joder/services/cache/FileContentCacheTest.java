@@ -1,14 +1,20 @@
 package io.leavesfly.joder.services.cache;
 
+import io.leavesfly.joder.services.freshness.FileChangeBus;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -197,4 +203,125 @@ class FileContentCacheTest {
         assertTrue(statsStr.contains("hits=2"));
         assertTrue(statsStr.contains("misses=1"));
     }
+    
+    @Test
+    void testReadRange() throws IOException {
+        Path file = tempDir.resolve("range.txt");
+        Files.writeString(file, "a\r\nb\rc\n\nd");
+        
+        assertEquals(Files.readAllLines(file), cache.readLines(file.toString()));
+        assertEquals(List.of("b", "c"), cache.readRange(file.toString(), 1, 3));
+        assertEquals(List.of("", "d"), cache.readRange(file.toString(), 3, 100));
+        assertTrue(cache.readRange(file.toString(), 5, 10).isEmpty());
+        // 范围读取与整体读取共享同一份缓存
+        assertEquals(1, cache.getStats().misses);
+        assertEquals(3, cache.getStats().hits);
+    }
+    
+    @Test
+    void testBoundedByBytes() throws IOException {
+        FileContentCache small = new FileContentCache(64 * 1024);
+        for (int i = 0; i < 20; i++) {
+            Path file = tempDir.resolve("file" + i + ".txt");
+            Files.writeString(file, ("row " + i + "\n").repeat(1000));
+            small.readLines(file.toString());
+        }
+        
+        FileContentCache.CacheStats stats = small.getStats();
+        assertTrue(stats.currentBytes <= stats.maxBytes, stats.toString());
+        assertTrue(stats.currentSize < 20);
+        assertTrue(stats.evictions + stats.rejections > 0);
+    }
+    
+    @Test
+    void testFrequentFileSurvivesScan() throws IOException {
+        FileContentCache small = new FileContentCache(64 * 1024);
+        Path hot = tempDir.resolve("hot.txt");
+        Files.writeString(hot, "hot\n".repeat(2000));
+        for (int i = 0; i < 5; i++) {
+            small.readLines(hot.toString());
+        }
+        
+        // 一次性读取大量文件不应把反复读取的文件挤出去
+        for (int i = 0; i < 50; i++) {
+            Path file = tempDir.resolve("scan" + i + ".txt");
+            Files.writeString(file, ("scan " + i + "\n").repeat(1000));
+            small.readLines(file.toString());
+        }
+        long misses = small.getStats().misses;
+        assertEquals(2000, small.readLines(hot.toString()).size());
+        assertEquals(misses, small.getStats().misses);
+    }
+    
+    @Test
+    void testCompressedEntriesRoundTrip() throws IOException {
+        Path file = tempDir.resolve("big.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("第 ").append(i).append(" 行 ").append("x".repeat(i % 13)).append('\n');
+        }
+        Files.writeString(file, content.toString());
+        List<String> expected = Files.readAllLines(file);
+        
+        // 挤出窗口区后条目进入试用区并被压缩，再次命中时解压晋升
+        FileContentCache small = new FileContentCache(4 * 1024 * 1024);
+        small.readLines(file.toString());
+        for (int i = 0; i < 3; i++) {
+            Path filler = tempDir.resolve("filler" + i + ".txt");
+            Files.writeString(filler, "y".repeat(200 * 1024));
+            small.readLines(filler.toString());
+        }
+        long compressedBytes = small.getStats().currentBytes;
+        assertTrue(compressedBytes < content.toString().getBytes(StandardCharsets.UTF_8).length + 3 * 200 * 1024);
+        assertEquals(expected, small.readLines(file.toString()));
+        assertEquals(expected.subList(4000, 4010), small.readRange(file.toString(), 4000, 4010));
+    }
+    
+    @Test
+    void testInvalidatedByFileChangeBus() throws IOException {
+        FileChangeBus bus = new FileChangeBus();
+        FileContentCache subscribed = new FileContentCache(bus);
+        Path file = tempDir.resolve("dir/test.txt");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "content");
+        subscribed.readLines(file.toString());
+        assertEquals(1, subscribed.size());
+        
+        bus.publish(tempDir.resolve("dir"));
+        assertEquals(0, subscribed.size());
+    }
+    
+    @Test
+    void testConcurrentReads() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Path file = tempDir.resolve("c" + i + ".txt");
+            Files.writeString(file, ("line " + i + "\n").repeat(100));
+            files.add(file);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        Path file = files.get((i + offset) % files.size());
+                        List<String> lines = cache.readLines(file.toString());
+                        assertEquals(100, lines.size());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        FileContentCache.CacheStats stats = cache.getStats();
+        assertEquals(1600, stats.hits + stats.misses);
+        assertEquals(8, stats.currentSize);
+    }
 }
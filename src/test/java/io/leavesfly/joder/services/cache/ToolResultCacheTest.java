@@ -0,0 +1,120 @@
+package io.leavesfly.joder.services.cache;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.tools.ToolResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ToolResultCache 测试
+ */
+class ToolResultCacheTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private FileChangeBus bus;
+    private ToolResultCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        bus = new FileChangeBus();
+        cache = new ToolResultCache(tempDir.toString(), bus);
+    }
+    
+    @Test
+    void testHitWithEquivalentInput() {
+        cache.put("Grep", Map.of("pattern", "foo", "limit", 10), ToolResult.success("a.txt"), cache.currentGeneration());
+        
+        ToolResult hit = cache.get("Grep", Map.of("limit", 10.0, "pattern", "foo"));
+        
+        assertNotNull(hit);
+        assertEquals("a.txt", hit.getOutput());
+        assertNull(cache.get("Glob", Map.of("pattern", "foo", "limit", 10)));
+        assertEquals(1, cache.getStats().hits);
+        assertEquals(1, cache.getStats().misses);
+    }
+    
+    @Test
+    void testErrorsAreNotCached() {
+        cache.put("Grep", Map.of("pattern", "foo"), ToolResult.error("boom"), cache.currentGeneration());
+        
+        assertNull(cache.get("Grep", Map.of("pattern", "foo")));
+    }
+    
+    @Test
+    void testResultsMarkedUncacheableAreNotCached() {
+        cache.put("LS", Map.of("path", "src"), ToolResult.success("page 1, cursor=1:100").withoutCaching(),
+            cache.currentGeneration());
+        
+        assertNull(cache.get("LS", Map.of("path", "src")));
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    void testInvalidationIsScopedToPath() {
+        cache.put("LS", Map.of("path", "src"), ToolResult.success("src"), cache.currentGeneration());
+        cache.put("LS", Map.of("path", "docs"), ToolResult.success("docs"), cache.currentGeneration());
+        cache.put("Glob", Map.of("pattern", "**/*.java"), ToolResult.success("all"), cache.currentGeneration());
+        
+        bus.publish(tempDir.resolve("src/Main.java"));
+        
+        assertNull(cache.get("LS", Map.of("path", "src")));
+        assertNull(cache.get("Glob", Map.of("pattern", "**/*.java")));
+        assertNotNull(cache.get("LS", Map.of("path", "docs")));
+    }
+    
+    @Test
+    void testUnwatchedScopesAreNotCached() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"), "generated/\n");
+        String outside = tempDir.getParent().resolve("outside.txt").toString();
+        
+        cache.put("View", Map.of("file_path", outside), ToolResult.success("x"), cache.currentGeneration());
+        cache.put("View", Map.of("file_path", "target/out.txt"), ToolResult.success("x"), cache.currentGeneration());
+        cache.put("View", Map.of("file_path", "generated/a.txt"), ToolResult.success("x"), cache.currentGeneration());
+        assertEquals(0, cache.size());
+        
+        cache.put("View", Map.of("file_path", "src/a.txt"), ToolResult.success("x"), cache.currentGeneration());
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    void testUnknownChangeClearsEverything() {
+        cache.put("LS", Map.of("path", "docs"), ToolResult.success("docs"), cache.currentGeneration());
+        
+        bus.publishUnknown();
+        
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    void testStaleResultIsDiscarded() {
+        long generation = cache.currentGeneration();
+        bus.publish(tempDir.resolve("a.txt"));
+        
+        cache.put("Grep", Map.of("pattern", "foo"), ToolResult.success("stale"), generation);
+        
+        assertNull(cache.get("Grep", Map.of("pattern", "foo")));
+    }
+    
+    @Test
+    void testSizeBoundedEviction() {
+        String big = "x".repeat(400 * 1024);
+        for (int i = 0; i < 20; i++) {
+            cache.put("FileRead", Map.of("path", "f" + i), ToolResult.success(big), cache.currentGeneration());
+        }
+        
+        ToolResultCache.Stats stats = cache.getStats();
+        assertTrue(stats.totalChars <= 4 * 1024 * 1024);
+        assertTrue(stats.evictions > 0);
+        assertNotNull(cache.get("FileRead", Map.of("path", "f19")));
+        assertNull(cache.get("FileRead", Map.of("path", "f0")));
+    }
+}
@@ -0,0 +1,234 @@
+package io.leavesfly.joder.services.checkpoint;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CheckpointStore 测试
+ */
+class CheckpointStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private CheckpointStore store;
+
+    @BeforeEach
+    void setUp() {
+        bus = new FileChangeBus();
+        store = new CheckpointStore(tempDir.toString(), bus);
+    }
+
+    @Test
+    void testRestoreRewritesOnlyChangedFiles() throws IOException {
+        Path edited = tempDir.resolve("src/A.java");
+        Path untouched = tempDir.resolve("src/B.java");
+        Files.createDirectories(edited.getParent());
+        Files.writeString(edited, "class A {}");
+        Files.writeString(untouched, "class B {}");
+        FileTime untouchedTime = Files.getLastModifiedTime(untouched);
+
+        long checkpoint = store.begin("turn");
+        store.capture(edited);
+        store.capture(untouched);
+        Files.writeString(edited, "class A { int x; }");
+
+        List<Path> published = new ArrayList<>();
+        bus.subscribe(new FileChangeBus.Listener() {
+            @Override
+            public void onPathChanged(Path path) {
+                published.add(path);
+            }
+
+            @Override
+            public void onUnknownChange() {
+            }
+        });
+        CheckpointStore.RestoreResult result = store.restore(checkpoint);
+
+        assertTrue(result.isSuccess());
+        assertEquals(List.of(edited), result.getRestoredFiles());
+        assertEquals(1, result.getUnchangedFiles());
+        assertEquals("class A {}", Files.readString(edited));
+        assertEquals(untouchedTime, Files.getLastModifiedTime(untouched));
+        assertEquals(List.of(edited), published);
+        assertFalse(store.contains(checkpoint));
+    }
+
+    @Test
+    void testSameSizeRewriteWithinTimestampTickIsRestored() throws IOException {
+        Path file = tempDir.resolve("A.java");
+        Files.writeString(file, "class A {}");
+        FileTime captured = Files.getLastModifiedTime(file);
+
+        long checkpoint = store.begin("turn");
+        store.capture(file);
+        // 等长改写且修改时间未变，只能靠内容区分
+        Files.writeString(file, "class B {}");
+        Files.setLastModifiedTime(file, captured);
+
+        CheckpointStore.RestoreResult result = store.restore(checkpoint);
+
+        assertEquals(List.of(file), result.getRestoredFiles());
+        assertEquals("class A {}", Files.readString(file));
+    }
+
+    @Test
+    void testRestoreDeletesCreatedFiles() throws IOException {
+        Path created = tempDir.resolve("new/file.txt");
+
+        long checkpoint = store.begin("batch");
+        store.capture(created);
+        Files.createDirectories(created.getParent());
+        Files.writeString(created, "new content");
+
+        CheckpointStore.RestoreResult result = store.restore(checkpoint);
+
+        assertEquals(List.of(created), result.getRestoredFiles());
+        assertFalse(Files.exists(created));
+    }
+
+    @Test
+    void testIdenticalContentIsStoredOnce() throws IOException {
+        Path first = tempDir.resolve("first.txt");
+        Path second = tempDir.resolve("second.txt");
+        Files.writeString(first, "same content");
+        Files.writeString(second, "same content");
+
+        store.begin("turn");
+        store.capture(first);
+        store.capture(second);
+        // 未变化的文件在后续检查点中复用已有对象
+        store.begin("turn");
+        store.capture(first);
+
+        assertEquals(1, countObjects());
+        assertEquals("same content".length(), store.getStoredBytes());
+    }
+
+    @Test
+    void testRestoreTurnCoversLaterCheckpoints() throws IOException {
+        Path file = tempDir.resolve("file.txt");
+        Files.writeString(file, "v1");
+
+        long turn = store.begin("turn");
+        store.capture(file);
+        Files.writeString(file, "v2");
+        long batch = store.begin("batch");
+        store.capture(file);
+        Files.writeString(file, "v3");
+
+        // 回滚批次只回到批次开始前，回滚整轮回到本轮开始前
+        store.restore(batch);
+        assertEquals("v2", Files.readString(file));
+        assertTrue(store.contains(turn));
+
+        store.restore(turn);
+        assertEquals("v1", Files.readString(file));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testManifestsSurviveRestart() throws IOException {
+        Path file = tempDir.resolve("file.txt");
+        Files.writeString(file, "original");
+        long checkpoint = store.begin("turn");
+        store.capture(file);
+        Files.writeString(file, "changed");
+
+        CheckpointStore reopened = new CheckpointStore(tempDir.toString(), new FileChangeBus());
+        assertEquals(Set.of("file.txt"), reopened.getRecordedFiles(checkpoint));
+        assertTrue(reopened.begin("turn") > checkpoint);
+
+        reopened.restore(checkpoint);
+        assertEquals("original", Files.readString(file));
+    }
+
+    @Test
+    void testGarbageCollectionUnderQuota() throws IOException {
+        CheckpointStore small = new CheckpointStore(tempDir, new FileChangeBus(), 4096);
+        Path file = tempDir.resolve("file.txt");
+        long oldest = -1;
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(file, String.valueOf(i).repeat(1024));
+            long checkpoint = small.begin("turn");
+            if (oldest < 0) {
+                oldest = checkpoint;
+            }
+            small.capture(file);
+        }
+        small.begin("turn");
+
+        assertTrue(small.getStoredBytes() <= 4096, "stored " + small.getStoredBytes());
+        assertFalse(small.contains(oldest));
+        assertTrue(small.restore(oldest).isExpired());
+        assertEquals(small.getStoredBytes(), sumObjectBytes());
+    }
+
+    @Test
+    void testFailedFilesStayRestorable() throws IOException {
+        Path intact = tempDir.resolve("intact.txt");
+        Path broken = tempDir.resolve("broken.txt");
+        Files.writeString(intact, "intact v1");
+        Files.writeString(broken, "broken v1");
+        String brokenHash = CheckpointStore.hashFile(broken);
+
+        long checkpoint = store.begin("turn");
+        store.capture(intact);
+        store.capture(broken);
+        long later = store.begin("batch");
+        Files.writeString(intact, "intact v2");
+        Files.writeString(broken, "broken v2");
+        Path blob = tempDir.resolve(CheckpointStore.CHECKPOINT_DIR).resolve("objects")
+            .resolve(brokenHash.substring(0, 2)).resolve(brokenHash.substring(2));
+        byte[] saved = Files.readAllBytes(blob);
+        Files.delete(blob);
+
+        CheckpointStore.RestoreResult partial = store.restore(checkpoint);
+
+        assertFalse(partial.isSuccess());
+        assertEquals(1, partial.getFailures().size());
+        assertEquals("intact v1", Files.readString(intact));
+        assertTrue(store.contains(checkpoint));
+        assertFalse(store.contains(later));
+        assertEquals(Set.of("broken.txt"), store.getRecordedFiles(checkpoint));
+
+        Files.write(blob, saved);
+        CheckpointStore.RestoreResult retried = store.restore(checkpoint);
+
+        assertTrue(retried.isSuccess());
+        assertEquals(List.of(broken), retried.getRestoredFiles());
+        assertEquals("broken v1", Files.readString(broken));
+        assertFalse(store.contains(checkpoint));
+    }
+
+    private long countObjects() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir.resolve(CheckpointStore.CHECKPOINT_DIR).resolve("objects"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private long sumObjectBytes() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir.resolve(CheckpointStore.CHECKPOINT_DIR).resolve("objects"))) {
+            long total = 0;
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                total += Files.size(file);
+            }
+            return total;
+        }
+    }
+}
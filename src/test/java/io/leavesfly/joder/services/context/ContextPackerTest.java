@@ -0,0 +1,94 @@
+package io.leavesfly.joder.services.context;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.index.ImportGraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ContextPacker 测试
+ */
+class ContextPackerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ImportGraph graph;
+    private ContextPacker packer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        long old = System.currentTimeMillis() - 7L * 24 * 60 * 60 * 1000;
+        write("src/app/Main.java", "package app;\n\nimport app.core.Engine;\n\nclass Main {}\n", old);
+        write("src/app/Cli.java", "package app;\n\nimport app.Main;\n\nclass Cli {}\n", old);
+        write("src/app/core/Engine.java",
+            "package app.core;\n\nimport app.core.util.Big;\n\nclass Engine {}\n", old);
+        write("src/app/core/util/Big.java", "package app.core.util;\n\nclass Big {\n"
+            + "    // padding\n".repeat(400) + "}\n", old);
+        graph = new ImportGraph(tempDir.toString(), new FileChangeBus());
+        graph.refresh();
+        packer = new ContextPacker(tempDir.toString(), graph, new TokenCounter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        graph.shutdown();
+    }
+
+    @Test
+    void testPackRanksByDistance() {
+        ContextPack pack = packer.pack(Paths.get("src/app/Main.java"), 100000);
+        assertNotNull(pack);
+        assertEquals("src/app/Main.java", pack.getTarget().replace('\\', '/'));
+        assertEquals(List.of("src/app/core/Engine.java", "src/app/Cli.java", "src/app/core/util/Big.java"),
+            paths(pack));
+        assertEquals(ImportGraph.Relation.DEPENDENCY, pack.getItems().get(0).getRelation());
+        assertTrue(pack.format().contains("File: " + pack.getItems().get(2).getPath() + " (间接相关，距离 2)"));
+        assertEquals(0, pack.getSkippedFiles());
+    }
+
+    @Test
+    void testPackRespectsBudget() {
+        ContextPack pack = packer.pack(Paths.get("src/app/Main.java"), 200);
+        assertNotNull(pack);
+        assertEquals(List.of("src/app/core/Engine.java", "src/app/Cli.java"), paths(pack));
+        assertEquals(1, pack.getSkippedFiles());
+        assertTrue(pack.getUsedTokens() <= pack.getTokenBudget());
+    }
+
+    @Test
+    void testRecentlyModifiedFileRanksHigher() throws Exception {
+        Path cli = tempDir.resolve("src/app/Cli.java");
+        Files.setLastModifiedTime(cli, FileTime.fromMillis(System.currentTimeMillis()));
+        graph.refresh();
+        ContextPack pack = packer.pack(tempDir.resolve("src/app/Main.java"), 100000);
+        assertNotNull(pack);
+        assertEquals("src/app/Cli.java", paths(pack).get(0));
+    }
+
+    private void write(String relative, String content, long lastModified) throws Exception {
+        Path file = tempDir.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+    }
+
+    private static List<String> paths(ContextPack pack) {
+        List<String> result = new ArrayList<>();
+        for (ContextPack.Item item : pack.getItems()) {
+            result.add(item.getPath().replace('\\', '/'));
+        }
+        return result;
+    }
+}
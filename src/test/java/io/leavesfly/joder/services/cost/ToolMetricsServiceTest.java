@@ -0,0 +1,92 @@
+package io.leavesfly.joder.services.cost;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.leavesfly.joder.services.context.TokenCounter;
+import io.leavesfly.joder.tools.ToolResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ToolMetricsService 与 LogHistogram 测试
+ */
+class ToolMetricsServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CostTrackingService costTrackingService;
+    private ToolMetricsService metrics;
+
+    @BeforeEach
+    void setUp() {
+        costTrackingService = new CostTrackingService();
+        metrics = new ToolMetricsService(costTrackingService, new TokenCounter());
+    }
+
+    @Test
+    void testHistogramPercentilesWithinRelativeError() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getValueAtPercentile(50), 500 / 16.0);
+        assertEquals(990, histogram.getValueAtPercentile(99), 990 / 16.0);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testHistogramBucketBoundsAreContiguous() {
+        for (int i = 1; i < 900; i++) {
+            assertEquals(LogHistogram.upperBoundOf(i - 1) + 1, LogHistogram.lowerBoundOf(i));
+        }
+        assertEquals(LogHistogram.indexOf(Long.MAX_VALUE), LogHistogram.indexOf(Long.MAX_VALUE - 1));
+        assertEquals(Long.MAX_VALUE, LogHistogram.upperBoundOf(LogHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void testRecordGroupsByToolAndServer() {
+        metrics.record("Grep", null, 12, ToolResult.success("a.txt"), ToolMetricsService.Outcome.SUCCESS);
+        metrics.record("github.search", "github", 300, ToolResult.error("执行超时"), ToolMetricsService.Outcome.TIMEOUT);
+        metrics.record("github.issue", "github", 100, ToolResult.success("ok"), ToolMetricsService.Outcome.SUCCESS);
+        metrics.recordCacheHit("Grep");
+
+        ToolMetricsService.ToolStats grep = metrics.getToolStats().get("Grep");
+        assertEquals(1, grep.getCalls());
+        assertEquals(1, grep.getCacheHits());
+        assertEquals(5, grep.getOutputBytes().getMax());
+
+        ToolMetricsService.ToolStats github = metrics.getServerStats().get("github");
+        assertEquals(2, github.getCalls());
+        assertEquals(1, github.getCount(ToolMetricsService.Outcome.TIMEOUT));
+        assertEquals(3, costTrackingService.getSessionStats().toolUsages.size());
+    }
+
+    @Test
+    void testUtf8Length() {
+        assertEquals(0, ToolMetricsService.utf8Length(null));
+        assertEquals(3, ToolMetricsService.utf8Length("abc"));
+        assertEquals(6, ToolMetricsService.utf8Length("中文"));
+        assertEquals(4, ToolMetricsService.utf8Length("😀"));
+    }
+
+    @Test
+    void testDumpToJson() throws Exception {
+        metrics.record("LS", null, 7, ToolResult.success("x"), ToolMetricsService.Outcome.SUCCESS);
+        Path file = tempDir.resolve("out/stats.json");
+
+        metrics.dumpTo(file);
+
+        JsonNode root = new ObjectMapper().readTree(file.toFile());
+        assertEquals(1, root.path("tools").path("LS").path("outcomes").path("success").asLong());
+        assertEquals(7, root.path("tools").path("LS").path("latencyMs").path("max").asLong());
+    }
+}
@@ -0,0 +1,232 @@
+package io.leavesfly.joder.services.git;
+
+import io.leavesfly.joder.services.workspace.IgnoreRules;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * GitRepository 与 GitIndex 测试，用 git 命令构造仓库后与 git 自身的输出对照
+ */
+class GitRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path repo;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(gitAvailable(), "git 不可用");
+        repo = tempDir.resolve("repo");
+        Files.createDirectories(repo.resolve("src/main"));
+        git("init", "-q", "-b", "main");
+        Files.writeString(repo.resolve("README.md"), "# Demo\n");
+        Files.writeString(repo.resolve("src/main/App.java"), "class App {}\n");
+        Files.writeString(repo.resolve("src/main/Util.java"), "class Util {}\n");
+        Files.writeString(repo.resolve(".gitignore"), "*.log\n");
+    }
+
+    @Test
+    void testUnbornBranch() throws Exception {
+        git("add", ".");
+        GitRepository repository = GitRepository.open(repo.resolve("src/main"));
+
+        assertNotNull(repository);
+        assertEquals(repo.toAbsolutePath().normalize(), repository.getWorkTree());
+        assertEquals("main", repository.getBranch());
+        assertNull(repository.getHead());
+        assertEquals(List.of(".gitignore", "README.md", "src/main/App.java", "src/main/Util.java"),
+            repository.status().getStaged());
+        assertNull(GitRepository.open(tempDir));
+    }
+
+    @Test
+    void testHeadBranchAndRefs() throws Exception {
+        commitAll("initial");
+        GitRepository repository = GitRepository.open(repo);
+
+        assertEquals("main", repository.getBranch());
+        assertEquals(git("rev-parse", "HEAD"), repository.getHead());
+
+        // 打包后松散引用被删除，只能从 packed-refs 读取
+        git("remote", "add", "origin", "https://example.com/demo.git");
+        git("update-ref", "refs/remotes/origin/main", "HEAD");
+        git("config", "branch.main.remote", "origin");
+        git("config", "branch.main.merge", "refs/heads/main");
+        git("pack-refs", "--all");
+        assertFalse(Files.exists(repo.resolve(".git/refs/heads/main")));
+
+        repository = GitRepository.open(repo);
+        assertEquals(git("rev-parse", "HEAD"), repository.getHead());
+        assertEquals("https://example.com/demo.git", repository.getRemoteUrl("origin"));
+        assertEquals("refs/remotes/origin/main", repository.getUpstream());
+        assertTrue(repository.isHeadOnRemote());
+
+        git("checkout", "-q", "--detach");
+        assertEquals("HEAD", GitRepository.open(repo).getBranch());
+        assertFalse(GitRepository.open(repo).isHeadOnRemote());
+    }
+
+    @Test
+    void testTrackedFilesAcrossIndexVersions() throws Exception {
+        Files.createDirectories(repo.resolve("src/main/deep/nested"));
+        Files.writeString(repo.resolve("src/main/deep/nested/Deep.java"), "class Deep {}\n");
+        Files.writeString(repo.resolve("src/main/AppTest.java"), "class AppTest {}\n");
+        commitAll("initial");
+        List<String> expected = lines(git("ls-files"));
+
+        // 没有扩展标志位时 git 会把 v3 写成 v2，v3 由 testIntentToAddAndUntrackedNestedRepository 覆盖
+        for (String version : List.of("2", "4")) {
+            git("update-index", "--index-version", version);
+            GitIndex index = GitRepository.open(repo).readIndex();
+            assertEquals(Integer.parseInt(version), index.getVersion());
+            assertEquals(expected, index.getTrackedFiles(), "index v" + version);
+            assertTrue(index.containsDirectory("src/main/deep"));
+            assertFalse(index.containsDirectory("src/test"));
+        }
+    }
+
+    @Test
+    void testIndexCachedUntilFileChanges() throws Exception {
+        commitAll("initial");
+        GitRepository repository = GitRepository.open(repo);
+        GitIndex first = repository.readIndex();
+        assertSame(first, GitRepository.open(repo).readIndex());
+
+        Files.writeString(repo.resolve("NEW.md"), "new\n");
+        git("add", "NEW.md");
+        GitIndex second = repository.readIndex();
+        assertNotSame(first, second);
+        assertTrue(second.isTracked("NEW.md"));
+    }
+
+    @Test
+    void testStatus() throws Exception {
+        commitAll("initial");
+        GitRepository repository = GitRepository.open(repo);
+        assertTrue(repository.isClean());
+        assertTrue(repository.status().isClean());
+
+        // 大小不变的修改只能靠内容哈希发现
+        Files.writeString(repo.resolve("src/main/App.java"), "class Ap2 {}\n");
+        Files.delete(repo.resolve("src/main/Util.java"));
+        Files.writeString(repo.resolve("notes.txt"), "todo\n");
+        Files.writeString(repo.resolve("debug.log"), "ignored\n");
+        Files.writeString(repo.resolve("README.md"), "# Demo, staged\n");
+        git("add", "README.md");
+
+        GitStatus status = repository.status();
+        assertEquals(List.of("src/main/App.java"), status.getModified());
+        assertEquals(List.of("src/main/Util.java"), status.getDeleted());
+        assertEquals(List.of("notes.txt"), status.getUntracked());
+        assertEquals(List.of("README.md"), status.getStaged());
+        assertFalse(repository.isClean());
+
+        commitAll("second");
+        assertTrue(repository.isClean());
+        assertEquals("", git("status", "--porcelain"));
+    }
+
+    @Test
+    void testStagedChangesAgainstPackedObjects() throws Exception {
+        commitAll("initial");
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(repo.resolve("src/main/Util.java"), "class Util { int v = " + i + "; }\n");
+            commitAll("change " + i);
+        }
+        git("repack", "-a", "-d", "-f", "-q");
+        git("prune-packed");
+
+        Files.writeString(repo.resolve("src/main/Util.java"), "class Util { int v = 42; }\n");
+        Files.createDirectories(repo.resolve("docs"));
+        Files.writeString(repo.resolve("docs/guide.md"), "# Guide\n");
+        git("add", ".");
+        git("rm", "-q", "--cached", "README.md");
+        Files.delete(repo.resolve("README.md"));
+
+        GitStatus status = GitRepository.open(repo).status();
+        assertEquals(List.of("README.md", "docs/guide.md", "src/main/Util.java"), status.getStaged());
+        assertTrue(status.getModified().isEmpty());
+        assertTrue(status.getDeleted().isEmpty());
+    }
+
+    @Test
+    void testIntentToAddAndUntrackedNestedRepository() throws Exception {
+        commitAll("initial");
+        Files.writeString(repo.resolve("later.txt"), "later\n");
+        git("add", "-N", "later.txt");
+        Files.createDirectories(repo.resolve("vendor/lib/.git"));
+
+        GitStatus status = GitRepository.open(repo).status();
+        assertEquals(3, GitRepository.open(repo).readIndex().getVersion());
+        assertEquals(List.of("later.txt"), status.getStaged());
+        assertEquals(List.of("vendor/lib/"), status.getUntracked());
+    }
+
+    @Test
+    void testTrackedFilter() throws Exception {
+        commitAll("initial");
+        Files.createDirectories(repo.resolve("scratch"));
+        Files.writeString(repo.resolve("scratch/tmp.java"), "class Tmp {}\n");
+        Files.writeString(repo.resolve("src/main/Draft.java"), "class Draft {}\n");
+
+        IgnoreRules.Filter filter = GitRepository.open(repo).trackedFilter();
+        assertFalse(filter.skip(repo.resolve("src"), true));
+        assertFalse(filter.skip(repo.resolve("src/main/App.java"), false));
+        assertTrue(filter.skip(repo.resolve("src/main/Draft.java"), false));
+        assertTrue(filter.skip(repo.resolve("scratch"), true));
+        assertTrue(filter.skip(tempDir.resolve("elsewhere.txt"), false));
+    }
+
+    private void commitAll(String message) throws Exception {
+        git("add", "-A");
+        git("commit", "-q", "-m", message);
+    }
+
+    private static List<String> lines(String output) {
+        return output.isEmpty() ? List.of() : Arrays.asList(output.split("\n"));
+    }
+
+    private String git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("git", "-c", "user.name=Test", "-c", "user.email=test@example.com",
+            "-c", "core.quotepath=false"));
+        command.addAll(Arrays.asList(args));
+        ProcessBuilder builder = new ProcessBuilder(command)
+            .directory((repo != null ? repo : tempDir).toFile())
+            .redirectErrorStream(true);
+        // 隔离全局配置，避免本机的 excludesFile、hooks 等影响结果
+        builder.environment().put("HOME", tempDir.toString());
+        builder.environment().put("GIT_CONFIG_NOSYSTEM", "1");
+        Process process = builder.start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue(), () -> "git " + String.join(" ", args) + " 失败: " + output);
+        return output;
+    }
+
+    private static boolean gitAvailable() {
+        try {
+            Process process = new ProcessBuilder("git", "--version").redirectErrorStream(true).start();
+            process.getInputStream().readAllBytes();
+            return process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
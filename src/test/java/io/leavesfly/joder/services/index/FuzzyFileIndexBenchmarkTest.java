@@ -0,0 +1,64 @@
+package io.leavesfly.joder.services.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FuzzyPathTable 基准测试
+ * 在 20 万条合成路径上模拟逐字符输入，默认不运行：
+ * mvn test -Dtest=FuzzyFileIndexBenchmarkTest -Djoder.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "joder.benchmark", matches = "true")
+class FuzzyFileIndexBenchmarkTest {
+
+    private static final int PATHS = 200_000;
+    private static final String[] WORDS = {
+        "src", "main", "java", "test", "service", "index", "model", "util", "core", "api",
+        "handler", "config", "request", "response", "session", "cache", "query", "tool", "file", "user"
+    };
+
+    @Test
+    void benchmarkTypingQueries() {
+        Random random = new Random(42);
+        FuzzyPathTable table = new FuzzyPathTable();
+        long begin = System.nanoTime();
+        for (int i = 0; i < PATHS; i++) {
+            table.add(randomPath(random, i));
+        }
+        System.out.printf("构建 %d 条路径 %.1fms%n", table.size(), (System.nanoTime() - begin) / 1e6);
+
+        String query = "srvhandlerreq";
+        for (int round = 0; round < 3; round++) {
+            List<Double> timings = new ArrayList<>();
+            for (int i = 1; i <= query.length(); i++) {
+                long start = System.nanoTime();
+                List<FuzzyFileIndex.Match> matches = table.search(query.substring(0, i), 20);
+                timings.add((System.nanoTime() - start) / 1e6);
+                assertTrue(matches.size() <= 20);
+            }
+            // 表内容变化会清空查询缓存，下一轮从头查询
+            table.add("round/" + round);
+            System.out.printf("逐字符查询耗时(ms): %s%n", timings);
+        }
+    }
+
+    private static String randomPath(Random random, int i) {
+        StringBuilder sb = new StringBuilder();
+        int depth = 3 + random.nextInt(5);
+        for (int d = 0; d < depth; d++) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append('/');
+        }
+        String a = WORDS[random.nextInt(WORDS.length)];
+        String b = WORDS[random.nextInt(WORDS.length)];
+        sb.append(Character.toUpperCase(a.charAt(0))).append(a.substring(1))
+            .append(Character.toUpperCase(b.charAt(0))).append(b.substring(1))
+            .append(i).append(".java");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FuzzyFileIndex 测试
+ */
+class FuzzyFileIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private FuzzyFileIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(tempDir.resolve("src/main/java/app"));
+        Files.createDirectories(tempDir.resolve("src/test/java/app"));
+        Files.createDirectories(tempDir.resolve("node_modules/lib"));
+        Files.writeString(tempDir.resolve("src/main/java/app/Main.java"), "");
+        Files.writeString(tempDir.resolve("src/main/java/app/MessageHandler.java"), "");
+        Files.writeString(tempDir.resolve("src/test/java/app/MainTest.java"), "");
+        Files.writeString(tempDir.resolve("README.md"), "");
+        Files.writeString(tempDir.resolve("node_modules/lib/main.js"), "");
+        Files.writeString(tempDir.resolve(".gitignore"), "*.log\n");
+        Files.writeString(tempDir.resolve("debug.log"), "");
+        bus = new FileChangeBus();
+        index = new FuzzyFileIndex(tempDir.toString(), bus);
+        index.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void testSkipsHiddenExcludedAndIgnoredFiles() {
+        assertTrue(index.isFresh());
+        assertEquals(4, index.size());
+        assertTrue(paths(index.search("main.js", 10)).isEmpty());
+        assertTrue(paths(index.search("debuglog", 10)).isEmpty());
+    }
+
+    @Test
+    void testFileNameMatchesRankFirst() {
+        List<String> result = paths(index.search("main", 10));
+        assertEquals(path("src/main/java/app/Main.java"), result.get(0));
+        assertEquals(path("src/test/java/app/MainTest.java"), result.get(1));
+
+        // 驼峰首字母缩写
+        assertEquals(path("src/main/java/app/MessageHandler.java"), paths(index.search("MH", 10)).get(0));
+        // 目录与文件名跨段匹配
+        assertEquals(List.of(path("src/test/java/app/MainTest.java")), paths(index.search("test/main", 10)));
+    }
+
+    @Test
+    void testGrowingQueryMatchesFreshSearch() {
+        String query = "srcmainjava";
+        for (int i = 1; i <= query.length(); i++) {
+            List<FuzzyFileIndex.Match> incremental = index.search(query.substring(0, i), 10);
+            List<FuzzyFileIndex.Match> fresh = FuzzyFileIndex.rank(query.substring(0, i), allPaths(), 10);
+            assertEquals(paths(fresh), paths(incremental), "query " + query.substring(0, i));
+        }
+        // 退格后从更短的缓存查询继续
+        assertEquals(3, index.search("srcm", 10).size());
+        assertEquals(3, index.search("srcmainj", 10).size());
+        assertTrue(index.search("srcmainjx", 10).isEmpty());
+    }
+
+    @Test
+    void testEmptyQueryReturnsShallowFilesFirst() {
+        List<String> result = paths(index.search("", 2));
+        assertEquals(2, result.size());
+        assertEquals("README.md", result.get(0));
+    }
+
+    @Test
+    void testIncrementalUpdateFromBus() throws Exception {
+        Path added = tempDir.resolve("src/main/java/app/Router.java");
+        Files.writeString(added, "");
+        bus.publish(added);
+        index.awaitIdle();
+        assertEquals(List.of(path("src/main/java/app/Router.java")), paths(index.search("router", 10)));
+
+        Files.delete(added);
+        bus.publish(added);
+        index.awaitIdle();
+        assertTrue(paths(index.search("router", 10)).isEmpty());
+
+        // 删除整个目录时其下的文件一并移除
+        Path testDir = tempDir.resolve("src/test");
+        Files.delete(tempDir.resolve("src/test/java/app/MainTest.java"));
+        Files.delete(tempDir.resolve("src/test/java/app"));
+        Files.delete(tempDir.resolve("src/test/java"));
+        Files.delete(testDir);
+        bus.publish(testDir);
+        index.awaitIdle();
+        assertEquals(3, index.size());
+        assertFalse(paths(index.search("maintest", 10)).contains(path("src/test/java/app/MainTest.java")));
+    }
+
+    @Test
+    void testIgnoreRuleChangeRebuilds() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"), "*.log\nREADME.md\n");
+        bus.publish(tempDir.resolve(".gitignore"));
+        index.awaitIdle();
+        assertEquals(3, index.size());
+        assertTrue(paths(index.search("readme", 10)).isEmpty());
+    }
+
+    @Test
+    void testRankCandidates() {
+        List<FuzzyFileIndex.Match> matches = FuzzyFileIndex.rank("cfg",
+            List.of("src/conf/logging.xml", "src/config/Config.java", "build.gradle"), 5);
+        assertEquals("src/config/Config.java", matches.get(0).getPath());
+        assertEquals(2, matches.size());
+        assertTrue(matches.get(0).getScore() > matches.get(1).getScore());
+    }
+
+    private List<String> allPaths() {
+        List<String> result = new ArrayList<>();
+        for (FuzzyFileIndex.Match match : index.search("", 100)) {
+            result.add(match.getPath());
+        }
+        return result;
+    }
+
+    private static List<String> paths(List<FuzzyFileIndex.Match> matches) {
+        assertNotNull(matches);
+        List<String> result = new ArrayList<>();
+        for (FuzzyFileIndex.Match match : matches) {
+            result.add(match.getPath());
+        }
+        return result;
+    }
+
+    private static String path(String relative) {
+        return Path.of(relative).toString();
+    }
+}
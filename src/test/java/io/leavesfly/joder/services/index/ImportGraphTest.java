@@ -0,0 +1,143 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ImportGraph 与 ImportExtractor 测试
+ */
+class ImportGraphTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private ImportGraph graph;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        write("src/app/Main.java", "package app;\n\nimport app.service.UserService;\n\nclass Main {}\n");
+        write("src/app/service/UserService.java",
+            "package app.service;\n\nimport app.model.*;\nimport static app.util.Strings.trim;\n\nclass UserService {}\n");
+        write("src/app/model/User.java", "package app.model;\n\nclass User {}\n");
+        write("src/app/util/Strings.java", "package app.util;\n\nclass Strings {}\n");
+        write("src/app/Unrelated.java", "package app;\n\nimport java.util.List;\n\nclass Unrelated {}\n");
+        write("web/main.ts", "import { api } from './lib';\nimport React from 'react';\n");
+        write("web/lib/index.ts", "export * from './client.js';\n");
+        write("web/lib/client.ts", "export const api = 1;\n");
+        bus = new FileChangeBus();
+        graph = new ImportGraph(tempDir.toString(), bus);
+        graph.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        graph.shutdown();
+    }
+
+    @Test
+    void testExtractJava() {
+        String content = "package a.b;\nimport c.D;\nimport static e.F.g;\nimport h.*;\nclass X {}\n";
+        assertEquals(List.of("j:a.b.X", "j:a.b.*"), ImportExtractor.provides("src/a/b/X.java", content));
+        assertEquals(List.of("j:c.D", "j:c", "j:e.F.g", "j:e.F", "j:h.*", "j:h"),
+            ImportExtractor.requires("src/a/b/X.java", content));
+    }
+
+    @Test
+    void testExtractTypeScript() {
+        assertEquals(List.of("js:web/lib/index", "js:web/lib"), ImportExtractor.provides("web/lib/index.ts", ""));
+        assertEquals(List.of("js:web/lib", "js:shared/util"),
+            ImportExtractor.requires("web/main.ts",
+                "import a from './lib';\nconst b = require('../shared/util.js');\nimport c from 'lodash';\n"));
+    }
+
+    @Test
+    void testExtractPython() {
+        assertEquals(List.of("py:pkg.sub", "py:sub"), ImportExtractor.provides("pkg/sub/__init__.py", ""));
+        assertEquals(List.of("py:os.path", "py:pkg.models", "py:pkg.models.User", "py:pkg.sub",
+            "py:pkg.sub.helpers"),
+            ImportExtractor.requires("pkg/sub/views.py",
+                "import os.path as p\nfrom ..models import User\nfrom . import helpers\n"));
+    }
+
+    @Test
+    void testDirectDependencies() {
+        assertEquals(List.of("src/app/model/User.java", "src/app/util/Strings.java"),
+            relative(graph.dependencies(tempDir.resolve("src/app/service/UserService.java"))));
+        assertEquals(List.of("src/app/Main.java"),
+            relative(graph.dependents(tempDir.resolve("src/app/service/UserService.java"))));
+        assertEquals(List.of("web/lib/index.ts"), relative(graph.dependencies(tempDir.resolve("web/main.ts"))));
+        assertEquals(List.of("web/lib/client.ts"), relative(graph.dependencies(tempDir.resolve("web/lib/index.ts"))));
+        assertTrue(graph.dependencies(tempDir.resolve("missing/Nope.java")).isEmpty());
+    }
+
+    @Test
+    void testNeighbourhood() {
+        List<String> result = new ArrayList<>();
+        for (ImportGraph.Neighbour neighbour : graph.neighbourhood(tempDir.resolve("src/app/Main.java"), 3)) {
+            result.add(tempDir.relativize(neighbour.getPath()).toString().replace('\\', '/') + " "
+                + neighbour.getDistance() + " " + neighbour.getRelation());
+        }
+        assertEquals(List.of("src/app/service/UserService.java 1 DEPENDENCY",
+            "src/app/model/User.java 2 INDIRECT", "src/app/util/Strings.java 2 INDIRECT"), result);
+        assertEquals(1, graph.neighbourhood(tempDir.resolve("src/app/Main.java"), 1).size());
+    }
+
+    @Test
+    void testIncrementalUpdateFromBus() throws Exception {
+        Path added = write("src/app/Admin.java", "package app;\n\nimport app.model.User;\n\nclass Admin {}\n");
+        bus.publish(added);
+        graph.awaitIdle();
+        assertEquals(List.of("src/app/Admin.java", "src/app/service/UserService.java"),
+            relative(graph.dependents(tempDir.resolve("src/app/model/User.java"))));
+
+        Files.delete(added);
+        bus.publish(added);
+        graph.awaitIdle();
+        assertEquals(List.of("src/app/service/UserService.java"),
+            relative(graph.dependents(tempDir.resolve("src/app/model/User.java"))));
+    }
+
+    @Test
+    void testPersistedGraphIsReloaded() {
+        int size = graph.size();
+        graph.shutdown();
+        assertTrue(Files.isRegularFile(tempDir.resolve(".joder/index/imports.idx")));
+
+        ImportGraph reloaded = new ImportGraph(tempDir.toString(), new FileChangeBus());
+        try {
+            reloaded.refresh();
+            assertEquals(size, reloaded.size());
+            assertEquals(List.of("src/app/Main.java"),
+                relative(reloaded.dependents(tempDir.resolve("src/app/service/UserService.java"))));
+        } finally {
+            reloaded.shutdown();
+        }
+    }
+
+    private Path write(String relative, String content) throws Exception {
+        Path file = tempDir.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private List<String> relative(List<Path> paths) {
+        assertNotNull(paths);
+        List<String> result = new ArrayList<>();
+        for (Path path : paths) {
+            result.add(tempDir.relativize(path).toString().replace('\\', '/'));
+        }
+        return result;
+    }
+}
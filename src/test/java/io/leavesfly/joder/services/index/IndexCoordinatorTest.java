@@ -0,0 +1,111 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * IndexCoordinator 测试
+ */
+class IndexCoordinatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private WorkspaceCatalog catalog;
+    private TrigramIndex trigramIndex;
+    private SymbolIndex symbolIndex;
+    private FuzzyFileIndex fuzzyIndex;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(tempDir.resolve("Alpha.java"), "class Alpha { void hello() {} }");
+        Files.createDirectories(tempDir.resolve("sub"));
+        Files.writeString(tempDir.resolve("sub/Beta.java"), "class Beta { void world() {} }");
+        Files.writeString(tempDir.resolve("notes.txt"), "hello");
+        Files.createDirectories(tempDir.resolve("node_modules"));
+        Files.writeString(tempDir.resolve("node_modules/c.js"), "function hello() {}");
+        bus = new FileChangeBus();
+        catalog = new WorkspaceCatalog(tempDir.toString(), bus);
+        IndexCoordinator coordinator = new IndexCoordinator(tempDir.toString(), bus, catalog);
+        trigramIndex = new TrigramIndex(coordinator);
+        symbolIndex = new SymbolIndex(coordinator);
+        fuzzyIndex = new FuzzyFileIndex(coordinator);
+        trigramIndex.start();
+        symbolIndex.start();
+        fuzzyIndex.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        trigramIndex.shutdown();
+        symbolIndex.shutdown();
+        fuzzyIndex.shutdown();
+        catalog.shutdown();
+    }
+
+    @Test
+    void testIndexesShareOneCoordinator() {
+        assertEquals(3, trigramIndex.size());
+        assertEquals(2, symbolIndex.size());
+        assertEquals(List.of("sub" + File.separator + "Beta.java"), paths(fuzzyIndex.search("beta", 10)));
+    }
+
+    @Test
+    void testRulesFileChangeResyncsEveryIndex() throws Exception {
+        Path gitignore = tempDir.resolve(".gitignore");
+        Files.writeString(gitignore, "sub/\n");
+        bus.publish(gitignore);
+        trigramIndex.awaitIdle();
+
+        assertEquals(2, trigramIndex.size());
+        assertEquals(1, symbolIndex.size());
+        assertEquals(List.of(), paths(fuzzyIndex.search("beta", 10)));
+    }
+
+    @Test
+    void testPathEventUpdatesEveryIndex() throws Exception {
+        Path gamma = tempDir.resolve("sub/Gamma.java");
+        Files.writeString(gamma, "class Gamma {}");
+        bus.publish(gamma);
+        trigramIndex.awaitIdle();
+
+        assertEquals(4, trigramIndex.size());
+        assertEquals(3, symbolIndex.size());
+        assertEquals(1, fuzzyIndex.search("gamma", 10).size());
+
+        Files.delete(gamma);
+        bus.publish(gamma);
+        trigramIndex.awaitIdle();
+
+        assertEquals(3, trigramIndex.size());
+        assertEquals(2, symbolIndex.size());
+        assertEquals(List.of(), paths(fuzzyIndex.search("gamma", 10)));
+    }
+
+    @Test
+    void testUnknownChangeUnderWatcherKeepsIndexesFresh() {
+        assumeTrue(catalog.isWatching(), "文件监听不可用");
+        bus.publishUnknown();
+
+        assertTrue(trigramIndex.isFresh());
+        assertTrue(symbolIndex.isFresh());
+    }
+
+    private static List<String> paths(List<FuzzyFileIndex.Match> matches) {
+        return matches.stream().map(FuzzyFileIndex.Match::getPath).collect(Collectors.toList());
+    }
+}
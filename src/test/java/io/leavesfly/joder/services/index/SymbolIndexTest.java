@@ -0,0 +1,249 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SymbolIndex 与 SymbolExtractor 测试
+ */
+class SymbolIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private SymbolIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(tempDir.resolve("src/auth"));
+        Files.createDirectories(tempDir.resolve("node_modules/lib"));
+        Files.writeString(tempDir.resolve("src/auth/UserService.java"),
+            "package auth;\n"
+                + "\n"
+                + "public class UserService {\n"
+                + "    private final Map<String, User> users = new HashMap<>();\n"
+                + "\n"
+                + "    public UserService() {\n"
+                + "    }\n"
+                + "\n"
+                + "    public User findUser(String id) {\n"
+                + "        String s = \"class Fake {\";\n"
+                + "        return users.get(id);\n"
+                + "    }\n"
+                + "}\n");
+        Files.writeString(tempDir.resolve("src/auth/client.ts"),
+            "export function findUser(id: string): User {\n"
+                + "  return api.get(id);\n"
+                + "}\n");
+        Files.writeString(tempDir.resolve("node_modules/lib/index.js"), "function findUser() {}\n");
+        bus = new FileChangeBus();
+        index = new SymbolIndex(tempDir.toString(), bus);
+        index.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void testExtractJava() {
+        List<Symbol> symbols = SymbolExtractor.extract("A.java",
+            "public class Outer<T> extends Base implements Runnable {\n"
+                + "    private static final int LIMIT = 10;\n"
+                + "    /* void commented() { */\n"
+                + "    enum Mode { FAST, SLOW }\n"
+                + "\n"
+                + "    @Override\n"
+                + "    public void run() {\n"
+                + "        int local = 1;\n"
+                + "    }\n"
+                + "\n"
+                + "    public abstract <R> List<R> map(Function<T, R> fn);\n"
+                + "\n"
+                + "    interface Listener {\n"
+                + "        void onEvent(String name);\n"
+                + "    }\n"
+                + "}\n");
+        assertEquals(List.of("CLASS Outer 1-16 null", "FIELD LIMIT 2-2 Outer", "ENUM Mode 4-4 Outer",
+            "FIELD FAST 4-4 Mode", "FIELD SLOW 4-4 Mode", "METHOD run 7-9 Outer", "METHOD map 11-11 Outer",
+            "INTERFACE Listener 13-15 Outer", "METHOD onEvent 14-14 Listener"), describe(symbols));
+    }
+
+    @Test
+    void testExtractKotlin() {
+        List<Symbol> symbols = SymbolExtractor.extract("A.kt",
+            "data class Point(val x: Int, val y: Int) {\n"
+                + "    fun length(): Double = sqrt(x * x + y * y)\n"
+                + "    companion object {\n"
+                + "        const val ORIGIN = 0\n"
+                + "    }\n"
+                + "}\n"
+                + "\n"
+                + "fun main() {\n"
+                + "    val p = Point(1, 2)\n"
+                + "}\n");
+        List<String> described = describe(symbols);
+        assertTrue(described.contains("CLASS Point 1-6 null"), described.toString());
+        assertTrue(described.contains("METHOD length 2-2 Point"), described.toString());
+        assertTrue(described.contains("FUNCTION main 8-10 null"), described.toString());
+        assertFalse(described.stream().anyMatch(s -> s.contains(" p ")), described.toString());
+    }
+
+    @Test
+    void testExtractTypeScript() {
+        List<Symbol> symbols = SymbolExtractor.extract("a.ts",
+            "export interface Props {\n"
+                + "  name: string;\n"
+                + "}\n"
+                + "export const render = (props: Props) => {\n"
+                + "  const inner = `${props.name} {`;\n"
+                + "  return inner;\n"
+                + "};\n"
+                + "export class Widget {\n"
+                + "  private count = 0;\n"
+                + "  async load(id: string): Promise<void> {\n"
+                + "    if (id) {\n"
+                + "      this.count++;\n"
+                + "    }\n"
+                + "  }\n"
+                + "}\n");
+        assertEquals(List.of("INTERFACE Props 1-3 null", "FIELD name 2-2 Props", "FUNCTION render 4-7 null",
+            "CLASS Widget 8-15 null", "FIELD count 9-9 Widget", "METHOD load 10-14 Widget"), describe(symbols));
+    }
+
+    @Test
+    void testExtractPython() {
+        List<Symbol> symbols = SymbolExtractor.extract("a.py",
+            "MAX_SIZE = 100\n"
+                + "\n"
+                + "class Cache(object):\n"
+                + "    \"\"\"def fake(): pass\"\"\"\n"
+                + "    ttl = 60\n"
+                + "\n"
+                + "    def get(self, key,\n"
+                + "            default=None):\n"
+                + "        value = self.data.get(key)\n"
+                + "        return value\n"
+                + "\n"
+                + "async def fetch(url):\n"
+                + "    return await client.get(url)\n");
+        assertEquals(List.of("VARIABLE MAX_SIZE 1-1 null", "CLASS Cache 3-10 null", "FIELD ttl 5-5 Cache",
+            "METHOD get 7-10 Cache", "FUNCTION fetch 12-13 null"), describe(symbols));
+    }
+
+    @Test
+    void testExtractGo() {
+        List<Symbol> symbols = SymbolExtractor.extract("a.go",
+            "package store\n"
+                + "\n"
+                + "type Store struct {\n"
+                + "\titems map[string]int\n"
+                + "}\n"
+                + "\n"
+                + "type Reader interface {\n"
+                + "\tRead(key string) int\n"
+                + "}\n"
+                + "\n"
+                + "func (s *Store) Get(key string) int {\n"
+                + "\treturn s.items[key]\n"
+                + "}\n"
+                + "\n"
+                + "func New() *Store {\n"
+                + "\treturn &Store{}\n"
+                + "}\n");
+        assertEquals(List.of("CLASS Store 3-5 null", "FIELD items 4-4 Store", "INTERFACE Reader 7-9 null",
+            "METHOD Read 8-8 Reader", "METHOD Get 11-13 Store", "FUNCTION New 15-17 null"), describe(symbols));
+    }
+
+    @Test
+    void testFindDefinitions() {
+        assertTrue(index.isFresh());
+        List<Symbol> result = index.findDefinitions("findUser", 10);
+        assertEquals(List.of("src/auth/UserService.java:9", "src/auth/client.ts:1"), locations(result));
+
+        List<Symbol> qualified = index.findDefinitions("UserService.findUser", 10);
+        assertEquals(List.of("src/auth/UserService.java:9"), locations(qualified));
+
+        // 同名的类排在构造方法之前
+        List<Symbol> type = index.findDefinitions("userservice", 10);
+        assertEquals(SymbolKind.CLASS, type.get(0).getKind());
+        assertEquals(SymbolKind.METHOD, type.get(1).getKind());
+        assertTrue(index.findDefinitions("Fake", 10).isEmpty());
+    }
+
+    @Test
+    void testOutline() {
+        List<Symbol> outline = index.outline(tempDir.resolve("src/auth/UserService.java"));
+        assertEquals(List.of("CLASS UserService 3-13 null", "FIELD users 4-4 UserService",
+            "METHOD UserService 6-7 UserService", "METHOD findUser 9-12 UserService"), describe(outline));
+        assertNull(index.outline(tempDir.resolve("README.md")));
+    }
+
+    @Test
+    void testIncrementalUpdateFromBus() throws Exception {
+        Path added = tempDir.resolve("src/auth/payment.py");
+        Files.writeString(added, "def charge(amount):\n    return amount\n");
+        bus.publish(added);
+        index.awaitIdle();
+        assertEquals(List.of("src/auth/payment.py:1"), locations(index.findDefinitions("charge", 10)));
+
+        Files.writeString(added, "def refund(amount):\n    return amount\n");
+        bus.publish(added);
+        index.awaitIdle();
+        assertTrue(index.findDefinitions("charge", 10).isEmpty());
+        assertEquals(1, index.findDefinitions("refund", 10).size());
+
+        Files.delete(added);
+        bus.publish(added);
+        index.awaitIdle();
+        assertTrue(index.findDefinitions("refund", 10).isEmpty());
+    }
+
+    @Test
+    void testPersistedIndexIsReloaded() {
+        int size = index.size();
+        index.shutdown();
+        assertTrue(Files.isRegularFile(tempDir.resolve(".joder/index/symbols.idx")));
+
+        SymbolIndex reloaded = new SymbolIndex(tempDir.toString(), new FileChangeBus());
+        try {
+            reloaded.refresh();
+            assertEquals(size, reloaded.size());
+            assertEquals(List.of("src/auth/UserService.java:9"),
+                locations(reloaded.findDefinitions("UserService::findUser", 10)));
+        } finally {
+            reloaded.shutdown();
+        }
+    }
+
+    private static List<String> describe(List<Symbol> symbols) {
+        assertNotNull(symbols);
+        List<String> result = new ArrayList<>();
+        for (Symbol symbol : symbols) {
+            result.add(symbol.getKind() + " " + symbol.getName() + " " + symbol.getStartLine() + "-"
+                + symbol.getEndLine() + " " + symbol.getContainer());
+        }
+        return result;
+    }
+
+    private static List<String> locations(List<Symbol> symbols) {
+        assertNotNull(symbols);
+        List<String> result = new ArrayList<>();
+        for (Symbol symbol : symbols) {
+            result.add(symbol.getPath().replace('\\', '/') + ":" + symbol.getStartLine());
+        }
+        return result;
+    }
+}
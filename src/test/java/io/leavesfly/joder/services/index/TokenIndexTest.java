@@ -0,0 +1,143 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TokenIndex 测试
+ */
+class TokenIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private TokenIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(tempDir.resolve("src/auth"));
+        Files.createDirectories(tempDir.resolve("docs"));
+        Files.createDirectories(tempDir.resolve("node_modules/lib"));
+        Files.writeString(tempDir.resolve("src/auth/UserService.java"),
+            "public class UserService {\n"
+                + "    public User findUser(String id) {\n"
+                + "        return repository.load(id);\n"
+                + "    }\n"
+                + "}\n");
+        Files.writeString(tempDir.resolve("src/auth/LoginController.java"),
+            "public class LoginController {\n"
+                + "    private UserService userService;\n"
+                + "    void login() {\n"
+                + "        userService.findUser(request.getId());\n"
+                + "    }\n"
+                + "}\n");
+        Files.writeString(tempDir.resolve("docs/notes.md"), "The user service keeps user data.\n");
+        Files.writeString(tempDir.resolve("node_modules/lib/UserService.js"), "class UserService {}\n");
+        bus = new FileChangeBus();
+        index = new TokenIndex(tempDir.toString(), bus);
+        index.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void testQueryTermsSplitIdentifiersAndSkipRegexSyntax() {
+        Set<String> terms = CodeTokenizer.queryTerms("parseHttpRequest|MAX_RETRY \\bHTTPServer [a-z]+ __init__");
+        assertTrue(terms.containsAll(List.of("parsehttprequest", "parse", "http", "request",
+            "max_retry", "max", "retry", "httpserver", "server", "__init__", "init")));
+        assertFalse(terms.contains("bhttpserver"));
+        assertFalse(terms.contains("z"));
+        assertTrue(CodeTokenizer.queryTerms("用户认证").isEmpty());
+    }
+
+    @Test
+    void testFileNameAndDeclarationRankFirst() {
+        assertTrue(index.isFresh());
+        assertEquals(3, index.size());
+
+        List<String> result = paths(index.search("UserService", tempDir, 10));
+        assertEquals(List.of("src/auth/UserService.java", "src/auth/LoginController.java", "docs/notes.md"), result);
+        // 声明行中的 login 比正文中的词得分更高
+        assertEquals("src/auth/LoginController.java", paths(index.search("login", tempDir, 10)).get(0));
+    }
+
+    @Test
+    void testScopeLimitsResults() {
+        assertEquals(List.of("docs/notes.md"), paths(index.search("user", tempDir.resolve("docs"), 10)));
+        assertNull(index.search("user", tempDir.resolve("node_modules"), 10));
+        assertNull(index.search("用户", tempDir, 10));
+    }
+
+    @Test
+    void testScoreGivenFiles() {
+        Path service = tempDir.resolve("src/auth/UserService.java");
+        Path notes = tempDir.resolve("docs/notes.md");
+        Path skipped = tempDir.resolve("node_modules/lib/UserService.js");
+        Map<Path, Double> scores = index.score("findUser", List.of(service, notes, skipped));
+        // notes.md 只含拆分出的 user
+        assertTrue(scores.get(service) > scores.get(notes));
+        assertTrue(scores.get(notes) > 0);
+        assertEquals(0.0, scores.get(skipped));
+    }
+
+    @Test
+    void testIncrementalUpdateFromBus() throws Exception {
+        Path added = tempDir.resolve("src/auth/PaymentGateway.java");
+        Files.writeString(added, "class PaymentGateway { void charge() {} }\n");
+        bus.publish(added);
+        index.awaitIdle();
+        assertEquals(List.of("src/auth/PaymentGateway.java"), paths(index.search("charge", tempDir, 10)));
+
+        Files.writeString(added, "class PaymentGateway { void refund() {} }\n");
+        bus.publish(added);
+        index.awaitIdle();
+        assertTrue(paths(index.search("charge", tempDir, 10)).isEmpty());
+        assertEquals(List.of("src/auth/PaymentGateway.java"), paths(index.search("refund", tempDir, 10)));
+
+        Files.delete(added);
+        bus.publish(added);
+        index.awaitIdle();
+        assertTrue(paths(index.search("payment", tempDir, 10)).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testPersistedIndexIsReloaded() {
+        index.shutdown();
+        assertTrue(Files.isRegularFile(tempDir.resolve(".joder/index/tokens.idx")));
+
+        TokenIndex reloaded = new TokenIndex(tempDir.toString(), new FileChangeBus());
+        try {
+            reloaded.refresh();
+            assertEquals(3, reloaded.size());
+            assertEquals("src/auth/UserService.java", paths(reloaded.search("UserService", tempDir, 10)).get(0));
+        } finally {
+            reloaded.shutdown();
+        }
+    }
+
+    private List<String> paths(List<TokenIndex.Hit> hits) {
+        assertNotNull(hits);
+        List<String> result = new ArrayList<>();
+        for (TokenIndex.Hit hit : hits) {
+            result.add(tempDir.relativize(hit.getPath()).toString().replace('\\', '/'));
+        }
+        return result;
+    }
+}
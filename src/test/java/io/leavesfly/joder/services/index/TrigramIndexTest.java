@@ -0,0 +1,80 @@
+package io.leavesfly.joder.services.index;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TrigramIndex 测试
+ */
+class TrigramIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(tempDir.resolve("a.java"), "class Alpha { void hello() {} }");
+        Files.createDirectories(tempDir.resolve("sub"));
+        Files.writeString(tempDir.resolve("sub/b.java"), "class Beta { void world() {} }");
+        Files.createDirectories(tempDir.resolve("node_modules"));
+        Files.writeString(tempDir.resolve("node_modules/c.js"), "hello");
+        bus = new FileChangeBus();
+        index = new TrigramIndex(tempDir.toString(), bus);
+        index.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void testCandidatesAreNarrowed() {
+        assertTrue(index.isFresh());
+        assertEquals(2, index.size());
+        assertEquals(List.of(tempDir.resolve("a.java")), index.findCandidates("HELLO", tempDir));
+        assertEquals(List.of(), index.findCandidates("hello", tempDir.resolve("sub")));
+        assertNull(index.findCandidates("\\w+", tempDir));
+    }
+
+    @Test
+    void testIncrementalUpdateFromBus() throws Exception {
+        Path b = tempDir.resolve("sub/b.java");
+        Files.writeString(b, "class Beta { void hello() {} }");
+        bus.publish(b);
+        index.awaitIdle();
+
+        assertEquals(2, index.findCandidates("hello", tempDir).size());
+
+        Files.delete(b);
+        bus.publish(b);
+        index.awaitIdle();
+        assertEquals(List.of(tempDir.resolve("a.java")), index.findCandidates("hello", tempDir));
+    }
+
+    @Test
+    void testPersistedIndexIsReloaded() throws Exception {
+        index.shutdown();
+        assertTrue(Files.exists(tempDir.resolve(".joder/index/trigram.idx")));
+
+        TrigramIndex reloaded = new TrigramIndex(tempDir.toString(), new FileChangeBus());
+        try {
+            reloaded.refresh();
+            assertEquals(List.of(tempDir.resolve("sub/b.java")), reloaded.findCandidates("world", tempDir));
+        } finally {
+            reloaded.shutdown();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.leavesfly.joder.services.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TrigramQuery 测试
+ */
+class TrigramQueryTest {
+
+    @Test
+    void testLiteralBecomesConjunction() {
+        assertEquals("(\"hel\" AND \"ell\" AND \"llo\")", TrigramQuery.fromRegex("hello").toString());
+    }
+
+    @Test
+    void testCaseIsFolded() {
+        assertEquals(TrigramQuery.fromRegex("hello").toString(), TrigramQuery.fromRegex("(?i)HeLLo").toString());
+    }
+
+    @Test
+    void testWildcardSplitsLiterals() {
+        assertEquals("(\"foo\" AND \"bar\")", TrigramQuery.fromRegex("foo.*bar").toString());
+    }
+
+    @Test
+    void testAlternationBecomesDisjunction() {
+        assertEquals("(\"foo\" OR \"bar\")", TrigramQuery.fromRegex("foo|bar").toString());
+        assertEquals("(\"abx\" OR \"aby\")", TrigramQuery.fromRegex("ab[xy]").toString());
+    }
+
+    @Test
+    void testOptionalAndShortPatternsMatchAll() {
+        assertTrue(TrigramQuery.fromRegex("ab").matchesAll());
+        assertTrue(TrigramQuery.fromRegex("\\w+").matchesAll());
+        assertTrue(TrigramQuery.fromRegex("foo|\\d").matchesAll());
+        assertTrue(TrigramQuery.fromRegex("(?x) f o o").matchesAll());
+        assertTrue(TrigramQuery.fromRegex("(foo)*").matchesAll());
+    }
+
+    @Test
+    void testEscapesAndQuantifiers() {
+        assertEquals("(\"a.b\" AND \".bc\")", TrigramQuery.fromRegex("a\\.bc").toString());
+        assertEquals("(\"foo\" AND \"bar\")", TrigramQuery.fromRegex("foo\\s+bar").toString());
+        assertEquals("\"abc\"", TrigramQuery.fromRegex("(abc)+").toString());
+        assertEquals("\"abc\"", TrigramQuery.fromRegex("\\Qabc\\E").toString());
+    }
+
+    @Test
+    void testRequiredLiteral() {
+        assertEquals("handlerequest", TrigramQuery.requiredLiteral("handleRequest\\w*\\("));
+        assertEquals("foobar", TrigramQuery.requiredLiteral("(?i)x+FOOBAR\\s*y"));
+        assertEquals("abc", TrigramQuery.requiredLiteral("(abc)+d?"));
+        assertNull(TrigramQuery.requiredLiteral("foo|bar"));
+        assertNull(TrigramQuery.requiredLiteral("\\w+"));
+        assertNull(TrigramQuery.requiredLiteral("a\\nb"));
+    }
+
+    @Test
+    void testEvaluate() {
+        TrigramQuery query = TrigramQuery.fromRegex("foo|bar");
+        int[] ids = query.evaluate(key -> {
+            if (key == TrigramQuery.trigramAt("foo".getBytes(), 0)) {
+                return new int[]{1, 3};
+            }
+            if (key == TrigramQuery.trigramAt("bar".getBytes(), 0)) {
+                return new int[]{2, 3};
+            }
+            return new int[0];
+        });
+        assertArrayEquals(new int[]{1, 2, 3}, ids);
+        assertNull(TrigramQuery.ALL.evaluate(key -> new int[0]));
+    }
+}
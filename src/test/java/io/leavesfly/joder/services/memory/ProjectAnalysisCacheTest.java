@@ -0,0 +1,136 @@
+package io.leavesfly.joder.services.memory;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.workspace.WorkspaceCatalog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ProjectAnalysisCache 与 ProjectAnalyzer 目录树测试
+ */
+class ProjectAnalysisCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger folds = new AtomicInteger();
+    private final ProjectAnalysisCache.Fold<Integer> fileCount = (directory, subResult) -> {
+        folds.incrementAndGet();
+        int count = 0;
+        for (ProjectAnalysisCache.Child child : directory.getChildren()) {
+            Integer sub = child.isDirectory() ? subResult.apply(child.getName()) : null;
+            count += child.isDirectory() ? (sub != null ? sub : 0) : 1;
+        }
+        return count;
+    };
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(tempDir.resolve("src/main"));
+        Files.createDirectories(tempDir.resolve("docs"));
+        Files.createDirectories(tempDir.resolve("target/classes"));
+        Files.writeString(tempDir.resolve("pom.xml"), "<project/>");
+        Files.writeString(tempDir.resolve("src/main/App.java"), "class App {}");
+        Files.writeString(tempDir.resolve("docs/guide.md"), "# Guide");
+        Files.writeString(tempDir.resolve("target/classes/App.class"), "");
+    }
+
+    @Test
+    void testDirectoryTree() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"), "*.log\n");
+        Files.writeString(tempDir.resolve("debug.log"), "");
+        ProjectAnalyzer analyzer = new ProjectAnalyzer(tempDir.toString());
+        assertEquals(tempDir.getFileName() + "/\n"
+            + "├── docs/\n"
+            + "│   └── guide.md\n"
+            + "├── src/\n"
+            + "│   └── main/\n"
+            + "└── pom.xml\n", analyzer.generateDirectoryTree(2));
+    }
+
+    @Test
+    void testUnchangedSubtreesAreReused() throws Exception {
+        ProjectAnalysisCache cache = new ProjectAnalysisCache(tempDir.toString());
+        ProjectAnalysisCache.Node first = cache.snapshot(tempDir, 3);
+        assertEquals(3, first.fold(fileCount));
+        int initialFolds = folds.get();
+
+        ProjectAnalysisCache.Node same = cache.snapshot(tempDir, 3);
+        assertSame(first, same);
+        assertEquals(3, same.fold(fileCount));
+        assertEquals(initialFolds, folds.get());
+
+        Files.writeString(tempDir.resolve("src/main/Util.java"), "class Util {}");
+        ProjectAnalysisCache.Node changed = cache.snapshot(tempDir, 3);
+        assertNotEquals(first.getHash(), changed.getHash());
+        assertSame(first.getSubdirectory("docs"), changed.getSubdirectory("docs"));
+        assertEquals(4, changed.fold(fileCount));
+        // 只有 src/main、src 与根目录重新计算
+        assertEquals(initialFolds + 3, folds.get());
+    }
+
+    @Test
+    void testExcludedAndIgnoredDirectoriesAreNotExpanded() throws Exception {
+        Files.createDirectories(tempDir.resolve("out/gen"));
+        Files.writeString(tempDir.resolve(".gitignore"), "out/\n");
+        ProjectAnalysisCache cache = new ProjectAnalysisCache(tempDir.toString());
+        ProjectAnalysisCache.Node node = cache.snapshot(tempDir, 3);
+        assertNull(node.getSubdirectory("target"));
+        assertNull(node.getSubdirectory("out"));
+        assertNotNull(node.getSubdirectory("src"));
+
+        Files.writeString(tempDir.resolve(".gitignore"), "# nothing ignored\n");
+        node = cache.snapshot(tempDir, 3);
+        assertNotNull(node.getSubdirectory("out"));
+    }
+
+    @Test
+    void testSnapshotFromCatalog() throws Exception {
+        FileChangeBus bus = new FileChangeBus();
+        WorkspaceCatalog catalog = new WorkspaceCatalog(tempDir.toString(), bus);
+        try {
+            catalog.refresh();
+            ProjectAnalysisCache cache = new ProjectAnalysisCache(tempDir.toString(), catalog);
+            ProjectAnalysisCache.Node first = cache.snapshot(tempDir, 3);
+            assertEquals(3, first.fold(fileCount));
+            assertSame(first, cache.snapshot(tempDir, 3));
+
+            Path added = tempDir.resolve("docs/api.md");
+            Files.writeString(added, "# API");
+            bus.publish(added);
+            catalog.refresh();
+            ProjectAnalysisCache.Node changed = cache.snapshot(tempDir, 3);
+            assertEquals(4, changed.fold(fileCount));
+            assertSame(first.getSubdirectory("src"), changed.getSubdirectory("src"));
+        } finally {
+            catalog.shutdown();
+        }
+    }
+
+    @Test
+    void testTechStackIsMemoizedUntilManifestChanges() throws Exception {
+        ProjectAnalysisCache cache = new ProjectAnalysisCache(tempDir.toString());
+        ProjectAnalyzer analyzer = new ProjectAnalyzer(tempDir.toString(), cache);
+        assertEquals(Map.of("Language", "Java", "Build Tool", "Maven"), analyzer.detectTechStack());
+
+        AtomicInteger calls = new AtomicInteger();
+        List<Path> inputs = List.of(tempDir.resolve("pom.xml"));
+        cache.memoize("k", inputs, calls::incrementAndGet);
+        cache.memoize("k", inputs, calls::incrementAndGet);
+        assertEquals(1, calls.get());
+
+        Files.writeString(tempDir.resolve("pom.xml"), "<project><!-- spring-boot --></project>");
+        assertEquals("Spring Boot", analyzer.detectTechStack().get("Framework"));
+        cache.memoize("k", inputs, calls::incrementAndGet);
+        assertEquals(2, calls.get());
+    }
+}
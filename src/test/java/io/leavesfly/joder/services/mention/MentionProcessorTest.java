@@ -2,6 +2,10 @@ package io.leavesfly.joder.services.mention;
 
 import io.leavesfly.joder.domain.Mention;
 import io.leavesfly.joder.domain.MentionType;
+import io.leavesfly.joder.services.context.ContextPacker;
+import io.leavesfly.joder.services.context.TokenCounter;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.index.ImportGraph;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -196,6 +200,28 @@ class MentionProcessorTest {
         assertTrue(processed.contains("Important data"));
     }
     
+    @Test
+    void testProcessInput_ContextIncludesRelatedFiles() throws IOException {
+        Files.createDirectories(tempDir.resolve("app"));
+        Files.writeString(tempDir.resolve("app/Main.java"), "package app;\nimport app.Helper;\nclass Main {}\n");
+        Files.writeString(tempDir.resolve("app/Helper.java"), "package app;\nclass Helper { int helperValue; }\n");
+        ImportGraph graph = new ImportGraph(tempDir.toString(), new FileChangeBus());
+        try {
+            graph.refresh();
+            MentionProcessor contextProcessor = new MentionProcessor(null,
+                new ContextPacker(tempDir.toString(), graph, new TokenCounter()));
+            
+            String processed = contextProcessor.processInput("Explain @context:app/Main.java", tempDir.toString());
+            
+            assertTrue(processed.contains("File: app/Main.java"));
+            assertTrue(processed.contains("helperValue"));
+            assertFalse(contextProcessor.processInput("Explain @file:app/Main.java", tempDir.toString())
+                .contains("helperValue"));
+        } finally {
+            graph.shutdown();
+        }
+    }
+    
     @Test
     void testGetInvalidMentions() {
         String input = "@file:nonexistent.txt and @agent:good-agent";
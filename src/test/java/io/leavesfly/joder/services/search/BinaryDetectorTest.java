@@ -0,0 +1,96 @@
+package io.leavesfly.joder.services.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BinaryDetector 测试
+ */
+class BinaryDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final BinaryDetector detector = new BinaryDetector();
+
+    @Test
+    void testTextFilesWithoutKnownExtension() throws Exception {
+        assertTrue(detector.isTextFile(write("Main.kt", "fun main() = println(\"hi\")\n")));
+        assertTrue(detector.isTextFile(write("Dockerfile", "FROM alpine\n")));
+        assertTrue(detector.isTextFile(write("schema.sql", "SELECT 1;\n")));
+        assertTrue(detector.isTextFile(write("notes.md", "你好，世界\n".repeat(100))));
+        assertTrue(detector.isTextFile(write("empty", "")));
+    }
+
+    @Test
+    void testBinaryContent() throws Exception {
+        assertFalse(detector.isTextFile(write("a.txt", new byte[]{'a', 'b', 0, 'c'})));
+        byte[] random = new byte[4096];
+        new java.util.Random(1).nextBytes(random);
+        random[0] = 1;
+        for (int i = 0; i < random.length; i++) {
+            if (random[i] == 0) {
+                random[i] = (byte) 0x81;
+            }
+        }
+        assertFalse(detector.isTextFile(write("noise.dat", random)));
+    }
+
+    @Test
+    void testByteOrderMarks() {
+        byte[] utf16 = "﻿hello".getBytes(StandardCharsets.UTF_16LE);
+        assertFalse(BinaryDetector.isBinary(utf16));
+        assertFalse(BinaryDetector.isBinary(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'x'}));
+    }
+
+    @Test
+    void testLatin1TextAndTruncatedSequence() {
+        byte[] latin1 = "Le café est servi avec une crème brûlée, comme toujours.\n".getBytes(StandardCharsets.ISO_8859_1);
+        assertFalse(BinaryDetector.isBinary(latin1));
+
+        byte[] utf8 = "abc中".getBytes(StandardCharsets.UTF_8);
+        byte[] truncated = java.util.Arrays.copyOf(utf8, utf8.length - 1);
+        assertFalse(BinaryDetector.isBinary(truncated));
+    }
+
+    @Test
+    void testVerdictCachedUntilFileChanges() throws Exception {
+        Path file = write("data", "plain text\n");
+        assertTrue(detector.isTextFile(file));
+        assertEquals(1, detector.cacheSize());
+
+        FileTime mtime = Files.getLastModifiedTime(file);
+        Files.write(file, new byte[]{1, 0, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime.toMillis() + 2000));
+
+        assertFalse(detector.isTextFile(file));
+        assertFalse(detector.isTextFile(tempDir));
+    }
+
+    @Test
+    void testFullCacheEvictsOnlyPart() throws Exception {
+        BinaryDetector small = new BinaryDetector(16);
+        for (int i = 0; i < 40; i++) {
+            assertTrue(small.isTextFile(write("f" + i + ".txt", "line " + i + "\n")));
+            assertTrue(small.cacheSize() <= 16);
+        }
+        assertTrue(small.cacheSize() >= 14);
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return write(name, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path write(String name, byte[] content) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.write(file, content);
+        return file;
+    }
+}
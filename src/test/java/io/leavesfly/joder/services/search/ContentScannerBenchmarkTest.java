@@ -0,0 +1,110 @@
+package io.leavesfly.joder.services.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ContentScanner 基准测试
+ * 对比逐行 BufferedReader 扫描与并行扫描引擎，默认不运行：
+ * mvn test -Dtest=ContentScannerBenchmarkTest -Djoder.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "joder.benchmark", matches = "true")
+class ContentScannerBenchmarkTest {
+
+    private static final int DIRECTORIES = 40;
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final int LINES_PER_FILE = 400;
+    private static final int ROUNDS = 5;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void benchmarkAgainstLineByLineScan() throws Exception {
+        generateCorpus();
+        Pattern pattern = Pattern.compile("handleRequest\\w*\\(");
+        ContentScanner scanner = new ContentScanner();
+
+        // 预热
+        int expected = legacyScan(pattern).size();
+        assertEquals(expected, scanner.scan(ContentScanner.ScanRequest.builder(tempDir, pattern).build()).getFiles().size());
+
+        long legacyNanos = Long.MAX_VALUE;
+        long scannerNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long begin = System.nanoTime();
+            legacyScan(pattern);
+            legacyNanos = Math.min(legacyNanos, System.nanoTime() - begin);
+
+            begin = System.nanoTime();
+            scanner.scan(ContentScanner.ScanRequest.builder(tempDir, pattern).build());
+            scannerNanos = Math.min(scannerNanos, System.nanoTime() - begin);
+        }
+
+        System.out.printf("文件数 %d, 命中 %d, 逐行扫描 %.1fms, 扫描引擎 %.1fms, 加速 %.1fx (%d 核)%n",
+            DIRECTORIES * FILES_PER_DIRECTORY, expected, legacyNanos / 1e6, scannerNanos / 1e6,
+            (double) legacyNanos / scannerNanos, Runtime.getRuntime().availableProcessors());
+        assertTrue(scannerNanos < legacyNanos);
+    }
+
+    private void generateCorpus() throws IOException {
+        Random random = new Random(42);
+        String[] words = {"public", "void", "return", "final", "String", "value", "count", "index",
+            "request", "response", "handler", "config", "logger", "debug", "result", "builder"};
+        for (int d = 0; d < DIRECTORIES; d++) {
+            Path dir = Files.createDirectories(tempDir.resolve("module" + d));
+            for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+                StringBuilder sb = new StringBuilder();
+                for (int l = 0; l < LINES_PER_FILE; l++) {
+                    sb.append("    ");
+                    for (int w = 0; w < 8; w++) {
+                        sb.append(words[random.nextInt(words.length)]).append(' ');
+                    }
+                    if (random.nextInt(20000) == 0) {
+                        sb.append("handleRequest(ctx);");
+                    }
+                    sb.append('\n');
+                }
+                Files.writeString(dir.resolve("File" + f + ".java"), sb.toString());
+            }
+        }
+    }
+
+    private List<Path> legacyScan(Pattern pattern) throws IOException {
+        List<Path> matches = new ArrayList<>();
+        Files.walkFileTree(tempDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (pattern.matcher(line).find()) {
+                            matches.add(file);
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    // 忽略
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return matches;
+    }
+}
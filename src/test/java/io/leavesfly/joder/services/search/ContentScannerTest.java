@@ -0,0 +1,178 @@
+package io.leavesfly.joder.services.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ContentScanner 测试
+ */
+class ContentScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ContentScanner scanner = new ContentScanner(2);
+
+    @Test
+    void testLineNumbersMatchBufferedReader() throws Exception {
+        String content = "alpha\r\nbeta foo\rgamma\n\nfoo delta\nFOO epsilon";
+        Files.writeString(tempDir.resolve("a.txt"), content);
+
+        List<ContentScanner.LineMatch> actual = scanOne("(?i)foo", 10);
+
+        List<String> expected = referenceMatches(content, Pattern.compile("(?i)foo"));
+        List<String> got = new ArrayList<>();
+        actual.forEach(m -> got.add(m.getLineNumber() + ":" + m.getLine() + ":" + m.getStart()));
+        assertEquals(expected, got);
+    }
+
+    @Test
+    void testRegexWithoutLiteral() throws Exception {
+        String content = "x = 1\ny = 22\nz = 333\n";
+        Files.writeString(tempDir.resolve("b.txt"), content);
+
+        List<ContentScanner.LineMatch> actual = scanOne("\\d{2,}", 10);
+
+        assertEquals(2, actual.size());
+        assertEquals(2, actual.get(0).getLineNumber());
+        assertEquals(3, actual.get(1).getLineNumber());
+    }
+
+    @Test
+    void testLiteralOnNonMatchingLineIsSkipped() throws Exception {
+        Files.writeString(tempDir.resolve("c.txt"), "foo only\nfoo bar\n");
+
+        List<ContentScanner.LineMatch> actual = scanOne("foo\\s+bar", 10);
+
+        assertEquals(1, actual.size());
+        assertEquals(2, actual.get(0).getLineNumber());
+    }
+
+    @Test
+    void testMemoryMappedLargeFile() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 20000; i++) {
+            sb.append("line ").append(i).append(i == 15000 ? " needle" : "").append('\n');
+        }
+        Files.writeString(tempDir.resolve("big.log"), sb.toString());
+
+        List<ContentScanner.LineMatch> actual = scanOne("needle", 10);
+
+        assertEquals(1, actual.size());
+        assertEquals(15000, actual.get(0).getLineNumber());
+    }
+
+    @Test
+    void testFiltersAndLimits() throws Exception {
+        Files.createDirectories(tempDir.resolve("skip"));
+        Files.writeString(tempDir.resolve("skip/x.txt"), "needle");
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(tempDir.resolve("f" + i + ".txt"), "needle " + i);
+        }
+        Files.writeString(tempDir.resolve("f.bin"), "needle");
+
+        ContentScanner.ScanRequest request = ContentScanner.ScanRequest.builder(tempDir, Pattern.compile("needle"))
+            .directoryFilter(dir -> !dir.getFileName().toString().equals("skip"))
+            .fileFilter((file, attrs) -> file.toString().endsWith(".txt"))
+            .build();
+        assertEquals(5, scanner.scan(request).getFiles().size());
+
+        ContentScanner.ScanRequest limited = ContentScanner.ScanRequest.builder(tempDir, Pattern.compile("needle"))
+            .maxFiles(2)
+            .build();
+        assertEquals(2, scanner.scan(limited).getFiles().size());
+    }
+
+    @Test
+    void testCandidatesSkipWalking() throws Exception {
+        Path a = tempDir.resolve("a.txt");
+        Files.writeString(a, "needle");
+        Files.writeString(tempDir.resolve("b.txt"), "needle");
+
+        ContentScanner.ScanRequest request = ContentScanner.ScanRequest.builder(tempDir, Pattern.compile("needle"))
+            .candidates(List.of(a))
+            .build();
+        List<ContentScanner.FileResult> results = new ArrayList<>(scanner.scan(request).getFiles());
+
+        assertEquals(1, results.size());
+        assertEquals(a, results.get(0).getPath());
+        assertTrue(results.get(0).getMatches().isEmpty());
+    }
+
+    @Test
+    void testNewestFirstKeepsTopKAndSkipsOlderFiles() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            Path file = tempDir.resolve("f" + i + ".txt");
+            Files.writeString(file, "needle " + i);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000L + i * 1000));
+        }
+
+        ContentScanner.ScanRequest request = ContentScanner.ScanRequest.builder(tempDir, Pattern.compile("needle"))
+            .newestFirst(3)
+            .build();
+        ContentScanner.ScanResult result = scanner.scan(request);
+
+        List<String> names = new ArrayList<>();
+        result.getFiles().forEach(f -> names.add(f.getPath().getFileName().toString()));
+        assertEquals(List.of("f9.txt", "f8.txt", "f7.txt"), names);
+        assertEquals(10, result.getMatchedFiles() + result.getSkippedFiles());
+        assertEquals(result.getMatchedFiles(), result.getScannedFiles());
+    }
+
+    @Test
+    void testMemoryBudgetStopsScan() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(tempDir.resolve("f" + i + ".txt"), "needle " + i);
+        }
+
+        ContentScanner.ScanRequest request = ContentScanner.ScanRequest.builder(tempDir, Pattern.compile("needle"))
+            .maxMatchesPerFile(10)
+            .memoryBudgetBytes(1)
+            .build();
+        ContentScanner.ScanResult result = new ContentScanner(1).scan(request);
+
+        assertTrue(result.isMemoryBudgetExceeded());
+        assertTrue(result.isStoppedEarly());
+        assertEquals(1, result.getFiles().size());
+        assertFalse(result.isTimedOut());
+    }
+
+    private List<ContentScanner.LineMatch> scanOne(String regex, int maxMatches) throws Exception {
+        ContentScanner.ScanRequest request = ContentScanner.ScanRequest.builder(tempDir, Pattern.compile(regex))
+            .maxMatchesPerFile(maxMatches)
+            .build();
+        List<ContentScanner.FileResult> results = new ArrayList<>(scanner.scan(request).getFiles());
+        results.sort(Comparator.comparing(ContentScanner.FileResult::getPath));
+        assertEquals(1, results.size());
+        return results.get(0).getMatches();
+    }
+
+    private static List<String> referenceMatches(String content, Pattern pattern) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                Matcher matcher = pattern.matcher(line);
+                if (matcher.find()) {
+                    result.add(number + ":" + line + ":" + matcher.start());
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package io.leavesfly.joder.services.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TopKCollector 测试
+ */
+class TopKCollectorTest {
+
+    @Test
+    void testKeepsBestK() {
+        List<Integer> values = new ArrayList<>();
+        IntStream.rangeClosed(1, 1000).forEach(values::add);
+        Collections.shuffle(values, new Random(7));
+
+        TopKCollector<Integer> collector = new TopKCollector<>(5, Comparator.reverseOrder());
+        values.forEach(collector::offer);
+
+        assertEquals(List.of(1000, 999, 998, 997, 996), collector.toSortedList());
+        assertEquals(1000, collector.getOffered());
+        assertEquals(5, collector.size());
+        assertTrue(collector.isTruncated());
+        assertEquals(996, collector.threshold());
+    }
+
+    @Test
+    void testOfferReturnsDroppedElement() {
+        TopKCollector<Integer> collector = new TopKCollector<>(2, Comparator.reverseOrder());
+
+        assertNull(collector.offer(5));
+        assertNull(collector.threshold());
+        assertNull(collector.offer(3));
+        assertEquals(3, collector.offer(7));
+        assertEquals(1, collector.offer(1));
+        assertEquals(List.of(7, 5), collector.toSortedList());
+    }
+
+    @Test
+    void testInvalidLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new TopKCollector<Integer>(0, Comparator.naturalOrder()));
+    }
+}
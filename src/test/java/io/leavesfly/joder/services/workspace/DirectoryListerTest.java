@@ -0,0 +1,141 @@
+package io.leavesfly.joder.services.workspace;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DirectoryLister 测试
+ */
+class DirectoryListerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DirectoryLister lister;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lister = new DirectoryLister();
+        Files.createDirectories(tempDir.resolve("src/main/java"));
+        Files.createDirectories(tempDir.resolve("docs"));
+        Files.writeString(tempDir.resolve("src/main/java/App.java"), "class App {}");
+        Files.writeString(tempDir.resolve("src/main/Readme.txt"), "readme");
+        Files.writeString(tempDir.resolve("docs/guide.md"), "# Guide");
+        Files.writeString(tempDir.resolve("pom.xml"), "<project/>");
+        Files.writeString(tempDir.resolve(".hidden"), "");
+    }
+
+    @Test
+    void testDepthFirstOrderAndFilter() throws Exception {
+        DirectoryLister.Page page = lister.list(DirectoryLister.ListingRequest.builder(tempDir)
+            .filter((path, directory) -> path.getFileName().toString().startsWith("."))
+            .order(DirectoryLister.Order.DIRECTORIES_FIRST)
+            .build());
+
+        assertFalse(page.hasMore());
+        assertEquals(List.of("docs/", "guide.md", "src/", "main/", "java/", "App.java", "Readme.txt", "pom.xml"),
+            names(page));
+        DirectoryLister.Item app = page.getItems().get(5);
+        assertEquals(3, app.getDepth());
+        assertTrue(app.isLastSibling());
+        assertTrue(app.isAncestorOpen(0), "src 之后还有 pom.xml");
+        assertFalse(app.isAncestorOpen(1), "main 是 src 的唯一子项");
+        assertTrue(app.isAncestorOpen(2), "java 之后还有 Readme.txt");
+    }
+
+    @Test
+    void testDepthBudgetCountsCollapsedChildren() throws Exception {
+        DirectoryLister.Page page = lister.list(DirectoryLister.ListingRequest.builder(tempDir)
+            .maxDepth(2)
+            .build());
+
+        assertEquals(List.of(".hidden", "docs/", "guide.md", "pom.xml", "src/", "main/"), names(page));
+        DirectoryLister.Item main = page.getItems().get(5);
+        assertEquals(2, main.getCollapsedChildren());
+        assertEquals(-1, page.getItems().get(4).getCollapsedChildren(), "已展开的目录");
+    }
+
+    @Test
+    void testNestedDirectoriesAreSummarized() throws Exception {
+        Path data = Files.createDirectories(tempDir.resolve("data"));
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(data.resolve("row" + i + ".csv"), "");
+        }
+        DirectoryLister.Page page = lister.list(DirectoryLister.ListingRequest.builder(tempDir)
+            .maxPerDirectory(3)
+            .build());
+
+        List<String> names = names(page);
+        int dataIndex = names.indexOf("data/");
+        assertEquals(List.of("row0.csv", "row1.csv", "row2.csv", "… 7"), names.subList(dataIndex + 1, dataIndex + 5));
+        DirectoryLister.Item summary = page.getItems().get(dataIndex + 4);
+        assertEquals(data, summary.getPath());
+        assertEquals(1, summary.getDepth());
+        assertTrue(summary.isLastSibling());
+        assertFalse(page.getItems().get(dataIndex + 3).isLastSibling());
+    }
+
+    @Test
+    void testPaginationContinuesWithoutRewalking() throws Exception {
+        Path big = Files.createDirectories(tempDir.resolve("big"));
+        for (int i = 0; i < 25; i++) {
+            Files.writeString(big.resolve(String.format("f%02d", i)), "");
+        }
+        DirectoryLister.ListingRequest request = DirectoryLister.ListingRequest.builder(big).pageSize(10).build();
+
+        DirectoryLister.Page first = lister.list(request);
+        assertEquals(10, first.getItems().size());
+        assertTrue(first.hasMore());
+        assertEquals(1, lister.activeSessions());
+
+        // 列出之后新建的文件不会出现在后续页中：游标沿用同一次遍历
+        Files.writeString(big.resolve("late"), "");
+        DirectoryLister.Page second = lister.next(first.getCursor());
+        assertEquals(10, second.getOffset());
+        assertEquals("f10", second.getItems().get(0).getName());
+        assertEquals(second.getItems().get(0).getName(), lister.next(first.getCursor()).getItems().get(0).getName(),
+            "同一游标可以重试");
+
+        DirectoryLister.Page third = lister.next(second.getCursor());
+        assertEquals(List.of("f20", "f21", "f22", "f23", "f24"), names(third));
+        assertFalse(third.hasMore());
+        assertEquals(0, lister.activeSessions());
+        assertNull(lister.next(second.getCursor()), "列完后游标失效");
+        assertNull(lister.next("bogus"));
+    }
+
+    @Test
+    void testLargeDirectoryStatsInParallel() throws Exception {
+        Path big = Files.createDirectories(tempDir.resolve("big"));
+        int count = DirectoryLister.PARALLEL_STAT_THRESHOLD * 3;
+        for (int i = 0; i < count; i++) {
+            Files.writeString(big.resolve(String.format("f%04d", i)), "x".repeat(i % 7));
+        }
+        Files.createDirectories(big.resolve("zz"));
+        DirectoryLister.Page page = lister.list(DirectoryLister.ListingRequest.builder(big)
+            .pageSize(count + 1)
+            .build());
+
+        List<DirectoryLister.Item> items = page.getItems();
+        assertEquals(count + 1, items.size());
+        assertEquals("f0000", items.get(0).getName());
+        assertEquals(6, items.get(6).getSize());
+        assertTrue(items.get(count).isDirectory());
+    }
+
+    private static List<String> names(DirectoryLister.Page page) {
+        List<String> names = new ArrayList<>();
+        for (DirectoryLister.Item item : page.getItems()) {
+            names.add(item.isSummary() ? "… " + item.getOmitted() : item.getName() + (item.isDirectory() ? "/" : ""));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,120 @@
+package io.leavesfly.joder.services.workspace;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IgnoreRules 测试
+ */
+class IgnoreRulesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private IgnoreRules rules;
+
+    @BeforeEach
+    void setUp() {
+        bus = new FileChangeBus();
+        rules = new IgnoreRules(tempDir.toString(), bus);
+    }
+
+    @Test
+    void testNamePatternsMatchAtAnyDepth() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"), "# 注释\n\n*.log\nout/\nvendor\n");
+
+        assertTrue(rules.isIgnored(tempDir.resolve("app.log"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("a/b/debug.log"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("out"), true));
+        assertTrue(rules.isIgnored(tempDir.resolve("sub/out"), true));
+        assertTrue(rules.isIgnored(tempDir.resolve("vendor"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("out"), false), "以 / 结尾的规则只匹配目录");
+        assertFalse(rules.isIgnored(tempDir.resolve("app.txt"), false));
+        assertFalse(rules.isIgnored(tempDir, true));
+    }
+
+    @Test
+    void testIgnoredDirectoryHidesItsContents() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"), "out/\n!keep.txt\n");
+
+        assertTrue(rules.isIgnored(tempDir.resolve("out/classes/App.class"), false));
+        // 父目录被忽略时无法重新包含其中的文件
+        assertTrue(rules.isIgnored(tempDir.resolve("out/keep.txt"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("src/keep.txt"), false));
+    }
+
+    @Test
+    void testAnchoredAndDoubleStarPatterns() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"),
+            "/root-only.txt\ndocs/*.html\n**/generated/**\nlogs/**/trace\n");
+
+        assertTrue(rules.isIgnored(tempDir.resolve("root-only.txt"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("sub/root-only.txt"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("docs/index.html"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("docs/api/index.html"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("a/generated/x/Y.java"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("a/generated"), true));
+        assertTrue(rules.isIgnored(tempDir.resolve("logs/trace"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("logs/a/b/trace"), false));
+    }
+
+    @Test
+    void testNegationAndNestedPrecedence() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"), "*.txt\n!important.txt\n");
+        Files.createDirectories(tempDir.resolve("sub"));
+        Files.writeString(tempDir.resolve("sub/.gitignore"), "!notes.txt\nimportant.txt\n");
+
+        assertTrue(rules.isIgnored(tempDir.resolve("a.txt"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("important.txt"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("sub/notes.txt"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("sub/important.txt"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("sub/other.txt"), false));
+    }
+
+    @Test
+    void testIgnoreFileAndGitInfoExclude() throws Exception {
+        Files.createDirectories(tempDir.resolve(".git/info"));
+        Files.writeString(tempDir.resolve(".git/info/exclude"), "scratch/\n");
+        Files.writeString(tempDir.resolve(".ignore"), "*.tmp\n");
+
+        assertTrue(rules.isIgnored(tempDir.resolve("scratch"), true));
+        assertTrue(rules.isIgnored(tempDir.resolve("x.tmp"), false));
+    }
+
+    @Test
+    void testCharacterClassesAndEscapes() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"), "file[0-9].dat\n[!a]?.bin\n\\#hash\nname.with.dots\n");
+
+        assertTrue(rules.isIgnored(tempDir.resolve("file7.dat"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("fileX.dat"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("bc.bin"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("ac.bin"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("#hash"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("name.with.dots"), false));
+        assertFalse(rules.isIgnored(tempDir.resolve("nameXwithXdots"), false));
+    }
+
+    @Test
+    void testCacheIsInvalidatedWhenRulesChange() throws Exception {
+        Path gitignore = tempDir.resolve("sub/.gitignore");
+        Files.createDirectories(gitignore.getParent());
+        Files.writeString(gitignore, "*.gen\n");
+        assertTrue(rules.isIgnored(tempDir.resolve("sub/deep/a.gen"), false));
+        assertTrue(rules.cachedDirectories() > 0);
+
+        Files.writeString(gitignore, "*.other\n");
+        assertTrue(rules.isIgnored(tempDir.resolve("sub/deep/a.gen"), false), "未通知前使用缓存");
+
+        bus.publish(gitignore);
+        assertFalse(rules.isIgnored(tempDir.resolve("sub/deep/a.gen"), false));
+        assertTrue(rules.isIgnored(tempDir.resolve("sub/deep/a.other"), false));
+    }
+}
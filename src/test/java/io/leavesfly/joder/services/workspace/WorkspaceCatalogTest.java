@@ -0,0 +1,210 @@
+package io.leavesfly.joder.services.workspace;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * WorkspaceCatalog 测试
+ */
+class WorkspaceCatalogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileChangeBus bus;
+    private WorkspaceCatalog catalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(tempDir.resolve("a.txt"), "alpha");
+        Files.createDirectories(tempDir.resolve("src/main"));
+        Files.writeString(tempDir.resolve("src/main/App.java"), "class App {}");
+        Files.writeString(tempDir.resolve(".env"), "X=1");
+        Files.createDirectories(tempDir.resolve("node_modules/lib"));
+        Files.writeString(tempDir.resolve("node_modules/lib/index.js"), "x");
+        bus = new FileChangeBus();
+        catalog = new WorkspaceCatalog(tempDir.toString(), bus);
+        catalog.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalog.shutdown();
+    }
+
+    @Test
+    void testInitialBuild() {
+        assertTrue(catalog.isFresh());
+        assertEquals(3, catalog.size());
+        assertEquals(Set.of("a.txt", ".env", "src/main/App.java"), relativeFiles(tempDir));
+        assertEquals(Set.of("src/main/App.java"), relativeFiles(tempDir.resolve("src")));
+    }
+
+    @Test
+    void testExcludedDirectoryIsListedButNotExpanded() {
+        WorkspaceCatalog.Entry nodeModules = catalog.listChildren(tempDir).stream()
+            .filter(e -> e.getName().equals("node_modules"))
+            .findFirst()
+            .orElseThrow();
+        assertTrue(nodeModules.isDirectory());
+        assertTrue(nodeModules.isExcluded());
+        assertNull(catalog.listChildren(tempDir.resolve("node_modules")));
+        assertFalse(catalog.walk(tempDir.resolve("node_modules/lib"), file -> FileVisitResult.CONTINUE));
+        assertNull(catalog.listFiles(tempDir.getParent(), dir -> true));
+    }
+
+    @Test
+    void testGitignoredDirectoryFollowsRuleChanges() throws Exception {
+        Files.createDirectories(tempDir.resolve("out/classes"));
+        Files.writeString(tempDir.resolve("out/classes/App.class"), "x");
+        Path gitignore = tempDir.resolve(".gitignore");
+        Files.writeString(gitignore, "out/\n");
+        catalog.refresh();
+
+        assertNull(catalog.listChildren(tempDir.resolve("out")));
+        assertFalse(relativeFiles(tempDir).contains("out/classes/App.class"));
+
+        Files.writeString(gitignore, "*.log\n");
+        bus.publish(gitignore);
+        catalog.awaitIdle();
+
+        assertNotNull(catalog.listChildren(tempDir.resolve("out")));
+        assertTrue(relativeFiles(tempDir).contains("out/classes/App.class"));
+    }
+
+    @Test
+    void testEntriesCarrySizeAndTime() throws Exception {
+        List<WorkspaceCatalog.Entry> entries = catalog.listChildren(tempDir);
+        WorkspaceCatalog.Entry a = entries.stream().filter(e -> e.getName().equals("a.txt")).findFirst().orElseThrow();
+        assertEquals(5, a.getSize());
+        assertEquals(Files.getLastModifiedTime(tempDir.resolve("a.txt")).toMillis(), a.getLastModified());
+        assertFalse(a.isDirectory());
+    }
+
+    @Test
+    void testUpdatesFromBus() throws Exception {
+        Path nested = tempDir.resolve("docs/guide/intro.md");
+        Files.createDirectories(nested.getParent());
+        Files.writeString(nested, "# intro");
+        bus.publish(nested);
+        Files.delete(tempDir.resolve("a.txt"));
+        bus.publish(tempDir.resolve("a.txt"));
+        catalog.awaitIdle();
+
+        assertEquals(Set.of(".env", "src/main/App.java", "docs/guide/intro.md"), relativeFiles(tempDir));
+
+        Files.writeString(tempDir.resolve("src/main/App.java"), "class App { int x; }");
+        bus.publish(tempDir.resolve("src/main/App.java"));
+        catalog.awaitIdle();
+        long size = catalog.listChildren(tempDir.resolve("src/main")).get(0).getSize();
+        assertEquals(Files.size(tempDir.resolve("src/main/App.java")), size);
+    }
+
+    @Test
+    void testOverflowResyncs() throws Exception {
+        Files.createDirectories(tempDir.resolve("gen"));
+        for (int i = 0; i < 3000; i++) {
+            Files.writeString(tempDir.resolve("gen/f" + i + ".txt"), "x");
+        }
+        deleteRecursively(tempDir.resolve("src"));
+        bus.publishOverflow();
+        catalog.awaitIdle();
+
+        assertEquals(3002, catalog.size());
+        assertNull(catalog.listChildren(tempDir.resolve("src")));
+        assertEquals(3000, catalog.listChildren(tempDir.resolve("gen")).size());
+    }
+
+    @Test
+    void testUnknownChangeIsLeftToWatcher() {
+        assumeTrue(catalog.isWatching(), "文件监听不可用");
+        assertTrue(bus.isWatched(tempDir.resolve("src")));
+
+        bus.publishUnknown();
+        assertTrue(catalog.isFresh());
+
+        catalog.shutdown();
+        assertFalse(bus.isWatched(tempDir));
+    }
+
+    @Test
+    void testWalkHonoursSkipSubtreeAndTerminate() {
+        List<Path> visited = new ArrayList<>();
+        boolean available = catalog.walk(tempDir, new WorkspaceCatalog.Visitor() {
+            @Override
+            public FileVisitResult preVisitDirectory(WorkspaceCatalog.Entry directory) {
+                return directory.getName().equals("src") || directory.isExcluded()
+                    ? FileVisitResult.SKIP_SUBTREE
+                    : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(WorkspaceCatalog.Entry file) {
+                visited.add(file.getPath());
+                return FileVisitResult.TERMINATE;
+            }
+        });
+        assertTrue(available);
+        assertEquals(1, visited.size());
+        assertFalse(visited.get(0).startsWith(tempDir.resolve("src")));
+
+        // 要求展开排除目录时目录不可用，调用方需回退到文件系统
+        assertFalse(catalog.walk(tempDir, file -> FileVisitResult.CONTINUE));
+    }
+
+    @Test
+    void testExternalChangesArePublished() throws Exception {
+        assumeTrue(catalog.isWatching(), "文件监听不可用");
+        List<Path> published = new CopyOnWriteArrayList<>();
+        bus.subscribe(new FileChangeBus.Listener() {
+            @Override
+            public void onPathChanged(Path path) {
+                published.add(path);
+            }
+
+            @Override
+            public void onUnknownChange() {
+            }
+        });
+        Path created = tempDir.resolve("src/main/Created.java");
+        Files.writeString(created, "class Created {}");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!published.contains(created) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(published.contains(created));
+        catalog.awaitIdle();
+        assertTrue(relativeFiles(tempDir).contains("src/main/Created.java"));
+    }
+
+    private Set<String> relativeFiles(Path start) {
+        List<Path> files = catalog.listFiles(start, dir -> true);
+        assertNotNull(files);
+        Set<String> result = new TreeSet<>();
+        files.forEach(f -> result.add(tempDir.relativize(f).toString()));
+        return result;
+    }
+
+    private static void deleteRecursively(Path path) throws Exception {
+        try (var stream = Files.walk(path)) {
+            stream.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
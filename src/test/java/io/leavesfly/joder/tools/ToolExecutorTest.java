@@ -5,6 +5,7 @@ import io.leavesfly.joder.hooks.ToolPermissionHook;
 import io.leavesfly.joder.core.permission.PermissionManager;
 import io.leavesfly.joder.core.permission.PermissionMode;
 import io.leavesfly.joder.core.config.ConfigManager;
+import io.leavesfly.joder.services.cost.ToolMetricsService;
 import io.leavesfly.joder.ui.permission.PermissionDialog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -48,7 +49,8 @@ class ToolExecutorTest {
         when(configManager.getStringList(eq("joder.permissions.trustedTools"), eq(emptyList)))
             .thenReturn(emptyList);
         
-        permissionManager = new PermissionManager(configManager, permissionDialog);
+        permissionManager = mock(PermissionManager.class);
+        when(permissionManager.checkPermission(any(), any())).thenReturn(true);
         permissionHook = new ToolPermissionHook(permissionManager);
         cancelHook = new CancelRequestHook();
         executor = new ToolExecutor(permissionHook, cancelHook);
@@ -184,6 +186,149 @@ class ToolExecutorTest {
         verify(tool3, never()).call(any());
     }
     
+    @Test
+    @DisplayName("取消应立即唤醒等待方并中断工具线程")
+    void testCancelWakesWaiterImmediately() throws Exception {
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch interrupted = new java.util.concurrent.CountDownLatch(1);
+        Tool tool = mock(Tool.class);
+        when(tool.getName()).thenReturn("blocking_tool");
+        when(tool.call(any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return ToolResult.success("late");
+        });
+        
+        Thread canceller = new Thread(() -> {
+            try {
+                started.await();
+            } catch (InterruptedException ignored) {
+                return;
+            }
+            cancelHook.cancel();
+        });
+        canceller.start();
+        
+        long begin = System.nanoTime();
+        ToolResult result = executor.execute(tool, Map.of(), 5000);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        
+        assertFalse(result.isSuccess());
+        assertTrue(result.getError().contains("取消"));
+        assertTrue(elapsedMs < 1000, "取消耗时过长: " + elapsedMs + "ms");
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    @DisplayName("超时应由调度任务触发而非轮询")
+    void testTimeout() {
+        Tool tool = createSlowMockTool("slow_tool", 5000);
+        
+        long begin = System.nanoTime();
+        ToolResult result = executor.execute(tool, Map.of(), 50);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        
+        assertFalse(result.isSuccess());
+        assertTrue(result.getError().contains("超时"));
+        assertTrue(elapsedMs < 1000, "超时响应过慢: " + elapsedMs + "ms");
+    }
+    
+    @Test
+    @DisplayName("每次调用应按结果分类记录指标")
+    void testMetricsRecordedPerOutcome() {
+        executor.execute(createMockTool("test_tool", false), Map.of());
+        executor.execute(createSlowMockTool("slow_tool", 5000), Map.of(), 50);
+        
+        ToolMetricsService.ToolStats ok = executor.getMetrics().getToolStats().get("test_tool");
+        ToolMetricsService.ToolStats slow = executor.getMetrics().getToolStats().get("slow_tool");
+        assertEquals(1, ok.getCount(ToolMetricsService.Outcome.SUCCESS));
+        assertEquals(1, slow.getCount(ToolMetricsService.Outcome.TIMEOUT));
+        assertEquals(0, slow.getCount(ToolMetricsService.Outcome.SUCCESS));
+    }
+    
+    @Test
+    @DisplayName("单个工具超时只取消它自己，不影响并发的其他工具")
+    void testTimeoutIsScopedToTool() throws Exception {
+        Tool slow = createSlowMockTool("slow_tool", 5000);
+        Tool steady = createSlowMockTool("steady_tool", 300);
+        when(slow.isConcurrencySafe()).thenReturn(true);
+        when(steady.isConcurrencySafe()).thenReturn(true);
+        
+        java.util.concurrent.CompletableFuture<ToolResult> steadyResult =
+            java.util.concurrent.CompletableFuture.supplyAsync(() -> executor.execute(steady, Map.of(), 5000));
+        ToolResult slowResult = executor.execute(slow, Map.of(), 50);
+        
+        assertTrue(slowResult.getError().contains("超时"));
+        assertTrue(steadyResult.get(3, TimeUnit.SECONDS).isSuccess());
+        assertFalse(cancelHook.getTurnToken().isCancelled());
+    }
+    
+    @Test
+    @DisplayName("排队等待独占通道的时间不计入工具自身的超时")
+    void testTimeoutStartsWhenToolRuns() throws Exception {
+        Tool first = createSlowMockTool("first_tool", 600);
+        Tool second = createSlowMockTool("second_tool", 100);
+        
+        java.util.concurrent.CompletableFuture<ToolResult> firstResult =
+            java.util.concurrent.CompletableFuture.supplyAsync(() -> executor.execute(first, Map.of(), 5000));
+        verify(first, timeout(1000)).call(any());
+        ToolResult secondResult = executor.execute(second, Map.of(), 400);
+        
+        assertTrue(secondResult.isSuccess(), "排队期间被判超时: " + secondResult.getError());
+        assertTrue(firstResult.get(3, TimeUnit.SECONDS).isSuccess());
+    }
+    
+    @Test
+    @DisplayName("不响应中断的独占工具不应阻塞后续写类工具")
+    void testWedgedExclusiveToolIsAbandoned() throws Exception {
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        Tool wedged = mock(Tool.class);
+        when(wedged.getName()).thenReturn("wedged_tool");
+        when(wedged.call(any())).thenAnswer(invocation -> {
+            while (true) {
+                try {
+                    release.await();
+                    return ToolResult.success("late");
+                } catch (InterruptedException ignored) {
+                    // 模拟忽略中断的阻塞 IO
+                }
+            }
+        });
+        Tool next = createMockTool("next_tool", false);
+        
+        try {
+            java.util.concurrent.CompletableFuture<ToolResult> wedgedResult =
+                java.util.concurrent.CompletableFuture.supplyAsync(() -> executor.execute(wedged, Map.of(), 100));
+            verify(wedged, timeout(1000)).call(any());
+            long begin = System.nanoTime();
+            ToolResult nextResult = executor.execute(next, Map.of(), 5000);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            
+            assertTrue(wedgedResult.get(3, TimeUnit.SECONDS).getError().contains("超时"));
+            assertTrue(nextResult.isSuccess());
+            assertTrue(elapsedMs < 3000, "后续工具等待过长: " + elapsedMs + "ms");
+        } finally {
+            release.countDown();
+        }
+    }
+    
+    @Test
+    @DisplayName("工具执行期间应绑定自身的取消令牌")
+    void testToolSeesOwnToken() {
+        Tool tool = mock(Tool.class);
+        when(tool.getName()).thenReturn("probe_tool");
+        when(tool.call(any())).thenAnswer(invocation ->
+            ToolResult.success(io.leavesfly.joder.hooks.CancellationToken.current().getPath()));
+        
+        ToolResult result = executor.execute(tool, Map.of());
+        
+        assertEquals("turn/probe_tool", result.getOutput());
+    }
+    
     /**
      * 创建模拟工具
      */
@@ -0,0 +1,167 @@
+package io.leavesfly.joder.tools;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ToolOutputChannel 测试
+ */
+@DisplayName("ToolOutputChannel 流式输出通道测试")
+class ToolOutputChannelTest {
+    
+    @Test
+    @DisplayName("小输出应完整保留且不产生溢出文件")
+    void testSmallOutput() throws Exception {
+        ToolOutputChannel channel = new ToolOutputChannel("test", null, null);
+        channel.emit("hello ");
+        channel.emit("world");
+        
+        ToolOutputChannel.Summary summary = channel.finish();
+        
+        assertEquals("hello world", summary.getText());
+        assertEquals(11, summary.getTotalChars());
+        assertNull(summary.getSpillFile());
+    }
+    
+    @Test
+    @DisplayName("大输出只保留头尾摘录，完整内容写入溢出文件")
+    void testLargeOutputSpills() throws Exception {
+        ToolOutputChannel channel = new ToolOutputChannel("test", null, null);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            String line = "line-" + i + "\n";
+            expected.append(line);
+            channel.emit(line);
+        }
+        
+        ToolOutputChannel.Summary summary = channel.finish();
+        
+        assertNotNull(summary.getSpillFile());
+        assertTrue(summary.getText().startsWith("line-0\n"));
+        assertTrue(summary.getText().endsWith("line-19999\n"));
+        assertTrue(summary.getText().contains("已省略"));
+        assertTrue(summary.getText().length() < 32 * 1024);
+        assertEquals(expected.toString(), Files.readString(summary.getSpillFile()));
+        Files.deleteIfExists(summary.getSpillFile());
+    }
+    
+    @Test
+    @DisplayName("监听器应按顺序收到所有输出块")
+    void testListenerReceivesChunksInOrder() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StringBuilder received = new StringBuilder();
+        try {
+            ToolOutputChannel channel = new ToolOutputChannel("test", received::append, executor);
+            for (int i = 0; i < 500; i++) {
+                channel.emit(i + ",");
+            }
+            ToolOutputChannel.Summary summary = channel.finish();
+            
+            assertEquals(summary.getText(), received.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    @DisplayName("消费阻塞时生产者应被背压阻塞")
+    void testBackpressure() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            ToolOutputChannel channel = new ToolOutputChannel("test", chunk -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor);
+            
+            Thread producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 1000; i++) {
+                        channel.emit("chunk");
+                    }
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producer.start();
+            
+            producer.join(300);
+            assertTrue(producer.isAlive(), "队列有界，生产者应被阻塞");
+            
+            release.countDown();
+            producer.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(producer.isAlive());
+            assertEquals(5000, channel.finish().getTotalChars());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    @DisplayName("未完成即关闭应等待消费线程退出并删除溢出文件")
+    void testCloseJoinsDrainerAndDeletesSpill() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        String prefix = "close-test-" + System.nanoTime();
+        AtomicInteger received = new AtomicInteger();
+        try {
+            ToolOutputChannel channel = new ToolOutputChannel(prefix, chunk -> received.incrementAndGet(), executor);
+            String chunk = "x".repeat(1024);
+            for (int i = 0; i < 100; i++) {
+                channel.emit(chunk);
+            }
+            
+            channel.close();
+            int afterClose = received.get();
+            Thread.sleep(100);
+            
+            assertEquals(afterClose, received.get(), "关闭后消费线程不应继续处理");
+            assertThrows(IllegalStateException.class, () -> channel.emit("late"));
+            try (Stream<Path> files = Files.list(spillDir())) {
+                assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith(prefix)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    @DisplayName("按龄清理应只删除过期的溢出文件")
+    void testSweepRemovesStaleSpillFiles() throws Exception {
+        Files.createDirectories(spillDir());
+        Path stale = Files.createTempFile(spillDir(), "stale-", ".log");
+        Path fresh = Files.createTempFile(spillDir(), "fresh-", ".log");
+        try {
+            long now = System.currentTimeMillis();
+            Files.setLastModifiedTime(stale, FileTime.fromMillis(now - TimeUnit.DAYS.toMillis(2)));
+            
+            ToolOutputChannel.sweepSpillDir(now - TimeUnit.DAYS.toMillis(1));
+            
+            assertFalse(Files.exists(stale));
+            assertTrue(Files.exists(fresh));
+        } finally {
+            Files.deleteIfExists(stale);
+            Files.deleteIfExists(fresh);
+        }
+    }
+    
+    private static Path spillDir() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "joder-tool-output");
+    }
+}
@@ -1,5 +1,7 @@
 package io.leavesfly.joder.tools.edit;
 
+import io.leavesfly.joder.services.checkpoint.CheckpointStore;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
 import io.leavesfly.joder.tools.ToolResult;
 import io.leavesfly.joder.ui.renderer.DiffRenderer;
 import org.junit.jupiter.api.AfterEach;
@@ -29,7 +31,8 @@ class BatchEditToolTest {
         String workingDir = tempDir.toString();
         fileEditTool = new FileEditTool(workingDir);
         DiffRenderer diffRenderer = new DiffRenderer();
-        batchEditTool = new BatchEditTool(workingDir, fileEditTool, diffRenderer);
+        CheckpointStore checkpointStore = new CheckpointStore(workingDir, new FileChangeBus());
+        batchEditTool = new BatchEditTool(workingDir, fileEditTool, diffRenderer, checkpointStore);
     }
     
     @AfterEach
@@ -0,0 +1,137 @@
+package io.leavesfly.joder.tools.edit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LargeFileOptimizer 测试
+ */
+class LargeFileOptimizerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LargeFileOptimizer optimizer;
+
+    @BeforeEach
+    void setUp() {
+        optimizer = new LargeFileOptimizer();
+    }
+
+    @Test
+    void testEditLargeFile_ReplacesAllOccurrences() throws IOException {
+        Path file = tempDir.resolve("big.txt");
+        String content = buildContent(30000) + "结尾标记 TODO\n";
+        Files.writeString(file, content);
+        assertTrue(optimizer.isLargeFile(file));
+
+        LargeFileOptimizer.EditResult result = optimizer.editLargeFile(file, "TODO", "完成",
+            StandardCharsets.UTF_8);
+
+        assertTrue(result.isSuccess());
+        String expected = content.replace("TODO", "完成");
+        assertEquals(expected, Files.readString(file));
+        assertEquals(countOf(content, "TODO"), result.getReplacements());
+        assertEquals(content.substring(0, content.indexOf("TODO")).getBytes(StandardCharsets.UTF_8).length,
+            result.getFirstMatchOffset());
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, result.getNewSize());
+        assertNoTempFiles();
+    }
+
+    @Test
+    void testEditLargeFile_NotFoundLeavesFileUntouched() throws IOException {
+        Path file = tempDir.resolve("big.txt");
+        String content = buildContent(1000);
+        Files.writeString(file, content);
+
+        LargeFileOptimizer.EditResult result = optimizer.editLargeFile(file, "不存在的内容", "x",
+            StandardCharsets.UTF_8);
+
+        assertFalse(result.isSuccess());
+        assertEquals(content, Files.readString(file));
+        assertNoTempFiles();
+    }
+
+    @Test
+    void testIncrementalEdit_UsesByteOffsetForNonAscii() throws IOException {
+        Path file = tempDir.resolve("unicode.txt");
+        Files.writeString(file, "中文前缀 value=old 其他 value=old");
+
+        // 字节数相同：原地写入，必须按字节偏移而不是字符下标定位
+        LargeFileOptimizer.EditResult inPlace = optimizer.incrementalEdit(file, "old", "new",
+            StandardCharsets.UTF_8);
+        assertTrue(inPlace.isSuccess());
+        assertEquals("中文前缀 value=new 其他 value=old", Files.readString(file));
+
+        // 字节数不同：流式拼接，只替换第一处
+        LargeFileOptimizer.EditResult spliced = optimizer.incrementalEdit(file, "value=old", "值=旧的",
+            StandardCharsets.UTF_8);
+        assertTrue(spliced.isSuccess());
+        assertEquals(1, spliced.getReplacements());
+        assertEquals("中文前缀 value=new 其他 值=旧的", Files.readString(file));
+    }
+
+    @Test
+    void testMatchesAcrossMapWindowsAndOverlaps() throws IOException {
+        Path file = tempDir.resolve("pattern.txt");
+        String content = "aaaa" + "b".repeat(50) + "needle" + "b".repeat(3) + "needle" + "aa";
+        Files.writeString(file, content);
+
+        // 窗口远小于文件，匹配会跨越窗口边界
+        LargeFileOptimizer windowed = new LargeFileOptimizer(7);
+        for (LargeFileOptimizer candidate : new LargeFileOptimizer[] {optimizer, windowed}) {
+            // 与 String#replace 一致：不重叠匹配
+            assertEquals(3, candidate.countMatches(file, "aa", StandardCharsets.UTF_8, Integer.MAX_VALUE));
+            assertEquals(2, candidate.countMatches(file, "aa", StandardCharsets.UTF_8, 2));
+            assertEquals(1, candidate.countMatches(file, "ab", StandardCharsets.UTF_8, Integer.MAX_VALUE));
+            assertEquals(2, candidate.countMatches(file, "needle", StandardCharsets.UTF_8, Integer.MAX_VALUE));
+            assertEquals(0, candidate.countMatches(file, "c", StandardCharsets.UTF_8, Integer.MAX_VALUE));
+        }
+
+        assertTrue(windowed.editLargeFile(file, "needle", "pin", StandardCharsets.UTF_8).isSuccess());
+        assertEquals(content.replace("needle", "pin"), Files.readString(file));
+    }
+
+    @Test
+    void testSnippetAround() throws IOException {
+        Path file = tempDir.resolve("snippet.txt");
+        Files.writeString(file, "l1\nl2\nl3\nTARGET\nl5\nl6\nl7\n");
+
+        String snippet = optimizer.snippetAround(file, 9, 6, 1, StandardCharsets.UTF_8);
+
+        assertEquals("l3\nTARGET\nl5", snippet);
+    }
+
+    private String buildContent(int lines) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append("第 ").append(i).append(" 行：");
+            content.append(i % 97 == 0 ? "TODO 处理" : "普通内容 ordinary content");
+            content.append('\n');
+        }
+        return content.toString();
+    }
+
+    private int countOf(String text, String target) {
+        int count = 0;
+        for (int index = text.indexOf(target); index >= 0; index = text.indexOf(target, index + target.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private void assertNoTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.leavesfly.joder.tools.edit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MultiEditEngine 测试
+ */
+class MultiEditEngineTest {
+
+    @Test
+    void testIndependentEditsApplyInSinglePass() {
+        String content = "int a = 1;\nint b = 2;\nint c = a + b;\n";
+        List<MultiEditEngine.Edit> edits = List.of(
+            edit("int b = 2;", "long b = 2L;", false),
+            edit("a", "alpha", true),
+            edit("int c", "long c", false));
+
+        MultiEditEngine.Result result = MultiEditEngine.apply(content, edits);
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.isSinglePass());
+        assertEquals("int alpha = 1;\nlong b = 2L;\nlong c = alpha + b;\n", result.getContent());
+        assertEquals(1, result.getReplacements(0));
+        assertEquals(2, result.getReplacements(1));
+        assertEquals(1, result.getReplacements(2));
+    }
+
+    @Test
+    void testChainedEditsFallBackToSequentialSemantics() {
+        // 第二个编辑的目标由第一个编辑产生
+        List<MultiEditEngine.Edit> chained = List.of(
+            edit("foo()", "bar()", false),
+            edit("bar()", "baz()", false));
+        MultiEditEngine.Result result = MultiEditEngine.apply("call foo();", chained);
+        assertTrue(result.isSuccess());
+        assertFalse(result.isSinglePass());
+        assertEquals("call baz();", result.getContent());
+
+        // 删除后两侧拼接出较晚编辑的目标
+        List<MultiEditEngine.Edit> joined = List.of(
+            edit("-", "", false),
+            edit("ab", "X", false));
+        assertEquals("X", MultiEditEngine.apply("a-b", joined).getContent());
+    }
+
+    @Test
+    void testErrorSemanticsMatchSequential() {
+        String content = "x = 1\ny = 1\n";
+        assertEquals("编辑 #2: 找到 2 处匹配。为安全起见，请设置 replace_all=true 或添加更多上下文以唯一标识",
+            MultiEditEngine.apply(content, List.of(edit("x", "z", false), edit("1", "2", false))).getError());
+        assertEquals("编辑 #1: 文件中未找到要替换的字符串",
+            MultiEditEngine.apply(content, List.of(edit("w", "v", false), edit("x", "x", false))).getError());
+        assertEquals("编辑 #2: old_string 和 new_string 相同，无需更改",
+            MultiEditEngine.apply(content, List.of(edit("x", "z", false), edit("y", "y", false))).getError());
+
+        // 较早编辑改写了较晚编辑的目标：逐个应用时第二个编辑找不到目标
+        MultiEditEngine.Result overwritten = MultiEditEngine.apply(content,
+            List.of(edit("x = 1", "x = 3", false), edit("= 1\ny", "= 4\ny", false)));
+        assertEquals("编辑 #2: 文件中未找到要替换的字符串", overwritten.getError());
+    }
+
+    @Test
+    void testMatchesSequentialOnRandomEdits() {
+        Random random = new Random(42);
+        String alphabet = "abc\n";
+        int singlePass = 0;
+        for (int round = 0; round < 3000; round++) {
+            String content = randomText(random, alphabet, 20 + random.nextInt(60));
+            List<MultiEditEngine.Edit> edits = new ArrayList<>();
+            int count = 1 + random.nextInt(4);
+            for (int i = 0; i < count; i++) {
+                String oldString = randomText(random, alphabet, 1 + random.nextInt(4));
+                String newString = randomText(random, alphabet, random.nextInt(4));
+                edits.add(edit(oldString, newString, random.nextBoolean()));
+            }
+
+            MultiEditEngine.Result expected = MultiEditEngine.applySequentially(content, edits);
+            MultiEditEngine.Result actual = MultiEditEngine.apply(content, edits);
+
+            String description = content + " " + describe(edits);
+            assertEquals(expected.getError(), actual.getError(), description);
+            assertEquals(expected.getContent(), actual.getContent(), description);
+            if (expected.isSuccess()) {
+                for (int i = 0; i < count; i++) {
+                    assertEquals(expected.getReplacements(i), actual.getReplacements(i), description);
+                }
+            }
+            if (actual.isSinglePass()) {
+                singlePass++;
+            }
+        }
+        // 随机编辑中相当一部分互不影响，应走单次扫描
+        assertTrue(singlePass > 300, "single pass rounds: " + singlePass);
+    }
+
+    private static MultiEditEngine.Edit edit(String oldString, String newString, boolean replaceAll) {
+        return new MultiEditEngine.Edit(oldString, newString, replaceAll);
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    private static String describe(List<MultiEditEngine.Edit> edits) {
+        StringBuilder description = new StringBuilder();
+        for (MultiEditEngine.Edit edit : edits) {
+            description.append(String.format("[%s -> %s%s]", edit.oldString, edit.newString,
+                edit.replaceAll ? " all" : ""));
+        }
+        return description.toString().replace("\n", "\\n");
+    }
+}
@@ -308,4 +308,58 @@ public class FileReadToolTest {
         // Assert
         assertTrue(result.isSuccess());
     }
+    
+    @Test
+    @DisplayName("大文件按行范围读取且单次输出有上限")
+    public void testReadRangeOfLargeFile() throws IOException {
+        // Arrange
+        Path testFile = tempDir.resolve("huge.log");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; content.length() <= FileReadTool.LARGE_FILE_BYTES; i++) {
+            content.append("log line ").append(i).append(" ").append("-".repeat(40)).append("\n");
+        }
+        Files.write(testFile, content.toString().getBytes());
+        
+        Map<String, Object> input = new HashMap<>();
+        input.put("path", testFile.toString());
+        input.put("startLine", 70000);
+        input.put("endLine", 70002);
+        
+        // Act
+        ToolResult range = fileReadTool.call(input);
+        input.remove("startLine");
+        input.remove("endLine");
+        ToolResult whole = fileReadTool.call(input);
+        
+        // Assert
+        assertTrue(range.isSuccess());
+        assertTrue(range.getOutput().contains("70001: log line 70000 "));
+        assertTrue(range.getOutput().contains("70002: log line 70001 "));
+        assertFalse(range.getOutput().contains("log line 70002 "));
+        assertTrue(whole.isSuccess());
+        assertFalse(whole.getOutput().contains("log line " + FileReadTool.MAX_LINES_PER_READ + " "));
+        assertTrue(whole.getOutput().contains("startLine=" + FileReadTool.MAX_LINES_PER_READ));
+    }
+    
+    @Test
+    @DisplayName("应该能读取文件末尾若干行")
+    public void testReadTail() throws IOException {
+        // Arrange
+        Path testFile = tempDir.resolve("tail.txt");
+        Files.write(testFile, "Line 1\nLine 2\nLine 3\nLine 4\n".getBytes());
+        
+        Map<String, Object> input = new HashMap<>();
+        input.put("path", testFile.toString());
+        input.put("tail", 2);
+        
+        // Act
+        ToolResult result = fileReadTool.call(input);
+        
+        // Assert
+        assertTrue(result.isSuccess());
+        String output = result.getOutput();
+        assertFalse(output.contains("Line 2"));
+        assertTrue(output.contains("Line 3"));
+        assertTrue(output.contains("Line 4"));
+    }
 }
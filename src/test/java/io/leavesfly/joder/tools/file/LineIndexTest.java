@@ -0,0 +1,100 @@
+package io.leavesfly.joder.tools.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LineIndex 测试，以 Files.readAllLines 的结果为准
+ */
+class LineIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRangesMatchReadAllLines() throws Exception {
+        StringBuilder content = new StringBuilder();
+        int total = LineIndex.STRIDE * 3 + 17;
+        for (int i = 0; i < total; i++) {
+            content.append(i % 5 == 0 ? "" : "行 " + i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        content.append("tail without newline");
+        Path file = tempDir.resolve("mixed.txt");
+        Files.writeString(file, content.toString());
+        List<String> expected = Files.readAllLines(file);
+
+        LineIndex index = LineIndex.forFile(file);
+        int[][] ranges = {
+            {0, 10}, {LineIndex.STRIDE - 1, LineIndex.STRIDE + 2}, {LineIndex.STRIDE * 2, LineIndex.STRIDE * 2 + 1},
+            {100, 50 + LineIndex.STRIDE * 3}, {expected.size() - 3, expected.size() + 100}, {0, 5}
+        };
+        for (int[] range : ranges) {
+            int end = Math.min(range[1], expected.size());
+            assertEquals(expected.subList(range[0], end), index.readLines(range[0], range[1]),
+                "[" + range[0] + ", " + range[1] + ")");
+        }
+        assertTrue(index.readLines(expected.size(), expected.size() + 5).isEmpty());
+        assertEquals(expected.size(), LineIndex.cachedLineCount(file));
+    }
+
+    @Test
+    void testIndexExtendsOnlyAsFarAsNeeded() throws Exception {
+        Path file = tempDir.resolve("numbers.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < LineIndex.STRIDE * 4; i++) {
+            content.append(i).append('\n');
+        }
+        Files.writeString(file, content.toString());
+
+        LineIndex index = LineIndex.forFile(file);
+        assertEquals(List.of("5", "6"), index.readLines(5, 7));
+        assertEquals(-1, LineIndex.cachedLineCount(file), "只读了开头，不应扫描全文");
+        assertEquals(List.of(String.valueOf(LineIndex.STRIDE * 4 - 1)),
+            index.readLines(LineIndex.STRIDE * 4 - 1, LineIndex.STRIDE * 4 + 1));
+        assertEquals(LineIndex.STRIDE * 4, LineIndex.cachedLineCount(file));
+        assertSame(index, LineIndex.forFile(file));
+    }
+
+    @Test
+    void testIndexRebuiltWhenFileChanges() throws Exception {
+        Path file = tempDir.resolve("changing.txt");
+        Files.writeString(file, "a\nb\n");
+        LineIndex first = LineIndex.forFile(file);
+        assertEquals(List.of("b"), first.readLines(1, 2));
+
+        Files.writeString(file, "a\nc\nd\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        LineIndex second = LineIndex.forFile(file);
+        assertNotSame(first, second);
+        assertEquals(List.of("c", "d"), second.readLines(1, 10));
+    }
+
+    @Test
+    void testReadTail() throws Exception {
+        Path file = tempDir.resolve("log.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            content.append("entry ").append(i).append("\r\n");
+        }
+        Files.writeString(file, content.toString());
+
+        assertEquals(List.of("entry 49997", "entry 49998", "entry 49999"), LineIndex.readTail(file, 3));
+        assertEquals(50_000, LineIndex.readTail(file, 60_000).size());
+
+        Path small = tempDir.resolve("small.txt");
+        Files.writeString(small, "x\n\ny");
+        assertEquals(List.of("", "y"), LineIndex.readTail(small, 2));
+        assertEquals(Files.readAllLines(small), LineIndex.readTail(small, 10));
+
+        Path empty = Files.createFile(tempDir.resolve("empty.txt"));
+        assertTrue(LineIndex.readTail(empty, 5).isEmpty());
+        assertTrue(LineIndex.forFile(empty).readLines(0, 5).isEmpty());
+    }
+}
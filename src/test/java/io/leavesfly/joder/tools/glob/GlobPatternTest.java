@@ -0,0 +1,110 @@
+package io.leavesfly.joder.tools.glob;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GlobPattern 测试
+ */
+class GlobPatternTest {
+
+    @Test
+    void testLiteralPrefixIsSplitOff() {
+        GlobPattern glob = GlobPattern.compile("services/*/src/main/**/*.proto");
+        assertTrue(glob.isCompiled());
+        assertEquals("services", glob.getLiteralPrefix());
+
+        assertTrue(matches(glob, "billing/src/main/proto/v1/api.proto"));
+        assertTrue(matches(glob, "billing/src/main/api.proto"));
+        assertFalse(matches(glob, "billing/src/test/api.proto"));
+        assertFalse(matches(glob, "billing/src/main/api.java"));
+    }
+
+    @Test
+    void testUnrelatedDirectoriesArePruned() {
+        GlobPattern glob = GlobPattern.compile("services/*/src/main/**/*.proto");
+        long service = glob.enterDirectory(glob.initialState(), "billing");
+        assertNotEquals(0, service);
+        assertEquals(0, glob.enterDirectory(service, "docs"));
+        long src = glob.enterDirectory(service, "src");
+        assertEquals(0, glob.enterDirectory(src, "test"));
+        long main = glob.enterDirectory(src, "main");
+        assertNotEquals(0, glob.enterDirectory(main, "anything"));
+    }
+
+    @Test
+    void testPatternWithoutSlashMatchesAtAnyDepth() {
+        GlobPattern glob = GlobPattern.compile("*.java");
+        assertEquals("", glob.getLiteralPrefix());
+        assertTrue(matches(glob, "App.java"));
+        assertTrue(matches(glob, "src/main/java/App.java"));
+        assertFalse(matches(glob, "src/App.kt"));
+    }
+
+    @Test
+    void testDoubleStarMatchesZeroDirectories() {
+        GlobPattern glob = GlobPattern.compile("**/*.java");
+        assertTrue(matches(glob, "App.java"));
+        assertTrue(matches(glob, "a/b/App.java"));
+
+        GlobPattern under = GlobPattern.compile("src/**");
+        assertEquals("src", under.getLiteralPrefix());
+        assertTrue(matches(under, "x.txt"));
+        assertTrue(matches(under, "a/b/x.txt"));
+    }
+
+    @Test
+    void testBraceAndExtensionSegments() {
+        GlobPattern ext = GlobPattern.compile("src/*.{java,kt}");
+        assertTrue(matches(ext, "App.java"));
+        assertTrue(matches(ext, "App.kt"));
+        assertFalse(matches(ext, "App.scala"));
+        assertFalse(matches(ext, "java"));
+
+        GlobPattern names = GlobPattern.compile("{pom.xml,build.gradle}");
+        assertTrue(matches(names, "pom.xml"));
+        assertTrue(matches(names, "module/build.gradle"));
+        assertFalse(matches(names, "settings.gradle"));
+
+        GlobPattern mixed = GlobPattern.compile("{src,test}/**/*Test.java");
+        assertTrue(matches(mixed, "src/a/FooTest.java"));
+        assertTrue(matches(mixed, "test/FooTest.java"));
+        assertFalse(matches(mixed, "docs/FooTest.java"));
+    }
+
+    @Test
+    void testRegexSegments() {
+        GlobPattern glob = GlobPattern.compile("logs/app-?.[0-9].log");
+        assertTrue(matches(glob, "app-a.1.log"));
+        assertFalse(matches(glob, "app-ab.1.log"));
+        assertFalse(matches(glob, "app-a.x.log"));
+    }
+
+    @Test
+    void testUnsplittablePatternsFallBackToPathMatcher() {
+        GlobPattern glob = GlobPattern.compile("{src/a,docs}/*.md");
+        assertFalse(glob.isCompiled());
+        assertTrue(glob.matchesPath(Paths.get("src/a/readme.md")));
+        assertTrue(glob.matchesPath(Paths.get("docs/readme.md")));
+        assertFalse(glob.matchesPath(Paths.get("src/b/readme.md")));
+    }
+
+    /**
+     * 从起始目录出发逐级推进状态，模拟遍历过程
+     */
+    private static boolean matches(GlobPattern glob, String relative) {
+        Path path = Paths.get(relative);
+        long state = glob.initialState();
+        for (int i = 0; i < path.getNameCount() - 1; i++) {
+            state = glob.enterDirectory(state, path.getName(i).toString());
+            if (state == 0) {
+                return false;
+            }
+        }
+        return glob.matchesName(state, path.getFileName().toString());
+    }
+}
@@ -1,5 +1,13 @@
 package io.leavesfly.joder.tools.search;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.index.TokenIndex;
+import io.leavesfly.joder.services.model.ModelAdapter;
+import io.leavesfly.joder.services.model.ModelAdapterFactory;
+import io.leavesfly.joder.services.model.ModelRouter;
+import io.leavesfly.joder.services.search.BinaryDetector;
+import io.leavesfly.joder.services.search.ContentScanner;
 import io.leavesfly.joder.tools.ToolResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -7,10 +15,13 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -208,4 +219,127 @@ class SmartSearchToolTest {
         assertTrue(result.isSuccess());
         assertTrue(result.getOutput().contains("未找到匹配"));
     }
+    
+    @Test
+    void testSpeculativeStrategyFromIntent() {
+        SearchStrategy strategy = SearchStrategyAnalyzer.createSpeculativeStrategy(
+            "where is `user.name` read and handleUpload called");
+        assertNotNull(strategy);
+        assertEquals("user\\.name|handleUpload", strategy.getRegex());
+        assertFalse(strategy.isCaseSensitive());
+        
+        // 没有形似代码的词时取普通英文词
+        assertEquals("upload", SearchStrategyAnalyzer.createSpeculativeStrategy("find the upload logic").getRegex());
+        assertNull(SearchStrategyAnalyzer.createSpeculativeStrategy("查找用户认证代码"));
+    }
+    
+    @Test
+    void testSpeculativeResultsAreMerged() throws Exception {
+        Files.writeString(tempDir.resolve("UploadHandler.java"), "class UploadHandler {\n  void handleUpload() {}\n}\n");
+        Files.writeString(tempDir.resolve("BlobStore.java"), "class BlobStore {\n  void saveBlob() { handleUpload(); }\n}\n");
+        Files.writeString(tempDir.resolve("notes.txt"), "handleUpload is documented here\n");
+        
+        SearchExecutor executor = spy(new SearchExecutor());
+        AtomicReference<CompletableFuture<?>> speculative = new AtomicReference<>();
+        doAnswer(invocation -> {
+            CompletableFuture<?> future = (CompletableFuture<?>) invocation.callRealMethod();
+            speculative.set(future);
+            return future;
+        }).when(executor).executeSpeculative(any(), any(), any());
+        
+        SearchStrategy strategy = new SearchStrategy();
+        strategy.setRegex("saveBlob");
+        strategy.setIncludePatterns(List.of("*.java"));
+        when(mockStrategyAnalyzer.analyze(anyString(), anyString())).thenAnswer(invocation -> {
+            // 模型返回前预判搜索已完成
+            speculative.get().join();
+            return strategy;
+        });
+        
+        Map<String, Object> input = new HashMap<>();
+        input.put("query", "where is handleUpload called");
+        ToolResult result = new SmartSearchTool(tempDir.toString(), mockStrategyAnalyzer, executor).call(input);
+        
+        assertTrue(result.isSuccess(), result.getError());
+        String output = result.getOutput();
+        assertTrue(output.contains("找到 2 个匹配"), output);
+        // 两者都命中的文件在前，仅预判命中的文件补在后，策略范围外的 notes.txt 不合并
+        assertTrue(output.indexOf("BlobStore.java") < output.indexOf("UploadHandler.java"), output);
+        assertFalse(output.contains("notes.txt"), output);
+        assertTrue(output.contains("补充 1 个文件"), output);
+    }
+    
+    @Test
+    void testFallsBackToSpeculativeResultsWhenStrategyFails() throws Exception {
+        Files.writeString(tempDir.resolve("UploadHandler.java"), "void handleUpload() {}\n");
+        
+        SearchStrategy strategy = new SearchStrategy();
+        strategy.setRegex("handleUpload");
+        strategy.setSearchPath("missing-module");
+        when(mockStrategyAnalyzer.analyze(anyString(), anyString())).thenReturn(strategy);
+        
+        Map<String, Object> input = new HashMap<>();
+        input.put("query", "handleUpload");
+        ToolResult result = new SmartSearchTool(tempDir.toString(), mockStrategyAnalyzer, new SearchExecutor()).call(input);
+        
+        assertTrue(result.isSuccess(), result.getError());
+        assertTrue(result.getOutput().contains("UploadHandler.java"));
+        assertTrue(result.getOutput().contains("显示预判搜索"));
+    }
+    
+    @Test
+    void testStrategyCachedPerNormalizedIntent() throws Exception {
+        ModelAdapter adapter = mock(ModelAdapter.class);
+        when(adapter.sendMessage(any(), anyString())).thenReturn(
+            "```json\n{\"regex\": \"handleUpload\", \"searchPath\": \".\"}\n```");
+        ModelRouter router = mock(ModelRouter.class);
+        when(router.routeModel(any())).thenReturn(adapter);
+        SearchStrategyAnalyzer analyzer = new SearchStrategyAnalyzer(
+            router, mock(ModelAdapterFactory.class), new ObjectMapper());
+        SearchExecutor executor = mock(SearchExecutor.class);
+        when(executor.execute(any(SearchStrategy.class), any(Path.class))).thenReturn(List.of());
+        SmartSearchTool tool = new SmartSearchTool(tempDir.toString(), analyzer, executor);
+        
+        Map<String, Object> input = new HashMap<>();
+        input.put("query", "查找 上传 处理");
+        assertTrue(tool.call(input).isSuccess());
+        
+        input.put("query", "  查找 上传   处理？");
+        input.put("maxResults", 10);
+        ToolResult second = tool.call(input);
+        assertTrue(second.isSuccess());
+        assertTrue(second.getOutput().contains("缓存"));
+        
+        verify(adapter, times(1)).sendMessage(any(), anyString());
+        // 缓存的策略交出副本，调用方修改 maxResults 不影响缓存
+        assertEquals(100, analyzer.getCached("查找 上传 处理", "").getMaxResults());
+    }
+    
+    @Test
+    void testFilesOnlyRankedFromTokenIndex() throws Exception {
+        Files.writeString(tempDir.resolve("UploadHandler.java"), "class UploadHandler {\n  void handleUpload() {}\n}\n");
+        Files.writeString(tempDir.resolve("BlobStore.java"), "class BlobStore {\n  void save() { handleUpload(); }\n}\n");
+        Files.writeString(tempDir.resolve("notes.txt"), "nothing relevant\n");
+        TokenIndex tokenIndex = new TokenIndex(tempDir.toString(), new FileChangeBus());
+        tokenIndex.refresh();
+        try {
+            SearchExecutor executor = spy(new SearchExecutor(new ContentScanner(), new BinaryDetector(), null, tokenIndex));
+            Map<String, Object> input = new HashMap<>();
+            input.put("query", "where is handleUpload");
+            input.put("filesOnly", true);
+            ToolResult result = new SmartSearchTool(tempDir.toString(), mockStrategyAnalyzer, executor).call(input);
+            
+            assertTrue(result.isSuccess(), result.getError());
+            String output = result.getOutput();
+            assertTrue(output.contains("找到 2 个匹配"), output);
+            // 声明中含有关键词的文件排在前面
+            assertTrue(output.indexOf("UploadHandler.java") < output.indexOf("BlobStore.java"), output);
+            assertTrue(output.contains("BM25"), output);
+            // 不请求模型，也不扫描文件内容
+            verify(mockStrategyAnalyzer, never()).analyze(anyString(), anyString());
+            verify(executor, never()).execute(any(SearchStrategy.class), any(Path.class));
+        } finally {
+            tokenIndex.shutdown();
+        }
+    }
 }
@@ -0,0 +1,108 @@
+package io.leavesfly.joder.tools.symbol;
+
+import io.leavesfly.joder.services.freshness.FileChangeBus;
+import io.leavesfly.joder.services.index.SymbolIndex;
+import io.leavesfly.joder.services.index.TokenIndex;
+import io.leavesfly.joder.tools.ToolResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GoToDefinitionTool 测试
+ */
+class GoToDefinitionToolTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SymbolIndex symbolIndex;
+    private TokenIndex tokenIndex;
+    private GoToDefinitionTool tool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(tempDir.resolve("src"));
+        Files.writeString(tempDir.resolve("src/UserService.java"),
+            "public class UserService {\n"
+                + "    public User findUser(String id) {\n"
+                + "        return null;\n"
+                + "    }\n"
+                + "}\n");
+        Files.writeString(tempDir.resolve("src/LoginController.java"),
+            "public class LoginController {\n"
+                + "    private UserService userService;\n"
+                + "    void login(String id) {\n"
+                + "        userService.findUser(id);\n"
+                + "        // findUserById is a different name\n"
+                + "    }\n"
+                + "}\n");
+        Files.writeString(tempDir.resolve("src/helpers.py"),
+            "def find_user(name):\n"
+                + "    return name\n");
+        FileChangeBus bus = new FileChangeBus();
+        symbolIndex = new SymbolIndex(tempDir.toString(), bus);
+        tokenIndex = new TokenIndex(tempDir.toString(), bus);
+        symbolIndex.refresh();
+        tokenIndex.refresh();
+        tool = new GoToDefinitionTool(tempDir.toString(), symbolIndex, tokenIndex);
+    }
+
+    @AfterEach
+    void tearDown() {
+        symbolIndex.shutdown();
+        tokenIndex.shutdown();
+    }
+
+    @Test
+    void testFindDefinition() {
+        ToolResult result = tool.call(Map.of("symbol", "findUser"));
+        assertTrue(result.isSuccess());
+        assertTrue(result.getOutput().contains("方法 UserService.findUser"), result.getOutput());
+        assertTrue(result.getOutput().contains("src/UserService.java:2-4"), result.getOutput());
+        assertTrue(result.getOutput().contains("public User findUser(String id) {"), result.getOutput());
+        assertFalse(result.getOutput().contains("LoginController"), result.getOutput());
+
+        ToolResult filtered = tool.call(Map.of("symbol", "UserService", "kind", "class"));
+        assertTrue(filtered.getOutput().contains("找到 1 个"), filtered.getOutput());
+
+        ToolResult missing = tool.call(Map.of("symbol", "noSuchThing"));
+        assertTrue(missing.isSuccess());
+        assertTrue(missing.getOutput().contains("未找到"));
+    }
+
+    @Test
+    void testFindReferences() {
+        ToolResult result = tool.call(Map.of("action", "references", "symbol", "findUser"));
+        assertTrue(result.isSuccess());
+        String output = result.getOutput();
+        assertTrue(output.contains("出现在 2 个文件的 2 行中"), output);
+        assertTrue(output.contains("2: public User findUser(String id) {  [定义]"), output);
+        assertTrue(output.contains("4: userService.findUser(id);"), output);
+        assertFalse(output.contains("findUserById"), output);
+
+        ToolResult limited = tool.call(Map.of("action", "references", "symbol", "findUser", "maxResults", 1));
+        assertTrue(limited.getOutput().contains("已截断"), limited.getOutput());
+    }
+
+    @Test
+    void testOutline() {
+        ToolResult result = tool.call(Map.of("action", "outline", "file", "src/LoginController.java"));
+        assertTrue(result.isSuccess());
+        assertEquals("src/LoginController.java 的结构（3 个符号）:\n"
+            + "类 LoginController  1-7\n"
+            + "  字段 userService  2\n"
+            + "  方法 login  3-6\n", result.getOutput());
+
+        assertFalse(tool.call(Map.of("action", "outline", "file", "missing.java")).isSuccess());
+        assertFalse(tool.call(Map.of("action", "rename", "symbol", "x")).isSuccess());
+        assertFalse(tool.call(Map.of("symbol", "x", "kind", "macro")).isSuccess());
+    }
+}